@@ -0,0 +1,119 @@
+package org.opengis.yang.benchmark;
+
+import org.geotools.api.data.SimpleFeatureStore;
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.opengis.yang.geotools.shape.BulkShapefileWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量写入shape文件
+ * BulkShapefileWriter追加写入（不建空间索引，只比较写入本身）与ShapeFileWrite中的事务写入方式对比，
+ * 每次调用写一个新文件，按单次耗时统计
+ * 运行：java -jar GisBenchmark/target/benchmarks.jar BulkWriteBenchmark -p featureCount=100000
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkWriteBenchmark {
+
+    @Param({"10000", "100000"})
+    private int featureCount;
+
+    @Param({"point", "polygon"})
+    private String geometryType;
+
+    private SimpleFeatureType featureType;
+
+    private File directory;
+
+    private File target;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        featureType = SyntheticShapefiles.featureType(geometryType);
+        directory = Files.createTempDirectory("bulk-write").toFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void nextFile() {
+        clean();
+        target = new File(directory, "bulk.shp");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clean();
+        directory.delete();
+    }
+
+    private void clean() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Benchmark
+    public long bulkWriter() throws IOException {
+        BulkShapefileWriter writer = new BulkShapefileWriter(target, featureType, StandardCharsets.UTF_8);
+        writer.setSpatialIndex(false);
+        return writer.write(SyntheticShapefiles.features(featureType, featureCount, 42)).getFeatureCount();
+    }
+
+    /**
+     * 先在内存中组装要素集合，再通过事务写入，作为对照
+     */
+    @Benchmark
+    public int transactionWriter() throws IOException {
+        List<SimpleFeature> features = new ArrayList<>(featureCount);
+        Iterator<SimpleFeature> iterator = SyntheticShapefiles.features(featureType, featureCount, 42);
+        while (iterator.hasNext()) {
+            features.add(iterator.next());
+        }
+        ShapefileDataStore dataStore = new ShapefileDataStore(target.toURI().toURL());
+        Transaction transaction = new DefaultTransaction("benchmark");
+        try {
+            dataStore.setCharset(StandardCharsets.UTF_8);
+            dataStore.createSchema(featureType);
+            SimpleFeatureStore featureStore = (SimpleFeatureStore) dataStore.getFeatureSource(dataStore.getTypeNames()[0]);
+            featureStore.setTransaction(transaction);
+            featureStore.addFeatures(new ListFeatureCollection(featureType, features));
+            transaction.commit();
+        } finally {
+            transaction.close();
+            dataStore.dispose();
+        }
+        return features.size();
+    }
+}
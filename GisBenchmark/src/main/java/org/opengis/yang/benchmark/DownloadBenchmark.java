@@ -0,0 +1,116 @@
+package org.opengis.yang.benchmark;
+
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.web.controller.FileDownLoadController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件下载
+ * 不启动容器直接调用FileDownLoadController的零拷贝下载（完整文件与单个Range），
+ * 与downloadsync、downloadasync、download2使用的1KB缓冲复制对比；
+ * 这几个示例接口的文件路径写死在H盘，这里在临时目录生成文件，按相同的方式复制
+ * 运行：java -jar GisBenchmark/target/benchmarks.jar DownloadBenchmark -p fileSize=67108864
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadBenchmark {
+
+    private static final String FILE_NAME = "download.bin";
+
+    @Param({"1048576", "67108864"})
+    private long fileSize;
+
+    private Path directory;
+
+    private File file;
+
+    private FileDownLoadController controller;
+
+    private ServletStubs.CountingOutputStream outputStream;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("download");
+        file = directory.resolve(FILE_NAME).toFile();
+        byte[] block = new byte[64 * 1024];
+        new Random(42).nextBytes(block);
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            for (long written = 0; written < fileSize; written += block.length) {
+                output.write(block, 0, (int) Math.min(block.length, fileSize - written));
+            }
+        }
+        GisProperties properties = new GisProperties();
+        properties.setDownloadDirectory(directory.toString());
+        controller = new FileDownLoadController(properties);
+        outputStream = new ServletStubs.CountingOutputStream();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long zeroCopy() throws IOException {
+        outputStream.reset();
+        controller.download(ServletStubs.request(Collections.emptyMap()), ServletStubs.response(outputStream), FILE_NAME);
+        return outputStream.getCount();
+    }
+
+    /**
+     * 请求后一半内容，模拟断点续传
+     */
+    @Benchmark
+    public long zeroCopyRange() throws IOException {
+        outputStream.reset();
+        Map<String, String> headers = Collections.singletonMap("Range", "bytes=" + fileSize / 2 + "-");
+        controller.download(ServletStubs.request(headers), ServletStubs.response(outputStream), FILE_NAME);
+        return outputStream.getCount();
+    }
+
+    /**
+     * 与示例下载接口相同的1KB缓冲复制
+     */
+    @Benchmark
+    public long bufferCopy() throws IOException {
+        outputStream.reset();
+        try (InputStream is = new FileInputStream(file)) {
+            OutputStream os = outputStream;
+            byte[] buffer = new byte[1024];
+            int bytesRead;
+            while ((bytesRead = is.read(buffer)) != -1) {
+                os.write(buffer, 0, bytesRead);
+            }
+        }
+        return outputStream.getCount();
+    }
+}
@@ -0,0 +1,119 @@
+package org.opengis.yang.benchmark;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.DataUtilities;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.yang.geotools.filter.CompiledFilter;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.filter.FilterCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比GeoTools解释执行Filter.evaluate与FilterCompiler编译后的判断性能
+ * 运行：java -jar GisBenchmark/target/benchmarks.jar FilterEvaluationBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterEvaluationBenchmark {
+
+    private static final String[] KINDS = {"110101", "110102", "110303", "110304", "130201", "160100", "160205", "180304"};
+
+    @Param({"100000"})
+    private int featureCount;
+
+    //range为数值字段的范围，stringRange为字符串字段与数值字面量的比较（按GeoTools的宽松规则编译）
+    @Param({"equal", "in", "range", "stringRange", "like", "bbox", "and"})
+    private String filterKind;
+
+    private SimpleFeature[] features;
+
+    private Filter filter;
+
+    private CompiledFilter compiledFilter;
+
+    @Setup
+    public void setup() throws Exception {
+        SimpleFeatureType featureType = DataUtilities.createType("poi", "the_geom:Point:srid=4326,NAME:String,KIND:String,LEVEL:Integer");
+        GeometryFactory geometryFactory = JTSFactoryFinder.getGeometryFactory();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        Random random = new Random(42);
+        features = new SimpleFeature[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            builder.set("the_geom", geometryFactory.createPoint(new Coordinate(105.5 + random.nextDouble() * 5, 31.7 + random.nextDouble() * 7)));
+            builder.set("NAME", "兴趣点" + i + (i % 10 == 0 ? "学校" : "商店"));
+            builder.set("KIND", KINDS[random.nextInt(KINDS.length)]);
+            builder.set("LEVEL", random.nextInt(10));
+            features[i] = builder.buildFeature("poi." + (i + 1));
+        }
+        filter = createFilter(filterKind);
+        compiledFilter = FilterCompiler.compile(filter, featureType);
+    }
+
+    private static Filter createFilter(String filterKind) {
+        switch (filterKind) {
+            case "equal":
+                return FilterBuilder.creatEqualFilter("KIND", "160100");
+            case "in":
+                return FilterBuilder.createInFilter("KIND", new String[]{"110304", "110303", "130201"});
+            case "range":
+                return FilterBuilder.createGreaterOrEqualFilter("LEVEL", 5, true);
+            case "stringRange":
+                return FilterBuilder.createGreaterOrEqualFilter("KIND", 160100, true);
+            case "like":
+                return FilterBuilder.createLikeFiter("NAME", "*学校");
+            case "bbox":
+                return FilterBuilder.createBboxFilter("the_geom", 106.5, 35.0, 107.5, 36.0, "EPSG:4326");
+            case "and":
+                return CommonFactoryFinder.getFilterFactory().and(
+                        FilterBuilder.createBboxFilter("the_geom", 106.5, 33.0, 109.5, 36.0, "EPSG:4326"),
+                        FilterBuilder.createInFilter("KIND", new String[]{"110304", "110303", "130201"}));
+            default:
+                throw new IllegalArgumentException("未知的过滤类型：" + filterKind);
+        }
+    }
+
+    @Benchmark
+    public int interpreted() {
+        int count = 0;
+        for (SimpleFeature feature : features) {
+            if (filter.evaluate(feature)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int compiled() {
+        int count = 0;
+        for (SimpleFeature feature : features) {
+            if (compiledFilter.test(feature)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
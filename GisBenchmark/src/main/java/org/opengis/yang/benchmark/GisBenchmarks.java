@@ -0,0 +1,27 @@
+package org.opengis.yang.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar的入口
+ * 参数与org.openjdk.jmh.Main一致，默认加上gc分析器，输出每次操作的分配字节数与分配速率
+ * 运行：java -jar GisBenchmark/target/benchmarks.jar [基准名称正则] [-p 参数=值] [-rf json]
+ */
+public final class GisBenchmarks {
+
+    private GisBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,48 @@
+package org.opengis.yang.benchmark;
+
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 通过图层注册表打开生成的shape文件，与服务中的打开方式一致
+ * 建立空间索引以及KIND、LEVEL的属性索引，pinned时加载为列式图层
+ */
+final class LayerFixture implements AutoCloseable {
+
+    static final String LAYER_NAME = "synthetic";
+
+    private final ShapeLayerRegistry registry;
+
+    private final LayerHandle handle;
+
+    LayerFixture(String geometryType, int featureCount, boolean pinned) throws IOException {
+        File file = SyntheticShapefiles.get(geometryType, featureCount);
+        GisProperties.LayerProperties layerProperties = new GisProperties.LayerProperties(file.getPath());
+        layerProperties.setCharset("UTF-8");
+        layerProperties.setSpatialIndex(true);
+        layerProperties.setIndexedAttributes(List.of("KIND", "LEVEL"));
+        layerProperties.setPinned(pinned);
+        GisProperties properties = new GisProperties();
+        //基准测试的并发线程数可能超过默认的查询许可
+        properties.setMaxConcurrentQueries(1024);
+        this.registry = new ShapeLayerRegistry(properties);
+        registry.register(LAYER_NAME, layerProperties);
+        this.handle = registry.acquire(LAYER_NAME);
+    }
+
+    ShapeLayer layer() {
+        return handle.layer();
+    }
+
+    @Override
+    public void close() {
+        handle.close();
+        registry.dispose();
+    }
+}
@@ -0,0 +1,128 @@
+package org.opengis.yang.benchmark;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.filter.FilterCache;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FilterBuilder各类过滤条件在图层上的查询性能
+ * 对比LayerQueryExecutor（索引裁剪、编译后的条件、列式图层）与GeoTools FeatureSource逐条判断，
+ * 同时统计吞吐量与延迟分位数，分配速率通过-prof gc获取（GisBenchmarks默认开启）
+ * 运行：java -jar GisBenchmark/target/benchmarks.jar LayerQueryBenchmark -p geometryType=point,polygon
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayerQueryBenchmark {
+
+    private static final String POLYGON_WKT = "POLYGON((108 34, 109 34, 109 35, 108 35, 108 34))";
+
+    @Param({"100000"})
+    private int featureCount;
+
+    @Param({"point"})
+    private String geometryType;
+
+    @Param({"false", "true"})
+    private boolean pinned;
+
+    @Param({"cql", "equal", "greater", "greaterOrEqual", "lower", "like", "in", "bbox", "intersects", "contains", "dwithin", "beyond"})
+    private String filterKind;
+
+    private LayerFixture fixture;
+
+    private LayerQueryExecutor executor;
+
+    private Filter filter;
+
+    @Setup
+    public void setup() throws Exception {
+        fixture = new LayerFixture(geometryType, featureCount, pinned);
+        executor = new LayerQueryExecutor();
+        filter = createFilter(filterKind);
+    }
+
+    static Filter createFilter(String filterKind) throws Exception {
+        String geometry = SyntheticShapefiles.GEOMETRY;
+        switch (filterKind) {
+            case "cql":
+                return FilterBuilder.createCommonFilter("KIND = '160100' AND LEVEL >= 5");
+            case "equal":
+                return FilterBuilder.creatEqualFilter("KIND", "160100");
+            case "greater":
+                return FilterBuilder.createGreaterFilter("LEVEL", 7, true);
+            case "greaterOrEqual":
+                return FilterBuilder.createGreaterOrEqualFilter("LEVEL", 7, true);
+            case "lower":
+                return FilterBuilder.createLowerFilter("LEVEL", 2);
+            case "like":
+                return FilterBuilder.createLikeFiter("NAME", "*学校");
+            case "in":
+                return FilterBuilder.createInFilter("KIND", new String[]{"110304", "110303", "130201"});
+            case "bbox":
+                return FilterBuilder.createBboxFilter(geometry, 108.0, 34.0, 109.0, 35.0, "EPSG:4326");
+            case "intersects":
+                return FilterBuilder.createIntersect(geometry, POLYGON_WKT);
+            case "contains":
+                return FilterBuilder.createSpatialContainsFilter(geometry, FilterCache.geometry("POINT(108.5 34.5)"));
+            case "dwithin":
+                return FilterBuilder.createSpatialDistanceFilter(geometry, "POINT(108.5 34.5)", 0.2, "degree");
+            case "beyond":
+                return FilterBuilder.createDistanceFilter(geometry, "POINT(108.5 34.5)", 3, "degree");
+            default:
+                throw new IllegalArgumentException("未知的过滤类型：" + filterKind);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public int count() throws IOException {
+        return executor.count(fixture.layer(), filter);
+    }
+
+    @Benchmark
+    public List<SimpleFeature> firstPage() throws IOException {
+        return executor.list(fixture.layer(), filter, 0, 100);
+    }
+
+    /**
+     * GeoTools数据源逐条判断计数，作为对照
+     */
+    @Benchmark
+    public int featureSourceCount() throws IOException {
+        int count = 0;
+        try (SimpleFeatureIterator iterator = fixture.layer().getFeatureSource().getFeatures(filter).features()) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,104 @@
+package org.opengis.yang.benchmark;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.query.FeaturePage;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 深分页的性能：FilterBuilder.createPageQuery按startIndex跳过前面的要素，游标分页直接定位到上一页结束的记录
+ * 运行：java -jar GisBenchmark/target/benchmarks.jar PagingBenchmark
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PagingBenchmark {
+
+    private static final String CQL = "LEVEL >= 3";
+
+    @Param({"100000"})
+    private int featureCount;
+
+    @Param({"1", "100", "500"})
+    private int pageNumber;
+
+    @Param({"100"})
+    private int pageSize;
+
+    private LayerFixture fixture;
+
+    private LayerQueryExecutor executor;
+
+    private Filter filter;
+
+    //第pageNumber页的游标
+    private String cursor;
+
+    @Setup
+    public void setup() throws Exception {
+        fixture = new LayerFixture("point", featureCount, false);
+        executor = new LayerQueryExecutor();
+        filter = FilterBuilder.createCommonFilter(CQL);
+        for (int i = 1; i < pageNumber; i++) {
+            cursor = executor.page(fixture.layer(), filter, cursor, pageSize).getNextCursor();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void offsetPage(Blackhole blackhole) throws Exception {
+        Query query = FilterBuilder.createPageQuery(CQL, (pageNumber - 1) * pageSize, pageSize);
+        query.setTypeName(fixture.layer().getSchema().getTypeName());
+        try (SimpleFeatureIterator iterator = executor.query(fixture.layer(), query)) {
+            while (iterator.hasNext()) {
+                blackhole.consume(iterator.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public FeaturePage cursorPage() throws IOException {
+        return executor.page(fixture.layer(), filter, cursor, pageSize);
+    }
+
+    /**
+     * GeoTools数据源按startIndex分页，作为对照
+     */
+    @Benchmark
+    public void featureSourcePage(Blackhole blackhole) throws Exception {
+        Query query = FilterBuilder.createPageQuery(CQL, (pageNumber - 1) * pageSize, pageSize);
+        query.setTypeName(fixture.layer().getSchema().getTypeName());
+        try (SimpleFeatureIterator iterator = fixture.layer().getFeatureSource().getFeatures(query).features()) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                blackhole.consume(feature);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.opengis.yang.benchmark;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.yang.geotools.filter.CompiledFilter;
+import org.opengis.yang.geotools.filter.FilterCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 复杂行政区面与POI点图层的空间判断：GeoTools逐个要素判断与预处理几何判断对比
+ * poiPath为空时生成陕西范围内的随机点，否则读取指定的POI shape文件
+ * 运行：java -jar GisBenchmark/target/benchmarks.jar PreparedGeometryBenchmark -p poiPath=D:\POIshan3xi_point.shp
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreparedGeometryBenchmark {
+
+    private static final FilterFactory FILTER_FACTORY = CommonFactoryFinder.getFilterFactory();
+
+    private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
+
+    @Param({""})
+    private String poiPath;
+
+    @Param({"100000"})
+    private int featureCount;
+
+    //行政区边界的顶点数
+    @Param({"20000"})
+    private int polygonVertices;
+
+    @Param({"intersects", "within", "dwithin"})
+    private String predicate;
+
+    private SimpleFeature[] features;
+
+    private Filter filter;
+
+    private CompiledFilter compiledFilter;
+
+    @Setup
+    public void setup() throws Exception {
+        features = poiPath.isEmpty() ? randomPoints() : readPoints(new File(poiPath));
+        Polygon boundary = boundary(polygonVertices);
+        String geometryName = features[0].getFeatureType().getGeometryDescriptor().getLocalName();
+        switch (predicate) {
+            case "intersects":
+                filter = FILTER_FACTORY.intersects(FILTER_FACTORY.property(geometryName), FILTER_FACTORY.literal(boundary));
+                break;
+            case "within":
+                filter = FILTER_FACTORY.within(FILTER_FACTORY.property(geometryName), FILTER_FACTORY.literal(boundary));
+                break;
+            case "dwithin":
+                filter = FILTER_FACTORY.dwithin(FILTER_FACTORY.property(geometryName), FILTER_FACTORY.literal(boundary), 0.05, "degree");
+                break;
+            default:
+                throw new IllegalArgumentException("未知的空间判断：" + predicate);
+        }
+        compiledFilter = FilterCompiler.compile(filter, features[0].getFeatureType());
+    }
+
+    /**
+     * 以西安为中心生成锯齿状的星形多边形，模拟顶点密集的行政区边界
+     */
+    private static Polygon boundary(int vertices) {
+        Random random = new Random(7);
+        Coordinate[] coordinates = new Coordinate[vertices + 1];
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = 2 + 0.6 * Math.sin(7 * angle) + 0.2 * Math.sin(53 * angle) + 0.05 * random.nextDouble();
+            coordinates[i] = new Coordinate(108.9 + radius * Math.cos(angle), 34.3 + radius * Math.sin(angle));
+        }
+        coordinates[vertices] = new Coordinate(coordinates[0]);
+        return GEOMETRY_FACTORY.createPolygon(coordinates);
+    }
+
+    private SimpleFeature[] randomPoints() throws Exception {
+        SimpleFeatureType featureType = DataUtilities.createType("poi", "the_geom:Point:srid=4326,NAME:String");
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        Random random = new Random(42);
+        SimpleFeature[] points = new SimpleFeature[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            builder.set("the_geom", GEOMETRY_FACTORY.createPoint(new Coordinate(105.5 + random.nextDouble() * 5.8, 31.7 + random.nextDouble() * 7.9)));
+            builder.set("NAME", "兴趣点" + i);
+            points[i] = builder.buildFeature("poi." + (i + 1));
+        }
+        return points;
+    }
+
+    private static SimpleFeature[] readPoints(File file) throws Exception {
+        ShapefileDataStore dataStore = new ShapefileDataStore(file.toURI().toURL());
+        dataStore.setCharset(Charset.forName("GBK"));
+        List<SimpleFeature> points = new ArrayList<>();
+        try (SimpleFeatureIterator iterator = dataStore.getFeatureSource().getFeatures().features()) {
+            while (iterator.hasNext()) {
+                points.add(iterator.next());
+            }
+        } finally {
+            dataStore.dispose();
+        }
+        return points.toArray(new SimpleFeature[0]);
+    }
+
+    @Benchmark
+    public int interpreted() {
+        int count = 0;
+        for (SimpleFeature feature : features) {
+            if (filter.evaluate(feature)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int prepared() {
+        int count = 0;
+        for (SimpleFeature feature : features) {
+            if (compiledFilter.test(feature)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,116 @@
+package org.opengis.yang.benchmark;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 不启动容器调用下载接口用的servlet对象
+ * 通过动态代理只实现下载接口用到的方法，其余方法返回默认值，响应内容写入后直接丢弃
+ */
+final class ServletStubs {
+
+    private ServletStubs() {
+    }
+
+    /**
+     * @param headers 请求头
+     * @return GET请求
+     */
+    static HttpServletRequest request(Map<String, String> headers) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMethod":
+                            return "GET";
+                        case "getHeader":
+                            return headers.get((String) args[0]);
+                        case "getHeaders":
+                            String value = headers.get((String) args[0]);
+                            return Collections.enumeration(value == null ? Collections.emptyList() : Collections.singletonList(value));
+                        case "getHeaderNames":
+                            return Collections.enumeration(headers.keySet());
+                        case "getDateHeader":
+                            return -1L;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    /**
+     * @param outputStream 响应输出流
+     * @return 响应
+     */
+    static HttpServletResponse response(CountingOutputStream outputStream) {
+        int[] status = {HttpServletResponse.SC_OK};
+        return (HttpServletResponse) Proxy.newProxyInstance(ServletStubs.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getOutputStream":
+                            return outputStream;
+                        case "setStatus":
+                        case "sendError":
+                            status[0] = (Integer) args[0];
+                            return null;
+                        case "getStatus":
+                            return status[0];
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    /**
+     * 只统计写入字节数的输出流
+     */
+    static class CountingOutputStream extends ServletOutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.opengis.yang.benchmark;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.yang.geotools.shape.BulkShapefileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * 生成基准测试用的shape文件
+ * 要素在陕西范围内随机分布，字段与POI图层一致：NAME、KIND、LEVEL，另加数值字段AREA，
+ * 同样的类型、数量与随机种子生成的文件内容相同，已存在时直接复用
+ * 生成目录默认为临时目录下的gis-benchmark，可通过-Dgis.benchmark.dir指定
+ */
+public final class SyntheticShapefiles {
+
+    static final String GEOMETRY = "the_geom";
+
+    static final String[] KINDS = {"110101", "110102", "110303", "110304", "130201", "160100", "160205", "180304"};
+
+    //数据范围minx,miny,maxx,maxy
+    static final double[] BOUNDS = {105.5, 31.7, 111.0, 39.6};
+
+    private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
+
+    private SyntheticShapefiles() {
+    }
+
+    /**
+     * @return 生成目录
+     */
+    public static File directory() {
+        File directory = new File(System.getProperty("gis.benchmark.dir", new File(System.getProperty("java.io.tmpdir"), "gis-benchmark").getPath()));
+        directory.mkdirs();
+        return directory;
+    }
+
+    /**
+     * 获取或生成shape文件，生成时同时建立qix空间索引
+     * @param geometryType 几何类型：point、line、polygon
+     * @param featureCount 要素数
+     * @return shp文件
+     * @throws IOException
+     */
+    public static synchronized File get(String geometryType, int featureCount) throws IOException {
+        File file = new File(directory(), "synthetic_" + geometryType + "_" + featureCount + ".shp");
+        if (file.exists() && new File(directory(), "synthetic_" + geometryType + "_" + featureCount + ".dbf").exists()) {
+            return file;
+        }
+        SimpleFeatureType featureType = featureType(geometryType);
+        new BulkShapefileWriter(file, featureType, StandardCharsets.UTF_8).write(features(featureType, featureCount, 42));
+        return file;
+    }
+
+    /**
+     * @param geometryType 几何类型：point、line、polygon
+     * @return 要素类型
+     */
+    public static SimpleFeatureType featureType(String geometryType) {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName("synthetic_" + geometryType);
+        builder.setCRS(DefaultGeographicCRS.WGS84);
+        builder.add(GEOMETRY, geometryClass(geometryType));
+        builder.length(50).add("NAME", String.class);
+        builder.length(10).add("KIND", String.class);
+        builder.add("LEVEL", Integer.class);
+        builder.add("AREA", Double.class);
+        return builder.buildFeatureType();
+    }
+
+    private static Class<? extends Geometry> geometryClass(String geometryType) {
+        switch (geometryType) {
+            case "point":
+                return Point.class;
+            case "line":
+                return LineString.class;
+            case "polygon":
+                return Polygon.class;
+            default:
+                throw new IllegalArgumentException("未知的几何类型：" + geometryType);
+        }
+    }
+
+    /**
+     * 按需生成要素，不在内存中组装集合
+     * @param featureType 要素类型
+     * @param featureCount 要素数
+     * @param seed 随机种子
+     * @return 要素迭代器
+     */
+    public static Iterator<SimpleFeature> features(SimpleFeatureType featureType, int featureCount, long seed) {
+        Class<?> binding = featureType.getGeometryDescriptor().getType().getBinding();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
+        Random random = new Random(seed);
+        return new Iterator<SimpleFeature>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < featureCount;
+            }
+
+            @Override
+            public SimpleFeature next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                index++;
+                double x = BOUNDS[0] + random.nextDouble() * (BOUNDS[2] - BOUNDS[0]);
+                double y = BOUNDS[1] + random.nextDouble() * (BOUNDS[3] - BOUNDS[1]);
+                builder.set(GEOMETRY, geometry(binding, x, y, random));
+                builder.set("NAME", "兴趣点" + index + (index % 10 == 0 ? "学校" : "商店"));
+                builder.set("KIND", KINDS[random.nextInt(KINDS.length)]);
+                builder.set("LEVEL", random.nextInt(10));
+                builder.set("AREA", random.nextDouble() * 1000);
+                return builder.buildFeature(featureType.getTypeName() + "." + index);
+            }
+        };
+    }
+
+    private static Geometry geometry(Class<?> binding, double x, double y, Random random) {
+        if (Point.class.equals(binding)) {
+            return GEOMETRY_FACTORY.createPoint(new Coordinate(x, y));
+        }
+        //线与面的大小约为0.01度，顶点数在8到32之间
+        int vertexCount = 8 + random.nextInt(25);
+        double size = 0.005 + random.nextDouble() * 0.01;
+        if (LineString.class.equals(binding)) {
+            Coordinate[] coordinates = new Coordinate[vertexCount];
+            for (int i = 0; i < vertexCount; i++) {
+                coordinates[i] = new Coordinate(x + size * i / vertexCount, y + size * Math.sin(i));
+            }
+            return GEOMETRY_FACTORY.createLineString(coordinates);
+        }
+        Coordinate[] shell = new Coordinate[vertexCount + 1];
+        for (int i = 0; i < vertexCount; i++) {
+            double angle = 2 * Math.PI * i / vertexCount;
+            double radius = size * (0.6 + 0.4 * random.nextDouble());
+            shell[i] = new Coordinate(x + radius * Math.cos(angle), y + radius * Math.sin(angle));
+        }
+        shell[vertexCount] = new Coordinate(shell[0]);
+        return GEOMETRY_FACTORY.createPolygon(shell);
+    }
+}
@@ -1,13 +1,18 @@
 package org.opengis.yang;
 
+import org.opengis.yang.config.GisProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Hello world!
  *
  */
 @SpringBootApplication
+@EnableScheduling
+@EnableConfigurationProperties(GisProperties.class)
 public class GisServerApplication
 {
     public static void main( String[] args )
@@ -0,0 +1,421 @@
+package org.opengis.yang.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * gis服务相关配置，对应配置文件中的gis前缀
+ */
+@ConfigurationProperties(prefix = "gis")
+public class GisProperties {
+
+    /**
+     * 图层定义，key为图层名称
+     */
+    private Map<String, LayerProperties> layers = new LinkedHashMap<>();
+
+    /**
+     * 同时保持打开的DataStore数量上限，超过后按LRU回收空闲的图层
+     */
+    private int maxOpenLayers = 16;
+
+    /**
+     * 图层空闲超过该时长后会被回收
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    /**
+     * 获取图层时重新读取shape文件大小、修改时间的最小间隔，文件被其他进程改写后退役旧图层并重新打开
+     */
+    private Duration fileCheckInterval = Duration.ofSeconds(5);
+
+    /**
+     * 文件下载的根目录，只能下载该目录下的文件
+     */
+    private String downloadDirectory;
+
+    /**
+     * 每个图层同时执行的查询数上限，用信号量限制而不是线程池大小，可在图层配置中单独覆盖
+     * 许可保留到查询的要素读完，流式响应边读边写，客户端读取慢时占用许可的时间随之延长
+     */
+    private int maxConcurrentQueries = 32;
+
+    /**
+     * 等待图层查询许可的最长时间，超时后返回503
+     */
+    private Duration queryPermitTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 是否通过JFR监控虚拟线程被固定（pinned）在载体线程上的情况
+     */
+    private boolean pinningDiagnostics;
+
+    /**
+     * 虚拟线程被固定超过该时长时记录日志
+     */
+    private Duration pinningThreshold = Duration.ofMillis(20);
+
+    /**
+     * 并行扫描的线程数，小于等于0时使用cpu核数
+     */
+    private int scanParallelism;
+
+    /**
+     * 并行扫描时每个任务处理的记录数
+     */
+    private int scanPartitionSize = 16384;
+
+    /**
+     * 矢量切片磁盘缓存目录，为空时只使用内存缓存
+     */
+    private String tileCacheDirectory;
+
+    /**
+     * 矢量切片内存缓存的容量
+     */
+    private DataSize tileCacheSize = DataSize.ofMegabytes(64);
+
+    /**
+     * 查询结果缓存的容量
+     */
+    private DataSize resultCacheSize = DataSize.ofMegabytes(32);
+
+    /**
+     * 单个查询最多缓存的结果条数，超过时不缓存
+     */
+    private int resultCacheMaxRecords = 100000;
+
+    /**
+     * 查询结果缓存的有效期，其他进程原地改写shape文件且大小、修改时间都不变，或改写后未到文件检查间隔时以此兜底
+     */
+    private Duration resultCacheTtl = Duration.ofMinutes(10);
+
+    /**
+     * CQL解析结果缓存的条数
+     */
+    private long filterCacheSize = 2000;
+
+    /**
+     * WKT解析结果缓存的容量，按几何的坐标点总数计
+     */
+    private long geometryCacheWeight = 2_000_000;
+
+    /**
+     * 慢查询阈值，总耗时超过该值的查询输出cql与查询计划
+     */
+    private Duration slowQueryThreshold = Duration.ofSeconds(1);
+
+    /**
+     * 启动后预热的坐标系，两两之间的坐标转换同时生成
+     */
+    private List<String> warmUpCrs = new ArrayList<>(List.of("EPSG:4326", "EPSG:3857", "EPSG:4490"));
+
+    /**
+     * 批量查询一次最多包含的filter数
+     */
+    private int batchMaxQueries = 64;
+
+    /**
+     * 启动时在后台并行初始化GeoTools工厂、EPSG坐标系并预热图层，完成前readiness探针返回未就绪
+     */
+    private boolean startupWarmUp = true;
+
+    public Map<String, LayerProperties> getLayers() {
+        return layers;
+    }
+
+    public void setLayers(Map<String, LayerProperties> layers) {
+        this.layers = layers;
+    }
+
+    public int getMaxOpenLayers() {
+        return maxOpenLayers;
+    }
+
+    public void setMaxOpenLayers(int maxOpenLayers) {
+        this.maxOpenLayers = maxOpenLayers;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Duration getFileCheckInterval() {
+        return fileCheckInterval;
+    }
+
+    public void setFileCheckInterval(Duration fileCheckInterval) {
+        this.fileCheckInterval = fileCheckInterval;
+    }
+
+    public String getDownloadDirectory() {
+        return downloadDirectory;
+    }
+
+    public void setDownloadDirectory(String downloadDirectory) {
+        this.downloadDirectory = downloadDirectory;
+    }
+
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    public void setMaxConcurrentQueries(int maxConcurrentQueries) {
+        this.maxConcurrentQueries = maxConcurrentQueries;
+    }
+
+    public Duration getQueryPermitTimeout() {
+        return queryPermitTimeout;
+    }
+
+    public void setQueryPermitTimeout(Duration queryPermitTimeout) {
+        this.queryPermitTimeout = queryPermitTimeout;
+    }
+
+    public boolean isPinningDiagnostics() {
+        return pinningDiagnostics;
+    }
+
+    public void setPinningDiagnostics(boolean pinningDiagnostics) {
+        this.pinningDiagnostics = pinningDiagnostics;
+    }
+
+    public Duration getPinningThreshold() {
+        return pinningThreshold;
+    }
+
+    public void setPinningThreshold(Duration pinningThreshold) {
+        this.pinningThreshold = pinningThreshold;
+    }
+
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    public void setScanParallelism(int scanParallelism) {
+        this.scanParallelism = scanParallelism;
+    }
+
+    public int getScanPartitionSize() {
+        return scanPartitionSize;
+    }
+
+    public void setScanPartitionSize(int scanPartitionSize) {
+        this.scanPartitionSize = scanPartitionSize;
+    }
+
+    public String getTileCacheDirectory() {
+        return tileCacheDirectory;
+    }
+
+    public void setTileCacheDirectory(String tileCacheDirectory) {
+        this.tileCacheDirectory = tileCacheDirectory;
+    }
+
+    public DataSize getTileCacheSize() {
+        return tileCacheSize;
+    }
+
+    public void setTileCacheSize(DataSize tileCacheSize) {
+        this.tileCacheSize = tileCacheSize;
+    }
+
+    public DataSize getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    public void setResultCacheSize(DataSize resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public int getResultCacheMaxRecords() {
+        return resultCacheMaxRecords;
+    }
+
+    public void setResultCacheMaxRecords(int resultCacheMaxRecords) {
+        this.resultCacheMaxRecords = resultCacheMaxRecords;
+    }
+
+    public Duration getResultCacheTtl() {
+        return resultCacheTtl;
+    }
+
+    public void setResultCacheTtl(Duration resultCacheTtl) {
+        this.resultCacheTtl = resultCacheTtl;
+    }
+
+    public long getFilterCacheSize() {
+        return filterCacheSize;
+    }
+
+    public void setFilterCacheSize(long filterCacheSize) {
+        this.filterCacheSize = filterCacheSize;
+    }
+
+    public long getGeometryCacheWeight() {
+        return geometryCacheWeight;
+    }
+
+    public void setGeometryCacheWeight(long geometryCacheWeight) {
+        this.geometryCacheWeight = geometryCacheWeight;
+    }
+
+    public Duration getSlowQueryThreshold() {
+        return slowQueryThreshold;
+    }
+
+    public void setSlowQueryThreshold(Duration slowQueryThreshold) {
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    public List<String> getWarmUpCrs() {
+        return warmUpCrs;
+    }
+
+    public void setWarmUpCrs(List<String> warmUpCrs) {
+        this.warmUpCrs = warmUpCrs;
+    }
+
+    public int getBatchMaxQueries() {
+        return batchMaxQueries;
+    }
+
+    public void setBatchMaxQueries(int batchMaxQueries) {
+        this.batchMaxQueries = batchMaxQueries;
+    }
+
+    public boolean isStartupWarmUp() {
+        return startupWarmUp;
+    }
+
+    public void setStartupWarmUp(boolean startupWarmUp) {
+        this.startupWarmUp = startupWarmUp;
+    }
+
+    /**
+     * 单个shape图层的配置
+     */
+    public static class LayerProperties {
+
+        /**
+         * shp文件路径
+         */
+        private String path;
+
+        /**
+         * dbf文件编码
+         */
+        private String charset = "GBK";
+
+        /**
+         * 是否使用内存映射方式读取shp/shx/dbf
+         */
+        private boolean memoryMapped = true;
+
+        /**
+         * 是否在打开图层时构建内存空间索引
+         */
+        private boolean spatialIndex;
+
+        /**
+         * 需要建立属性索引的字段，只支持字符串与数值字段
+         */
+        private List<String> indexedAttributes = new ArrayList<>();
+
+        /**
+         * 该图层同时执行的查询数上限，为空时使用全局配置
+         */
+        private Integer maxConcurrentQueries;
+
+        /**
+         * 是否常驻内存，打开时加载为列式图层，查询直接在列上判断，不会被空闲回收
+         */
+        private boolean pinned;
+
+        /**
+         * 是否在启动预热时打开图层、构建索引并读取一遍文件，使内存映射的页面进入页缓存
+         */
+        private boolean prewarm;
+
+        public LayerProperties() {
+        }
+
+        public LayerProperties(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getCharset() {
+            return charset;
+        }
+
+        public void setCharset(String charset) {
+            this.charset = charset;
+        }
+
+        public boolean isMemoryMapped() {
+            return memoryMapped;
+        }
+
+        public void setMemoryMapped(boolean memoryMapped) {
+            this.memoryMapped = memoryMapped;
+        }
+
+        public boolean isSpatialIndex() {
+            return spatialIndex;
+        }
+
+        public void setSpatialIndex(boolean spatialIndex) {
+            this.spatialIndex = spatialIndex;
+        }
+
+        public List<String> getIndexedAttributes() {
+            return indexedAttributes;
+        }
+
+        public void setIndexedAttributes(List<String> indexedAttributes) {
+            this.indexedAttributes = indexedAttributes;
+        }
+
+        public Integer getMaxConcurrentQueries() {
+            return maxConcurrentQueries;
+        }
+
+        public void setMaxConcurrentQueries(Integer maxConcurrentQueries) {
+            this.maxConcurrentQueries = maxConcurrentQueries;
+        }
+
+        public boolean isPinned() {
+            return pinned;
+        }
+
+        public void setPinned(boolean pinned) {
+            this.pinned = pinned;
+        }
+
+        public boolean isPrewarm() {
+            return prewarm;
+        }
+
+        public void setPrewarm(boolean prewarm) {
+            this.prewarm = prewarm;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.opengis.yang.diagnostics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.opengis.yang.config.GisProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟线程固定（pinned）监控
+ * GeoTools中部分读取、坐标系工厂代码在synchronized块内做IO，虚拟线程在其中阻塞时会占住载体线程，
+ * 通过JFR的jdk.VirtualThreadPinned事件记录超过阈值的固定，按调用位置统计次数，
+ * 统计位置取栈上第一个GeoTools或本项目的方法，便于定位需要加限流或改用锁的代码
+ */
+@Component
+@ConditionalOnProperty(prefix = "gis", name = "pinning-diagnostics", havingValue = "true")
+public class PinnedThreadMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PinnedThreadMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    //日志中输出的栈帧数
+    private static final int LOGGED_FRAMES = 12;
+
+    private final Duration threshold;
+
+    private final Map<String, LongAdder> pinnedCounts = new ConcurrentHashMap<>();
+
+    private RecordingStream recordingStream;
+
+    public PinnedThreadMonitor(GisProperties properties) {
+        this.threshold = properties.getPinningThreshold();
+    }
+
+    @PostConstruct
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        LOGGER.info("虚拟线程固定监控已启动，阈值{}ms", threshold.toMillis());
+    }
+
+    private void onPinned(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace == null ? Collections.emptyList() : stackTrace.getFrames();
+        String location = location(frames);
+        pinnedCounts.computeIfAbsent(location, key -> new LongAdder()).increment();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.size(), LOGGED_FRAMES); i++) {
+            builder.append("\n\tat ").append(frameName(frames.get(i)));
+        }
+        LOGGER.warn("虚拟线程被固定{}ms，位置：{}{}", event.getDuration().toMillis(), location, builder);
+    }
+
+    private static String location(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("org.geotools.") || type.startsWith("org.opengis.yang.")) {
+                return frameName(frame);
+            }
+        }
+        return frames.isEmpty() ? "unknown" : frameName(frames.get(0));
+    }
+
+    private static String frameName(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    /**
+     * @return 各调用位置的固定次数
+     */
+    public Map<String, Long> getPinnedCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        pinnedCounts.forEach((location, count) -> counts.put(location, count.sum()));
+        return counts;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+        if (!pinnedCounts.isEmpty()) {
+            LOGGER.info("虚拟线程固定统计：{}", getPinnedCounts());
+        }
+    }
+}
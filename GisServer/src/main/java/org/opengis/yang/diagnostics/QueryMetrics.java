@@ -0,0 +1,94 @@
+package org.opengis.yang.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.opengis.yang.config.GisProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询指标
+ * 按图层与操作记录解析、计划、扫描、编码各阶段耗时的直方图，扫描与返回的记录数，
+ * 以及各访问方式（索引、全表扫描、列式、结果缓存）的查询次数，用于计算索引命中率；
+ * 总耗时超过gis.slow-query-threshold的查询输出cql与查询计划
+ */
+@Component
+public class QueryMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryMetrics.class);
+
+    private final MeterRegistry meterRegistry;
+
+    private final long slowQueryNanos;
+
+    public QueryMetrics(MeterRegistry meterRegistry, GisProperties properties) {
+        this.meterRegistry = meterRegistry;
+        Duration threshold = properties.getSlowQueryThreshold();
+        this.slowQueryNanos = threshold == null ? Long.MAX_VALUE : threshold.toNanos();
+    }
+
+    /**
+     * 开始一次查询并绑定到当前线程，调用方负责关闭
+     * @param layer 图层名称
+     * @param operation 操作：features、page、count、aggregate
+     * @param cql 原始cql，用于慢查询日志
+     * @return 查询记录
+     */
+    public QueryTrace start(String layer, String operation, String cql) {
+        return new QueryTrace(this, layer, operation, cql).bind();
+    }
+
+    void record(QueryTrace trace) {
+        long total = trace.getTotalNanos();
+        phase(trace, "parse", trace.getParseNanos());
+        phase(trace, "plan", trace.getPlanNanos());
+        phase(trace, "scan", trace.getScanNanos());
+        phase(trace, "encode", trace.getEncodeNanos());
+        phase(trace, "total", total);
+        features(trace, "scanned", trace.getScanned());
+        features(trace, "returned", trace.getReturned());
+        Counter.builder("gis.query.plans")
+                .description("各访问方式的查询次数")
+                .tag("layer", trace.getLayer())
+                .tag("path", trace.getAccessPath())
+                .register(meterRegistry)
+                .increment();
+        if (total >= slowQueryNanos) {
+            LOGGER.warn("慢查询：图层{}，操作{}，耗时{}ms（解析{}ms，计划{}ms，扫描{}ms，编码{}ms），扫描{}条，返回{}条，cql：{}，计划：{}",
+                    trace.getLayer(), trace.getOperation(), millis(total), millis(trace.getParseNanos()),
+                    millis(trace.getPlanNanos()), millis(trace.getScanNanos()), millis(trace.getEncodeNanos()),
+                    trace.getScanned(), trace.getReturned(), trace.getCql(), trace.getPlan());
+        }
+    }
+
+    private void phase(QueryTrace trace, String phase, long nanos) {
+        Timer.builder("gis.query")
+                .description("查询各阶段耗时")
+                .tag("layer", trace.getLayer())
+                .tag("operation", trace.getOperation())
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void features(QueryTrace trace, String type, long count) {
+        DistributionSummary.builder("gis.query.features")
+                .description("每次查询扫描与返回的记录数")
+                .tag("layer", trace.getLayer())
+                .tag("operation", trace.getOperation())
+                .tag("type", type)
+                .register(meterRegistry)
+                .record(count);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,189 @@
+package org.opengis.yang.diagnostics;
+
+/**
+ * 单次查询的耗时与记录数
+ * 由{@link QueryMetrics#start}创建并绑定到当前线程，查询执行器通过{@link #current()}记录计划与扫描，
+ * 控制器记录解析与编码，关闭时发布指标并在超过阈值时输出慢查询日志；
+ * 没有绑定时current()返回不做任何记录的共享实例
+ * 只在发起查询的线程上记录，非线程安全
+ */
+public class QueryTrace implements AutoCloseable {
+
+    private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+
+    private static final QueryTrace NONE = new QueryTrace(null, null, null, null);
+
+    private final QueryMetrics metrics;
+
+    private final String layer;
+
+    private final String operation;
+
+    private final String cql;
+
+    private final long start = System.nanoTime();
+
+    //嵌套查询结束后恢复外层
+    private QueryTrace previous;
+
+    private long parseNanos;
+
+    private long planNanos;
+
+    private long scanNanos;
+
+    private long encodeNanos;
+
+    private long scanned;
+
+    private long returned;
+
+    private Object plan;
+
+    private String accessPath = "none";
+
+    private boolean closed;
+
+    QueryTrace(QueryMetrics metrics, String layer, String operation, String cql) {
+        this.metrics = metrics;
+        this.layer = layer;
+        this.operation = operation;
+        this.cql = cql;
+    }
+
+    /**
+     * @return 当前线程上的查询，没有时返回不记录的实例
+     */
+    public static QueryTrace current() {
+        QueryTrace trace = CURRENT.get();
+        return trace == null ? NONE : trace;
+    }
+
+    QueryTrace bind() {
+        previous = CURRENT.get();
+        CURRENT.set(this);
+        return this;
+    }
+
+    public void parsed(long nanos) {
+        if (metrics == null) {
+            return;
+        }
+        parseNanos += nanos;
+    }
+
+    /**
+     * @param plan 查询计划，慢查询日志中输出其toString()
+     * @param accessPath 访问方式：index、full_scan、columnar、cached
+     * @param nanos 生成计划的耗时，命中计划缓存时很小
+     */
+    public void planned(Object plan, String accessPath, long nanos) {
+        if (metrics == null) {
+            return;
+        }
+        if (this.plan == null) {
+            this.plan = plan;
+            this.accessPath = accessPath;
+        }
+        planNanos += nanos;
+    }
+
+    /**
+     * @param scanned 读取或判断的记录数
+     * @param returned 满足条件的要素数
+     * @param nanos 扫描耗时
+     */
+    public void scanned(long scanned, long returned, long nanos) {
+        if (metrics == null) {
+            return;
+        }
+        this.scanned += scanned;
+        this.returned += returned;
+        scanNanos += nanos;
+    }
+
+    public void encoded(long nanos) {
+        if (metrics == null) {
+            return;
+        }
+        encodeNanos += nanos;
+    }
+
+    /**
+     * 结果直接取自结果缓存
+     */
+    public void cacheHit() {
+        planned("CACHED", "cached", 0);
+    }
+
+    String getLayer() {
+        return layer;
+    }
+
+    String getOperation() {
+        return operation;
+    }
+
+    String getCql() {
+        return cql;
+    }
+
+    long getTotalNanos() {
+        return System.nanoTime() - start;
+    }
+
+    long getParseNanos() {
+        return parseNanos;
+    }
+
+    long getPlanNanos() {
+        return planNanos;
+    }
+
+    long getScanNanos() {
+        return scanNanos;
+    }
+
+    long getEncodeNanos() {
+        return encodeNanos;
+    }
+
+    long getScanned() {
+        return scanned;
+    }
+
+    long getReturned() {
+        return returned;
+    }
+
+    Object getPlan() {
+        return plan;
+    }
+
+    String getAccessPath() {
+        return accessPath;
+    }
+
+    /**
+     * 解除与当前线程的绑定，之后在其他线程上写出结果时用，例如StreamingResponseBody
+     */
+    public void detach() {
+        if (CURRENT.get() == this) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (metrics == null || closed) {
+            return;
+        }
+        closed = true;
+        detach();
+        metrics.record(this);
+    }
+}
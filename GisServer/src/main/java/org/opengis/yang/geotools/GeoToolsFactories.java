@@ -0,0 +1,80 @@
+package org.opengis.yang.geotools;
+
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.filter.text.cql2.CQL;
+import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.util.factory.GeoTools;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 延迟获取GeoTools工厂
+ * CommonFactoryFinder、JTSFactoryFinder首次调用时要扫描工厂注册表、解析全局hints，耗时明显；
+ * 启动时创建的bean不在静态初始化中获取工厂，改为首次使用时由持有类加载，
+ * 启动预热在后台线程中调用{@link #initialize()}提前完成
+ */
+public final class GeoToolsFactories {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeoToolsFactories.class);
+
+    //查询链路上静态初始化较重的类，预热时提前加载
+    private static final String[] QUERY_CLASSES = {
+            "org.opengis.yang.geotools.filter.FilterBuilder",
+            "org.opengis.yang.geotools.filter.FilterCache",
+            "org.opengis.yang.geotools.filter.FilterCompiler",
+            "org.opengis.yang.geotools.columnar.ColumnarLayer",
+            "org.opengis.yang.geotools.layer.ShapeRecordReader",
+            "org.opengis.yang.geotools.index.SpatialIndexLoader"
+    };
+
+    private GeoToolsFactories() {
+    }
+
+    public static FilterFactory filterFactory() {
+        return FilterFactoryHolder.INSTANCE;
+    }
+
+    public static GeometryFactory geometryFactory() {
+        return GeometryFactoryHolder.INSTANCE;
+    }
+
+    /**
+     * 初始化工厂、加载查询链路上的类，并解析一次cql与wkt，首个请求不再承担类加载与注册表扫描
+     */
+    public static void initialize() {
+        long start = System.currentTimeMillis();
+        filterFactory();
+        geometryFactory();
+        ClassLoader classLoader = GeoToolsFactories.class.getClassLoader();
+        for (String className : QUERY_CLASSES) {
+            try {
+                Class.forName(className, true, classLoader);
+            } catch (ClassNotFoundException e) {
+                LOGGER.warn("预加载类{}失败", className);
+            }
+        }
+        try {
+            //不经过FilterCache，避免预热用的条件进入缓存统计
+            CQL.toFilter("NAME LIKE '%a%' AND KIND IN ('1', '2') AND BBOX(the_geom, 0, 0, 1, 1)");
+            new WKTReader(geometryFactory()).read("POLYGON((0 0, 1 0, 1 1, 0 1, 0 0))");
+        } catch (CQLException | ParseException e) {
+            LOGGER.warn("预热cql解析失败：{}", e.getMessage());
+        }
+        LOGGER.info("GeoTools工厂初始化完成，耗时{}ms", System.currentTimeMillis() - start);
+    }
+
+    private static final class FilterFactoryHolder {
+
+        private static final FilterFactory INSTANCE = CommonFactoryFinder.getFilterFactory(GeoTools.getDefaultHints());
+    }
+
+    private static final class GeometryFactoryHolder {
+
+        private static final GeometryFactory INSTANCE = JTSFactoryFinder.getGeometryFactory();
+    }
+}
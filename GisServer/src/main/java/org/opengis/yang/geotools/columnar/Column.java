@@ -0,0 +1,389 @@
+package org.opengis.yang.geotools.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 列式图层中的单个属性列
+ * 整数、长整数、浮点数用基本类型数组保存，空值单独用BitSet记录，字符串按字典编码，其余类型保存原始对象
+ */
+abstract class Column {
+
+    /**
+     * @param row 行号，从0开始
+     * @return 与shape数据源读取结果类型一致的属性值
+     */
+    abstract Object get(int row);
+
+    abstract boolean isNull(int row);
+
+    /**
+     * @return 估算占用的堆内存字节数
+     */
+    abstract long estimatedBytes();
+
+    /**
+     * 按字段类型创建列构建器
+     * @param binding 字段类型
+     * @param capacity 行数
+     * @return 列构建器
+     */
+    static Builder builder(Class<?> binding, int capacity) {
+        if (Integer.class.equals(binding) || Short.class.equals(binding) || Byte.class.equals(binding)) {
+            return new IntColumn.Builder(binding, capacity);
+        }
+        if (Long.class.equals(binding)) {
+            return new LongColumn.Builder(capacity);
+        }
+        if (Double.class.equals(binding) || Float.class.equals(binding)) {
+            return new DoubleColumn.Builder(binding, capacity);
+        }
+        if (String.class.equals(binding)) {
+            return new StringColumn.Builder(capacity);
+        }
+        return new ObjectColumn.Builder(capacity);
+    }
+
+    interface Builder {
+
+        void add(int row, Object value);
+
+        Column build();
+    }
+
+    /**
+     * 数值列，统一按double比较
+     */
+    abstract static class NumericColumn extends Column {
+
+        protected final BitSet nulls;
+
+        NumericColumn(BitSet nulls) {
+            this.nulls = nulls;
+        }
+
+        /**
+         * @return 数值，空值返回NaN，与任何数值比较都为false
+         */
+        abstract double doubleValue(int row);
+
+        @Override
+        boolean isNull(int row) {
+            return nulls.get(row);
+        }
+    }
+
+    static class IntColumn extends NumericColumn {
+
+        private final int[] values;
+
+        private final Class<?> binding;
+
+        IntColumn(int[] values, BitSet nulls, Class<?> binding) {
+            super(nulls);
+            this.values = values;
+            this.binding = binding;
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            int value = values[row];
+            if (Short.class.equals(binding)) {
+                return (short) value;
+            }
+            if (Byte.class.equals(binding)) {
+                return (byte) value;
+            }
+            return value;
+        }
+
+        @Override
+        double doubleValue(int row) {
+            return nulls.get(row) ? Double.NaN : values[row];
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 4L * values.length + nulls.size() / 8;
+        }
+
+        static class Builder implements Column.Builder {
+
+            private final int[] values;
+
+            private final BitSet nulls = new BitSet();
+
+            private final Class<?> binding;
+
+            Builder(Class<?> binding, int capacity) {
+                this.values = new int[capacity];
+                this.binding = binding;
+            }
+
+            @Override
+            public void add(int row, Object value) {
+                if (value instanceof Number) {
+                    values[row] = ((Number) value).intValue();
+                } else {
+                    nulls.set(row);
+                }
+            }
+
+            @Override
+            public Column build() {
+                return new IntColumn(values, nulls, binding);
+            }
+        }
+    }
+
+    static class LongColumn extends NumericColumn {
+
+        private final long[] values;
+
+        LongColumn(long[] values, BitSet nulls) {
+            super(nulls);
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        double doubleValue(int row) {
+            return nulls.get(row) ? Double.NaN : values[row];
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 8L * values.length + nulls.size() / 8;
+        }
+
+        static class Builder implements Column.Builder {
+
+            private final long[] values;
+
+            private final BitSet nulls = new BitSet();
+
+            Builder(int capacity) {
+                this.values = new long[capacity];
+            }
+
+            @Override
+            public void add(int row, Object value) {
+                if (value instanceof Number) {
+                    values[row] = ((Number) value).longValue();
+                } else {
+                    nulls.set(row);
+                }
+            }
+
+            @Override
+            public Column build() {
+                return new LongColumn(values, nulls);
+            }
+        }
+    }
+
+    static class DoubleColumn extends NumericColumn {
+
+        private final double[] values;
+
+        private final boolean floatBinding;
+
+        DoubleColumn(double[] values, BitSet nulls, boolean floatBinding) {
+            super(nulls);
+            this.values = values;
+            this.floatBinding = floatBinding;
+        }
+
+        @Override
+        Object get(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return floatBinding ? (Object) (float) values[row] : (Object) values[row];
+        }
+
+        @Override
+        double doubleValue(int row) {
+            return nulls.get(row) ? Double.NaN : values[row];
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 8L * values.length + nulls.size() / 8;
+        }
+
+        static class Builder implements Column.Builder {
+
+            private final double[] values;
+
+            private final BitSet nulls = new BitSet();
+
+            private final boolean floatBinding;
+
+            Builder(Class<?> binding, int capacity) {
+                this.values = new double[capacity];
+                this.floatBinding = Float.class.equals(binding);
+            }
+
+            @Override
+            public void add(int row, Object value) {
+                if (value instanceof Number) {
+                    values[row] = ((Number) value).doubleValue();
+                } else {
+                    nulls.set(row);
+                }
+            }
+
+            @Override
+            public Column build() {
+                return new DoubleColumn(values, nulls, floatBinding);
+            }
+        }
+    }
+
+    /**
+     * 字典编码的字符串列，每行保存字典下标，空值为-1
+     */
+    static class StringColumn extends Column {
+
+        private final String[] dictionary;
+
+        private final Map<String, Integer> codes;
+
+        private final int[] rows;
+
+        StringColumn(String[] dictionary, Map<String, Integer> codes, int[] rows) {
+            this.dictionary = dictionary;
+            this.codes = codes;
+            this.rows = rows;
+        }
+
+        @Override
+        Object get(int row) {
+            int code = rows[row];
+            return code < 0 ? null : dictionary[code];
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return rows[row] < 0;
+        }
+
+        int code(int row) {
+            return rows[row];
+        }
+
+        /**
+         * @return 字符串在字典中的下标，不存在时返回-1
+         */
+        int codeOf(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        String[] dictionary() {
+            return dictionary;
+        }
+
+        @Override
+        long estimatedBytes() {
+            long bytes = 4L * rows.length;
+            for (String value : dictionary) {
+                //字符串对象头、数组与字典映射的大致开销
+                bytes += 56 + value.length() * 2L;
+            }
+            return bytes;
+        }
+
+        static class Builder implements Column.Builder {
+
+            private final int[] rows;
+
+            private final Map<String, Integer> codes = new HashMap<>();
+
+            private final List<String> dictionary = new ArrayList<>();
+
+            Builder(int capacity) {
+                this.rows = new int[capacity];
+                Arrays.fill(rows, -1);
+            }
+
+            @Override
+            public void add(int row, Object value) {
+                if (value == null) {
+                    return;
+                }
+                String text = value.toString();
+                Integer code = codes.get(text);
+                if (code == null) {
+                    code = dictionary.size();
+                    codes.put(text, code);
+                    dictionary.add(text);
+                }
+                rows[row] = code;
+            }
+
+            @Override
+            public Column build() {
+                return new StringColumn(dictionary.toArray(new String[0]), codes, rows);
+            }
+        }
+    }
+
+    /**
+     * 日期、布尔等其他类型，直接保存读取到的对象
+     */
+    static class ObjectColumn extends Column {
+
+        private final Object[] values;
+
+        ObjectColumn(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean isNull(int row) {
+            return values[row] == null;
+        }
+
+        @Override
+        long estimatedBytes() {
+            return 8L * values.length + 24L * values.length;
+        }
+
+        static class Builder implements Column.Builder {
+
+            private final Object[] values;
+
+            Builder(int capacity) {
+                this.values = new Object[capacity];
+            }
+
+            @Override
+            public void add(int row, Object value) {
+                values[row] = value;
+            }
+
+            @Override
+            public Column build() {
+                return new ObjectColumn(values);
+            }
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package org.opengis.yang.geotools.columnar;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.And;
+import org.geotools.api.filter.BinaryComparisonOperator;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.Not;
+import org.geotools.api.filter.Or;
+import org.geotools.api.filter.PropertyIsBetween;
+import org.geotools.api.filter.PropertyIsEqualTo;
+import org.geotools.api.filter.PropertyIsGreaterThan;
+import org.geotools.api.filter.PropertyIsGreaterThanOrEqualTo;
+import org.geotools.api.filter.PropertyIsLessThan;
+import org.geotools.api.filter.PropertyIsLessThanOrEqualTo;
+import org.geotools.api.filter.PropertyIsLike;
+import org.geotools.api.filter.PropertyIsNull;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.api.filter.expression.PropertyName;
+import org.geotools.api.filter.spatial.BBOX;
+import org.geotools.api.filter.spatial.BinarySpatialOperator;
+import org.geotools.api.filter.spatial.DWithin;
+import org.geotools.api.filter.spatial.Intersects;
+import org.geotools.api.filter.spatial.Within;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+import org.opengis.yang.geotools.filter.CompiledFilter;
+import org.opengis.yang.geotools.filter.FilterCompiler;
+import org.opengis.yang.geotools.filter.SpatialFilters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * 把过滤条件编译为列式图层上的行判断
+ * 字符串条件先在字典上求出满足条件的编码集合，逐行只比较整数编码；数值条件直接比较基本类型数组；
+ * 点图层的空间条件直接比较坐标数组，其他几何先比较范围数组再解码WKB精确判断。
+ * 无法在列上判断的节点构造出该行的要素后交给{@link FilterCompiler}的结果判断，保证结果与shape数据源一致
+ */
+public final class ColumnarFilterCompiler {
+
+    private final ColumnarLayer layer;
+
+    private final SimpleFeatureType schema;
+
+    private ColumnarFilterCompiler(ColumnarLayer layer) {
+        this.layer = layer;
+        this.schema = layer.getSchema();
+    }
+
+    /**
+     * 编译过滤条件
+     * @param filter 过滤条件
+     * @param layer 列式图层
+     * @return 行判断
+     */
+    public static RowPredicate compile(Filter filter, ColumnarLayer layer) {
+        return new ColumnarFilterCompiler(layer).compileFilter(filter == null ? Filter.INCLUDE : filter);
+    }
+
+    private RowPredicate compileFilter(Filter filter) {
+        if (filter == Filter.INCLUDE) {
+            return RowPredicate.INCLUDE;
+        }
+        if (filter == Filter.EXCLUDE) {
+            return RowPredicate.EXCLUDE;
+        }
+        RowPredicate compiled = null;
+        if (filter instanceof And) {
+            RowPredicate[] children = compileChildren(((And) filter).getChildren());
+            compiled = row -> {
+                for (RowPredicate child : children) {
+                    if (!child.test(row)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        } else if (filter instanceof Or) {
+            compiled = compileIn((Or) filter);
+            if (compiled == null) {
+                RowPredicate[] children = compileChildren(((Or) filter).getChildren());
+                compiled = row -> {
+                    for (RowPredicate child : children) {
+                        if (child.test(row)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                };
+            }
+        } else if (filter instanceof Not) {
+            RowPredicate child = compileFilter(((Not) filter).getFilter());
+            compiled = row -> !child.test(row);
+        } else if (filter instanceof PropertyIsNull) {
+            compiled = compileIsNull((PropertyIsNull) filter);
+        } else if (filter instanceof BinaryComparisonOperator) {
+            compiled = compileComparison((BinaryComparisonOperator) filter);
+        } else if (filter instanceof PropertyIsBetween) {
+            compiled = compileBetween((PropertyIsBetween) filter);
+        } else if (filter instanceof PropertyIsLike) {
+            compiled = compileLike((PropertyIsLike) filter);
+        } else if (filter instanceof BinarySpatialOperator) {
+            compiled = compileSpatial((BinarySpatialOperator) filter);
+        }
+        return compiled != null ? compiled : fallback(filter);
+    }
+
+    private RowPredicate[] compileChildren(List<Filter> filters) {
+        RowPredicate[] children = new RowPredicate[filters.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = compileFilter(filters.get(i));
+        }
+        return children;
+    }
+
+    /**
+     * 在列上无法判断时构造要素判断
+     */
+    private RowPredicate fallback(Filter filter) {
+        CompiledFilter compiled = FilterCompiler.compile(filter, schema);
+        return row -> compiled.test(layer.feature(row));
+    }
+
+    /**
+     * 同一字段多个大小写敏感的相等条件组成的or，字符串转为编码集合，数值转为有序数组
+     */
+    private RowPredicate compileIn(Or or) {
+        int index = -1;
+        List<Object> literals = new ArrayList<>();
+        for (Filter child : or.getChildren()) {
+            if (!(child instanceof PropertyIsEqualTo) || !((PropertyIsEqualTo) child).isMatchingCase()) {
+                return null;
+            }
+            Operand operand = operand((PropertyIsEqualTo) child);
+            if (operand == null || (index >= 0 && operand.index != index)) {
+                return null;
+            }
+            index = operand.index;
+            literals.add(operand.literal);
+        }
+        if (index < 0) {
+            return null;
+        }
+        Column column = layer.column(index);
+        if (column instanceof Column.StringColumn && literals.stream().allMatch(String.class::isInstance)) {
+            Column.StringColumn strings = (Column.StringColumn) column;
+            BitSet codes = new BitSet();
+            for (Object literal : literals) {
+                int code = strings.codeOf((String) literal);
+                if (code >= 0) {
+                    codes.set(code);
+                }
+            }
+            return codesPredicate(strings, codes);
+        }
+        if (column instanceof Column.NumericColumn && literals.stream().allMatch(Number.class::isInstance)) {
+            Column.NumericColumn numbers = (Column.NumericColumn) column;
+            double[] values = literals.stream().mapToDouble(literal -> ((Number) literal).doubleValue()).sorted().toArray();
+            return row -> !numbers.isNull(row) && Arrays.binarySearch(values, numbers.doubleValue(row)) >= 0;
+        }
+        return null;
+    }
+
+    private static RowPredicate codesPredicate(Column.StringColumn column, BitSet codes) {
+        if (codes.isEmpty()) {
+            return RowPredicate.EXCLUDE;
+        }
+        if (codes.cardinality() == 1) {
+            int code = codes.nextSetBit(0);
+            return row -> column.code(row) == code;
+        }
+        return row -> {
+            int code = column.code(row);
+            return code >= 0 && codes.get(code);
+        };
+    }
+
+    private RowPredicate compileIsNull(PropertyIsNull isNull) {
+        if (!(isNull.getExpression() instanceof PropertyName)) {
+            return null;
+        }
+        int index = schema.indexOf(((PropertyName) isNull.getExpression()).getPropertyName());
+        if (index < 0 || index == layer.getGeometryIndex()) {
+            return null;
+        }
+        Column column = layer.column(index);
+        return column::isNull;
+    }
+
+    private RowPredicate compileComparison(BinaryComparisonOperator comparison) {
+        Operand operand = operand(comparison);
+        if (operand == null) {
+            return null;
+        }
+        Column column = layer.column(operand.index);
+        Object literal = operand.literal;
+        if (comparison instanceof PropertyIsEqualTo && column instanceof Column.StringColumn && literal instanceof String) {
+            Column.StringColumn strings = (Column.StringColumn) column;
+            String value = (String) literal;
+            if (comparison.isMatchingCase()) {
+                return codesPredicate(strings, codesOf(strings, value::equals));
+            }
+            return codesPredicate(strings, codesOf(strings, value::equalsIgnoreCase));
+        }
+        if (column instanceof Column.StringColumn && literal instanceof Number) {
+            //字符串与数值的大小比较在字典上逐个判断一次
+            IntPredicate accept = FilterCompiler.orderPredicate(comparison, comparison.getExpression1() instanceof Literal);
+            if (accept == null) {
+                return null;
+            }
+            double value = ((Number) literal).doubleValue();
+            String text = literal.toString();
+            Column.StringColumn strings = (Column.StringColumn) column;
+            return codesPredicate(strings, codesOf(strings, string -> accept.test(FilterCompiler.compareStringToNumber(string, value, text))));
+        }
+        if (!(column instanceof Column.NumericColumn) || !(literal instanceof Number)) {
+            return null;
+        }
+        Column.NumericColumn numbers = (Column.NumericColumn) column;
+        double value = ((Number) literal).doubleValue();
+        if (comparison instanceof PropertyIsEqualTo) {
+            return row -> numbers.doubleValue(row) == value;
+        }
+        boolean greater = comparison instanceof PropertyIsGreaterThan || comparison instanceof PropertyIsGreaterThanOrEqualTo;
+        boolean less = comparison instanceof PropertyIsLessThan || comparison instanceof PropertyIsLessThanOrEqualTo;
+        if (!greater && !less) {
+            return null;
+        }
+        //字面量在左侧时大小比较方向相反
+        boolean reversed = comparison.getExpression1() instanceof Literal;
+        boolean inclusive = comparison instanceof PropertyIsGreaterThanOrEqualTo || comparison instanceof PropertyIsLessThanOrEqualTo;
+        if (greater != reversed) {
+            return inclusive ? row -> numbers.doubleValue(row) >= value : row -> numbers.doubleValue(row) > value;
+        }
+        return inclusive ? row -> numbers.doubleValue(row) <= value : row -> numbers.doubleValue(row) < value;
+    }
+
+    private RowPredicate compileBetween(PropertyIsBetween between) {
+        if (!(between.getExpression() instanceof PropertyName)
+                || !(between.getLowerBoundary() instanceof Literal)
+                || !(between.getUpperBoundary() instanceof Literal)) {
+            return null;
+        }
+        int index = schema.indexOf(((PropertyName) between.getExpression()).getPropertyName());
+        Object lower = ((Literal) between.getLowerBoundary()).getValue();
+        Object upper = ((Literal) between.getUpperBoundary()).getValue();
+        if (index < 0 || !(layer.column(index) instanceof Column.NumericColumn)
+                || !(lower instanceof Number) || !(upper instanceof Number)) {
+            return null;
+        }
+        Column.NumericColumn numbers = (Column.NumericColumn) layer.column(index);
+        double lowerValue = ((Number) lower).doubleValue();
+        double upperValue = ((Number) upper).doubleValue();
+        return row -> {
+            double value = numbers.doubleValue(row);
+            return value >= lowerValue && value <= upperValue;
+        };
+    }
+
+    /**
+     * like条件在字典上逐个判断一次，逐行只查编码集合
+     */
+    private RowPredicate compileLike(PropertyIsLike like) {
+        if (!(like.getExpression() instanceof PropertyName)) {
+            return null;
+        }
+        int index = schema.indexOf(((PropertyName) like.getExpression()).getPropertyName());
+        if (index < 0 || !(layer.column(index) instanceof Column.StringColumn)) {
+            return null;
+        }
+        Predicate<String> matcher = FilterCompiler.likeMatcher(like);
+        if (matcher == null) {
+            return null;
+        }
+        Column.StringColumn strings = (Column.StringColumn) layer.column(index);
+        return codesPredicate(strings, codesOf(strings, matcher));
+    }
+
+    private static BitSet codesOf(Column.StringColumn column, Predicate<String> matcher) {
+        String[] dictionary = column.dictionary();
+        BitSet codes = new BitSet(dictionary.length);
+        for (int code = 0; code < dictionary.length; code++) {
+            if (matcher.test(dictionary[code])) {
+                codes.set(code);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * 空间条件：先比较坐标或范围数组，点图层的bbox到此即可确定结果，
+     * intersects、within与dwithin只对范围内的行解码几何，用预处理的查询几何精确判断
+     */
+    private RowPredicate compileSpatial(BinarySpatialOperator operator) {
+        GeometryDescriptor geometryDescriptor = schema.getGeometryDescriptor();
+        if (geometryDescriptor == null || !(operator.getExpression1() instanceof PropertyName)
+                || !(operator.getExpression2() instanceof Literal)) {
+            return null;
+        }
+        String name = ((PropertyName) operator.getExpression1()).getPropertyName();
+        if (name != null && !name.isEmpty() && !name.equals(geometryDescriptor.getLocalName())) {
+            return null;
+        }
+        Envelope envelope = SpatialFilters.queryEnvelope(operator);
+        if (envelope == null) {
+            return null;
+        }
+        if (operator instanceof BBOX) {
+            if (layer.isPointLayer()) {
+                return row -> layer.intersects(row, envelope);
+            }
+            CompiledFilter exact = FilterCompiler.compile(operator, schema);
+            return row -> layer.intersects(row, envelope) && (layer.coveredBy(row, envelope) || exact.test(layer.feature(row)));
+        }
+        Geometry literal = SpatialFilters.literalGeometry(operator);
+        if (literal == null || literal.isEmpty()) {
+            return null;
+        }
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(literal);
+        if (operator instanceof Intersects) {
+            return row -> layer.intersects(row, envelope) && prepared.intersects(layer.geometry(row));
+        }
+        if (operator instanceof Within) {
+            return row -> layer.coveredBy(row, envelope) && prepared.contains(layer.geometry(row));
+        }
+        if (operator instanceof DWithin) {
+            double distance = ((DWithin) operator).getDistance();
+            IndexedFacetDistance facetDistance = new IndexedFacetDistance(literal);
+            return row -> {
+                if (!layer.intersects(row, envelope)) {
+                    return false;
+                }
+                Geometry geometry = layer.geometry(row);
+                return prepared.intersects(geometry) || facetDistance.isWithinDistance(geometry, distance);
+            };
+        }
+        return null;
+    }
+
+    /**
+     * 解析属性与字面量的比较，属性不存在、是几何字段或两侧不是属性与字面量时返回null
+     */
+    private Operand operand(BinaryComparisonOperator comparison) {
+        Expression left = comparison.getExpression1();
+        Expression right = comparison.getExpression2();
+        PropertyName property;
+        Literal literal;
+        if (left instanceof PropertyName && right instanceof Literal) {
+            property = (PropertyName) left;
+            literal = (Literal) right;
+        } else if (right instanceof PropertyName && left instanceof Literal) {
+            property = (PropertyName) right;
+            literal = (Literal) left;
+        } else {
+            return null;
+        }
+        int index = schema.indexOf(property.getPropertyName());
+        if (index < 0 || index == layer.getGeometryIndex() || literal.getValue() == null) {
+            return null;
+        }
+        return new Operand(index, literal.getValue());
+    }
+
+    private static class Operand {
+
+        private final int index;
+
+        private final Object literal;
+
+        Operand(int index, Object literal) {
+            this.index = index;
+            this.literal = literal;
+        }
+    }
+}
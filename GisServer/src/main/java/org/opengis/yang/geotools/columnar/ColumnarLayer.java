@@ -0,0 +1,210 @@
+package org.opengis.yang.geotools.columnar;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.feature.simple.SimpleFeatureImpl;
+import org.geotools.filter.identity.FeatureIdImpl;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+import org.opengis.yang.geotools.GeoToolsFactories;
+
+/**
+ * 常驻内存的列式图层
+ * 点图层的坐标保存为两个double数组，其他几何保存为WKB与范围数组，属性按列保存为基本类型数组或字典编码，
+ * 过滤条件由{@link ColumnarFilterCompiler}直接在列上判断，只有返回的行才构造SimpleFeature
+ * 加载后只读，可被多个线程同时访问
+ */
+public class ColumnarLayer {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = GeoToolsFactories.geometryFactory();
+
+    //WKBReader不是线程安全的
+    private static final ThreadLocal<WKBReader> WKB_READER = ThreadLocal.withInitial(() -> new WKBReader(GEOMETRY_FACTORY));
+
+    private final SimpleFeatureType schema;
+
+    private final String fidPrefix;
+
+    private final int rowCount;
+
+    //按schema属性下标保存的列，几何字段为null
+    private final Column[] columns;
+
+    private final int geometryIndex;
+
+    //点图层的坐标，空几何为NaN
+    private final double[] xs;
+
+    private final double[] ys;
+
+    //非点图层每行的范围minx,miny,maxx,maxy，空几何为NaN
+    private final double[] envelopes;
+
+    private final byte[][] wkb;
+
+    ColumnarLayer(SimpleFeatureType schema, int rowCount, Column[] columns, int geometryIndex,
+                  double[] xs, double[] ys, double[] envelopes, byte[][] wkb) {
+        this.schema = schema;
+        this.fidPrefix = schema.getTypeName() + ".";
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.geometryIndex = geometryIndex;
+        this.xs = xs;
+        this.ys = ys;
+        this.envelopes = envelopes;
+        this.wkb = wkb;
+    }
+
+    public SimpleFeatureType getSchema() {
+        return schema;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isPointLayer() {
+        return xs != null;
+    }
+
+    int getGeometryIndex() {
+        return geometryIndex;
+    }
+
+    Column column(int attributeIndex) {
+        return columns[attributeIndex];
+    }
+
+    double x(int row) {
+        return xs[row];
+    }
+
+    double y(int row) {
+        return ys[row];
+    }
+
+    /**
+     * @param row 行号，从0开始
+     * @param attributeIndex schema中的属性下标
+     * @return 字段值
+     */
+    public Object value(int row, int attributeIndex) {
+        return attributeIndex == geometryIndex ? geometry(row) : columns[attributeIndex].get(row);
+    }
+
+    /**
+     * @param row 行号，从0开始
+     * @param attributeIndex schema中的属性下标
+     * @return 数值字段的值，空值或非数值字段返回NaN
+     */
+    public double number(int row, int attributeIndex) {
+        Column column = columns[attributeIndex];
+        if (column instanceof Column.NumericColumn) {
+            return ((Column.NumericColumn) column).doubleValue(row);
+        }
+        Object value = column == null ? null : column.get(row);
+        return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+    }
+
+    /**
+     * 用行的几何范围扩展envelope，空几何不扩展
+     * @param row 行号，从0开始
+     * @param envelope 被扩展的范围
+     */
+    public void expandEnvelope(int row, Envelope envelope) {
+        if (xs != null) {
+            if (!Double.isNaN(xs[row])) {
+                envelope.expandToInclude(xs[row], ys[row]);
+            }
+            return;
+        }
+        int offset = row * 4;
+        if (!Double.isNaN(envelopes[offset])) {
+            envelope.expandToInclude(envelopes[offset], envelopes[offset + 1]);
+            envelope.expandToInclude(envelopes[offset + 2], envelopes[offset + 3]);
+        }
+    }
+
+    /**
+     * 判断行的几何范围是否与给定范围相交，空几何返回false
+     */
+    boolean intersects(int row, Envelope envelope) {
+        if (xs != null) {
+            double x = xs[row];
+            double y = ys[row];
+            return x >= envelope.getMinX() && x <= envelope.getMaxX() && y >= envelope.getMinY() && y <= envelope.getMaxY();
+        }
+        int offset = row * 4;
+        return !Double.isNaN(envelopes[offset]) && envelopes[offset] <= envelope.getMaxX() && envelopes[offset + 2] >= envelope.getMinX()
+                && envelopes[offset + 1] <= envelope.getMaxY() && envelopes[offset + 3] >= envelope.getMinY();
+    }
+
+    /**
+     * 判断行的几何范围是否在给定范围内，空几何返回false
+     */
+    boolean coveredBy(int row, Envelope envelope) {
+        if (xs != null) {
+            return intersects(row, envelope);
+        }
+        int offset = row * 4;
+        return !Double.isNaN(envelopes[offset]) && envelopes[offset] >= envelope.getMinX() && envelopes[offset + 2] <= envelope.getMaxX()
+                && envelopes[offset + 1] >= envelope.getMinY() && envelopes[offset + 3] <= envelope.getMaxY();
+    }
+
+    /**
+     * 解码行的几何
+     * @param row 行号，从0开始
+     * @return 几何，空几何返回null
+     */
+    public Geometry geometry(int row) {
+        if (xs != null) {
+            return Double.isNaN(xs[row]) ? null : GEOMETRY_FACTORY.createPoint(new Coordinate(xs[row], ys[row]));
+        }
+        if (wkb[row] == null) {
+            return null;
+        }
+        try {
+            return WKB_READER.get().read(wkb[row]);
+        } catch (ParseException e) {
+            throw new IllegalStateException("解析几何失败，行号：" + row, e);
+        }
+    }
+
+    /**
+     * 构造行对应的要素，fid与shape数据源一致
+     * @param row 行号，从0开始
+     * @return 要素
+     */
+    public SimpleFeature feature(int row) {
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i == geometryIndex ? geometry(row) : columns[i].get(row);
+        }
+        return new SimpleFeatureImpl(values, schema, new FeatureIdImpl(fidPrefix + (row + 1)), false);
+    }
+
+    /**
+     * @return 估算占用的堆内存字节数
+     */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Column column : columns) {
+            if (column != null) {
+                bytes += column.estimatedBytes();
+            }
+        }
+        if (xs != null) {
+            bytes += 16L * rowCount;
+        } else {
+            bytes += 32L * rowCount;
+            for (byte[] bytesOfRow : wkb) {
+                bytes += bytesOfRow == null ? 0 : 16 + bytesOfRow.length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,91 @@
+package org.opengis.yang.geotools.columnar;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.WKBWriter;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeRecordReader;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 顺序读取一遍shape文件，生成列式图层
+ */
+public final class ColumnarLayerLoader {
+
+    private ColumnarLayerLoader() {
+    }
+
+    public static ColumnarLayer load(ShapeLayer layer) throws IOException {
+        SimpleFeatureType schema = layer.getSchema();
+        int rowCount = layer.getRecordCount();
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        GeometryDescriptor geometryDescriptor = schema.getGeometryDescriptor();
+        int geometryIndex = geometryDescriptor == null ? -1 : schema.indexOf(geometryDescriptor.getLocalName());
+        Column.Builder[] builders = new Column.Builder[descriptors.size()];
+        for (int i = 0; i < builders.length; i++) {
+            if (i != geometryIndex) {
+                builders[i] = Column.builder(descriptors.get(i).getType().getBinding(), rowCount);
+            }
+        }
+        boolean pointLayer = geometryDescriptor != null && Point.class.equals(geometryDescriptor.getType().getBinding());
+        double[] xs = null;
+        double[] ys = null;
+        double[] envelopes = null;
+        byte[][] wkb = null;
+        WKBWriter wkbWriter = null;
+        if (pointLayer) {
+            xs = new double[rowCount];
+            ys = new double[rowCount];
+            Arrays.fill(xs, Double.NaN);
+            Arrays.fill(ys, Double.NaN);
+        } else if (geometryIndex >= 0) {
+            envelopes = new double[rowCount * 4];
+            Arrays.fill(envelopes, Double.NaN);
+            wkb = new byte[rowCount][];
+            wkbWriter = new WKBWriter(3);
+        }
+        try (ShapeRecordReader reader = new ShapeRecordReader(layer)) {
+            for (int row = 0; row < rowCount && reader.hasNext(); row++) {
+                SimpleFeature feature = reader.next();
+                for (int i = 0; i < builders.length; i++) {
+                    if (builders[i] != null) {
+                        builders[i].add(row, feature.getAttribute(i));
+                    }
+                }
+                if (geometryIndex < 0) {
+                    continue;
+                }
+                Object value = feature.getAttribute(geometryIndex);
+                if (!(value instanceof Geometry) || ((Geometry) value).isEmpty()) {
+                    continue;
+                }
+                Geometry geometry = (Geometry) value;
+                if (pointLayer) {
+                    Point point = (Point) geometry;
+                    xs[row] = point.getX();
+                    ys[row] = point.getY();
+                } else {
+                    Envelope envelope = geometry.getEnvelopeInternal();
+                    envelopes[row * 4] = envelope.getMinX();
+                    envelopes[row * 4 + 1] = envelope.getMinY();
+                    envelopes[row * 4 + 2] = envelope.getMaxX();
+                    envelopes[row * 4 + 3] = envelope.getMaxY();
+                    wkb[row] = wkbWriter.write(geometry);
+                }
+            }
+        }
+        Column[] columns = new Column[builders.length];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = builders[i] == null ? null : builders[i].build();
+        }
+        return new ColumnarLayer(schema, rowCount, columns, geometryIndex, xs, ys, envelopes, wkb);
+    }
+}
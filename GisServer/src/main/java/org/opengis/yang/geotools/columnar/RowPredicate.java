@@ -0,0 +1,18 @@
+package org.opengis.yang.geotools.columnar;
+
+/**
+ * 列式图层上的行过滤条件
+ */
+@FunctionalInterface
+public interface RowPredicate {
+
+    RowPredicate INCLUDE = row -> true;
+
+    RowPredicate EXCLUDE = row -> false;
+
+    /**
+     * @param row 行号，从0开始，等于shape记录号减1
+     * @return 是否满足条件
+     */
+    boolean test(int row);
+}
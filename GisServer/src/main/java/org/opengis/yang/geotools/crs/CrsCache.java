@@ -0,0 +1,144 @@
+package org.opengis.yang.geotools.crs;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.referencing.CRS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 坐标系与坐标转换缓存
+ * 坐标系按规范化的编码缓存，统一按经度（x）在前解码，避免每次请求查询EPSG数据库；
+ * 转换按源、目标坐标系对象缓存，相同的坐标系对象（同一编码解码结果、同一图层的schema）直接命中
+ * 所有方法都是线程安全的，并发未命中时可能重复解码，但结果相同
+ */
+public final class CrsCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CrsCache.class);
+
+    private static final Cache<String, CoordinateReferenceSystem> CRS_BY_CODE = Caffeine.newBuilder()
+            .maximumSize(256)
+            .recordStats()
+            .build();
+
+    private static final Cache<TransformKey, MathTransform> TRANSFORMS = Caffeine.newBuilder()
+            .maximumSize(1024)
+            .recordStats()
+            .build();
+
+    private CrsCache() {
+    }
+
+    /**
+     * 解码坐标系
+     * @param code 坐标系编码，如EPSG:3857
+     * @return 坐标系，轴顺序为经度在前
+     * @throws FactoryException 无法识别的编码
+     */
+    public static CoordinateReferenceSystem decode(String code) throws FactoryException {
+        String key = code.trim().toUpperCase(Locale.ROOT);
+        CoordinateReferenceSystem crs = CRS_BY_CODE.getIfPresent(key);
+        if (crs == null) {
+            crs = CRS.decode(key, true);
+            CRS_BY_CODE.put(key, crs);
+        }
+        return crs;
+    }
+
+    /**
+     * 获取两个坐标系之间的转换，缺少基准面转换参数时按宽松模式忽略
+     * @param source 源坐标系
+     * @param target 目标坐标系
+     * @return 坐标转换
+     * @throws FactoryException
+     */
+    public static MathTransform transform(CoordinateReferenceSystem source, CoordinateReferenceSystem target) throws FactoryException {
+        TransformKey key = new TransformKey(source, target);
+        MathTransform transform = TRANSFORMS.getIfPresent(key);
+        if (transform == null) {
+            transform = CRS.findMathTransform(source, target, true);
+            TRANSFORMS.put(key, transform);
+        }
+        return transform;
+    }
+
+    /**
+     * 预先解码坐标系并生成两两之间的转换，首次加载EPSG数据库较慢，启动后在后台调用
+     * @param codes 坐标系编码
+     */
+    public static void warmUp(Collection<String> codes) {
+        long start = System.currentTimeMillis();
+        List<CoordinateReferenceSystem> decoded = new ArrayList<>();
+        for (String code : codes) {
+            try {
+                decoded.add(decode(code));
+            } catch (FactoryException e) {
+                LOGGER.warn("预热坐标系{}失败：{}", code, e.getMessage());
+            }
+        }
+        for (CoordinateReferenceSystem source : decoded) {
+            for (CoordinateReferenceSystem target : decoded) {
+                try {
+                    transform(source, target);
+                } catch (FactoryException e) {
+                    LOGGER.warn("预热坐标转换{} -> {}失败：{}", CRS.toSRS(source), CRS.toSRS(target), e.getMessage());
+                }
+            }
+        }
+        LOGGER.info("坐标系预热完成：{}，耗时{}ms", codes, System.currentTimeMillis() - start);
+    }
+
+    public static CacheStats crsStats() {
+        return CRS_BY_CODE.stats();
+    }
+
+    public static CacheStats transformStats() {
+        return TRANSFORMS.stats();
+    }
+
+    public static long crsSize() {
+        return CRS_BY_CODE.estimatedSize();
+    }
+
+    public static long transformSize() {
+        return TRANSFORMS.estimatedSize();
+    }
+
+    /**
+     * 按对象标识比较，坐标系的equals要逐项比较元数据，代价较高
+     */
+    private static final class TransformKey {
+
+        private final CoordinateReferenceSystem source;
+
+        private final CoordinateReferenceSystem target;
+
+        TransformKey(CoordinateReferenceSystem source, CoordinateReferenceSystem target) {
+            this.source = source;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TransformKey)) {
+                return false;
+            }
+            TransformKey other = (TransformKey) o;
+            return source == other.source && target == other.target;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(source) + System.identityHashCode(target);
+        }
+    }
+}
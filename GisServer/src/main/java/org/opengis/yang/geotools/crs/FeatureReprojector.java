@@ -0,0 +1,214 @@
+package org.opengis.yang.geotools.crs;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 要素坐标转换
+ * 一批要素的全部坐标先复制到一个数组中，调用一次MathTransform.transform完成转换后再写回几何副本，
+ * 避免逐个几何、逐个坐标序列调用转换；只转换x、y，z值保持不变
+ * 源要素的几何不会被修改
+ */
+public class FeatureReprojector {
+
+    //流式转换时每批的要素数
+    private static final int BATCH_SIZE = 512;
+
+    private final MathTransform transform;
+
+    private final SimpleFeatureType schema;
+
+    private final int geometryIndex;
+
+    /**
+     * @param source 源要素类型，需要有坐标系
+     * @param target 目标坐标系
+     * @throws FactoryException 找不到坐标转换
+     * @throws IllegalArgumentException 源要素类型没有坐标系
+     */
+    public FeatureReprojector(SimpleFeatureType source, CoordinateReferenceSystem target) throws FactoryException {
+        CoordinateReferenceSystem sourceCrs = source.getCoordinateReferenceSystem();
+        if (sourceCrs == null || source.getGeometryDescriptor() == null) {
+            throw new IllegalArgumentException("图层没有坐标系，无法转换坐标：" + source.getTypeName());
+        }
+        this.transform = CrsCache.transform(sourceCrs, target);
+        this.schema = SimpleFeatureTypeBuilder.retype(source, target);
+        this.geometryIndex = source.indexOf(source.getGeometryDescriptor().getLocalName());
+    }
+
+    /**
+     * @return 源坐标系与目标坐标系等价，不需要转换
+     */
+    public boolean isIdentity() {
+        return transform.isIdentity();
+    }
+
+    /**
+     * @return 转换后的要素类型
+     */
+    public SimpleFeatureType getSchema() {
+        return schema;
+    }
+
+    /**
+     * 转换一批要素
+     * @param features 源要素
+     * @return 新的要素，顺序与fid不变
+     * @throws TransformException
+     */
+    public List<SimpleFeature> reproject(List<SimpleFeature> features) throws TransformException {
+        List<Geometry> geometries = new ArrayList<>(features.size());
+        for (SimpleFeature feature : features) {
+            geometries.add((Geometry) feature.getAttribute(geometryIndex));
+        }
+        List<Geometry> transformed = transform(geometries);
+        List<SimpleFeature> result = new ArrayList<>(features.size());
+        for (int i = 0; i < features.size(); i++) {
+            SimpleFeature feature = features.get(i);
+            Object[] values = feature.getAttributes().toArray();
+            values[geometryIndex] = transformed.get(i);
+            result.add(SimpleFeatureBuilder.build(schema, values, feature.getID()));
+        }
+        return result;
+    }
+
+    /**
+     * 按批转换流式结果，关闭返回的迭代器时关闭源迭代器
+     * @param features 源要素迭代器
+     * @return 转换后的要素迭代器
+     */
+    public SimpleFeatureIterator reproject(SimpleFeatureIterator features) {
+        return new ReprojectingIterator(features);
+    }
+
+    private List<Geometry> transform(List<Geometry> geometries) throws TransformException {
+        int points = 0;
+        for (Geometry geometry : geometries) {
+            if (geometry != null) {
+                points += geometry.getNumPoints();
+            }
+        }
+        double[] ordinates = new double[points * 2];
+        OrdinateCopier reader = new OrdinateCopier(ordinates, false);
+        for (Geometry geometry : geometries) {
+            if (geometry != null) {
+                geometry.apply(reader);
+            }
+        }
+        transform.transform(ordinates, 0, ordinates, 0, points);
+        OrdinateCopier writer = new OrdinateCopier(ordinates, true);
+        List<Geometry> result = new ArrayList<>(geometries.size());
+        for (Geometry geometry : geometries) {
+            if (geometry == null) {
+                result.add(null);
+                continue;
+            }
+            Geometry copy = geometry.copy();
+            copy.apply(writer);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * 按遍历顺序在坐标序列与数组之间复制x、y
+     */
+    private static class OrdinateCopier implements CoordinateSequenceFilter {
+
+        private final double[] ordinates;
+
+        //为true时从数组写回坐标序列
+        private final boolean write;
+
+        private int offset;
+
+        OrdinateCopier(double[] ordinates, boolean write) {
+            this.ordinates = ordinates;
+            this.write = write;
+        }
+
+        @Override
+        public void filter(CoordinateSequence sequence, int i) {
+            if (write) {
+                sequence.setOrdinate(i, CoordinateSequence.X, ordinates[offset++]);
+                sequence.setOrdinate(i, CoordinateSequence.Y, ordinates[offset++]);
+            } else {
+                ordinates[offset++] = sequence.getX(i);
+                ordinates[offset++] = sequence.getY(i);
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return write;
+        }
+    }
+
+    private class ReprojectingIterator implements SimpleFeatureIterator {
+
+        private final SimpleFeatureIterator delegate;
+
+        private List<SimpleFeature> batch = new ArrayList<>();
+
+        private int position;
+
+        ReprojectingIterator(SimpleFeatureIterator delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < batch.size()) {
+                return true;
+            }
+            List<SimpleFeature> features = new ArrayList<>(BATCH_SIZE);
+            while (features.size() < BATCH_SIZE && delegate.hasNext()) {
+                features.add(delegate.next());
+            }
+            if (features.isEmpty()) {
+                return false;
+            }
+            try {
+                batch = reproject(features);
+            } catch (TransformException e) {
+                throw new UncheckedIOException(new IOException("坐标转换失败", e));
+            }
+            position = 0;
+            return true;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return batch.get(position++);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.opengis.yang.geotools.crs;
+
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.filter.visitor.DuplicatingFilterVisitor;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * 把filter中的几何与范围字面量从请求坐标系转换到图层坐标系，属性条件不变
+ * 范围的每条边加密后转换，投影后弯曲的边界也能完整覆盖；dwithin、beyond的距离不转换，仍按图层坐标单位解释
+ */
+public class FilterReprojector extends DuplicatingFilterVisitor {
+
+    //范围每条边加密的点数
+    private static final int DENSIFY_POINTS = 8;
+
+    private final MathTransform transform;
+
+    private final CoordinateReferenceSystem target;
+
+    private FilterReprojector(MathTransform transform, CoordinateReferenceSystem target) {
+        this.transform = transform;
+        this.target = target;
+    }
+
+    /**
+     * @param filter 请求坐标系下的filter
+     * @param source 请求坐标系
+     * @param target 图层坐标系，为null时不转换
+     * @return 图层坐标系下的filter，坐标系等价时返回原filter
+     * @throws FactoryException 找不到坐标转换
+     */
+    public static Filter reproject(Filter filter, CoordinateReferenceSystem source, CoordinateReferenceSystem target) throws FactoryException {
+        if (target == null) {
+            throw new IllegalArgumentException("图层没有坐标系，无法转换查询条件");
+        }
+        MathTransform transform = CrsCache.transform(source, target);
+        if (transform.isIdentity() || filter == Filter.INCLUDE || filter == Filter.EXCLUDE) {
+            return filter;
+        }
+        return (Filter) filter.accept(new FilterReprojector(transform, target), null);
+    }
+
+    @Override
+    public Object visit(Literal expression, Object extraData) {
+        Object value = expression.getValue();
+        try {
+            if (value instanceof Geometry) {
+                return getFactory(extraData).literal(JTS.transform((Geometry) value, transform));
+            }
+            if (value instanceof Envelope) {
+                Envelope envelope = JTS.transform((Envelope) value, null, transform, DENSIFY_POINTS);
+                return getFactory(extraData).literal(new ReferencedEnvelope(envelope, target));
+            }
+        } catch (TransformException e) {
+            throw new IllegalArgumentException("查询条件坐标转换失败：" + value, e);
+        }
+        return super.visit(expression, extraData);
+    }
+}
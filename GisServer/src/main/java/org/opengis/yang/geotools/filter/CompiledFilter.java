@@ -0,0 +1,17 @@
+package org.opengis.yang.geotools.filter;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+
+/**
+ * 编译后的过滤条件，属性名称已解析为字段下标，字面量已按字段类型预先转换
+ * 由{@link FilterCompiler}生成，只能用于编译时对应schema的要素
+ */
+@FunctionalInterface
+public interface CompiledFilter {
+
+    CompiledFilter INCLUDE = feature -> true;
+
+    CompiledFilter EXCLUDE = feature -> false;
+
+    boolean test(SimpleFeature feature);
+}
@@ -3,30 +3,28 @@ package org.opengis.yang.geotools.filter;
 import org.geotools.api.data.Query;
 import org.geotools.api.filter.Filter;
 import org.geotools.api.filter.FilterFactory;
-import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.geotools.filter.text.cql2.CQL;
 import org.geotools.filter.text.cql2.CQLException;
-import org.geotools.geometry.jts.JTSFactoryFinder;
-import org.geotools.geometry.jts.WKTReader2;
-import org.geotools.util.factory.GeoTools;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.io.ParseException;
+import org.opengis.yang.geotools.GeoToolsFactories;
+import org.opengis.yang.geotools.crs.CrsCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
- * 根据Geotools中的
+ * 根据Geotools中的FilterFactory与CQL构造过滤条件
+ * 所有方法都是线程安全的，可在多个请求线程中并发调用：
+ * FilterFactory本身无状态，cql与wkt的解析经过{@link FilterCache}，未命中时每个线程使用自己的WKTReader2
  */
 public class FilterBuilder {
 
-    private static final FilterFactory FILTER_FACTORY = CommonFactoryFinder.getFilterFactory(GeoTools.getDefaultHints());
-
-    private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
-
-    private static final WKTReader2 WKT_READER_2 = new WKTReader2(GEOMETRY_FACTORY);
+    private static final FilterFactory FILTER_FACTORY = GeoToolsFactories.filterFactory();
 
 
     /**
@@ -34,16 +32,17 @@ public class FilterBuilder {
      *  比如 1、属性过滤条件Filter filter = CQL.toFilter("attName >= 5");
      *  2、空间查询条件Filter pointInPolygon = CQL.toFilter("CONTAINS(THE_GEOM, POINT(1 2))");
      *  3、Filter clickedOn = CQL.toFilter("BBOX(ATTR1, 151.12, 151.14, -33.5, -33.51)";
+     *  解析结果按cql文本缓存，返回的filter在多个调用间共享
      * @param cqlString  cql字符串表达式
      * @throws CQLException
      */
     public static Filter createCommonFilter(String cqlString) throws CQLException {
-        return CQL.toFilter(cqlString);
+        return FilterCache.filter(cqlString);
     }
 
 
     public static Filter createDistanceFilter(String geomName,String pointWkt,double distance,String units) throws ParseException {
-        return FILTER_FACTORY.beyond(geomName,WKT_READER_2.read(pointWkt),distance,units);
+        return FILTER_FACTORY.beyond(geomName,FilterCache.geometry(pointWkt),distance,units);
     }
 
     /**
@@ -120,12 +119,13 @@ public class FilterBuilder {
      * @return
      */
     public static Filter createSpatialDistanceFilter(String geomName, String geomWkt, double distance,String untis) throws ParseException {
-        return FILTER_FACTORY.dwithin(geomName,WKT_READER_2.read(geomWkt),distance,untis);
+        return FILTER_FACTORY.dwithin(geomName,FilterCache.geometry(geomWkt),distance,untis);
     }
 
 
     /**
      * 实现数据的分页查询
+     * 按startIndex跳过前面的要素，页数越靠后越慢，大图层翻页使用LayerQueryExecutor.page的游标分页
      * @param cqlString 过滤查询条件,为空时表示查询所有
      * @param startIndex 其实索引
      * @param pageNum 当前页的所有数量
@@ -176,11 +176,19 @@ public class FilterBuilder {
      * @param y1  最小y
      * @param x2  最大x 坐标
      * @param y2  最大y 坐标
-     * @param srs 对应范围的投影坐标
+     * @param srs 对应范围的投影坐标，经过{@link CrsCache}解码，x为经度
      * @return
      */
     public static Filter createBboxFilter(String theGeom, double x1, double y1 , double x2, double y2,String srs) {
-         return FILTER_FACTORY.bbox(theGeom, x1, y1, x2, y2,srs);
+        CoordinateReferenceSystem crs = null;
+        if (srs != null) {
+            try {
+                crs = CrsCache.decode(srs);
+            } catch (FactoryException e) {
+                throw new IllegalArgumentException("无法识别的坐标系：" + srs, e);
+            }
+        }
+        return FILTER_FACTORY.bbox(FILTER_FACTORY.property(theGeom), new ReferencedEnvelope(x1, x2, y1, y2, crs));
     }
 
     /**
@@ -191,6 +199,6 @@ public class FilterBuilder {
      * @throws ParseException
      */
     public static Filter createIntersect(String theGeom, String geomWKT) throws ParseException {
-        return FILTER_FACTORY.intersects(theGeom,WKT_READER_2.read(geomWKT));
+        return FILTER_FACTORY.intersects(theGeom,FilterCache.geometry(geomWKT));
     }
 }
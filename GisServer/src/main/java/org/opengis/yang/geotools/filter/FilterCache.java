@@ -0,0 +1,185 @@
+package org.opengis.yang.geotools.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.geotools.api.filter.Filter;
+import org.geotools.filter.text.cql2.CQL;
+import org.geotools.filter.text.cql2.CQLException;
+import org.geotools.geometry.jts.WKTReader2;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.opengis.yang.geotools.GeoToolsFactories;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * CQL与WKT解析结果缓存
+ * 以规范化后的文本为key，filter缓存按条数淘汰，几何缓存按坐标点数加权淘汰，
+ * 两个缓存都记录命中率，可通过{@link #filterStats()}、{@link #geometryStats()}获取，
+ * 容量由gis.filter-cache-size、gis.geometry-cache-weight配置，启动时通过{@link FilterCacheConfigurer}设置
+ * 缓存中的Filter与Geometry在多个请求间共享，取出后不能修改
+ * 所有方法都是线程安全的，并发未命中时可能重复解析，但结果相同
+ */
+public final class FilterCache {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = GeoToolsFactories.geometryFactory();
+
+    //WKTReader2内部持有解析状态，不是线程安全的，每个线程使用自己的实例，不需要加锁
+    private static final ThreadLocal<WKTReader2> WKT_READER = ThreadLocal.withInitial(() -> new WKTReader2(GEOMETRY_FACTORY));
+
+    //缓存的filter条数，未配置时的默认值
+    private static final long FILTER_MAXIMUM_SIZE = 2000;
+
+    //缓存的几何坐标点总数，未配置时的默认值
+    private static final long GEOMETRY_MAXIMUM_WEIGHT = 2_000_000;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofMinutes(30);
+
+    private static final Cache<String, Filter> FILTERS = Caffeine.newBuilder()
+            .maximumSize(FILTER_MAXIMUM_SIZE)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+            .recordStats()
+            .build();
+
+    private static final Cache<String, ParsedGeometry> GEOMETRIES = Caffeine.newBuilder()
+            .maximumWeight(GEOMETRY_MAXIMUM_WEIGHT)
+            .weigher((String wkt, ParsedGeometry parsed) -> parsed.geometry.getNumPoints() + 1)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+            .recordStats()
+            .build();
+
+    private FilterCache() {
+    }
+
+    /**
+     * 获取CQL对应的filter，未命中时解析并放入缓存
+     * @param cqlString cql字符串表达式
+     * @return filter对象
+     * @throws CQLException
+     */
+    public static Filter filter(String cqlString) throws CQLException {
+        String key = normalizeCql(cqlString);
+        Filter filter = FILTERS.getIfPresent(key);
+        if (filter == null) {
+            filter = CQL.toFilter(key);
+            FILTERS.put(key, filter);
+        }
+        return filter;
+    }
+
+    /**
+     * 获取WKT对应的几何，未命中时解析并放入缓存
+     * @param wkt 几何的wkt
+     * @return 几何对象
+     * @throws ParseException
+     */
+    public static Geometry geometry(String wkt) throws ParseException {
+        return parsedGeometry(wkt).geometry;
+    }
+
+    /**
+     * 获取WKT对应几何的预处理形式，用于重复的相交、包含判断
+     * @param wkt 几何的wkt
+     * @return 预处理几何
+     * @throws ParseException
+     */
+    public static PreparedGeometry preparedGeometry(String wkt) throws ParseException {
+        return parsedGeometry(wkt).prepared;
+    }
+
+    private static ParsedGeometry parsedGeometry(String wkt) throws ParseException {
+        String key = normalizeWkt(wkt);
+        ParsedGeometry parsed = GEOMETRIES.getIfPresent(key);
+        if (parsed == null) {
+            Geometry geometry = WKT_READER.get().read(key);
+            parsed = new ParsedGeometry(geometry, PreparedGeometryFactory.prepare(geometry));
+            GEOMETRIES.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    public static CacheStats filterStats() {
+        return FILTERS.stats();
+    }
+
+    public static CacheStats geometryStats() {
+        return GEOMETRIES.stats();
+    }
+
+    public static long filterSize() {
+        return FILTERS.estimatedSize();
+    }
+
+    public static long geometrySize() {
+        return GEOMETRIES.estimatedSize();
+    }
+
+    /**
+     * 调整缓存容量，超出的条目随后淘汰
+     * @param filterMaximumSize 缓存的filter条数
+     * @param geometryMaximumWeight 缓存的几何坐标点总数
+     */
+    public static void resize(long filterMaximumSize, long geometryMaximumWeight) {
+        FILTERS.policy().eviction().ifPresent(eviction -> eviction.setMaximum(filterMaximumSize));
+        GEOMETRIES.policy().eviction().ifPresent(eviction -> eviction.setMaximum(geometryMaximumWeight));
+    }
+
+    public static void invalidateAll() {
+        FILTERS.invalidateAll();
+        GEOMETRIES.invalidateAll();
+    }
+
+    /**
+     * 去掉首尾空白，并把引号外连续的空白合并为一个空格
+     * 引号内的字符串字面量保持不变，属性名区分大小写，不做大小写转换
+     */
+    static String normalizeCql(String cqlString) {
+        String text = cqlString.trim();
+        StringBuilder builder = new StringBuilder(text.length());
+        boolean quoted = false;
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            if (!quoted && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                builder.append(' ');
+                space = false;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * wkt没有字符串字面量，合并空白后统一转为大写
+     */
+    static String normalizeWkt(String wkt) {
+        return WHITESPACE.matcher(wkt.trim()).replaceAll(" ").toUpperCase(Locale.ROOT);
+    }
+
+    private static class ParsedGeometry {
+
+        private final Geometry geometry;
+
+        private final PreparedGeometry prepared;
+
+        ParsedGeometry(Geometry geometry, PreparedGeometry prepared) {
+            this.geometry = geometry;
+            this.prepared = prepared;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.opengis.yang.geotools.filter;
+
+import org.opengis.yang.config.GisProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按配置设置{@link FilterCache}的容量
+ * FilterCache是静态工具类，FilterBuilder等不经过spring的代码也直接使用，容量在这里统一设置
+ */
+@Component
+public class FilterCacheConfigurer {
+
+    public FilterCacheConfigurer(GisProperties properties) {
+        FilterCache.resize(properties.getFilterCacheSize(), properties.getGeometryCacheWeight());
+    }
+}
@@ -0,0 +1,514 @@
+package org.opengis.yang.geotools.filter;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.And;
+import org.geotools.api.filter.BinaryComparisonOperator;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.Not;
+import org.geotools.api.filter.Or;
+import org.geotools.api.filter.PropertyIsBetween;
+import org.geotools.api.filter.PropertyIsEqualTo;
+import org.geotools.api.filter.PropertyIsGreaterThan;
+import org.geotools.api.filter.PropertyIsGreaterThanOrEqualTo;
+import org.geotools.api.filter.PropertyIsLessThan;
+import org.geotools.api.filter.PropertyIsLessThanOrEqualTo;
+import org.geotools.api.filter.PropertyIsLike;
+import org.geotools.api.filter.PropertyIsNull;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.api.filter.expression.PropertyName;
+import org.geotools.api.filter.spatial.BBOX;
+import org.geotools.api.filter.spatial.BinarySpatialOperator;
+import org.geotools.api.filter.spatial.Contains;
+import org.geotools.api.filter.spatial.DWithin;
+import org.geotools.api.filter.spatial.Intersects;
+import org.geotools.api.filter.spatial.Within;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+import org.opengis.yang.geotools.GeoToolsFactories;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 过滤条件编译器
+ * 将GeoTools的Filter对象树针对图层schema编译为{@link CompiledFilter}：
+ * 属性名称一次性解析为字段下标，字面量按字段类型预先转换，比较时不再装箱与查找属性，
+ * 同一字段多个相等条件组成的or编译为集合查找，字符串字段与数值字面量的大小比较按GeoTools的宽松比较规则编译。
+ * 语义无法确定与GeoTools完全一致的节点（如字符串字段与字符串字面量的大小比较、字符串与数值的相等比较）
+ * 仍交给原始Filter判断，保证编译前后结果相同
+ */
+public final class FilterCompiler {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = GeoToolsFactories.geometryFactory();
+
+    private final SimpleFeatureType schema;
+
+    private FilterCompiler(SimpleFeatureType schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * 编译过滤条件
+     * @param filter 过滤条件
+     * @param schema 要素类型
+     * @return 编译后的过滤条件
+     */
+    public static CompiledFilter compile(Filter filter, SimpleFeatureType schema) {
+        return new FilterCompiler(schema).compileFilter(filter == null ? Filter.INCLUDE : filter);
+    }
+
+    private CompiledFilter compileFilter(Filter filter) {
+        if (filter == Filter.INCLUDE) {
+            return CompiledFilter.INCLUDE;
+        }
+        if (filter == Filter.EXCLUDE) {
+            return CompiledFilter.EXCLUDE;
+        }
+        CompiledFilter compiled = null;
+        if (filter instanceof And) {
+            compiled = compileAnd((And) filter);
+        } else if (filter instanceof Or) {
+            compiled = compileOr((Or) filter);
+        } else if (filter instanceof Not) {
+            CompiledFilter child = compileFilter(((Not) filter).getFilter());
+            compiled = feature -> !child.test(feature);
+        } else if (filter instanceof PropertyIsNull) {
+            compiled = compileIsNull((PropertyIsNull) filter);
+        } else if (filter instanceof BinaryComparisonOperator) {
+            compiled = compileComparison((BinaryComparisonOperator) filter);
+        } else if (filter instanceof PropertyIsBetween) {
+            compiled = compileBetween((PropertyIsBetween) filter);
+        } else if (filter instanceof PropertyIsLike) {
+            compiled = compileLike((PropertyIsLike) filter);
+        } else if (filter instanceof BinarySpatialOperator) {
+            compiled = compileSpatial((BinarySpatialOperator) filter);
+        }
+        return compiled != null ? compiled : filter::evaluate;
+    }
+
+    private CompiledFilter compileAnd(And and) {
+        CompiledFilter[] children = compileChildren(and.getChildren());
+        return feature -> {
+            for (CompiledFilter child : children) {
+                if (!child.test(feature)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private CompiledFilter compileOr(Or or) {
+        CompiledFilter in = compileIn(or);
+        if (in != null) {
+            return in;
+        }
+        CompiledFilter[] children = compileChildren(or.getChildren());
+        return feature -> {
+            for (CompiledFilter child : children) {
+                if (child.test(feature)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private CompiledFilter[] compileChildren(List<Filter> filters) {
+        CompiledFilter[] children = new CompiledFilter[filters.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = compileFilter(filters.get(i));
+        }
+        return children;
+    }
+
+    /**
+     * 同一字段多个大小写敏感的相等条件组成的or编译为集合查找
+     */
+    private CompiledFilter compileIn(Or or) {
+        int index = -1;
+        Object[] literals = new Object[or.getChildren().size()];
+        int count = 0;
+        for (Filter child : or.getChildren()) {
+            if (!(child instanceof PropertyIsEqualTo) || !((PropertyIsEqualTo) child).isMatchingCase()) {
+                return null;
+            }
+            Operand operand = operand((PropertyIsEqualTo) child);
+            if (operand == null || (index >= 0 && operand.index != index)) {
+                return null;
+            }
+            index = operand.index;
+            literals[count++] = operand.literal;
+        }
+        if (index < 0) {
+            return null;
+        }
+        Class<?> binding = schema.getDescriptor(index).getType().getBinding();
+        int attributeIndex = index;
+        if (String.class.equals(binding) && Arrays.stream(literals).allMatch(String.class::isInstance)) {
+            Set<Object> values = new HashSet<>(Arrays.asList(literals));
+            return feature -> {
+                Object value = feature.getAttribute(attributeIndex);
+                return value != null && values.contains(value);
+            };
+        }
+        if (Number.class.isAssignableFrom(binding) && Arrays.stream(literals).allMatch(Number.class::isInstance)) {
+            double[] values = Arrays.stream(literals).mapToDouble(literal -> ((Number) literal).doubleValue()).sorted().toArray();
+            return feature -> {
+                Object value = feature.getAttribute(attributeIndex);
+                return value instanceof Number && Arrays.binarySearch(values, ((Number) value).doubleValue()) >= 0;
+            };
+        }
+        return null;
+    }
+
+    private CompiledFilter compileIsNull(PropertyIsNull isNull) {
+        if (!(isNull.getExpression() instanceof PropertyName)) {
+            return null;
+        }
+        int index = schema.indexOf(((PropertyName) isNull.getExpression()).getPropertyName());
+        if (index < 0) {
+            return null;
+        }
+        return feature -> feature.getAttribute(index) == null;
+    }
+
+    private CompiledFilter compileComparison(BinaryComparisonOperator comparison) {
+        Operand operand = operand(comparison);
+        if (operand == null) {
+            return null;
+        }
+        int index = operand.index;
+        Object literal = operand.literal;
+        Class<?> binding = schema.getDescriptor(index).getType().getBinding();
+        //字面量在左侧时大小比较方向相反
+        boolean reversed = comparison.getExpression1() instanceof Literal;
+        if (comparison instanceof PropertyIsEqualTo && String.class.equals(binding) && literal instanceof String) {
+            String value = (String) literal;
+            if (comparison.isMatchingCase()) {
+                return feature -> value.equals(feature.getAttribute(index));
+            }
+            return feature -> {
+                Object attribute = feature.getAttribute(index);
+                return attribute instanceof String && value.equalsIgnoreCase((String) attribute);
+            };
+        }
+        if (String.class.equals(binding) && literal instanceof Number) {
+            return compileStringToNumber(comparison, index, (Number) literal, reversed);
+        }
+        if (!Number.class.isAssignableFrom(binding) || !(literal instanceof Number)) {
+            return null;
+        }
+        double value = ((Number) literal).doubleValue();
+        if (comparison instanceof PropertyIsEqualTo) {
+            return feature -> {
+                Object attribute = feature.getAttribute(index);
+                return attribute instanceof Number && ((Number) attribute).doubleValue() == value;
+            };
+        }
+        boolean greater = comparison instanceof PropertyIsGreaterThan || comparison instanceof PropertyIsGreaterThanOrEqualTo;
+        boolean less = comparison instanceof PropertyIsLessThan || comparison instanceof PropertyIsLessThanOrEqualTo;
+        if (!greater && !less) {
+            return null;
+        }
+        boolean inclusive = comparison instanceof PropertyIsGreaterThanOrEqualTo || comparison instanceof PropertyIsLessThanOrEqualTo;
+        if (greater != reversed) {
+            return inclusive
+                    ? feature -> numberOf(feature.getAttribute(index)) >= value
+                    : feature -> numberOf(feature.getAttribute(index)) > value;
+        }
+        return inclusive
+                ? feature -> numberOf(feature.getAttribute(index)) <= value
+                : feature -> numberOf(feature.getAttribute(index)) < value;
+    }
+
+    /**
+     * 字符串字段与数值字面量的大小比较，如KIND >= 160100
+     */
+    private CompiledFilter compileStringToNumber(BinaryComparisonOperator comparison, int index, Number literal, boolean reversed) {
+        IntPredicate accept = orderPredicate(comparison, reversed);
+        if (accept == null) {
+            return null;
+        }
+        double value = literal.doubleValue();
+        String text = literal.toString();
+        return feature -> {
+            Object attribute = feature.getAttribute(index);
+            return attribute instanceof String && accept.test(compareStringToNumber((String) attribute, value, text));
+        };
+    }
+
+    /**
+     * 大小比较的结果判断
+     * @param comparison 比较条件
+     * @param reversed 字面量是否在左侧
+     * @return 按“字段值与字面量比较的结果”判断是否满足，不是大小比较时返回null
+     */
+    public static IntPredicate orderPredicate(BinaryComparisonOperator comparison, boolean reversed) {
+        boolean greater = comparison instanceof PropertyIsGreaterThan || comparison instanceof PropertyIsGreaterThanOrEqualTo;
+        boolean less = comparison instanceof PropertyIsLessThan || comparison instanceof PropertyIsLessThanOrEqualTo;
+        if (!greater && !less) {
+            return null;
+        }
+        boolean inclusive = comparison instanceof PropertyIsGreaterThanOrEqualTo || comparison instanceof PropertyIsLessThanOrEqualTo;
+        if (greater != reversed) {
+            return inclusive ? result -> result >= 0 : result -> result > 0;
+        }
+        return inclusive ? result -> result <= 0 : result -> result < 0;
+    }
+
+    /**
+     * 与GeoTools BinaryComparisonAbstract.compare相同的宽松比较：
+     * 字符串能解析为数值时按double比较，否则两边都转为字符串按字典序比较
+     * @param attribute 字段值
+     * @param value 数值字面量
+     * @param text 数值字面量的toString()
+     * @return 字段值与字面量比较的结果
+     */
+    public static int compareStringToNumber(String attribute, double value, String text) {
+        double number;
+        try {
+            number = Double.parseDouble(attribute);
+        } catch (NumberFormatException e) {
+            return attribute.compareTo(text);
+        }
+        return Double.compare(number, value);
+    }
+
+    /**
+     * 空值返回NaN，与任何数值比较都为false，与GeoTools空值比较结果一致
+     */
+    private static double numberOf(Object attribute) {
+        return attribute instanceof Number ? ((Number) attribute).doubleValue() : Double.NaN;
+    }
+
+    private CompiledFilter compileBetween(PropertyIsBetween between) {
+        if (!(between.getExpression() instanceof PropertyName)
+                || !(between.getLowerBoundary() instanceof Literal)
+                || !(between.getUpperBoundary() instanceof Literal)) {
+            return null;
+        }
+        int index = schema.indexOf(((PropertyName) between.getExpression()).getPropertyName());
+        Object lower = ((Literal) between.getLowerBoundary()).getValue();
+        Object upper = ((Literal) between.getUpperBoundary()).getValue();
+        if (index < 0 || !Number.class.isAssignableFrom(schema.getDescriptor(index).getType().getBinding())
+                || !(lower instanceof Number) || !(upper instanceof Number)) {
+            return null;
+        }
+        double lowerValue = ((Number) lower).doubleValue();
+        double upperValue = ((Number) upper).doubleValue();
+        return feature -> {
+            double value = numberOf(feature.getAttribute(index));
+            return value >= lowerValue && value <= upperValue;
+        };
+    }
+
+    /**
+     * like条件：只有首尾通配符时编译为startsWith/endsWith/contains，其余编译为正则
+     */
+    private CompiledFilter compileLike(PropertyIsLike like) {
+        if (!(like.getExpression() instanceof PropertyName)) {
+            return null;
+        }
+        int index = schema.indexOf(((PropertyName) like.getExpression()).getPropertyName());
+        if (index < 0 || !String.class.equals(schema.getDescriptor(index).getType().getBinding())) {
+            return null;
+        }
+        Predicate<String> matcher = likeMatcher(like);
+        if (matcher == null) {
+            return null;
+        }
+        return feature -> {
+            Object value = feature.getAttribute(index);
+            return value instanceof String && matcher.test((String) value);
+        };
+    }
+
+    /**
+     * 把like的模式编译为字符串判断，列式图层等不经过SimpleFeature的场景也使用
+     * @param like like条件
+     * @return 字符串判断，通配符不是单个字符等无法编译的情况返回null
+     */
+    public static Predicate<String> likeMatcher(PropertyIsLike like) {
+        String pattern = like.getLiteral();
+        String wildCard = like.getWildCard();
+        String singleChar = like.getSingleChar();
+        String escape = like.getEscape();
+        if (pattern == null || wildCard.length() != 1 || singleChar.length() != 1 || escape.length() != 1) {
+            return null;
+        }
+        if (like.isMatchingCase() && !pattern.contains(singleChar) && !pattern.contains(escape)) {
+            boolean leading = pattern.startsWith(wildCard);
+            boolean trailing = pattern.length() > 1 && pattern.endsWith(wildCard);
+            String body = pattern.substring(leading ? 1 : 0, pattern.length() - (trailing ? 1 : 0));
+            if (!body.contains(wildCard)) {
+                if (leading && trailing) {
+                    return value -> value.contains(body);
+                }
+                if (leading) {
+                    return value -> value.endsWith(body);
+                }
+                if (trailing) {
+                    return value -> value.startsWith(body);
+                }
+                return body::equals;
+            }
+        }
+        Pattern regex = toRegex(pattern, wildCard.charAt(0), singleChar.charAt(0), escape.charAt(0), like.isMatchingCase());
+        return value -> regex.matcher(value).matches();
+    }
+
+    private static Pattern toRegex(String pattern, char wildCard, char singleChar, char escape, boolean matchCase) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == escape && i + 1 < pattern.length()) {
+                regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+            } else if (c == wildCard) {
+                regex.append(".*");
+            } else if (c == singleChar) {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        int flags = Pattern.DOTALL;
+        if (!matchCase) {
+            flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        }
+        return Pattern.compile(regex.toString(), flags);
+    }
+
+    /**
+     * 空间条件：bbox直接用范围与矩形判断，其余条件先用范围排除，
+     * intersects、within与dwithin再用预处理的查询几何精确判断，查询几何只在编译时建立一次索引
+     */
+    private CompiledFilter compileSpatial(BinarySpatialOperator operator) {
+        GeometryDescriptor geometryDescriptor = schema.getGeometryDescriptor();
+        if (geometryDescriptor == null || !(operator.getExpression1() instanceof PropertyName)
+                || !(operator.getExpression2() instanceof Literal)) {
+            return null;
+        }
+        String name = ((PropertyName) operator.getExpression1()).getPropertyName();
+        if (name != null && !name.isEmpty() && !name.equals(geometryDescriptor.getLocalName())) {
+            return null;
+        }
+        int index = schema.indexOf(geometryDescriptor.getLocalName());
+        Envelope envelope = SpatialFilters.queryEnvelope(operator);
+        if (envelope == null) {
+            return null;
+        }
+        if (operator instanceof BBOX) {
+            Geometry rectangle = GEOMETRY_FACTORY.toGeometry(envelope);
+            return feature -> {
+                Object value = feature.getAttribute(index);
+                if (!(value instanceof Geometry)) {
+                    return false;
+                }
+                Geometry geometry = (Geometry) value;
+                Envelope geometryEnvelope = geometry.getEnvelopeInternal();
+                if (!envelope.intersects(geometryEnvelope)) {
+                    return false;
+                }
+                return geometry instanceof Point || envelope.covers(geometryEnvelope) || rectangle.intersects(geometry);
+            };
+        }
+        Geometry literal = SpatialFilters.literalGeometry(operator);
+        if (literal == null || literal.isEmpty()) {
+            return null;
+        }
+        if (operator instanceof Intersects) {
+            PreparedGeometry prepared = PreparedGeometryFactory.prepare(literal);
+            return feature -> {
+                Object value = feature.getAttribute(index);
+                return value instanceof Geometry && envelope.intersects(((Geometry) value).getEnvelopeInternal())
+                        && prepared.intersects((Geometry) value);
+            };
+        }
+        if (operator instanceof DWithin) {
+            //envelope已按距离扩展，先排除范围外的要素，相交时距离为0，其余按索引化的边求最近距离
+            double distance = ((DWithin) operator).getDistance();
+            PreparedGeometry prepared = PreparedGeometryFactory.prepare(literal);
+            IndexedFacetDistance facetDistance = new IndexedFacetDistance(literal);
+            return feature -> {
+                Object value = feature.getAttribute(index);
+                if (!(value instanceof Geometry) || !envelope.intersects(((Geometry) value).getEnvelopeInternal())) {
+                    return false;
+                }
+                Geometry geometry = (Geometry) value;
+                return !geometry.isEmpty() && (prepared.intersects(geometry) || facetDistance.isWithinDistance(geometry, distance));
+            };
+        }
+        if (operator instanceof Within) {
+            //要素在查询几何内等价于查询几何包含要素
+            PreparedGeometry prepared = PreparedGeometryFactory.prepare(literal);
+            return feature -> {
+                Object value = feature.getAttribute(index);
+                return value instanceof Geometry && envelope.covers(((Geometry) value).getEnvelopeInternal())
+                        && prepared.contains((Geometry) value);
+            };
+        }
+        if (operator instanceof Contains) {
+            //要素包含查询几何，预处理查询几何无法加速，只做范围排除
+            return feature -> {
+                Envelope geometryEnvelope = envelopeOf(feature.getAttribute(index));
+                return geometryEnvelope != null && geometryEnvelope.covers(envelope) && operator.evaluate(feature);
+            };
+        }
+        return null;
+    }
+
+    private static Envelope envelopeOf(Object value) {
+        return value instanceof Geometry ? ((Geometry) value).getEnvelopeInternal() : null;
+    }
+
+    /**
+     * 解析属性与字面量的比较，属性不存在或两侧不是属性与字面量时返回null
+     */
+    private Operand operand(BinaryComparisonOperator comparison) {
+        Expression left = comparison.getExpression1();
+        Expression right = comparison.getExpression2();
+        PropertyName property;
+        Literal literal;
+        if (left instanceof PropertyName && right instanceof Literal) {
+            property = (PropertyName) left;
+            literal = (Literal) right;
+        } else if (right instanceof PropertyName && left instanceof Literal) {
+            property = (PropertyName) right;
+            literal = (Literal) left;
+        } else {
+            return null;
+        }
+        int index = schema.indexOf(property.getPropertyName());
+        if (index < 0 || literal.getValue() == null) {
+            return null;
+        }
+        AttributeDescriptor descriptor = schema.getDescriptor(index);
+        return descriptor == null ? null : new Operand(index, literal.getValue());
+    }
+
+    private static class Operand {
+
+        private final int index;
+
+        private final Object literal;
+
+        Operand(int index, Object literal) {
+            this.index = index;
+            this.literal = literal;
+        }
+    }
+}
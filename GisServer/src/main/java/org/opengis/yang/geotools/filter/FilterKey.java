@@ -0,0 +1,84 @@
+package org.opengis.yang.geotools.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.geotools.api.filter.BinaryComparisonOperator;
+import org.geotools.api.filter.BinaryLogicOperator;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.MultiValuedFilter;
+import org.geotools.api.filter.Not;
+import org.geotools.api.filter.PropertyIsLike;
+import org.geotools.filter.text.ecql.ECQL;
+
+import java.util.Optional;
+
+/**
+ * filter的规范化文本，作为查询计划、查询结果缓存与分页游标中过滤条件的key
+ * GeoTools的Filter.equals与toString都不能作为key：相等比较的toString不区分matchCase，
+ * 字面量比较时先做类型转换，字符串'1'与数值1相等；
+ * 这里按ECQL编码，字符串字面量带引号、数值不带，再附加各比较条件的matchCase与matchAction
+ * 按实例缓存，{@link FilterCache}共享的filter只编码一次；无法编码为ECQL的filter没有key，调用方不缓存
+ */
+public final class FilterKey {
+
+    private static final String INCLUDE = "INCLUDE";
+
+    //weakKeys按实例比较，不依赖Filter的equals
+    private static final Cache<Filter, Optional<String>> KEYS = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(10_000)
+            .build();
+
+    private FilterKey() {
+    }
+
+    /**
+     * @param filter 过滤条件，为null时与Filter.INCLUDE相同
+     * @return 规范化文本，无法编码时返回null
+     */
+    public static String of(Filter filter) {
+        if (filter == null || filter == Filter.INCLUDE) {
+            return INCLUDE;
+        }
+        return KEYS.get(filter, FilterKey::encode).orElse(null);
+    }
+
+    private static Optional<String> encode(Filter filter) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            builder.append(ECQL.toCQL(filter));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+        builder.append(" |");
+        appendOptions(filter, builder);
+        return Optional.of(builder.toString());
+    }
+
+    /**
+     * 按先序遍历的顺序追加ECQL中没有体现的选项
+     */
+    private static void appendOptions(Filter filter, StringBuilder builder) {
+        if (filter instanceof BinaryLogicOperator) {
+            for (Filter child : ((BinaryLogicOperator) filter).getChildren()) {
+                appendOptions(child, builder);
+            }
+            return;
+        }
+        if (filter instanceof Not) {
+            appendOptions(((Not) filter).getFilter(), builder);
+            return;
+        }
+        builder.append(' ');
+        if (filter instanceof BinaryComparisonOperator) {
+            builder.append(((BinaryComparisonOperator) filter).isMatchingCase() ? 'c' : 'i');
+        } else if (filter instanceof PropertyIsLike) {
+            PropertyIsLike like = (PropertyIsLike) filter;
+            builder.append(like.isMatchingCase() ? 'c' : 'i')
+                    .append(like.getWildCard()).append(like.getSingleChar()).append(like.getEscape());
+        }
+        if (filter instanceof MultiValuedFilter) {
+            builder.append(((MultiValuedFilter) filter).getMatchAction().ordinal());
+        }
+    }
+}
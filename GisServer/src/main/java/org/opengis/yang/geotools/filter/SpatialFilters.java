@@ -0,0 +1,64 @@
+package org.opengis.yang.geotools.filter;
+
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.api.filter.spatial.BinarySpatialOperator;
+import org.geotools.api.filter.spatial.DWithin;
+import org.geotools.filter.visitor.ExtractBoundsFilterVisitor;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * 空间过滤条件的辅助方法
+ */
+public final class SpatialFilters {
+
+    private SpatialFilters() {
+    }
+
+    /**
+     * 获取空间条件中的字面量几何
+     * @param operator 空间条件
+     * @return 字面量几何，没有字面量时返回null
+     */
+    public static Geometry literalGeometry(BinarySpatialOperator operator) {
+        Literal literal = literalOf(operator);
+        return literal == null ? null : literal.evaluate(null, Geometry.class);
+    }
+
+    /**
+     * 计算满足空间条件的要素所在范围
+     * dwithin按距离扩展范围，距离与GeoTools内存计算一致，直接按图层坐标单位解释
+     * @param operator 空间条件
+     * @return 查询范围，无法确定有限范围时返回null
+     */
+    public static Envelope queryEnvelope(BinarySpatialOperator operator) {
+        Envelope envelope;
+        Geometry geometry = literalGeometry(operator);
+        if (geometry != null) {
+            envelope = new Envelope(geometry.getEnvelopeInternal());
+        } else {
+            Object bounds = operator.accept(ExtractBoundsFilterVisitor.BOUNDS_VISITOR, null);
+            if (!(bounds instanceof Envelope)) {
+                return null;
+            }
+            envelope = new Envelope((Envelope) bounds);
+        }
+        if (operator instanceof DWithin) {
+            envelope.expandBy(((DWithin) operator).getDistance());
+        }
+        if (envelope.isNull() || Double.isInfinite(envelope.getWidth()) || Double.isInfinite(envelope.getHeight())) {
+            return null;
+        }
+        return envelope;
+    }
+
+    private static Literal literalOf(BinarySpatialOperator operator) {
+        Expression right = operator.getExpression2();
+        if (right instanceof Literal) {
+            return (Literal) right;
+        }
+        Expression left = operator.getExpression1();
+        return left instanceof Literal ? (Literal) left : null;
+    }
+}
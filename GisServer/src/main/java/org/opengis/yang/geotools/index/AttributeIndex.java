@@ -0,0 +1,331 @@
+package org.opengis.yang.geotools.index;
+
+import org.geotools.util.Converters;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个字段的属性索引
+ * 字段值字典编码后排序存放，每个字典值对应一段按记录号升序的倒排列表（CSR结构），
+ * 相等与in条件通过字典二分查找命中，数值字段的范围条件命中字典中连续的一段
+ * 只支持字符串与数值字段，其余类型的查询返回null表示无法使用索引
+ */
+public final class AttributeIndex {
+
+    //比较值无法按字段类型精确比较
+    private static final int NOT_COMPARABLE = Integer.MIN_VALUE;
+
+    //字典中不存在该值
+    private static final int NOT_FOUND = -1;
+
+    private final String attribute;
+
+    private final Class<?> binding;
+
+    //排序后的字典
+    private final Object[] dictionary;
+
+    //数值字段字典对应的double值，用于范围查找
+    private final double[] numericKeys;
+
+    //第i个字典值的记录位于records[offsets[i], offsets[i+1])
+    private final int[] offsets;
+
+    private final int[] records;
+
+    private AttributeIndex(String attribute, Class<?> binding, Object[] dictionary, int[] offsets, int[] records) {
+        this.attribute = attribute;
+        this.binding = binding;
+        this.dictionary = dictionary;
+        this.offsets = offsets;
+        this.records = records;
+        if (isNumeric()) {
+            numericKeys = new double[dictionary.length];
+            for (int i = 0; i < dictionary.length; i++) {
+                numericKeys[i] = ((Number) dictionary[i]).doubleValue();
+            }
+        } else {
+            numericKeys = null;
+        }
+    }
+
+    /**
+     * 是否支持该字段类型
+     */
+    public static boolean supports(Class<?> binding) {
+        return String.class.equals(binding) || Number.class.isAssignableFrom(binding);
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public Class<?> getBinding() {
+        return binding;
+    }
+
+    /**
+     * @return 不同值的个数
+     */
+    public int getDistinctCount() {
+        return dictionary.length;
+    }
+
+    public boolean isNumeric() {
+        return Number.class.isAssignableFrom(binding);
+    }
+
+    /**
+     * 索引结果是否与GeoTools的比较语义完全一致，
+     * 一致时查询计划可以去掉该条件，否则只作为候选集，仍需逐条判断
+     * @param literal 比较值
+     */
+    public boolean isExact(Object literal) {
+        return isNumeric() ? literal instanceof Number : literal instanceof String;
+    }
+
+    /**
+     * 相等查询
+     * @param literal 比较值
+     * @return 命中的记录号，比较值无法按字段类型精确比较时返回null
+     */
+    public BitSet equalTo(Object literal) {
+        int position = find(literal);
+        if (position == NOT_COMPARABLE) {
+            return null;
+        }
+        BitSet result = new BitSet();
+        addPostings(position, result);
+        return result;
+    }
+
+    /**
+     * in查询，一次查找多个值
+     * @param literals 比较值
+     * @return 命中的记录号，任一比较值无法精确比较时返回null
+     */
+    public BitSet anyOf(Collection<?> literals) {
+        BitSet result = new BitSet();
+        for (Object literal : literals) {
+            int position = find(literal);
+            if (position == NOT_COMPARABLE) {
+                return null;
+            }
+            addPostings(position, result);
+        }
+        return result;
+    }
+
+    /**
+     * 数值范围查询
+     * @param lower 下限，为null表示不限
+     * @param lowerInclusive 是否包含下限
+     * @param upper 上限，为null表示不限
+     * @param upperInclusive 是否包含上限
+     * @return 命中的记录号，非数值字段或边界无法转换为数值时返回null
+     */
+    public BitSet range(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+        if (!isNumeric()) {
+            return null;
+        }
+        int from = 0;
+        int to = dictionary.length;
+        if (lower != null) {
+            Double value = toDouble(lower);
+            if (value == null) {
+                return null;
+            }
+            from = lowerInclusive ? lowerBound(value) : upperBound(value);
+        }
+        if (upper != null) {
+            Double value = toDouble(upper);
+            if (value == null) {
+                return null;
+            }
+            to = upperInclusive ? upperBound(value) : lowerBound(value);
+        }
+        BitSet result = new BitSet();
+        for (int i = from; i < to; i++) {
+            addPostings(i, result);
+        }
+        return result;
+    }
+
+    /**
+     * 在字典中查找比较值
+     */
+    private int find(Object literal) {
+        if (literal == null) {
+            return NOT_COMPARABLE;
+        }
+        if (isNumeric()) {
+            Double value = toDouble(literal);
+            if (value == null) {
+                return NOT_COMPARABLE;
+            }
+            int position = lowerBound(value);
+            return position < numericKeys.length && numericKeys[position] == value ? position : NOT_FOUND;
+        }
+        //字符串字段只接受字符串比较值，数值比较值在GeoTools中会按数值比较
+        if (!(literal instanceof String)) {
+            return NOT_COMPARABLE;
+        }
+        int position = Arrays.binarySearch(dictionary, literal);
+        return position >= 0 ? position : NOT_FOUND;
+    }
+
+    /**
+     * 按字段值分组计数，直接取倒排列表长度，不读取记录
+     * @param candidates 参与统计的记录号，为null时统计全部记录
+     * @return 字段值到记录数的映射，按字段值排序，不含空值与计数为0的值
+     */
+    public Map<Object, Integer> groupCounts(BitSet candidates) {
+        Map<Object, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < dictionary.length; i++) {
+            int count;
+            if (candidates == null) {
+                count = offsets[i + 1] - offsets[i];
+            } else {
+                count = 0;
+                for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                    if (candidates.get(records[j])) {
+                        count++;
+                    }
+                }
+            }
+            if (count > 0) {
+                counts.put(dictionary[i], count);
+            }
+        }
+        return counts;
+    }
+
+    private void addPostings(int position, BitSet result) {
+        if (position < 0) {
+            return;
+        }
+        for (int i = offsets[position]; i < offsets[position + 1]; i++) {
+            result.set(records[i]);
+        }
+    }
+
+    private static Double toDouble(Object literal) {
+        if (literal instanceof Number) {
+            return ((Number) literal).doubleValue();
+        }
+        return Converters.convert(literal, Double.class);
+    }
+
+    //第一个不小于value的位置
+    private int lowerBound(double value) {
+        int low = 0, high = numericKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (numericKeys[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    //第一个大于value的位置
+    private int upperBound(double value) {
+        int low = 0, high = numericKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (numericKeys[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 按记录号顺序逐条添加字段值构建索引
+     */
+    public static class Builder {
+
+        private final String attribute;
+
+        private final Class<?> binding;
+
+        private final Map<Object, Integer> codes = new HashMap<>();
+
+        private int[] recordCodes = new int[1024];
+
+        private int recordCount;
+
+        public Builder(String attribute, Class<?> binding) {
+            if (!supports(binding)) {
+                throw new IllegalArgumentException("字段" + attribute + "的类型不支持建立索引：" + binding.getName());
+            }
+            this.attribute = attribute;
+            this.binding = binding;
+        }
+
+        /**
+         * 添加下一条记录的字段值，记录号从1开始依次递增
+         */
+        public void add(Object value) {
+            if (recordCount == recordCodes.length) {
+                recordCodes = Arrays.copyOf(recordCodes, recordCount * 2);
+            }
+            int code = -1;
+            if (value != null) {
+                Integer existing = codes.get(value);
+                if (existing == null) {
+                    existing = codes.size();
+                    codes.put(value, existing);
+                }
+                code = existing;
+            }
+            recordCodes[recordCount++] = code;
+        }
+
+        public AttributeIndex build() {
+            Object[] values = new Object[codes.size()];
+            codes.forEach((value, code) -> values[code] = value);
+            Integer[] order = new Integer[values.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Comparator<Integer> comparator = Number.class.isAssignableFrom(binding)
+                    ? Comparator.comparingDouble(code -> ((Number) values[code]).doubleValue())
+                    : Comparator.comparing(code -> (String) values[code]);
+            Arrays.sort(order, comparator);
+            Object[] dictionary = new Object[values.length];
+            int[] remap = new int[values.length];
+            for (int i = 0; i < order.length; i++) {
+                dictionary[i] = values[order[i]];
+                remap[order[i]] = i;
+            }
+            int[] offsets = new int[dictionary.length + 1];
+            for (int i = 0; i < recordCount; i++) {
+                if (recordCodes[i] >= 0) {
+                    offsets[remap[recordCodes[i]] + 1]++;
+                }
+            }
+            for (int i = 0; i < dictionary.length; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] records = new int[offsets[dictionary.length]];
+            int[] positions = Arrays.copyOf(offsets, dictionary.length);
+            for (int i = 0; i < recordCount; i++) {
+                if (recordCodes[i] >= 0) {
+                    records[positions[remap[recordCodes[i]]]++] = i + 1;
+                }
+            }
+            return new AttributeIndex(attribute, binding, dictionary, offsets, records);
+        }
+    }
+}
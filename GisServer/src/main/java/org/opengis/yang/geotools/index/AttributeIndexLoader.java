@@ -0,0 +1,75 @@
+package org.opengis.yang.geotools.index;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.files.ShpFiles;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 顺序读取一遍dbf，为指定字段构建属性索引
+ */
+public class AttributeIndexLoader {
+
+    private AttributeIndexLoader() {
+    }
+
+    /**
+     * @param shpFiles shape文件
+     * @param schema 图层schema，用于确定字段类型
+     * @param attributes 需要建立索引的字段
+     * @param memoryMapped 是否使用内存映射
+     * @param charset dbf编码
+     * @return 字段名称到索引的映射
+     * @throws IOException
+     */
+    public static Map<String, AttributeIndex> load(ShpFiles shpFiles, SimpleFeatureType schema, Collection<String> attributes,
+                                                   boolean memoryMapped, Charset charset) throws IOException {
+        Map<String, AttributeIndex> indexes = new LinkedHashMap<>();
+        if (attributes.isEmpty()) {
+            return indexes;
+        }
+        DbaseFileReader reader = new DbaseFileReader(shpFiles, memoryMapped, charset);
+        try {
+            DbaseFileHeader header = reader.getHeader();
+            String[] names = attributes.toArray(new String[0]);
+            int[] columns = new int[names.length];
+            AttributeIndex.Builder[] builders = new AttributeIndex.Builder[names.length];
+            for (int i = 0; i < names.length; i++) {
+                AttributeDescriptor descriptor = schema.getDescriptor(names[i]);
+                if (descriptor == null) {
+                    throw new IllegalArgumentException("图层" + schema.getTypeName() + "中不存在字段：" + names[i]);
+                }
+                columns[i] = -1;
+                for (int j = 0; j < header.getNumFields(); j++) {
+                    if (header.getFieldName(j).equals(names[i])) {
+                        columns[i] = j;
+                        break;
+                    }
+                }
+                if (columns[i] < 0) {
+                    throw new IllegalArgumentException("dbf中不存在字段：" + names[i]);
+                }
+                builders[i] = new AttributeIndex.Builder(names[i], descriptor.getType().getBinding());
+            }
+            while (reader.hasNext()) {
+                DbaseFileReader.Row row = reader.readRow();
+                for (int i = 0; i < builders.length; i++) {
+                    builders[i].add(row.read(columns[i]));
+                }
+            }
+            for (int i = 0; i < names.length; i++) {
+                indexes.put(names[i], builders[i].build());
+            }
+        } finally {
+            reader.close();
+        }
+        return indexes;
+    }
+}
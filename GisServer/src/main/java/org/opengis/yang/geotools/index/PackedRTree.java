@@ -0,0 +1,368 @@
+package org.opengis.yang.geotools.index;
+
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 基于STR打包的只读R树，节点范围与要素编号全部存放在扁平数组中
+ * 第0层为要素本身，其上每nodeSize个连续节点合并为一个父节点，直到只剩根节点
+ * 要素编号一般为shp中的记录号（从1开始）
+ */
+public final class PackedRTree {
+
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    private final int nodeSize;
+
+    private final int itemCount;
+
+    //每层在boxes中的起始节点位置，最后一个元素为节点总数
+    private final int[] levelStarts;
+
+    //每个节点4个double：minX,minY,maxX,maxY
+    private final double[] boxes;
+
+    //叶子层对应的要素编号
+    private final int[] ids;
+
+    private PackedRTree(int nodeSize, int itemCount, int[] levelStarts, double[] boxes, int[] ids) {
+        this.nodeSize = nodeSize;
+        this.itemCount = itemCount;
+        this.levelStarts = levelStarts;
+        this.boxes = boxes;
+        this.ids = ids;
+    }
+
+    /**
+     * 构建索引
+     * @param itemBoxes 要素范围，每个要素依次4个值minX,minY,maxX,maxY
+     * @param itemIds 要素编号
+     * @param itemCount 要素数量
+     * @param nodeSize 节点容量
+     * @return 索引对象
+     */
+    public static PackedRTree build(double[] itemBoxes, int[] itemIds, int itemCount, int nodeSize) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("节点容量至少为2：" + nodeSize);
+        }
+        int[] order = strOrder(itemBoxes, itemCount, nodeSize);
+        //计算每层节点数
+        int[] levelCounts = new int[32];
+        int levels = 0;
+        int count = itemCount;
+        levelCounts[levels++] = count;
+        while (count > 1 || levels == 1) {
+            count = (count + nodeSize - 1) / nodeSize;
+            levelCounts[levels++] = count;
+            if (count == 0) {
+                break;
+            }
+        }
+        int[] levelStarts = new int[levels + 1];
+        for (int i = 0; i < levels; i++) {
+            levelStarts[i + 1] = levelStarts[i] + levelCounts[i];
+        }
+        double[] boxes = new double[levelStarts[levels] * 4];
+        int[] ids = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            int item = order[i];
+            System.arraycopy(itemBoxes, item * 4, boxes, i * 4, 4);
+            ids[i] = itemIds[item];
+        }
+        //自底向上合并父节点范围
+        for (int level = 1; level < levels; level++) {
+            int childStart = levelStarts[level - 1];
+            int childEnd = levelStarts[level];
+            for (int parent = levelStarts[level], child = childStart; parent < levelStarts[level + 1]; parent++) {
+                double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                int end = Math.min(child + nodeSize, childEnd);
+                for (; child < end; child++) {
+                    minX = Math.min(minX, boxes[child * 4]);
+                    minY = Math.min(minY, boxes[child * 4 + 1]);
+                    maxX = Math.max(maxX, boxes[child * 4 + 2]);
+                    maxY = Math.max(maxY, boxes[child * 4 + 3]);
+                }
+                boxes[parent * 4] = minX;
+                boxes[parent * 4 + 1] = minY;
+                boxes[parent * 4 + 2] = maxX;
+                boxes[parent * 4 + 3] = maxY;
+            }
+        }
+        return new PackedRTree(nodeSize, itemCount, levelStarts, boxes, ids);
+    }
+
+    /**
+     * STR排序：先按中心x分成若干竖条，每个竖条内再按中心y排序
+     */
+    private static int[] strOrder(double[] itemBoxes, int itemCount, int nodeSize) {
+        long[] keys = new long[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            keys[i] = sortKey((itemBoxes[i * 4] + itemBoxes[i * 4 + 2]) / 2, i);
+        }
+        Arrays.sort(keys);
+        int leafCount = (itemCount + nodeSize - 1) / nodeSize;
+        int sliceCount = Math.max(1, (int) Math.ceil(Math.sqrt(leafCount)));
+        int sliceSize = sliceCount * nodeSize;
+        int[] order = new int[itemCount];
+        for (int sliceStart = 0; sliceStart < itemCount; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(sliceStart + sliceSize, itemCount);
+            for (int i = sliceStart; i < sliceEnd; i++) {
+                int item = (int) keys[i];
+                keys[i] = sortKey((itemBoxes[item * 4 + 1] + itemBoxes[item * 4 + 3]) / 2, item);
+            }
+            Arrays.sort(keys, sliceStart, sliceEnd);
+            for (int i = sliceStart; i < sliceEnd; i++) {
+                order[i] = (int) keys[i];
+            }
+        }
+        return order;
+    }
+
+    /**
+     * 将坐标压缩为可排序的float位放在高32位，要素下标放在低32位，
+     * 排序精度只影响打包质量，不影响查询正确性
+     */
+    private static long sortKey(double value, int item) {
+        int bits = Float.floatToIntBits((float) value);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | (item & 0xffffffffL);
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    public int getNodeSize() {
+        return nodeSize;
+    }
+
+    /**
+     * @return 全部要素的范围
+     */
+    public Envelope getBounds() {
+        if (itemCount == 0) {
+            return new Envelope();
+        }
+        int root = levelStarts[levelStarts.length - 2];
+        return new Envelope(boxes[root * 4], boxes[root * 4 + 2], boxes[root * 4 + 1], boxes[root * 4 + 3]);
+    }
+
+    /**
+     * 查询与给定范围相交的要素编号
+     * @param envelope 查询范围
+     * @param visitor 命中的要素编号回调
+     */
+    public void query(Envelope envelope, IntConsumer visitor) {
+        query(envelope, (id, minX, minY, maxX, maxY) -> visitor.accept(id));
+    }
+
+    /**
+     * 查询与给定范围相交的要素编号及其范围，点要素的范围即点坐标，不需要再读取几何
+     * @param envelope 查询范围
+     * @param visitor 命中的要素回调
+     */
+    public void query(Envelope envelope, ItemVisitor visitor) {
+        if (itemCount == 0 || envelope.isNull()) {
+            return;
+        }
+        double qMinX = envelope.getMinX(), qMinY = envelope.getMinY();
+        double qMaxX = envelope.getMaxX(), qMaxY = envelope.getMaxY();
+        int topLevel = levelStarts.length - 2;
+        int[] nodeStack = new int[topLevel * nodeSize + 1];
+        int[] levelStack = new int[nodeStack.length];
+        int depth = 0;
+        nodeStack[depth] = levelStarts[topLevel];
+        levelStack[depth++] = topLevel;
+        while (depth > 0) {
+            depth--;
+            int node = nodeStack[depth];
+            int level = levelStack[depth];
+            int childStart = levelStarts[level - 1] + (node - levelStarts[level]) * nodeSize;
+            int childEnd = Math.min(childStart + nodeSize, levelStarts[level]);
+            for (int child = childStart; child < childEnd; child++) {
+                int offset = child * 4;
+                if (boxes[offset] > qMaxX || boxes[offset + 1] > qMaxY
+                        || boxes[offset + 2] < qMinX || boxes[offset + 3] < qMinY) {
+                    continue;
+                }
+                if (level == 1) {
+                    visitor.visit(ids[child], boxes[offset], boxes[offset + 1], boxes[offset + 2], boxes[offset + 3]);
+                } else {
+                    nodeStack[depth] = child;
+                    levelStack[depth++] = level - 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * 最近邻查询，按分支限界逐步展开距离最小的节点
+     * 节点与要素范围到查询点的距离是精确距离的下界，弹出的要素范围再换成精确距离重新入队，
+     * 精确距离出队时即为剩余要素中最近的，取满k个或下一个距离超过上限时结束
+     * @param x 查询点x
+     * @param y 查询点y
+     * @param k 最多返回的要素数
+     * @param maxDistance 距离上限，不限制时为正无穷
+     * @param exactDistance 要素编号到查询点的精确距离，为null时使用要素范围的距离（点要素即精确距离），
+     *                      返回正无穷表示排除该要素
+     * @param resultIds 按距离从近到远写入的要素编号，长度不小于k
+     * @param resultDistances 对应的距离，长度不小于k
+     * @return 找到的要素数
+     */
+    public int nearest(double x, double y, int k, double maxDistance, IntToDoubleFunction exactDistance,
+                       int[] resultIds, double[] resultDistances) {
+        if (itemCount == 0 || k <= 0) {
+            return 0;
+        }
+        int topLevel = levelStarts.length - 2;
+        NodeQueue queue = new NodeQueue();
+        int root = levelStarts[topLevel];
+        queue.push(boxDistance(root, x, y), root, topLevel);
+        int found = 0;
+        while (found < k && queue.size() > 0) {
+            double distance = queue.peekDistance();
+            if (distance > maxDistance || distance == Double.POSITIVE_INFINITY) {
+                break;
+            }
+            int node = queue.peekNode();
+            int level = queue.peekLevel();
+            queue.pop();
+            if (level == EXACT) {
+                resultIds[found] = ids[node];
+                resultDistances[found++] = distance;
+                continue;
+            }
+            if (level == 0) {
+                //要素范围的距离只是下界，换成精确距离重新排队
+                double exact = exactDistance == null ? distance : exactDistance.applyAsDouble(ids[node]);
+                queue.push(exact, node, EXACT);
+                continue;
+            }
+            int childStart = levelStarts[level - 1] + (node - levelStarts[level]) * nodeSize;
+            int childEnd = Math.min(childStart + nodeSize, levelStarts[level]);
+            for (int child = childStart; child < childEnd; child++) {
+                double childDistance = boxDistance(child, x, y);
+                if (childDistance <= maxDistance) {
+                    queue.push(childDistance, child, level - 1);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 点到节点范围的最小距离，点在范围内时为0
+     */
+    private double boxDistance(int node, double x, double y) {
+        int offset = node * 4;
+        double dx = x < boxes[offset] ? boxes[offset] - x : x > boxes[offset + 2] ? x - boxes[offset + 2] : 0;
+        double dy = y < boxes[offset + 1] ? boxes[offset + 1] - y : y > boxes[offset + 3] ? y - boxes[offset + 3] : 0;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * 查询与给定范围相交的要素编号集合
+     * @param envelope 查询范围
+     * @return 命中的要素编号
+     */
+    public BitSet query(Envelope envelope) {
+        BitSet result = new BitSet();
+        query(envelope, (IntConsumer) result::set);
+        return result;
+    }
+
+    /**
+     * 范围查询命中的要素
+     */
+    @FunctionalInterface
+    public interface ItemVisitor {
+
+        void visit(int id, double minX, double minY, double maxX, double maxY);
+    }
+
+    //已换成精确距离的要素
+    private static final int EXACT = -1;
+
+    /**
+     * 按距离排序的小顶堆，节点、层级分别存放在基本类型数组中，避免装箱
+     */
+    private static final class NodeQueue {
+
+        private double[] distances = new double[64];
+
+        private int[] nodes = new int[64];
+
+        private int[] levels = new int[64];
+
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        double peekDistance() {
+            return distances[0];
+        }
+
+        int peekNode() {
+            return nodes[0];
+        }
+
+        int peekLevel() {
+            return levels[0];
+        }
+
+        void push(double distance, int node, int level) {
+            if (size == distances.length) {
+                distances = Arrays.copyOf(distances, size * 2);
+                nodes = Arrays.copyOf(nodes, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] <= distance) {
+                    break;
+                }
+                set(i, distances[parent], nodes[parent], levels[parent]);
+                i = parent;
+            }
+            set(i, distance, node, level);
+        }
+
+        void pop() {
+            size--;
+            if (size == 0) {
+                return;
+            }
+            double distance = distances[size];
+            int node = nodes[size];
+            int level = levels[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && distances[child + 1] < distances[child]) {
+                    child++;
+                }
+                if (distance <= distances[child]) {
+                    break;
+                }
+                set(i, distances[child], nodes[child], levels[child]);
+                i = child;
+            }
+            set(i, distance, node, level);
+        }
+
+        private void set(int i, double distance, int node, int level) {
+            distances[i] = distance;
+            nodes[i] = node;
+            levels[i] = level;
+        }
+    }
+}
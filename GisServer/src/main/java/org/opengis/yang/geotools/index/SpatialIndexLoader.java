@@ -0,0 +1,58 @@
+package org.opengis.yang.geotools.index;
+
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.shp.ShapefileReader;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.yang.geotools.GeoToolsFactories;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 从shp文件构建空间索引，只读取每条记录头部的范围，不解析几何
+ */
+public class SpatialIndexLoader {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = GeoToolsFactories.geometryFactory();
+
+    private SpatialIndexLoader() {
+    }
+
+    /**
+     * 读取shp中每条记录的范围构建索引，索引中的编号为记录号（从1开始）
+     * @param shpFiles shape文件
+     * @param memoryMapped 是否使用内存映射
+     * @return 空间索引
+     * @throws IOException
+     */
+    public static PackedRTree load(ShpFiles shpFiles, boolean memoryMapped) throws IOException {
+        double[] boxes = new double[4 * 1024];
+        int[] ids = new int[1024];
+        int count = 0;
+        int recordNumber = 0;
+        ShapefileReader reader = new ShapefileReader(shpFiles, false, memoryMapped, GEOMETRY_FACTORY);
+        try {
+            while (reader.hasNext()) {
+                Envelope envelope = reader.nextRecord().envelope();
+                recordNumber++;
+                //空几何不会满足任何空间条件，不进入索引
+                if (envelope.isNull() || Double.isNaN(envelope.getMinX()) || Double.isNaN(envelope.getMinY())) {
+                    continue;
+                }
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                    boxes = Arrays.copyOf(boxes, count * 8);
+                }
+                boxes[count * 4] = envelope.getMinX();
+                boxes[count * 4 + 1] = envelope.getMinY();
+                boxes[count * 4 + 2] = envelope.getMaxX();
+                boxes[count * 4 + 3] = envelope.getMaxY();
+                ids[count++] = recordNumber;
+            }
+        } finally {
+            reader.close();
+        }
+        return PackedRTree.build(boxes, ids, count, PackedRTree.DEFAULT_NODE_SIZE);
+    }
+}
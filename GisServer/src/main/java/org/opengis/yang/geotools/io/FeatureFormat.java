@@ -0,0 +1,63 @@
+package org.opengis.yang.geotools.io;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * 要素流的输出格式
+ */
+public enum FeatureFormat {
+
+    GEOJSON("application/geo+json", "geojson"),
+
+    FLATGEOBUF("application/flatgeobuf", "fgb");
+
+    private final String contentType;
+
+    private final String extension;
+
+    FeatureFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 创建对应格式的要素写出器
+     * @param outputStream 输出流
+     * @param featureType 要素类型
+     * @return 写出器
+     * @throws IOException
+     */
+    public FeatureStreamWriter open(OutputStream outputStream, SimpleFeatureType featureType) throws IOException {
+        if (this == FLATGEOBUF) {
+            return new FlatGeobufStreamWriter(outputStream, featureType);
+        }
+        return new GeoJsonStreamWriter(outputStream);
+    }
+
+    /**
+     * 按名称或扩展名解析格式，不区分大小写
+     * @param name 格式名称，如geojson、fgb、flatgeobuf
+     * @return 输出格式
+     */
+    public static FeatureFormat of(String name) {
+        String value = name.toLowerCase(Locale.ROOT);
+        for (FeatureFormat format : values()) {
+            if (format.extension.equals(value) || format.name().toLowerCase(Locale.ROOT).equals(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("不支持的输出格式：" + name);
+    }
+}
@@ -0,0 +1,15 @@
+package org.opengis.yang.geotools.io;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 逐条编码要素并写出，不在内存中保留已写出的要素
+ * 关闭时写出结尾并刷新，但不关闭底层输出流
+ */
+public interface FeatureStreamWriter extends Closeable {
+
+    void write(SimpleFeature feature) throws IOException;
+}
@@ -0,0 +1,36 @@
+package org.opengis.yang.geotools.io;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.flatgeobuf.FlatGeobufWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * FlatGeobuf流式写出
+ * 要素总数事先未知，头部不写要素数也不生成空间索引，读取端按顺序解析
+ */
+class FlatGeobufStreamWriter implements FeatureStreamWriter {
+
+    private final OutputStream outputStream;
+
+    private final FlatGeobufWriter writer;
+
+    FlatGeobufStreamWriter(OutputStream outputStream, SimpleFeatureType featureType) throws IOException {
+        this.outputStream = outputStream;
+        this.writer = new FlatGeobufWriter(outputStream, new FlatBufferBuilder(16 * 1024));
+        writer.writeFeatureType(featureType);
+    }
+
+    @Override
+    public void write(SimpleFeature feature) throws IOException {
+        writer.writeFeature(feature);
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.flush();
+    }
+}
@@ -0,0 +1,162 @@
+package org.opengis.yang.geotools.io;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * GeoJSON流式写出
+ * 用JsonGenerator边读边写FeatureCollection，内存占用与要素数无关
+ */
+class GeoJsonStreamWriter implements FeatureStreamWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+
+    GeoJsonStreamWriter(OutputStream outputStream) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        //关闭时不关闭底层输出流，由servlet容器负责
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        generator.writeStringField("type", "FeatureCollection");
+        generator.writeArrayFieldStart("features");
+    }
+
+    @Override
+    public void write(SimpleFeature feature) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "Feature");
+        generator.writeStringField("id", feature.getID());
+        generator.writeFieldName("geometry");
+        Object geometry = feature.getDefaultGeometry();
+        if (geometry instanceof Geometry) {
+            writeGeometry((Geometry) geometry);
+        } else {
+            generator.writeNull();
+        }
+        generator.writeObjectFieldStart("properties");
+        List<AttributeDescriptor> descriptors = feature.getFeatureType().getAttributeDescriptors();
+        for (int i = 0; i < descriptors.size(); i++) {
+            AttributeDescriptor descriptor = descriptors.get(i);
+            if (descriptor instanceof GeometryDescriptor) {
+                continue;
+            }
+            generator.writeFieldName(descriptor.getLocalName());
+            writeValue(feature.getAttribute(i));
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            generator.writeNull();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+            generator.writeNumber(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            generator.writeNumber(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            generator.writeBoolean((Boolean) value);
+        } else if (value instanceof Date) {
+            generator.writeString(Instant.ofEpochMilli(((Date) value).getTime()).toString());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+
+    private void writeGeometry(Geometry geometry) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", geometry.getGeometryType());
+        if (geometry instanceof GeometryCollection && !(geometry instanceof MultiPoint
+                || geometry instanceof MultiLineString || geometry instanceof MultiPolygon)) {
+            generator.writeArrayFieldStart("geometries");
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                writeGeometry(geometry.getGeometryN(i));
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeFieldName("coordinates");
+            writeCoordinates(geometry);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeCoordinates(Geometry geometry) throws IOException {
+        if (geometry instanceof Point) {
+            Point point = (Point) geometry;
+            if (point.isEmpty()) {
+                generator.writeStartArray();
+                generator.writeEndArray();
+            } else {
+                writePosition(point.getCoordinateSequence(), 0);
+            }
+        } else if (geometry instanceof LineString) {
+            writeSequence(((LineString) geometry).getCoordinateSequence());
+        } else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            generator.writeStartArray();
+            if (!polygon.isEmpty()) {
+                writeSequence(polygon.getExteriorRing().getCoordinateSequence());
+                for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+                    writeSequence(polygon.getInteriorRingN(i).getCoordinateSequence());
+                }
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeStartArray();
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                writeCoordinates(geometry.getGeometryN(i));
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private void writeSequence(CoordinateSequence sequence) throws IOException {
+        generator.writeStartArray();
+        for (int i = 0; i < sequence.size(); i++) {
+            writePosition(sequence, i);
+        }
+        generator.writeEndArray();
+    }
+
+    private void writePosition(CoordinateSequence sequence, int index) throws IOException {
+        generator.writeStartArray();
+        generator.writeNumber(sequence.getX(index));
+        generator.writeNumber(sequence.getY(index));
+        if (sequence.hasZ()) {
+            double z = sequence.getZ(index);
+            if (!Double.isNaN(z)) {
+                generator.writeNumber(z);
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -0,0 +1,15 @@
+package org.opengis.yang.geotools.layer;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 图层并发查询数达到上限，等待许可超时
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class LayerBusyException extends RuntimeException {
+
+    public LayerBusyException(String layerName) {
+        super("图层繁忙，请稍后重试：" + layerName);
+    }
+}
@@ -0,0 +1,52 @@
+package org.opengis.yang.geotools.layer;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * 图层的使用凭证，关闭时释放对图层的引用，
+ * 一般配合try-with-resources使用
+ * 查询许可限制读取图层的并发，流式响应边读边写，许可要保留到查询的要素读完，
+ * 读完后可调用{@link #releasePermit()}提前归还，图层引用保留到句柄关闭
+ */
+public class LayerHandle implements AutoCloseable {
+
+    private final ShapeLayer layer;
+
+    //图层的查询许可，提前归还或关闭时归还
+    private final Semaphore permit;
+
+    private boolean permitReleased;
+
+    private boolean closed;
+
+    LayerHandle(ShapeLayer layer, Semaphore permit) {
+        this.layer = layer;
+        this.permit = permit;
+    }
+
+    public ShapeLayer layer() {
+        if (closed) {
+            throw new IllegalStateException("图层句柄已关闭：" + layer.getName());
+        }
+        return layer;
+    }
+
+    /**
+     * 提前归还查询许可，句柄仍可使用，图层不会在关闭句柄前被回收；重复调用时忽略
+     */
+    public void releasePermit() {
+        if (!permitReleased) {
+            permitReleased = true;
+            permit.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            layer.release();
+            releasePermit();
+        }
+    }
+}
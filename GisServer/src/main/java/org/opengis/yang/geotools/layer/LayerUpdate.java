@@ -0,0 +1,189 @@
+package org.opengis.yang.geotools.layer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 图层的写时复制更新
+ * 新版本写到图层目录下的“图层名.versions/v时间戳/”中，文件名与原图层相同，类型名与fid前缀不变；
+ * 提交时由{@link ShapeLayerRegistry#publish}完整打开新版本后原子替换，写入期间读取者始终使用当前版本，不需要加锁；
+ * 当前版本记录在“图层名.current”文件中，重启后仍使用最后发布的版本；
+ * 未提交就关闭时删除暂存的文件
+ * 非线程安全
+ */
+public class LayerUpdate implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LayerUpdate.class);
+
+    //shape文件的各组成部分，复制与删除版本时使用
+    private static final String[] EXTENSIONS = {".shp", ".shx", ".dbf", ".prj", ".cpg", ".qix", ".fix"};
+
+    private static final String VERSIONS_SUFFIX = ".versions";
+
+    private static final String POINTER_SUFFIX = ".current";
+
+    private final ShapeLayerRegistry registry;
+
+    private final String name;
+
+    //开始更新时的当前版本，提交时用于检查是否被其他更新抢先发布
+    private final File base;
+
+    private final File file;
+
+    private boolean committed;
+
+    LayerUpdate(ShapeLayerRegistry registry, String name, File base, File file) {
+        this.registry = registry;
+        this.name = name;
+        this.base = base;
+        this.file = file;
+    }
+
+    /**
+     * @return 新版本的shp文件，写入前不存在
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * 把当前版本复制为新版本，用于在原有数据上增量修改
+     * @throws IOException
+     */
+    public void copyCurrent() throws IOException {
+        String baseName = baseName(base);
+        for (String extension : EXTENSIONS) {
+            File source = new File(base.getParentFile(), baseName + extension);
+            if (source.exists()) {
+                Files.copy(source.toPath(), new File(file.getParentFile(), baseName + extension).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * 发布新版本，正在使用旧版本的读取者不受影响
+     * @throws IOException 打开新版本失败，当前版本保持不变
+     * @throws IllegalStateException 更新期间图层已发布了其他版本
+     */
+    public void commit() throws IOException {
+        LayerVersion.touch(file);
+        registry.publish(name, file, base);
+        committed = true;
+    }
+
+    @Override
+    public void close() {
+        if (!committed) {
+            delete(file);
+        }
+    }
+
+    /**
+     * 在图层的版本目录下创建新的暂存目录
+     * @param configured 配置中的shp文件
+     * @return 新版本的shp文件
+     */
+    static File stagingFile(File configured) throws IOException {
+        File versions = new File(configured.getAbsoluteFile().getParentFile(), baseName(configured) + VERSIONS_SUFFIX);
+        long stamp = System.currentTimeMillis();
+        File directory = new File(versions, "v" + stamp);
+        //同一毫秒内的多个更新依次顺延
+        while (directory.exists()) {
+            directory = new File(versions, "v" + (++stamp));
+        }
+        Files.createDirectories(directory.toPath());
+        return new File(directory, configured.getName());
+    }
+
+    /**
+     * @return 是否为{@link #stagingFile}生成的版本，只有这些文件会在退役后删除
+     */
+    static boolean isVersion(File configured, File file) {
+        File versions = new File(configured.getAbsoluteFile().getParentFile(), baseName(configured) + VERSIONS_SUFFIX);
+        File directory = file.getAbsoluteFile().getParentFile();
+        return directory != null && versions.equals(directory.getParentFile());
+    }
+
+    /**
+     * 读取当前版本记录，没有记录或记录的文件不存在时使用配置中的文件
+     * @param configured 配置中的shp文件
+     * @return 当前版本的shp文件
+     */
+    static File resolve(File configured) {
+        File pointer = pointer(configured);
+        if (!pointer.exists()) {
+            return configured;
+        }
+        try {
+            String relative = new String(Files.readAllBytes(pointer.toPath()), StandardCharsets.UTF_8).trim();
+            File current = new File(configured.getAbsoluteFile().getParentFile(), relative);
+            if (current.exists()) {
+                return current;
+            }
+            LOGGER.warn("版本记录{}指向的文件不存在，使用{}", pointer, configured);
+        } catch (IOException e) {
+            LOGGER.warn("读取版本记录失败：{}", pointer, e);
+        }
+        return configured;
+    }
+
+    /**
+     * 记录当前版本，先写临时文件再原子改名，不会留下写了一半的记录
+     * @param configured 配置中的shp文件
+     * @param current 当前版本的shp文件
+     */
+    static void writePointer(File configured, File current) throws IOException {
+        File pointer = pointer(configured);
+        if (current.getAbsoluteFile().equals(configured.getAbsoluteFile())) {
+            Files.deleteIfExists(pointer.toPath());
+            return;
+        }
+        Path directory = configured.getAbsoluteFile().getParentFile().toPath();
+        String relative = directory.relativize(current.getAbsoluteFile().toPath()).toString();
+        Path temp = Files.createTempFile(directory, pointer.getName(), ".tmp");
+        try {
+            Files.write(temp, relative.getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, pointer.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 删除版本的全部文件以及所在的版本目录，文件仍被占用时只记录日志
+     * @param shpFile 版本的shp文件
+     */
+    static void delete(File shpFile) {
+        File directory = shpFile.getAbsoluteFile().getParentFile();
+        String baseName = baseName(shpFile);
+        for (String extension : EXTENSIONS) {
+            File file = new File(directory, baseName + extension);
+            if (file.exists() && !file.delete()) {
+                LOGGER.warn("删除旧版本文件失败：{}", file);
+            }
+        }
+        String[] remaining = directory.list();
+        if (remaining != null && remaining.length == 0 && !directory.delete()) {
+            LOGGER.warn("删除旧版本目录失败：{}", directory);
+        }
+    }
+
+    private static File pointer(File configured) {
+        return new File(configured.getAbsoluteFile().getParentFile(), baseName(configured) + POINTER_SUFFIX);
+    }
+
+    private static String baseName(File shpFile) {
+        String name = shpFile.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
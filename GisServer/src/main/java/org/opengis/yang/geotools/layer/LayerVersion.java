@@ -0,0 +1,80 @@
+package org.opengis.yang.geotools.layer;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 根据shp、shx、dbf的大小与修改时间计算图层版本
+ * 任一文件被改写后版本都会变化，用于判断缓存是否仍然有效；
+ * 文件系统的修改时间精度有限，本进程内写shape文件后还应调用{@link #touch(File)}，保证版本一定变化
+ * 已打开的图层在打开时读取一次文件属性（见{@link ShapeLayer#getVersion()}），之后只读取进程内的写入次数，
+ * 注册表按gis.file-check-interval重新检查文件属性，文件被其他进程改写后重新打开图层，版本随之变化
+ */
+public final class LayerVersion {
+
+    private static final String[] EXTENSIONS = {".shp", ".shx", ".dbf"};
+
+    //本进程内各shape文件的写入次数，key为规范化的shp路径
+    private static final Map<String, AtomicLong> GENERATIONS = new ConcurrentHashMap<>();
+
+    private LayerVersion() {
+    }
+
+    /**
+     * @param shpFile shp文件
+     * @return 版本号，十六进制字符串
+     */
+    public static String of(File shpFile) {
+        return of(stamp(shpFile), generation(shpFile).get());
+    }
+
+    /**
+     * @param stamp {@link #stamp(File)}
+     * @param generation {@link #generation(File)}的当前值
+     * @return 版本号，十六进制字符串
+     */
+    static String of(long stamp, long generation) {
+        return Long.toHexString(stamp * 31 + generation);
+    }
+
+    /**
+     * @return shp、shx、dbf的大小与修改时间的哈希
+     */
+    static long stamp(File shpFile) {
+        String basePath = basePath(shpFile);
+        long hash = 17;
+        for (String extension : EXTENSIONS) {
+            File file = new File(basePath + extension);
+            hash = hash * 31 + file.length();
+            hash = hash * 31 + file.lastModified();
+        }
+        return hash;
+    }
+
+    /**
+     * @return 本进程内对shape文件的写入次数，返回的计数器随{@link #touch(File)}递增
+     */
+    static AtomicLong generation(File shpFile) {
+        return GENERATIONS.computeIfAbsent(key(shpFile), key -> new AtomicLong());
+    }
+
+    /**
+     * 记录shape文件已被本进程改写，在事务提交或写入器关闭后调用
+     * @param shpFile shp文件
+     */
+    public static void touch(File shpFile) {
+        generation(shpFile).incrementAndGet();
+    }
+
+    private static String key(File shpFile) {
+        return shpFile.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private static String basePath(File shpFile) {
+        String path = shpFile.getPath();
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf(File.separatorChar) ? path.substring(0, dot) : path;
+    }
+}
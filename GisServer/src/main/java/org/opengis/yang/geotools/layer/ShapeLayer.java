@@ -0,0 +1,361 @@
+package org.opengis.yang.geotools.layer;
+
+import org.geotools.api.data.DataStore;
+import org.geotools.api.data.SimpleFeatureSource;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.shp.IndexFile;
+import org.opengis.yang.geotools.columnar.ColumnarLayer;
+import org.opengis.yang.geotools.columnar.ColumnarLayerLoader;
+import org.opengis.yang.geotools.index.AttributeIndex;
+import org.opengis.yang.geotools.index.AttributeIndexLoader;
+import org.opengis.yang.geotools.index.PackedRTree;
+import org.opengis.yang.geotools.index.SpatialIndexLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已打开的shape图层，持有DataStore以及解析好的schema，
+ * 由{@link ShapeLayerRegistry}统一创建、计数和回收
+ * 图层对应一个不可变的文件版本，发布新版本后旧图层被标记为退役，最后一个读取者释放后才关闭
+ */
+public class ShapeLayer {
+
+    //预热时顺序读取的文件
+    private static final String[] TOUCHED_EXTENSIONS = {".shp", ".shx", ".dbf", ".qix"};
+
+    //预热读取文件的缓冲区大小
+    private static final int TOUCH_BUFFER_SIZE = 1024 * 1024;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    //进程内唯一，同一文件重新打开后也不同，作为派生缓存的key时不持有图层本身
+    private final long id = SEQUENCE.incrementAndGet();
+
+    private final String name;
+
+    private final File file;
+
+    private final Charset charset;
+
+    private final boolean memoryMapped;
+
+    private final DataStore dataStore;
+
+    private final ShpFiles shpFiles;
+
+    private final SimpleFeatureSource featureSource;
+
+    private final SimpleFeatureType schema;
+
+    //shx中记录的要素总数
+    private final int recordCount;
+
+    //打开时文件的大小与修改时间，每次查询都不再读取文件属性，由注册表按间隔检查文件是否被改写
+    private final long fileStamp;
+
+    //上次检查文件属性的时间
+    private volatile long stampCheckedAt = System.currentTimeMillis();
+
+    //本进程内对文件的写入次数
+    private final AtomicLong generation;
+
+    //数据字段以及类型
+    private final Map<String, String> attributeTypeMap;
+
+    //正在使用该图层的读取者数量
+    private final AtomicInteger refCount = new AtomicInteger();
+
+    //按记录号组织的空间索引，未开启时为null
+    private volatile PackedRTree spatialIndex;
+
+    //字段名称到属性索引的映射
+    private volatile Map<String, AttributeIndex> attributeIndexes = Collections.emptyMap();
+
+    //常驻内存的列式数据，未开启时为null
+    private volatile ColumnarLayer columnarLayer;
+
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    //已被新版本替换，不再分配给新的读取者
+    private volatile boolean retired;
+
+    //关闭后执行，用于删除退役版本的文件
+    private volatile Runnable onDisposed;
+
+    private final AtomicBoolean disposed = new AtomicBoolean();
+
+    //关闭时清除其他组件按图层缓存的数据，key为登记的组件，每个组件只登记一次
+    private final Map<Object, Runnable> disposeListeners = new ConcurrentHashMap<>();
+
+    ShapeLayer(String name, File file, Charset charset, boolean memoryMapped, DataStore dataStore) throws IOException {
+        this.name = name;
+        this.file = file;
+        this.charset = charset;
+        this.memoryMapped = memoryMapped;
+        this.dataStore = dataStore;
+        this.fileStamp = LayerVersion.stamp(file);
+        this.generation = LayerVersion.generation(file);
+        this.shpFiles = new ShpFiles(file);
+        this.featureSource = dataStore.getFeatureSource(dataStore.getTypeNames()[0]);
+        this.schema = featureSource.getSchema();
+        IndexFile shxFile = new IndexFile(shpFiles, false);
+        try {
+            this.recordCount = shxFile.getRecordCount();
+        } finally {
+            shxFile.close();
+        }
+        Map<String, String> typeMap = new LinkedHashMap<>();
+        for (AttributeDescriptor descriptor : schema.getAttributeDescriptors()) {
+            typeMap.put(descriptor.getLocalName(), descriptor.getType().getBinding().getName());
+        }
+        this.attributeTypeMap = Collections.unmodifiableMap(typeMap);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public ShpFiles getShpFiles() {
+        return shpFiles;
+    }
+
+    public SimpleFeatureSource getFeatureSource() {
+        return featureSource;
+    }
+
+    public SimpleFeatureType getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return shx中记录的要素总数，包含空几何记录
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * 图层版本，与打开时{@link LayerVersion#of(File)}的结果一致，本进程改写文件后随之变化
+     * 不读取文件属性，可以在每次查询时调用
+     * @return 版本号
+     */
+    public String getVersion() {
+        return LayerVersion.of(fileStamp, generation.get());
+    }
+
+    /**
+     * 距上次检查超过间隔时重新读取文件的大小与修改时间
+     * @param intervalMillis 检查间隔
+     * @return 文件在打开后被改写
+     */
+    boolean isStale(long intervalMillis) {
+        long now = System.currentTimeMillis();
+        if (now - stampCheckedAt < intervalMillis) {
+            return false;
+        }
+        stampCheckedAt = now;
+        return LayerVersion.stamp(file) != fileStamp;
+    }
+
+    /**
+     * @return 字段名称到字段类型的映射，只读
+     */
+    public Map<String, String> getAttributeTypeMap() {
+        return attributeTypeMap;
+    }
+
+    /**
+     * @return 空间索引，未构建时返回null
+     */
+    public PackedRTree getSpatialIndex() {
+        return spatialIndex;
+    }
+
+    /**
+     * 读取shp记录范围构建空间索引
+     * @throws IOException
+     */
+    void buildSpatialIndex() throws IOException {
+        this.spatialIndex = SpatialIndexLoader.load(shpFiles, memoryMapped);
+    }
+
+    /**
+     * @param attribute 字段名称
+     * @return 属性索引，未建立时返回null
+     */
+    public AttributeIndex getAttributeIndex(String attribute) {
+        return attributeIndexes.get(attribute);
+    }
+
+    /**
+     * @return 是否建立了空间索引或属性索引
+     */
+    public boolean hasIndexes() {
+        return spatialIndex != null || !attributeIndexes.isEmpty();
+    }
+
+    /**
+     * 读取一遍dbf为指定字段构建属性索引
+     * @param attributes 字段名称
+     * @throws IOException
+     */
+    void buildAttributeIndexes(Collection<String> attributes) throws IOException {
+        this.attributeIndexes = Collections.unmodifiableMap(
+                AttributeIndexLoader.load(shpFiles, schema, attributes, memoryMapped, charset));
+    }
+
+    /**
+     * @return 列式图层，图层未常驻内存时返回null
+     */
+    public ColumnarLayer getColumnarLayer() {
+        return columnarLayer;
+    }
+
+    /**
+     * 读取一遍shp与dbf，加载为列式图层
+     * @throws IOException
+     */
+    void buildColumnarLayer() throws IOException {
+        this.columnarLayer = ColumnarLayerLoader.load(this);
+    }
+
+    /**
+     * 顺序读取一遍shp、shx、dbf以及qix，使文件页面进入操作系统页缓存，内存映射读取时不再触发缺页读盘
+     * @return 读取的字节数
+     * @throws IOException
+     */
+    long touchFiles() throws IOException {
+        String path = file.getPath();
+        int dot = path.lastIndexOf('.');
+        String basePath = dot > path.lastIndexOf(File.separatorChar) ? path.substring(0, dot) : path;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TOUCH_BUFFER_SIZE);
+        long bytes = 0;
+        for (String extension : TOUCHED_EXTENSIONS) {
+            File part = new File(basePath + extension);
+            if (!part.exists()) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+                int read;
+                while ((read = channel.read(buffer)) >= 0) {
+                    bytes += read;
+                    buffer.clear();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    public int getRefCount() {
+        return refCount.get();
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    void retain() {
+        refCount.incrementAndGet();
+        lastAccess = System.currentTimeMillis();
+    }
+
+    void release() {
+        lastAccess = System.currentTimeMillis();
+        if (refCount.decrementAndGet() == 0 && retired) {
+            dispose();
+        }
+    }
+
+    /**
+     * @return 是否已被新版本替换
+     */
+    public boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * 标记为退役，没有读取者时立即关闭，否则由最后一个读取者释放时关闭
+     * @param onDisposed 关闭后执行，可以为null
+     */
+    void retire(Runnable onDisposed) {
+        this.onDisposed = onDisposed;
+        this.retired = true;
+        if (refCount.get() == 0) {
+            dispose();
+        }
+    }
+
+    /**
+     * 登记图层关闭时执行的清理，用于释放按图层缓存的查询计划等数据；图层已关闭时立即执行
+     * @param owner 登记的组件，同一组件重复登记时忽略
+     * @param listener 清理动作
+     */
+    public void onDispose(Object owner, Runnable listener) {
+        if (disposeListeners.putIfAbsent(owner, listener) == null && disposed.get()
+                && disposeListeners.remove(owner, listener)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * @return 是否已关闭
+     */
+    public boolean isDisposed() {
+        return disposed.get();
+    }
+
+    /**
+     * 关闭DataStore与文件，只执行一次
+     */
+    void dispose() {
+        if (!disposed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            dataStore.dispose();
+            shpFiles.dispose();
+        } finally {
+            for (Object owner : disposeListeners.keySet()) {
+                Runnable listener = disposeListeners.remove(owner);
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+            Runnable callback = onDisposed;
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package org.opengis.yang.geotools.layer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import org.geotools.api.data.DataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.config.GisProperties.LayerProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * shape图层注册表
+ * 每个shp文件只打开一次DataStore（内存映射读取shx/dbf），缓存schema与字段类型，
+ * 按引用计数跟踪正在使用的读取者，超过上限或空闲超时后按LRU回收未被使用的DataStore
+ * 每个图层用信号量限制同时使用的句柄数，虚拟线程模式下并发数不再受线程池大小约束，由信号量兜底
+ * 打开、关闭DataStore的次数与当前打开的图层数记录为指标
+ * 图层按版本写时复制更新（见{@link LayerUpdate}），新版本完整打开后在图层锁内替换，
+ * 已取得的句柄继续使用旧版本，最后一个句柄关闭后旧版本才被关闭、删除，更新数据不需要停服；
+ * 获取图层时按间隔检查文件的大小与修改时间，被其他进程原地改写的图层同样退役旧图层、重新打开
+ */
+@Component
+public class ShapeLayerRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShapeLayerRegistry.class);
+
+    private final ShapefileDataStoreFactory dataStoreFactory = new ShapefileDataStoreFactory();
+
+    private final Map<String, LayerProperties> definitions = new ConcurrentHashMap<>();
+
+    //各图层当前版本的shp文件，未发布过新版本时为配置中的文件
+    private final Map<String, File> currentFiles = new ConcurrentHashMap<>();
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    private final int maxOpenLayers;
+
+    private final long idleTimeoutMillis;
+
+    private final long fileCheckMillis;
+
+    private final int maxConcurrentQueries;
+
+    private final long permitTimeoutMillis;
+
+    private final MeterRegistry meterRegistry;
+
+    public ShapeLayerRegistry(GisProperties properties) {
+        this(properties, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public ShapeLayerRegistry(GisProperties properties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("gis.layers.open", slots, ShapeLayerRegistry::openCount)
+                .description("当前打开的图层数")
+                .register(meterRegistry);
+        this.maxOpenLayers = properties.getMaxOpenLayers();
+        this.idleTimeoutMillis = properties.getIdleTimeout().toMillis();
+        this.fileCheckMillis = properties.getFileCheckInterval().toMillis();
+        this.maxConcurrentQueries = properties.getMaxConcurrentQueries();
+        this.permitTimeoutMillis = properties.getQueryPermitTimeout().toMillis();
+        properties.getLayers().forEach(this::register);
+    }
+
+    /**
+     * 注册图层，同名图层已打开时不会影响正在使用的读取者，回收后按新的定义重新打开
+     * @param name 图层名称
+     * @param layerProperties 图层配置
+     */
+    public void register(String name, LayerProperties layerProperties) {
+        Integer layerLimit = layerProperties.getMaxConcurrentQueries();
+        permits.put(name, new Semaphore(layerLimit != null ? layerLimit : maxConcurrentQueries, true));
+        currentFiles.put(name, LayerUpdate.resolve(new File(layerProperties.getPath())));
+        definitions.put(name, layerProperties);
+    }
+
+    private static int openCount(Map<String, Slot> slots) {
+        int count = 0;
+        for (Slot slot : slots.values()) {
+            if (slot.layer != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void countDataStore(String name, String event) {
+        Counter.builder("gis.layer.datastore")
+                .description("打开、关闭DataStore的次数")
+                .tag("layer", name)
+                .tag("event", event)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public Set<String> getLayerNames() {
+        return Collections.unmodifiableSet(definitions.keySet());
+    }
+
+    public boolean contains(String name) {
+        return definitions.containsKey(name);
+    }
+
+    /**
+     * 获取图层当前的版本，shape文件被改写后版本变化
+     * @param name 图层名称
+     * @return 版本号
+     */
+    public String version(String name) {
+        return LayerVersion.of(currentFile(name));
+    }
+
+    /**
+     * @param name 图层名称
+     * @return 图层当前版本的shp文件
+     */
+    public File currentFile(String name) {
+        File file = currentFiles.get(name);
+        if (file == null) {
+            throw new IllegalArgumentException("未注册的图层：" + name);
+        }
+        return file;
+    }
+
+    /**
+     * @param name 图层名称
+     * @return 配置中的shp文件，新版本写在其所在目录下
+     */
+    public File configuredFile(String name) {
+        LayerProperties layerProperties = definitions.get(name);
+        if (layerProperties == null) {
+            throw new IllegalArgumentException("未注册的图层：" + name);
+        }
+        return new File(layerProperties.getPath());
+    }
+
+    /**
+     * 开始更新图层，写入返回对象给出的新文件后提交，提交前读取者仍使用当前版本
+     * @param name 图层名称
+     * @return 图层更新，使用完毕后必须关闭，未提交时删除写入的文件
+     * @throws IOException 创建版本目录失败
+     */
+    public LayerUpdate beginUpdate(String name) throws IOException {
+        return new LayerUpdate(this, name, currentFile(name), LayerUpdate.stagingFile(configuredFile(name)));
+    }
+
+    /**
+     * 发布图层的新版本
+     * 先在锁外完整打开新版本（包括构建索引、列式加载），再在图层锁内替换，读取者只会看到完整的旧版本或新版本；
+     * 旧版本在最后一个句柄关闭后关闭，由{@link LayerUpdate}生成的旧版本文件随后删除
+     * @param name 图层名称
+     * @param shpFile 新版本的shp文件
+     * @throws IOException 打开新版本失败，当前版本保持不变
+     */
+    public void publish(String name, File shpFile) throws IOException {
+        publish(name, shpFile, null);
+    }
+
+    /**
+     * @param expected 期望的当前版本，当前版本已变化时放弃发布，为null时不检查
+     */
+    void publish(String name, File shpFile, File expected) throws IOException {
+        LayerProperties layerProperties = definitions.get(name);
+        if (layerProperties == null) {
+            throw new IllegalArgumentException("未注册的图层：" + name);
+        }
+        File file = shpFile.getAbsoluteFile();
+        if (file.equals(currentFile(name).getAbsoluteFile())) {
+            throw new IllegalArgumentException("已是图层的当前版本：" + file);
+        }
+        long start = System.currentTimeMillis();
+        ShapeLayer layer = open(name, layerProperties, file);
+        Slot slot = slots.computeIfAbsent(name, key -> new Slot());
+        File configured = new File(layerProperties.getPath());
+        File previousFile;
+        ShapeLayer previous;
+        slot.lock.lock();
+        try {
+            previousFile = currentFiles.get(name);
+            if (expected != null && !expected.equals(previousFile)) {
+                throw new IllegalStateException("图层" + name + "在更新期间已发布了其他版本：" + previousFile);
+            }
+            LayerUpdate.writePointer(configured, file);
+            currentFiles.put(name, file);
+            previous = slot.layer;
+            slot.layer = layer;
+        } catch (IOException | RuntimeException e) {
+            layer.dispose();
+            throw e;
+        } finally {
+            slot.lock.unlock();
+        }
+        countDataStore(name, "publish");
+        LOGGER.info("发布图层{}的新版本：{}，耗时：{}ms", name, file, System.currentTimeMillis() - start);
+        Runnable cleanup = LayerUpdate.isVersion(configured, previousFile) ? () -> LayerUpdate.delete(previousFile) : null;
+        if (previous != null) {
+            previous.retire(cleanup);
+            countDataStore(name, "close");
+        } else if (cleanup != null) {
+            cleanup.run();
+        }
+        evictOverflow();
+    }
+
+    /**
+     * 获取图层，使用完毕后必须关闭返回的句柄
+     * 同时使用该图层的句柄数达到上限时等待，超时抛出{@link LayerBusyException}；
+     * 许可在句柄关闭或调用{@link LayerHandle#releasePermit()}时归还
+     * @param name 图层名称
+     * @return 图层句柄
+     * @throws IOException 打开shape文件失败
+     */
+    public LayerHandle acquire(String name) throws IOException {
+        LayerProperties layerProperties = definitions.get(name);
+        Semaphore permit = permits.get(name);
+        if (layerProperties == null || permit == null) {
+            throw new IllegalArgumentException("未注册的图层：" + name);
+        }
+        try {
+            if (!permit.tryAcquire(permitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new LayerBusyException(name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待图层查询许可被中断：" + name);
+        }
+        try {
+            return new LayerHandle(retain(name, layerProperties), permit);
+        } catch (IOException | RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 预热图层：打开DataStore并按配置构建索引、列式加载，未常驻内存时再顺序读取一遍文件使页面进入页缓存
+     * 预热的图层数超过打开上限时，先预热的图层可能被回收
+     * @param name 图层名称
+     * @return 读取文件的字节数
+     * @throws IOException 打开shape文件失败
+     */
+    public long prewarm(String name) throws IOException {
+        try (LayerHandle handle = acquire(name)) {
+            ShapeLayer layer = handle.layer();
+            return layer.getColumnarLayer() != null ? 0 : layer.touchFiles();
+        }
+    }
+
+    /**
+     * 打开或复用图层并增加引用计数
+     */
+    private ShapeLayer retain(String name, LayerProperties layerProperties) throws IOException {
+        Slot slot = slots.computeIfAbsent(name, key -> new Slot());
+        ShapeLayer layer;
+        ShapeLayer stale = null;
+        boolean opened = false;
+        //每个图层单独加锁，打开文件期间不阻塞其他图层
+        slot.lock.lock();
+        try {
+            if (slot.layer != null && slot.layer.isStale(fileCheckMillis)) {
+                stale = slot.layer;
+                slot.layer = null;
+            }
+            if (slot.layer == null) {
+                try {
+                    slot.layer = open(name, layerProperties, currentFiles.get(name));
+                    opened = stale == null;
+                } catch (IOException | RuntimeException e) {
+                    if (stale == null) {
+                        throw e;
+                    }
+                    //文件可能正在被改写，继续使用旧图层，下个检查间隔后再重新打开
+                    LOGGER.warn("重新打开被改写的图层{}失败，继续使用旧图层：{}", name, e.getMessage());
+                    slot.layer = stale;
+                    stale = null;
+                }
+            }
+            layer = slot.layer;
+            layer.retain();
+        } finally {
+            slot.lock.unlock();
+        }
+        if (stale != null) {
+            LOGGER.info("图层{}的文件已被改写，重新打开：{}", name, layer.getFile());
+            stale.retire(null);
+            countDataStore(name, "close");
+        }
+        if (opened) {
+            evictOverflow();
+        }
+        return layer;
+    }
+
+    /**
+     * 回收空闲超时的图层
+     */
+    @Scheduled(fixedDelayString = "${gis.idle-check-interval:60000}")
+    public void evictIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeoutMillis;
+        slots.forEach((name, slot) -> {
+            ShapeLayer layer = slot.layer;
+            if (layer != null && layer.getLastAccess() < deadline) {
+                evict(name, slot);
+            }
+        });
+    }
+
+    /**
+     * 打开的图层数超过上限时，从最久未使用的空闲图层开始回收
+     */
+    private void evictOverflow() {
+        List<Map.Entry<String, Slot>> opened = new ArrayList<>();
+        slots.entrySet().forEach(entry -> {
+            if (entry.getValue().layer != null) {
+                opened.add(entry);
+            }
+        });
+        int overflow = opened.size() - maxOpenLayers;
+        if (overflow <= 0) {
+            return;
+        }
+        opened.sort(Comparator.comparingLong(entry -> {
+            ShapeLayer layer = entry.getValue().layer;
+            return layer == null ? Long.MIN_VALUE : layer.getLastAccess();
+        }));
+        for (Map.Entry<String, Slot> entry : opened) {
+            if (overflow <= 0) {
+                break;
+            }
+            if (evict(entry.getKey(), entry.getValue())) {
+                overflow--;
+            }
+        }
+    }
+
+    private boolean evict(String name, Slot slot) {
+        if (!slot.lock.tryLock()) {
+            return false;
+        }
+        try {
+            ShapeLayer layer = slot.layer;
+            //常驻内存的图层不回收
+            if (layer == null || layer.getRefCount() > 0 || layer.getColumnarLayer() != null) {
+                return false;
+            }
+            slot.layer = null;
+            layer.dispose();
+            countDataStore(name, "close");
+            LOGGER.info("回收图层：{}", name);
+            return true;
+        } finally {
+            slot.lock.unlock();
+        }
+    }
+
+    private ShapeLayer open(String name, LayerProperties layerProperties, File file) throws IOException {
+        if (!file.exists()) {
+            throw new FileNotFoundException("图层" + name + "对应的shape文件不存在：" + file);
+        }
+        boolean memoryMapped = layerProperties.isMemoryMapped();
+        Map<String, Object> param = new HashMap<>();
+        // 具体可参见ShapefileDataStoreFactory中关于shape数据源的参数
+        param.put(ShapefileDataStoreFactory.URLP.getName(), file.toURI().toURL());
+        param.put(ShapefileDataStoreFactory.DBFCHARSET.getName(), layerProperties.getCharset());
+        param.put(ShapefileDataStoreFactory.MEMORY_MAPPED.getName(), memoryMapped);
+        param.put(ShapefileDataStoreFactory.CACHE_MEMORY_MAPS.getName(), memoryMapped);
+        DataStore dataStore = dataStoreFactory.createDataStore(param);
+        ShapeLayer layer = null;
+        try {
+            layer = new ShapeLayer(name, file, Charset.forName(layerProperties.getCharset()), memoryMapped, dataStore);
+            if (layerProperties.isSpatialIndex()) {
+                long start = System.currentTimeMillis();
+                layer.buildSpatialIndex();
+                LOGGER.info("图层{}空间索引构建完成，要素数：{}，耗时：{}ms", name,
+                        layer.getSpatialIndex().size(), System.currentTimeMillis() - start);
+            }
+            if (!layerProperties.getIndexedAttributes().isEmpty()) {
+                long start = System.currentTimeMillis();
+                layer.buildAttributeIndexes(layerProperties.getIndexedAttributes());
+                LOGGER.info("图层{}属性索引{}构建完成，耗时：{}ms", name,
+                        layerProperties.getIndexedAttributes(), System.currentTimeMillis() - start);
+            }
+            if (layerProperties.isPinned()) {
+                long start = System.currentTimeMillis();
+                layer.buildColumnarLayer();
+                LOGGER.info("图层{}列式加载完成，要素数：{}，估算内存：{}KB，耗时：{}ms", name,
+                        layer.getColumnarLayer().getRowCount(), layer.getColumnarLayer().estimatedBytes() / 1024,
+                        System.currentTimeMillis() - start);
+            }
+            countDataStore(name, "open");
+            LOGGER.info("打开图层：{} -> {}", name, file);
+            return layer;
+        } catch (IOException | RuntimeException e) {
+            if (layer != null) {
+                layer.dispose();
+            } else {
+                dataStore.dispose();
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void dispose() {
+        slots.forEach((name, slot) -> {
+            slot.lock.lock();
+            try {
+                if (slot.layer != null) {
+                    slot.layer.dispose();
+                    slot.layer = null;
+                    countDataStore(name, "close");
+                }
+            } finally {
+                slot.lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * 图层占位，打开和回收都在其锁内完成，不同图层之间互不阻塞
+     */
+    private static class Slot {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile ShapeLayer layer;
+    }
+}
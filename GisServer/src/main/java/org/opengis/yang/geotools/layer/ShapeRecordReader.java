@@ -0,0 +1,234 @@
+package org.opengis.yang.geotools.layer;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.IndexedDbaseFileReader;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.shp.IndexFile;
+import org.geotools.data.shapefile.shp.ShapeType;
+import org.geotools.data.shapefile.shp.ShapefileReader;
+import org.geotools.feature.simple.SimpleFeatureImpl;
+import org.geotools.filter.identity.FeatureIdImpl;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.yang.geotools.GeoToolsFactories;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 按记录号直接读取shape要素
+ * 通过shx中的偏移定位shp记录，通过dbf记录长度定位属性行，
+ * 既可以顺序读取，也可以跳转到任意记录，只解码需要的记录
+ * 非线程安全，每个读取线程单独创建
+ */
+public class ShapeRecordReader implements Closeable {
+
+    private static final GeometryFactory GEOMETRY_FACTORY = GeoToolsFactories.geometryFactory();
+
+    private final SimpleFeatureType schema;
+
+    private final String fidPrefix;
+
+    private final IndexFile shxFile;
+
+    private final ShapefileReader shpReader;
+
+    private final IndexedDbaseFileReader dbfReader;
+
+    //schema中每个属性对应的dbf列，几何字段为-1
+    private final int[] dbfColumns;
+
+    private final int geometryIndex;
+
+    private final int recordCount;
+
+    //下一次顺序读取的记录号，从1开始
+    private int nextRecord = 1;
+
+    public ShapeRecordReader(ShapeLayer layer) throws IOException {
+        this.schema = layer.getSchema();
+        this.fidPrefix = schema.getTypeName() + ".";
+        IndexFile shx = null;
+        ShapefileReader shp = null;
+        IndexedDbaseFileReader dbf = null;
+        try {
+            shx = new IndexFile(layer.getShpFiles(), layer.isMemoryMapped());
+            shp = new ShapefileReader(layer.getShpFiles(), false, layer.isMemoryMapped(), GEOMETRY_FACTORY);
+            dbf = new IndexedDbaseFileReader(layer.getShpFiles(), layer.isMemoryMapped(), layer.getCharset());
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(shx, shp, dbf);
+            throw e;
+        }
+        this.shxFile = shx;
+        this.shpReader = shp;
+        this.dbfReader = dbf;
+        this.recordCount = shx.getRecordCount();
+        GeometryDescriptor geometryDescriptor = schema.getGeometryDescriptor();
+        this.geometryIndex = geometryDescriptor == null ? -1 : schema.indexOf(geometryDescriptor.getLocalName());
+        this.dbfColumns = mapColumns(schema, dbf.getHeader());
+    }
+
+    /**
+     * 按字段名称建立schema属性与dbf列的对应关系，名称无法匹配时按顺序对应
+     */
+    private static int[] mapColumns(SimpleFeatureType schema, DbaseFileHeader header) {
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        int[] columns = new int[descriptors.size()];
+        int sequence = 0;
+        for (int i = 0; i < columns.length; i++) {
+            AttributeDescriptor descriptor = descriptors.get(i);
+            if (descriptor instanceof GeometryDescriptor) {
+                columns[i] = -1;
+                continue;
+            }
+            int column = -1;
+            for (int j = 0; j < header.getNumFields(); j++) {
+                if (header.getFieldName(j).equals(descriptor.getLocalName())) {
+                    column = j;
+                    break;
+                }
+            }
+            columns[i] = column >= 0 ? column : sequence;
+            sequence = columns[i] + 1;
+        }
+        return columns;
+    }
+
+    public SimpleFeatureType getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return shx中记录的要素总数
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return 下一次顺序读取的记录号
+     */
+    public int getNextRecord() {
+        return nextRecord;
+    }
+
+    /**
+     * 定位到指定记录，下一次{@link #next()}返回该记录
+     * @param recordNumber 记录号，从1开始
+     * @throws IOException
+     */
+    public void seek(int recordNumber) throws IOException {
+        if (recordNumber < 1 || recordNumber > recordCount + 1) {
+            throw new IllegalArgumentException("记录号超出范围：" + recordNumber);
+        }
+        if (recordNumber == nextRecord) {
+            return;
+        }
+        if (recordNumber <= recordCount) {
+            shpReader.goTo(shxFile.getOffsetInBytes(recordNumber - 1));
+            dbfReader.goTo(recordNumber);
+        }
+        nextRecord = recordNumber;
+    }
+
+    public boolean hasNext() {
+        return nextRecord <= recordCount;
+    }
+
+    /**
+     * 顺序读取下一条记录
+     * @return 要素，fid与GeoTools shapefile数据源保持一致
+     * @throws IOException
+     */
+    public SimpleFeature next() throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("已读取到最后一条记录");
+        }
+        Object shape = shpReader.nextRecord().shape();
+        Object[] row = dbfReader.readEntry();
+        Object[] values = new Object[dbfColumns.length];
+        for (int i = 0; i < values.length; i++) {
+            int column = dbfColumns[i];
+            if (i == geometryIndex) {
+                values[i] = shape;
+            } else if (column >= 0 && column < row.length) {
+                values[i] = row[column];
+            }
+        }
+        int recordNumber = nextRecord++;
+        return new SimpleFeatureImpl(values, schema, new FeatureIdImpl(fidPrefix + recordNumber), false);
+    }
+
+    /**
+     * 顺序读取下一条记录的范围与指定字段，不解析几何、只解码需要的dbf列，不构造要素
+     * @param attributes 需要读取的属性在schema中的下标
+     * @param values 读取到的字段值，与attributes一一对应
+     * @param bounds 记录范围minx,miny,maxx,maxy，空几何填NaN，为null时不返回范围
+     * @throws IOException
+     */
+    public void nextRow(int[] attributes, Object[] values, double[] bounds) throws IOException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("已读取到最后一条记录");
+        }
+        ShapefileReader.Record record = shpReader.nextRecord();
+        if (bounds != null) {
+            if (record.type == ShapeType.NULL) {
+                Arrays.fill(bounds, Double.NaN);
+            } else {
+                bounds[0] = record.minX;
+                bounds[1] = record.minY;
+                bounds[2] = record.maxX;
+                bounds[3] = record.maxY;
+            }
+        }
+        DbaseFileReader.Row row = dbfReader.readRow();
+        for (int i = 0; i < attributes.length; i++) {
+            int column = dbfColumns[attributes[i]];
+            values[i] = column >= 0 ? row.read(column) : null;
+        }
+        nextRecord++;
+    }
+
+    /**
+     * 随机读取指定记录
+     * @param recordNumber 记录号，从1开始
+     * @return 要素
+     * @throws IOException
+     */
+    public SimpleFeature read(int recordNumber) throws IOException {
+        seek(recordNumber);
+        return next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeQuietly(shxFile, shpReader, dbfReader);
+    }
+
+    private static void closeQuietly(IndexFile shx, ShapefileReader shp, IndexedDbaseFileReader dbf) {
+        try {
+            if (shp != null) {
+                shp.close();
+            }
+        } catch (IOException ignored) {
+        }
+        try {
+            if (dbf != null) {
+                dbf.close();
+            }
+        } catch (IOException ignored) {
+        }
+        try {
+            if (shx != null) {
+                shx.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.opengis.yang.geotools.query;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 聚合统计结果
+ */
+public class AggregateResult {
+
+    private final int count;
+
+    private final Map<String, FieldStats> fields;
+
+    private final Map<Object, Integer> groups;
+
+    private final double[] extent;
+
+    private final String source;
+
+    AggregateResult(int count, Map<String, FieldStats> fields, Map<Object, Integer> groups, double[] extent, String source) {
+        this.count = count;
+        this.fields = Collections.unmodifiableMap(fields);
+        this.groups = groups == null ? null : Collections.unmodifiableMap(groups);
+        this.extent = extent;
+        this.source = source;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return 各数值字段的统计
+     */
+    public Map<String, FieldStats> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return 分组字段值到要素数的映射，按要素数降序，不含空值，未指定分组字段时为null
+     */
+    public Map<Object, Integer> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return 范围minx,miny,maxx,maxy，未要求或没有要素时为null
+     */
+    public double[] getExtent() {
+        return extent;
+    }
+
+    /**
+     * @return 结果来源：HEADER（文件头）、INDEX（属性索引）、COLUMNAR（列式图层）、
+     * RECORD_SCAN（只读记录头与所需字段）、FEATURE_SCAN（逐条判断要素）
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 单个数值字段的统计，空值不参与
+     */
+    public static class FieldStats {
+
+        private final long count;
+
+        private final Double min;
+
+        private final Double max;
+
+        private final double sum;
+
+        FieldStats(long count, double min, double max, double sum) {
+            this.count = count;
+            this.min = count == 0 ? null : min;
+            this.max = count == 0 ? null : max;
+            this.sum = sum;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public Double getAvg() {
+            return count == 0 ? null : sum / count;
+        }
+    }
+}
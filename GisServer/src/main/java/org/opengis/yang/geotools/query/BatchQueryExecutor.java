@@ -0,0 +1,163 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.opengis.yang.diagnostics.QueryTrace;
+import org.opengis.yang.geotools.columnar.ColumnarLayer;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeRecordReader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 批量查询，同一图层上的多个filter共用一次扫描
+ * 每个filter先按索引生成各自的候选记录，只扫描候选记录的并集（任一filter需要全表扫描时扫描全部记录），
+ * 每条记录只读取、解码一次，再依次判断落在各自候选集中的filter；
+ * 索引能精确回答且不需要返回要素的filter直接用候选记录数，不参与扫描
+ */
+@Component
+public class BatchQueryExecutor {
+
+    private final LayerQueryExecutor queryExecutor;
+
+    public BatchQueryExecutor(LayerQueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * 执行批量查询
+     * @param layer 图层
+     * @param filters 过滤条件
+     * @param maxFeatures 每个filter最多返回的要素数，为0时只计数
+     * @return 各filter的要素数与要素
+     * @throws IOException
+     */
+    public BatchResult execute(ShapeLayer layer, List<Filter> filters, int maxFeatures) throws IOException {
+        int size = filters.size();
+        QueryPlan[] plans = new QueryPlan[size];
+        int[] counts = new int[size];
+        List<List<SimpleFeature>> features = new ArrayList<>(size);
+        List<Integer> active = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            plans[i] = queryExecutor.plan(layer, filters.get(i));
+            features.add(new ArrayList<>());
+            if (maxFeatures == 0 && plans[i].getResidual() == Filter.INCLUDE) {
+                counts[i] = plans[i].isFullScan() ? layer.getRecordCount() : plans[i].getCandidateCount();
+            } else {
+                active.add(i);
+            }
+        }
+        if (active.isEmpty()) {
+            return new BatchResult(counts, features, 0);
+        }
+        int[] indexes = active.stream().mapToInt(Integer::intValue).toArray();
+        BitSet union = union(plans, indexes);
+        long start = System.nanoTime();
+        ColumnarLayer columnarLayer = layer.getColumnarLayer();
+        boolean columnar = columnarLayer != null;
+        for (int index : indexes) {
+            columnar &= plans[index].isColumnar();
+        }
+        int scanned = columnar
+                ? scanRows(columnarLayer, plans, indexes, union, maxFeatures, counts, features)
+                : scanRecords(layer, plans, indexes, union, maxFeatures, counts, features);
+        int matched = 0;
+        for (int count : counts) {
+            matched += count;
+        }
+        QueryTrace.current().scanned(scanned, matched, System.nanoTime() - start);
+        return new BatchResult(counts, features, scanned);
+    }
+
+    /**
+     * @return 候选记录的并集，需要全表扫描时为null
+     */
+    private static BitSet union(QueryPlan[] plans, int[] indexes) {
+        BitSet union = new BitSet();
+        for (int index : indexes) {
+            BitSet candidates = plans[index].getCandidates();
+            if (candidates == null) {
+                return null;
+            }
+            union.or(candidates);
+        }
+        return union;
+    }
+
+    private static int scanRecords(ShapeLayer layer, QueryPlan[] plans, int[] indexes, BitSet union, int maxFeatures,
+                                   int[] counts, List<List<SimpleFeature>> features) throws IOException {
+        int scanned = 0;
+        try (ShapeRecordReader reader = new ShapeRecordReader(layer)) {
+            int recordNumber = union == null ? 1 : union.nextSetBit(1);
+            while (recordNumber >= 0) {
+                SimpleFeature feature;
+                if (union == null) {
+                    if (!reader.hasNext()) {
+                        break;
+                    }
+                    feature = reader.next();
+                } else {
+                    if (recordNumber > reader.getRecordCount()) {
+                        break;
+                    }
+                    feature = reader.read(recordNumber);
+                }
+                scanned++;
+                for (int index : indexes) {
+                    QueryPlan plan = plans[index];
+                    BitSet candidates = plan.getCandidates();
+                    if (candidates != null && !candidates.get(recordNumber)) {
+                        continue;
+                    }
+                    if (plan.getCompiledResidual().test(feature)) {
+                        counts[index]++;
+                        List<SimpleFeature> result = features.get(index);
+                        if (result.size() < maxFeatures) {
+                            result.add(feature);
+                        }
+                    }
+                }
+                recordNumber = union == null ? recordNumber + 1 : union.nextSetBit(recordNumber + 1);
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * 在列式图层上逐行判断，只为需要返回的行构造要素，同一行在多个filter中返回时共用一个要素
+     */
+    private static int scanRows(ColumnarLayer columnarLayer, QueryPlan[] plans, int[] indexes, BitSet union, int maxFeatures,
+                                int[] counts, List<List<SimpleFeature>> features) {
+        int rowCount = columnarLayer.getRowCount();
+        int scanned = 0;
+        int recordNumber = union == null ? 1 : union.nextSetBit(1);
+        while (recordNumber >= 0 && recordNumber <= rowCount) {
+            int row = recordNumber - 1;
+            SimpleFeature feature = null;
+            scanned++;
+            for (int index : indexes) {
+                QueryPlan plan = plans[index];
+                BitSet candidates = plan.getCandidates();
+                if (candidates != null && !candidates.get(recordNumber)) {
+                    continue;
+                }
+                if (plan.getRowFilter().test(row)) {
+                    counts[index]++;
+                    List<SimpleFeature> result = features.get(index);
+                    if (result.size() < maxFeatures) {
+                        if (feature == null) {
+                            feature = columnarLayer.feature(row);
+                        }
+                        result.add(feature);
+                    }
+                }
+            }
+            recordNumber = union == null ? recordNumber + 1 : union.nextSetBit(recordNumber + 1);
+        }
+        return scanned;
+    }
+}
@@ -0,0 +1,47 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+
+import java.util.List;
+
+/**
+ * 批量查询结果，与传入的filter一一对应
+ */
+public class BatchResult {
+
+    private final int[] counts;
+
+    private final List<List<SimpleFeature>> features;
+
+    //实际读取或判断的记录数
+    private final int scanned;
+
+    BatchResult(int[] counts, List<List<SimpleFeature>> features, int scanned) {
+        this.counts = counts;
+        this.features = features;
+        this.scanned = scanned;
+    }
+
+    /**
+     * @return 每个filter满足条件的要素总数，不受返回要素数上限影响
+     */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * @param index filter的下标
+     * @return 按记录号排序的要素，最多maxFeatures个
+     */
+    public List<SimpleFeature> getFeatures(int index) {
+        return features.get(index);
+    }
+
+    public int size() {
+        return counts.length;
+    }
+
+    public int getScanned() {
+        return scanned;
+    }
+}
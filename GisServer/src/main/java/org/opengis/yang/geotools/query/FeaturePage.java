@@ -0,0 +1,34 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 游标分页的一页结果
+ */
+public class FeaturePage {
+
+    private final List<SimpleFeature> features;
+
+    //下一页游标，没有更多数据时为null
+    private final String nextCursor;
+
+    FeaturePage(List<SimpleFeature> features, String nextCursor) {
+        this.features = Collections.unmodifiableList(features);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<SimpleFeature> getFeatures() {
+        return features;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,286 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.yang.diagnostics.QueryTrace;
+import org.opengis.yang.geotools.columnar.ColumnarLayer;
+import org.opengis.yang.geotools.columnar.RowPredicate;
+import org.opengis.yang.geotools.index.AttributeIndex;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeRecordReader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 图层聚合统计：要素数、数值字段的最小值/最大值/合计、按字段分组计数以及范围
+ * 按代价从低到高选择执行方式：
+ * 不需要逐条判断条件且只要计数、分组与范围时，计数取shx文件头或索引候选数，分组取属性索引的倒排列表长度，范围取shp文件头；
+ * 常驻内存的图层直接在列上统计；
+ * 不需要逐条判断条件时只读取shp记录头中的范围与所需的dbf列，不解析几何也不构造要素；
+ * 其余情况逐条读取要素判断条件后统计
+ */
+@Component
+public class LayerAggregator {
+
+    private final LayerQueryExecutor queryExecutor;
+
+    public LayerAggregator(LayerQueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * 聚合统计
+     * @param layer 图层
+     * @param filter 过滤条件
+     * @param fields 统计最小值、最大值、合计的数值字段
+     * @param groupBy 分组计数的字段，为null时不分组
+     * @param extent 是否计算范围
+     * @return 统计结果
+     * @throws IOException
+     * @throws IllegalArgumentException 字段不存在或不是数值字段
+     */
+    public AggregateResult aggregate(ShapeLayer layer, Filter filter, List<String> fields, String groupBy, boolean extent) throws IOException {
+        SimpleFeatureType schema = layer.getSchema();
+        List<String> fieldNames = fields == null ? Collections.emptyList() : fields;
+        int[] fieldIndexes = new int[fieldNames.size()];
+        for (int i = 0; i < fieldIndexes.length; i++) {
+            fieldIndexes[i] = attributeIndex(schema, fieldNames.get(i));
+            if (!Number.class.isAssignableFrom(schema.getDescriptor(fieldIndexes[i]).getType().getBinding())) {
+                throw new IllegalArgumentException("字段不是数值类型：" + fieldNames.get(i));
+            }
+        }
+        int groupIndex = groupBy == null ? -1 : attributeIndex(schema, groupBy);
+        Accumulator accumulator = new Accumulator(fieldNames, groupIndex >= 0, extent);
+        QueryPlan plan = queryExecutor.plan(layer, filter);
+        long start = System.nanoTime();
+        AggregateResult result = aggregate(layer, plan, fieldIndexes, groupIndex, groupBy, extent, accumulator);
+        //按要素读取时已由查询执行器记录，只读文件头与索引时没有扫描
+        if ("COLUMNAR".equals(result.getSource()) || "RECORD_SCAN".equals(result.getSource())) {
+            QueryTrace.current().scanned(plan.isFullScan() ? layer.getRecordCount() : plan.getCandidateCount(),
+                    result.getCount(), System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private AggregateResult aggregate(ShapeLayer layer, QueryPlan plan, int[] fieldIndexes, int groupIndex, String groupBy,
+                                      boolean extent, Accumulator accumulator) throws IOException {
+        boolean exact = plan.getResidual() == Filter.INCLUDE;
+        if (exact && fieldIndexes.length == 0 && aggregateFromMetadata(layer, plan, groupBy, extent, accumulator)) {
+            return accumulator.result(groupBy != null || !plan.isFullScan() ? "INDEX" : "HEADER");
+        }
+        if (plan.isColumnar()) {
+            aggregateColumns(layer.getColumnarLayer(), plan, fieldIndexes, groupIndex, accumulator);
+            return accumulator.result("COLUMNAR");
+        }
+        if (exact) {
+            aggregateRecords(layer, plan, fieldIndexes, groupIndex, accumulator);
+            return accumulator.result("RECORD_SCAN");
+        }
+        aggregateFeatures(layer, plan, fieldIndexes, groupIndex, accumulator);
+        return accumulator.result("FEATURE_SCAN");
+    }
+
+    private static int attributeIndex(SimpleFeatureType schema, String name) {
+        int index = schema.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("字段不存在：" + name);
+        }
+        AttributeDescriptor descriptor = schema.getDescriptor(index);
+        if (descriptor instanceof GeometryDescriptor) {
+            throw new IllegalArgumentException("不能按几何字段统计：" + name);
+        }
+        return index;
+    }
+
+    /**
+     * 只用文件头与索引回答，无法回答时返回false
+     */
+    private static boolean aggregateFromMetadata(ShapeLayer layer, QueryPlan plan, String groupBy, boolean extent,
+                                                 Accumulator accumulator) throws IOException {
+        AttributeIndex index = groupBy == null ? null : layer.getAttributeIndex(groupBy);
+        if ((groupBy != null && index == null) || (extent && !plan.isFullScan())) {
+            return false;
+        }
+        accumulator.count = plan.isFullScan() ? layer.getRecordCount() : plan.getCandidateCount();
+        if (index != null) {
+            accumulator.groups.putAll(index.groupCounts(plan.getCandidates()));
+        }
+        if (extent && accumulator.count > 0) {
+            //shapefile数据源不带条件时直接返回shp文件头中的范围
+            Envelope bounds = layer.getFeatureSource().getBounds();
+            if (bounds != null && !bounds.isNull()) {
+                accumulator.extent.expandToInclude(bounds);
+            }
+        }
+        return true;
+    }
+
+    private static void aggregateColumns(ColumnarLayer columnarLayer, QueryPlan plan, int[] fieldIndexes, int groupIndex,
+                                         Accumulator accumulator) {
+        RowPredicate rowFilter = plan.getRowFilter();
+        BitSet candidates = plan.getCandidates();
+        int rowCount = columnarLayer.getRowCount();
+        int recordNumber = candidates == null ? 1 : candidates.nextSetBit(1);
+        while (recordNumber >= 1 && recordNumber <= rowCount) {
+            int row = recordNumber - 1;
+            if (rowFilter.test(row)) {
+                accumulator.count++;
+                for (int i = 0; i < fieldIndexes.length; i++) {
+                    accumulator.addNumber(i, columnarLayer.number(row, fieldIndexes[i]));
+                }
+                if (groupIndex >= 0) {
+                    accumulator.addGroup(columnarLayer.value(row, groupIndex));
+                }
+                if (accumulator.extent != null) {
+                    columnarLayer.expandEnvelope(row, accumulator.extent);
+                }
+            }
+            recordNumber = candidates == null ? recordNumber + 1 : candidates.nextSetBit(recordNumber + 1);
+        }
+    }
+
+    /**
+     * 只读取记录头与所需字段，要求候选记录都满足条件
+     */
+    private static void aggregateRecords(ShapeLayer layer, QueryPlan plan, int[] fieldIndexes, int groupIndex,
+                                         Accumulator accumulator) throws IOException {
+        int[] attributes = Arrays.copyOf(fieldIndexes, fieldIndexes.length + (groupIndex >= 0 ? 1 : 0));
+        if (groupIndex >= 0) {
+            attributes[fieldIndexes.length] = groupIndex;
+        }
+        Object[] values = new Object[attributes.length];
+        double[] bounds = accumulator.extent == null ? null : new double[4];
+        BitSet candidates = plan.getCandidates();
+        try (ShapeRecordReader reader = new ShapeRecordReader(layer)) {
+            int recordNumber = candidates == null ? 1 : candidates.nextSetBit(1);
+            while (recordNumber >= 1 && recordNumber <= reader.getRecordCount()) {
+                reader.seek(recordNumber);
+                reader.nextRow(attributes, values, bounds);
+                accumulator.count++;
+                for (int i = 0; i < fieldIndexes.length; i++) {
+                    accumulator.addNumber(i, values[i]);
+                }
+                if (groupIndex >= 0) {
+                    accumulator.addGroup(values[fieldIndexes.length]);
+                }
+                if (bounds != null && !Double.isNaN(bounds[0])) {
+                    accumulator.extent.expandToInclude(bounds[0], bounds[1]);
+                    accumulator.extent.expandToInclude(bounds[2], bounds[3]);
+                }
+                recordNumber = candidates == null ? recordNumber + 1 : candidates.nextSetBit(recordNumber + 1);
+            }
+        }
+    }
+
+    private void aggregateFeatures(ShapeLayer layer, QueryPlan plan, int[] fieldIndexes, int groupIndex,
+                                   Accumulator accumulator) throws IOException {
+        try (SimpleFeatureIterator iterator = queryExecutor.scan(layer, plan)) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                accumulator.count++;
+                for (int i = 0; i < fieldIndexes.length; i++) {
+                    accumulator.addNumber(i, feature.getAttribute(fieldIndexes[i]));
+                }
+                if (groupIndex >= 0) {
+                    accumulator.addGroup(feature.getAttribute(groupIndex));
+                }
+                Object geometry = feature.getDefaultGeometry();
+                if (accumulator.extent != null && geometry instanceof Geometry && !((Geometry) geometry).isEmpty()) {
+                    accumulator.extent.expandToInclude(((Geometry) geometry).getEnvelopeInternal());
+                }
+            }
+        }
+    }
+
+    /**
+     * 统计过程中的累加状态
+     */
+    private static class Accumulator {
+
+        private final List<String> fieldNames;
+
+        private final long[] counts;
+
+        private final double[] mins;
+
+        private final double[] maxs;
+
+        private final double[] sums;
+
+        //分组计数，不分组时为null
+        private final Map<Object, Integer> groups;
+
+        //范围，不计算时为null
+        private final Envelope extent;
+
+        private int count;
+
+        Accumulator(List<String> fieldNames, boolean group, boolean extent) {
+            this.fieldNames = fieldNames;
+            this.counts = new long[fieldNames.size()];
+            this.mins = new double[fieldNames.size()];
+            this.maxs = new double[fieldNames.size()];
+            this.sums = new double[fieldNames.size()];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+            this.groups = group ? new HashMap<>() : null;
+            this.extent = extent ? new Envelope() : null;
+        }
+
+        void addNumber(int field, Object value) {
+            if (value instanceof Number) {
+                addNumber(field, ((Number) value).doubleValue());
+            }
+        }
+
+        void addNumber(int field, double value) {
+            if (Double.isNaN(value)) {
+                return;
+            }
+            counts[field]++;
+            mins[field] = Math.min(mins[field], value);
+            maxs[field] = Math.max(maxs[field], value);
+            sums[field] += value;
+        }
+
+        void addGroup(Object value) {
+            if (value != null) {
+                groups.merge(value, 1, Integer::sum);
+            }
+        }
+
+        AggregateResult result(String source) {
+            Map<String, AggregateResult.FieldStats> fields = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                fields.put(fieldNames.get(i), new AggregateResult.FieldStats(counts[i], mins[i], maxs[i], sums[i]));
+            }
+            Map<Object, Integer> sortedGroups = null;
+            if (groups != null) {
+                List<Map.Entry<Object, Integer>> entries = new ArrayList<>(groups.entrySet());
+                entries.sort(Map.Entry.<Object, Integer>comparingByValue().reversed());
+                sortedGroups = new LinkedHashMap<>();
+                for (Map.Entry<Object, Integer> entry : entries) {
+                    sortedGroups.put(entry.getKey(), entry.getValue());
+                }
+            }
+            double[] bounds = extent == null || extent.isNull()
+                    ? null : new double[]{extent.getMinX(), extent.getMinY(), extent.getMaxX(), extent.getMaxY()};
+            return new AggregateResult(count, fields, sortedGroups, bounds, source);
+        }
+    }
+}
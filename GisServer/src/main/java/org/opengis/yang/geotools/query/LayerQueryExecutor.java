@@ -0,0 +1,424 @@
+package org.opengis.yang.geotools.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.geotools.api.data.Query;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.yang.diagnostics.QueryTrace;
+import org.opengis.yang.geotools.columnar.ColumnarLayer;
+import org.opengis.yang.geotools.columnar.RowPredicate;
+import org.opengis.yang.geotools.filter.CompiledFilter;
+import org.opengis.yang.geotools.filter.FilterKey;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeRecordReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 图层查询执行器
+ * 先根据图层索引生成候选记录，只解码候选记录并用编译后的剩余条件精确判断，
+ * 无法使用索引时顺序扫描全部记录，需要排序的查询交给GeoTools的FeatureSource；
+ * 常驻内存的图层直接在列上判断，只为返回的记录构造要素
+ * 查询计划按打开的图层实例与filter的规范化文本缓存，候选记录集按占用的long数加权淘汰，
+ * 图层关闭（回收或发布新版本后退役）时清除其全部计划，不会让旧版本的列式数据一直可达
+ * 计划与扫描的耗时、记录数记录到当前线程的{@link QueryTrace}
+ */
+@Component
+public class LayerQueryExecutor {
+
+    //缓存的候选记录集最多占用的long数，约32MB
+    private static final long PLAN_CACHE_MAXIMUM_WEIGHT = 4L * 1024 * 1024;
+
+    private final QueryPlanner planner = new QueryPlanner();
+
+    //为null时只做顺序扫描
+    private final ParallelLayerScanner parallelScanner;
+
+    //key不持有图层，计划中的列式行判断引用图层数据，图层关闭时按图层id清除
+    private final Cache<PlanKey, QueryPlan> planCache = Caffeine.newBuilder()
+            .maximumWeight(PLAN_CACHE_MAXIMUM_WEIGHT)
+            .weigher((PlanKey key, QueryPlan plan) -> plan.isFullScan() ? 1 : plan.getCandidates().size() / Long.SIZE + 1)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .recordStats()
+            .build();
+
+    public LayerQueryExecutor() {
+        this(null);
+    }
+
+    @Autowired
+    public LayerQueryExecutor(ParallelLayerScanner parallelScanner) {
+        this.parallelScanner = parallelScanner;
+    }
+
+    /**
+     * 生成查询计划，相同图层与filter的计划直接取缓存，filter无法规范化时不缓存
+     * @param layer 图层
+     * @param filter 过滤条件
+     * @return 查询计划
+     */
+    public QueryPlan plan(ShapeLayer layer, Filter filter) {
+        Filter target = filter == null ? Filter.INCLUDE : filter;
+        long start = System.nanoTime();
+        String filterKey = FilterKey.of(target);
+        QueryPlan plan;
+        if (filterKey == null) {
+            plan = planner.plan(layer, target);
+        } else {
+            long layerId = layer.getId();
+            layer.onDispose(this, () -> invalidate(layerId));
+            plan = planCache.get(new PlanKey(layerId, filterKey), key -> planner.plan(layer, target));
+            //与关闭并发时清除可能在清理之后放入的计划
+            if (layer.isDisposed()) {
+                invalidate(layerId);
+            }
+        }
+        QueryTrace.current().planned(plan, accessPath(plan), System.nanoTime() - start);
+        return plan;
+    }
+
+    private void invalidate(long layerId) {
+        planCache.asMap().keySet().removeIf(key -> key.layerId() == layerId);
+    }
+
+    private static String accessPath(QueryPlan plan) {
+        if (plan.isColumnar()) {
+            return "columnar";
+        }
+        return plan.isFullScan() ? "full_scan" : "index";
+    }
+
+    public CacheStats planStats() {
+        return planCache.stats();
+    }
+
+    /**
+     * 执行查询，调用方负责关闭返回的迭代器
+     * 未排序的查询忽略query中的属性裁剪，返回完整要素
+     * @param layer 图层
+     * @param query 查询条件，支持startIndex与maxFeatures
+     * @return 要素迭代器
+     * @throws IOException
+     */
+    public SimpleFeatureIterator query(ShapeLayer layer, Query query) throws IOException {
+        boolean sorted = query.getSortBy() != null && query.getSortBy().length > 0;
+        if (sorted) {
+            Query nativeQuery = new Query(query);
+            nativeQuery.setTypeName(layer.getSchema().getTypeName());
+            return layer.getFeatureSource().getFeatures(nativeQuery).features();
+        }
+        QueryPlan plan = plan(layer, query.getFilter());
+        int startIndex = query.getStartIndex() == null ? 0 : query.getStartIndex();
+        return new ScanFeatureIterator(layer, plan, 1, startIndex, query.getMaxFeatures());
+    }
+
+    /**
+     * 按给定的查询计划读取，调用方负责关闭返回的迭代器
+     */
+    SimpleFeatureIterator scan(ShapeLayer layer, QueryPlan plan) throws IOException {
+        return new ScanFeatureIterator(layer, plan, 1, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 查询一页要素，需要全表扫描的大图层按区间并行扫描，结果仍按记录号排序，凑够一页后停止扫描后面的区间
+     * @param layer 图层
+     * @param filter 过滤条件
+     * @param startIndex 跳过的要素数
+     * @param maxFeatures 最多返回的要素数
+     * @return 要素列表
+     * @throws IOException
+     */
+    public List<SimpleFeature> list(ShapeLayer layer, Filter filter, int startIndex, int maxFeatures) throws IOException {
+        QueryPlan plan = plan(layer, filter);
+        if (plan.isFullScan() && !plan.isColumnar() && parallelScanner != null && parallelScanner.isWorthwhile(layer)) {
+            return parallelScanner.collect(layer, plan, startIndex, maxFeatures);
+        }
+        List<SimpleFeature> features = new ArrayList<>();
+        try (SimpleFeatureIterator iterator = new ScanFeatureIterator(layer, plan, 1, startIndex, maxFeatures)) {
+            while (iterator.hasNext()) {
+                features.add(iterator.next());
+            }
+        }
+        return features;
+    }
+
+    /**
+     * 游标分页查询，从游标记录的位置直接定位shp与dbf记录继续读取，不再逐条跳过前面的要素
+     * @param layer 图层
+     * @param filter 过滤条件
+     * @param cursor 上一页返回的游标，为空时查询第一页
+     * @param pageSize 每页要素数
+     * @return 当前页要素及下一页游标
+     * @throws IOException
+     */
+    public FeaturePage page(ShapeLayer layer, Filter filter, String cursor, int pageSize) throws IOException {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("分页大小必须大于0：" + pageSize);
+        }
+        Filter target = filter == null ? Filter.INCLUDE : filter;
+        int startRecord = cursor == null || cursor.isEmpty() ? 1 : PageCursor.decode(cursor, layer, target);
+        QueryPlan plan = plan(layer, target);
+        List<SimpleFeature> features = new ArrayList<>(pageSize);
+        try (ScanFeatureIterator iterator = new ScanFeatureIterator(layer, plan, startRecord, 0, Integer.MAX_VALUE)) {
+            while (features.size() < pageSize && iterator.hasNext()) {
+                features.add(iterator.next());
+            }
+            String nextCursor = iterator.hasNext() ? PageCursor.encode(layer, target, iterator.getLastRecord() + 1) : null;
+            return new FeaturePage(features, nextCursor);
+        }
+    }
+
+    /**
+     * 统计满足条件的要素数，需要全表扫描的大图层按区间并行扫描
+     * @param layer 图层
+     * @param filter 过滤条件
+     * @return 要素数
+     * @throws IOException
+     */
+    public int count(ShapeLayer layer, Filter filter) throws IOException {
+        QueryPlan plan = plan(layer, filter);
+        if (!plan.isFullScan() && plan.getResidual() == Filter.INCLUDE) {
+            return plan.getCandidateCount();
+        }
+        if (plan.isFullScan() && plan.getResidual() == Filter.INCLUDE) {
+            return layer.getRecordCount();
+        }
+        if (plan.isColumnar()) {
+            long start = System.nanoTime();
+            int count = countRows(layer.getColumnarLayer(), plan);
+            QueryTrace.current().scanned(plan.isFullScan() ? layer.getRecordCount() : plan.getCandidateCount(), count,
+                    System.nanoTime() - start);
+            return count;
+        }
+        if (plan.isFullScan() && parallelScanner != null && parallelScanner.isWorthwhile(layer)) {
+            return parallelScanner.count(layer, plan);
+        }
+        int count = 0;
+        try (SimpleFeatureIterator iterator = new ScanFeatureIterator(layer, plan, 1, 0, Integer.MAX_VALUE)) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 在列式图层上逐行判断计数，不构造要素
+     */
+    private static int countRows(ColumnarLayer columnarLayer, QueryPlan plan) {
+        RowPredicate rowFilter = plan.getRowFilter();
+        BitSet candidates = plan.getCandidates();
+        int rowCount = columnarLayer.getRowCount();
+        int count = 0;
+        if (candidates == null) {
+            for (int row = 0; row < rowCount; row++) {
+                if (rowFilter.test(row)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        for (int recordNumber = candidates.nextSetBit(1); recordNumber >= 0 && recordNumber <= rowCount;
+             recordNumber = candidates.nextSetBit(recordNumber + 1)) {
+            if (rowFilter.test(recordNumber - 1)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按记录号顺序读取候选记录（全表扫描时读取全部记录），用编译后的条件判断后返回
+     * 常驻内存的图层不打开文件，按行号在列上判断，跳过的记录不构造要素
+     */
+    private static class ScanFeatureIterator implements SimpleFeatureIterator {
+
+        //列式图层上执行时为null
+        private final ShapeRecordReader reader;
+
+        private final ColumnarLayer columnarLayer;
+
+        private final RowPredicate rowFilter;
+
+        //为null时顺序读取全部记录
+        private final BitSet candidates;
+
+        private final CompiledFilter filter;
+
+        private int skip;
+
+        private int remaining;
+
+        private int cursor;
+
+        private SimpleFeature next;
+
+        private int nextRecord;
+
+        //最近一次next()返回要素的记录号
+        private int lastRecord;
+
+        private final QueryTrace trace = QueryTrace.current();
+
+        //读取或判断过的记录数、返回的要素数与扫描耗时，关闭时记录
+        private long scanned;
+
+        private long returned;
+
+        private long scanNanos;
+
+        private boolean closed;
+
+        /**
+         * @param startRecord 开始读取的记录号，从1开始
+         * @param skip 跳过的满足条件的要素数
+         * @param maxFeatures 最多返回的要素数
+         */
+        ScanFeatureIterator(ShapeLayer layer, QueryPlan plan, int startRecord, int skip, int maxFeatures) throws IOException {
+            this.candidates = plan.getCandidates();
+            this.filter = plan.getCompiledResidual();
+            this.skip = skip;
+            this.remaining = maxFeatures;
+            this.cursor = startRecord;
+            this.rowFilter = plan.getRowFilter();
+            this.columnarLayer = plan.isColumnar() ? layer.getColumnarLayer() : null;
+            if (columnarLayer != null) {
+                this.reader = null;
+                return;
+            }
+            this.reader = new ShapeRecordReader(layer);
+            try {
+                if (candidates == null && startRecord > 1) {
+                    reader.seek(Math.min(startRecord, reader.getRecordCount() + 1));
+                }
+            } catch (IOException e) {
+                reader.close();
+                throw e;
+            }
+        }
+
+        int getLastRecord() {
+            return lastRecord;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+            long start = System.nanoTime();
+            try {
+                return columnarLayer != null ? hasNextRow() : hasNextRecord();
+            } finally {
+                scanNanos += System.nanoTime() - start;
+            }
+        }
+
+        private boolean hasNextRecord() {
+            try {
+                while (remaining > 0) {
+                    SimpleFeature feature;
+                    int recordNumber;
+                    if (candidates == null) {
+                        if (!reader.hasNext()) {
+                            return false;
+                        }
+                        recordNumber = reader.getNextRecord();
+                        feature = reader.next();
+                        scanned++;
+                    } else {
+                        recordNumber = candidates.nextSetBit(cursor);
+                        if (recordNumber < 0) {
+                            return false;
+                        }
+                        cursor = recordNumber + 1;
+                        feature = reader.read(recordNumber);
+                        scanned++;
+                    }
+                    if (!filter.test(feature)) {
+                        continue;
+                    }
+                    if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+                    remaining--;
+                    next = feature;
+                    nextRecord = recordNumber;
+                    return true;
+                }
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean hasNextRow() {
+            int rowCount = columnarLayer.getRowCount();
+            while (remaining > 0) {
+                int recordNumber = candidates == null ? cursor : candidates.nextSetBit(cursor);
+                if (recordNumber < 0 || recordNumber > rowCount) {
+                    return false;
+                }
+                cursor = recordNumber + 1;
+                scanned++;
+                if (!rowFilter.test(recordNumber - 1)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                remaining--;
+                next = columnarLayer.feature(recordNumber - 1);
+                nextRecord = recordNumber;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SimpleFeature feature = next;
+            next = null;
+            lastRecord = nextRecord;
+            returned++;
+            return feature;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            trace.scanned(scanned, returned, scanNanos);
+            if (reader == null) {
+                return;
+            }
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private record PlanKey(long layerId, String filter) {
+    }
+}
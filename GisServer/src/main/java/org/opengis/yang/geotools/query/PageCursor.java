@@ -0,0 +1,88 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.filter.Filter;
+import org.opengis.yang.geotools.filter.FilterKey;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 分页游标
+ * 记录下一页开始读取的记录号，同时带上图层名称、图层版本与filter规范化文本（见{@link FilterKey}）的摘要，
+ * 游标只能用于生成它的图层版本与过滤条件，图层发布新版本或被改写后旧游标失效，不会在不同的数据上续读；
+ * 编码为url安全的base64字符串，对调用方不透明
+ */
+public final class PageCursor {
+
+    private static final int VERSION = 2;
+
+    private static final int LENGTH = 16;
+
+    private PageCursor() {
+    }
+
+    /**
+     * 生成游标
+     * @param layer 图层
+     * @param filter 过滤条件
+     * @param nextRecord 下一页开始读取的记录号，从1开始
+     * @return 游标字符串
+     * @throws IllegalArgumentException 过滤条件无法规范化
+     */
+    static String encode(ShapeLayer layer, Filter filter, int nextRecord) {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.putInt(VERSION).putInt(nextRecord).putLong(digest(layer, filter));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * 解析游标
+     * @param cursor 游标字符串
+     * @param layer 图层
+     * @param filter 过滤条件
+     * @return 下一页开始读取的记录号
+     * @throws IllegalArgumentException 游标格式错误，或与图层版本、过滤条件不匹配
+     */
+    static int decode(String cursor, ShapeLayer layer, Filter filter) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标：" + cursor, e);
+        }
+        if (bytes.length != LENGTH) {
+            throw new IllegalArgumentException("无效的分页游标：" + cursor);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int version = buffer.getInt();
+        int nextRecord = buffer.getInt();
+        if (version != VERSION || nextRecord < 1) {
+            throw new IllegalArgumentException("无效的分页游标：" + cursor);
+        }
+        if (buffer.getLong() != digest(layer, filter)) {
+            throw new IllegalArgumentException("分页游标与当前图层版本或过滤条件不匹配：" + cursor);
+        }
+        return nextRecord;
+    }
+
+    /**
+     * 图层名称、版本与filter规范化文本的SHA-256摘要，取前8个字节
+     */
+    private static long digest(ShapeLayer layer, Filter filter) {
+        String filterKey = FilterKey.of(filter);
+        if (filterKey == null) {
+            throw new IllegalArgumentException("过滤条件不支持游标分页：" + filter);
+        }
+        String text = layer.getName() + '\n' + layer.getVersion() + '\n' + filterKey;
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(hash).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.opengis.yang.geotools.query;
+
+import jakarta.annotation.PreDestroy;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.diagnostics.QueryTrace;
+import org.opengis.yang.geotools.filter.CompiledFilter;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeRecordReader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图层并行扫描
+ * 按记录号把shape文件切分为固定大小的区间，工作任务按记录号从小到大领取区间，
+ * 每个工作任务只打开一个读取器，通过shx中的偏移直接定位到区间起点，在独立的fork-join线程池中并行判断，
+ * 合并时按区间顺序拼接，结果顺序与顺序扫描一致
+ * 有条数限制时，一旦前面连续完成的区间已凑够所需的要素数，后面的区间不再领取，正在扫描的也提前放弃
+ */
+@Component
+public class ParallelLayerScanner {
+
+    //每扫描这么多条记录检查一次所在区间是否已不再需要
+    private static final int CANCEL_CHECK_MASK = 0x3FF;
+
+    private final ForkJoinPool pool;
+
+    //每个区间的记录数，区间过小时调度的开销超过并行收益
+    private final int partitionSize;
+
+    public ParallelLayerScanner(GisProperties properties) {
+        int parallelism = properties.getScanParallelism() > 0
+                ? properties.getScanParallelism() : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+        this.partitionSize = properties.getScanPartitionSize();
+    }
+
+    /**
+     * 记录数足够多时才值得并行扫描
+     * @param layer 图层
+     * @return 是否使用并行扫描
+     */
+    public boolean isWorthwhile(ShapeLayer layer) {
+        return pool.getParallelism() > 1 && layer.getRecordCount() >= partitionSize * 2L;
+    }
+
+    /**
+     * 并行统计满足查询计划的要素数
+     * @param layer 图层
+     * @param plan 查询计划
+     * @return 要素数
+     * @throws IOException
+     */
+    public int count(ShapeLayer layer, QueryPlan plan) throws IOException {
+        long start = System.nanoTime();
+        Scan scan = new Scan(layer, plan, 0);
+        invoke(scan);
+        int count = 0;
+        for (int partitionCount : scan.counts) {
+            count += partitionCount;
+        }
+        QueryTrace.current().scanned(scan.scanned.get(), count, System.nanoTime() - start);
+        return count;
+    }
+
+    /**
+     * 并行查询，结果按记录号排序
+     * 每个区间最多保留startIndex + maxFeatures个要素，前面的区间凑够后停止扫描，合并后再跳过与截取
+     * @param layer 图层
+     * @param plan 查询计划
+     * @param startIndex 跳过的要素数
+     * @param maxFeatures 最多返回的要素数
+     * @return 要素列表
+     * @throws IOException
+     */
+    public List<SimpleFeature> collect(ShapeLayer layer, QueryPlan plan, int startIndex, int maxFeatures) throws IOException {
+        int limit = (int) Math.min(Integer.MAX_VALUE, (long) startIndex + maxFeatures);
+        if (maxFeatures <= 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        long start = System.nanoTime();
+        Scan scan = new Scan(layer, plan, limit);
+        invoke(scan);
+        List<SimpleFeature> features = new ArrayList<>();
+        for (int partition = 0; partition < scan.partitions && features.size() < limit; partition++) {
+            for (SimpleFeature feature : scan.features[partition]) {
+                if (features.size() >= limit) {
+                    break;
+                }
+                features.add(feature);
+            }
+        }
+        List<SimpleFeature> result = startIndex >= features.size()
+                ? Collections.emptyList() : features.subList(startIndex, features.size());
+        QueryTrace.current().scanned(scan.scanned.get(), result.size(), System.nanoTime() - start);
+        return result;
+    }
+
+    private void invoke(Scan scan) throws IOException {
+        int workers = Math.min(pool.getParallelism(), scan.partitions);
+        List<Worker> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(new Worker(scan));
+        }
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 一次并行扫描的共享状态：下一个待领取的区间、各区间的结果，以及已不再需要的区间界限
+     */
+    private class Scan {
+
+        private final ShapeLayer layer;
+
+        private final QueryPlan plan;
+
+        //要保留的要素数，为0时只计数
+        private final int limit;
+
+        private final int partitions;
+
+        private final List<SimpleFeature>[] features;
+
+        private final int[] counts;
+
+        private final boolean[] done;
+
+        private final AtomicInteger nextPartition = new AtomicInteger();
+
+        private final AtomicLong scanned = new AtomicLong();
+
+        //大于该下标的区间不再需要
+        private volatile int cutoff = Integer.MAX_VALUE;
+
+        //从0开始连续完成的区间数及其中的要素数
+        private int completed;
+
+        private long completedFeatures;
+
+        @SuppressWarnings("unchecked")
+        Scan(ShapeLayer layer, QueryPlan plan, int limit) {
+            this.layer = layer;
+            this.plan = plan;
+            this.limit = limit;
+            this.partitions = (int) ((layer.getRecordCount() + (long) partitionSize - 1) / partitionSize);
+            this.features = new List[partitions];
+            this.counts = new int[partitions];
+            this.done = new boolean[partitions];
+        }
+
+        /**
+         * @return 领取到的区间下标，没有需要扫描的区间时返回-1
+         */
+        int claim() {
+            int partition = nextPartition.getAndIncrement();
+            return partition < partitions && partition <= cutoff ? partition : -1;
+        }
+
+        /**
+         * 扫描区间内的记录，区间已凑够limit个要素或已不再需要时提前结束
+         */
+        void scan(ShapeRecordReader reader, int partition) throws IOException {
+            int from = partition * partitionSize + 1;
+            int to = (int) Math.min(layer.getRecordCount() + 1L, (long) from + partitionSize);
+            CompiledFilter filter = plan.getCompiledResidual();
+            BitSet candidates = plan.getCandidates();
+            List<SimpleFeature> partial = limit == 0 ? Collections.emptyList() : new ArrayList<>();
+            int count = 0;
+            int read = 0;
+            if (candidates == null) {
+                reader.seek(from);
+            }
+            int recordNumber = candidates == null ? from : candidates.nextSetBit(from);
+            while (recordNumber >= 0 && recordNumber < to) {
+                if ((++read & CANCEL_CHECK_MASK) == 0 && partition > cutoff) {
+                    scanned.addAndGet(read);
+                    return;
+                }
+                SimpleFeature feature = candidates == null ? reader.next() : reader.read(recordNumber);
+                if (filter.test(feature)) {
+                    count++;
+                    if (limit > 0) {
+                        partial.add(feature);
+                        if (partial.size() >= limit) {
+                            break;
+                        }
+                    }
+                }
+                recordNumber = candidates == null ? recordNumber + 1 : candidates.nextSetBit(recordNumber + 1);
+            }
+            scanned.addAndGet(read);
+            complete(partition, partial, count);
+        }
+
+        private synchronized void complete(int partition, List<SimpleFeature> partial, int count) {
+            features[partition] = partial;
+            counts[partition] = count;
+            done[partition] = true;
+            while (limit > 0 && completed < partitions && done[completed]) {
+                completedFeatures += features[completed].size();
+                completed++;
+                if (completedFeatures >= limit) {
+                    cutoff = completed - 1;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 工作任务，反复领取区间直到没有需要扫描的区间，全程复用同一个读取器
+     */
+    private static class Worker extends RecursiveAction {
+
+        private final Scan scan;
+
+        Worker(Scan scan) {
+            this.scan = scan;
+        }
+
+        @Override
+        protected void compute() {
+            int partition = scan.claim();
+            if (partition < 0) {
+                return;
+            }
+            try (ShapeRecordReader reader = new ShapeRecordReader(scan.layer)) {
+                do {
+                    scan.scan(reader, partition);
+                    partition = scan.claim();
+                } while (partition >= 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
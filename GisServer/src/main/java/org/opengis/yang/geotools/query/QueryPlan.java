@@ -0,0 +1,97 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.filter.Filter;
+import org.opengis.yang.geotools.columnar.RowPredicate;
+import org.opengis.yang.geotools.filter.CompiledFilter;
+
+import java.util.BitSet;
+
+/**
+ * 查询计划，记录索引裁剪后的候选记录，
+ * 候选记录是满足条件的超集，读取后仍需按剩余条件精确判断
+ * 计划会被缓存并在多个查询间共享，生成后不可修改
+ */
+public class QueryPlan {
+
+    private final Filter filter;
+
+    //候选记录号，为null时表示需要全表扫描
+    private final BitSet candidates;
+
+    //读取候选记录后仍需判断的条件，索引能精确回答的部分已去掉
+    private final Filter residual;
+
+    //编译后的剩余条件
+    private final CompiledFilter compiledResidual;
+
+    //在列式图层上编译的剩余条件，图层未常驻内存时为null
+    private final RowPredicate rowFilter;
+
+    private final int candidateCount;
+
+    private final String description;
+
+    QueryPlan(Filter filter, BitSet candidates, Filter residual, CompiledFilter compiledResidual, RowPredicate rowFilter,
+              String description) {
+        this.filter = filter;
+        this.candidates = candidates;
+        this.residual = residual;
+        this.compiledResidual = compiledResidual;
+        this.rowFilter = rowFilter;
+        this.candidateCount = candidates == null ? -1 : candidates.cardinality();
+        this.description = description;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return 候选记录号，调用方只能读取不能修改
+     */
+    public BitSet getCandidates() {
+        return candidates;
+    }
+
+    public Filter getResidual() {
+        return residual;
+    }
+
+    public CompiledFilter getCompiledResidual() {
+        return compiledResidual;
+    }
+
+    /**
+     * @return 列式图层上的剩余条件，图层未常驻内存时返回null
+     */
+    public RowPredicate getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * @return 是否直接在列式图层上执行
+     */
+    public boolean isColumnar() {
+        return rowFilter != null;
+    }
+
+    public boolean isFullScan() {
+        return candidates == null;
+    }
+
+    /**
+     * @return 候选记录数，全表扫描时返回-1
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return description + " filter=" + filter;
+    }
+}
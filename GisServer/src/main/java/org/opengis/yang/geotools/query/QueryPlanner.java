@@ -0,0 +1,324 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.GeometryDescriptor;
+import org.geotools.api.filter.And;
+import org.geotools.api.filter.BinaryComparisonOperator;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.Or;
+import org.geotools.api.filter.PropertyIsBetween;
+import org.geotools.api.filter.PropertyIsEqualTo;
+import org.geotools.api.filter.PropertyIsGreaterThan;
+import org.geotools.api.filter.PropertyIsGreaterThanOrEqualTo;
+import org.geotools.api.filter.PropertyIsLessThan;
+import org.geotools.api.filter.PropertyIsLessThanOrEqualTo;
+import org.geotools.api.filter.expression.Expression;
+import org.geotools.api.filter.expression.Literal;
+import org.geotools.api.filter.expression.PropertyName;
+import org.geotools.api.filter.spatial.Beyond;
+import org.geotools.api.filter.spatial.BinarySpatialOperator;
+import org.geotools.api.filter.spatial.Disjoint;
+import org.locationtech.jts.geom.Envelope;
+import org.opengis.yang.geotools.GeoToolsFactories;
+import org.opengis.yang.geotools.columnar.ColumnarFilterCompiler;
+import org.opengis.yang.geotools.columnar.ColumnarLayer;
+import org.opengis.yang.geotools.filter.FilterCompiler;
+import org.opengis.yang.geotools.filter.SpatialFilters;
+import org.opengis.yang.geotools.index.AttributeIndex;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 根据图层上的空间索引与属性索引为filter生成查询计划
+ * and取各子条件候选集的交集，or在所有子条件都能走索引时取并集，
+ * 同一字段的多个相等条件组成的or（即in）合并为一次字典查找，
+ * 索引能精确回答的条件从剩余条件中去掉，其余条件不做裁剪
+ */
+public class QueryPlanner {
+
+    //候选记录超过该比例时顺序扫描比随机读取更快
+    private static final double FULL_SCAN_RATIO = 0.3;
+
+    public QueryPlan plan(ShapeLayer layer, Filter filter) {
+        if (!layer.hasIndexes() || filter == Filter.INCLUDE) {
+            return newPlan(layer, filter, null, filter, "FULL_SCAN");
+        }
+        Candidates candidates = candidates(layer, filter);
+        if (candidates == null) {
+            return newPlan(layer, filter, null, filter, "FULL_SCAN");
+        }
+        int candidateCount = candidates.records.cardinality();
+        //列式图层随机访问没有额外开销，候选集总是有用
+        if (layer.getColumnarLayer() == null && candidateCount > layer.getRecordCount() * FULL_SCAN_RATIO) {
+            return newPlan(layer, filter, null, filter, "FULL_SCAN(candidates=" + candidateCount + ")");
+        }
+        return newPlan(layer, filter, candidates.records, candidates.residual,
+                "INDEX_SCAN(candidates=" + candidateCount + ", residual=" + (candidates.residual != Filter.INCLUDE) + ")");
+    }
+
+    private static QueryPlan newPlan(ShapeLayer layer, Filter filter, BitSet candidates, Filter residual, String description) {
+        ColumnarLayer columnarLayer = layer.getColumnarLayer();
+        if (columnarLayer != null) {
+            return new QueryPlan(filter, candidates, residual, FilterCompiler.compile(residual, layer.getSchema()),
+                    ColumnarFilterCompiler.compile(residual, columnarLayer), "COLUMNAR_" + description);
+        }
+        return new QueryPlan(filter, candidates, residual, FilterCompiler.compile(residual, layer.getSchema()), null, description);
+    }
+
+    /**
+     * @return 候选记录及剩余条件，无法裁剪时返回null
+     */
+    private Candidates candidates(ShapeLayer layer, Filter filter) {
+        if (filter == Filter.EXCLUDE) {
+            return new Candidates(new BitSet(), Filter.INCLUDE);
+        }
+        if (filter instanceof And) {
+            return andCandidates(layer, (And) filter);
+        }
+        if (filter instanceof Or) {
+            return orCandidates(layer, (Or) filter);
+        }
+        if (filter instanceof BinarySpatialOperator) {
+            BitSet records = spatialCandidates(layer, (BinarySpatialOperator) filter);
+            return records == null ? null : new Candidates(records, filter);
+        }
+        if (filter instanceof PropertyIsEqualTo) {
+            return equalCandidates(layer, (PropertyIsEqualTo) filter);
+        }
+        if (filter instanceof BinaryComparisonOperator) {
+            return rangeCandidates(layer, (BinaryComparisonOperator) filter);
+        }
+        if (filter instanceof PropertyIsBetween) {
+            return betweenCandidates(layer, (PropertyIsBetween) filter);
+        }
+        return null;
+    }
+
+    private Candidates andCandidates(ShapeLayer layer, And and) {
+        BitSet records = null;
+        List<Filter> residuals = new ArrayList<>();
+        for (Filter child : and.getChildren()) {
+            Candidates childCandidates = candidates(layer, child);
+            if (childCandidates == null) {
+                residuals.add(child);
+                continue;
+            }
+            if (childCandidates.residual != Filter.INCLUDE) {
+                residuals.add(childCandidates.residual);
+            }
+            if (records == null) {
+                records = childCandidates.records;
+            } else {
+                records.and(childCandidates.records);
+            }
+        }
+        if (records == null) {
+            return null;
+        }
+        return new Candidates(records, combine(residuals));
+    }
+
+    private Candidates orCandidates(ShapeLayer layer, Or or) {
+        Candidates in = inCandidates(layer, or);
+        if (in != null) {
+            return in;
+        }
+        BitSet records = new BitSet();
+        boolean exact = true;
+        for (Filter child : or.getChildren()) {
+            Candidates childCandidates = candidates(layer, child);
+            if (childCandidates == null) {
+                return null;
+            }
+            exact &= childCandidates.residual == Filter.INCLUDE;
+            records.or(childCandidates.records);
+        }
+        //只要有一个子条件需要逐条判断，就只能保留整个or
+        return new Candidates(records, exact ? Filter.INCLUDE : or);
+    }
+
+    /**
+     * 识别同一字段多个相等条件组成的or，合并为一次字典查找
+     */
+    private Candidates inCandidates(ShapeLayer layer, Or or) {
+        String attribute = null;
+        Set<Object> values = new LinkedHashSet<>();
+        for (Filter child : or.getChildren()) {
+            if (!(child instanceof PropertyIsEqualTo) || !((PropertyIsEqualTo) child).isMatchingCase()) {
+                return null;
+            }
+            PropertyIsEqualTo equalTo = (PropertyIsEqualTo) child;
+            String property = propertyName(equalTo.getExpression1(), equalTo.getExpression2());
+            Object value = literalValue(equalTo.getExpression1(), equalTo.getExpression2());
+            if (property == null || value == null || (attribute != null && !attribute.equals(property))) {
+                return null;
+            }
+            attribute = property;
+            values.add(value);
+        }
+        AttributeIndex index = attribute == null ? null : layer.getAttributeIndex(attribute);
+        if (index == null) {
+            return null;
+        }
+        BitSet records = index.anyOf(values);
+        if (records == null) {
+            return null;
+        }
+        boolean exact = values.stream().allMatch(index::isExact);
+        return new Candidates(records, exact ? Filter.INCLUDE : or);
+    }
+
+    private Candidates equalCandidates(ShapeLayer layer, PropertyIsEqualTo equalTo) {
+        if (!equalTo.isMatchingCase()) {
+            return null;
+        }
+        String property = propertyName(equalTo.getExpression1(), equalTo.getExpression2());
+        Object value = literalValue(equalTo.getExpression1(), equalTo.getExpression2());
+        AttributeIndex index = property == null ? null : layer.getAttributeIndex(property);
+        if (index == null || value == null) {
+            return null;
+        }
+        BitSet records = index.equalTo(value);
+        if (records == null) {
+            return null;
+        }
+        return new Candidates(records, index.isExact(value) ? Filter.INCLUDE : equalTo);
+    }
+
+    private Candidates rangeCandidates(ShapeLayer layer, BinaryComparisonOperator comparison) {
+        boolean lowerBound;
+        boolean inclusive;
+        if (comparison instanceof PropertyIsGreaterThan) {
+            lowerBound = true;
+            inclusive = false;
+        } else if (comparison instanceof PropertyIsGreaterThanOrEqualTo) {
+            lowerBound = true;
+            inclusive = true;
+        } else if (comparison instanceof PropertyIsLessThan) {
+            lowerBound = false;
+            inclusive = false;
+        } else if (comparison instanceof PropertyIsLessThanOrEqualTo) {
+            lowerBound = false;
+            inclusive = true;
+        } else {
+            return null;
+        }
+        Expression left = comparison.getExpression1();
+        Expression right = comparison.getExpression2();
+        //字面量在左侧时比较方向相反
+        if (left instanceof Literal && right instanceof PropertyName) {
+            lowerBound = !lowerBound;
+        }
+        String property = propertyName(left, right);
+        Object value = literalValue(left, right);
+        AttributeIndex index = property == null ? null : layer.getAttributeIndex(property);
+        if (index == null || value == null) {
+            return null;
+        }
+        BitSet records = lowerBound
+                ? index.range(value, inclusive, null, false)
+                : index.range(null, false, value, inclusive);
+        if (records == null) {
+            return null;
+        }
+        return new Candidates(records, index.isExact(value) ? Filter.INCLUDE : comparison);
+    }
+
+    private Candidates betweenCandidates(ShapeLayer layer, PropertyIsBetween between) {
+        if (!(between.getExpression() instanceof PropertyName)
+                || !(between.getLowerBoundary() instanceof Literal)
+                || !(between.getUpperBoundary() instanceof Literal)) {
+            return null;
+        }
+        AttributeIndex index = layer.getAttributeIndex(((PropertyName) between.getExpression()).getPropertyName());
+        Object lower = ((Literal) between.getLowerBoundary()).getValue();
+        Object upper = ((Literal) between.getUpperBoundary()).getValue();
+        if (index == null || lower == null || upper == null) {
+            return null;
+        }
+        BitSet records = index.range(lower, true, upper, true);
+        if (records == null) {
+            return null;
+        }
+        return new Candidates(records, index.isExact(lower) && index.isExact(upper) ? Filter.INCLUDE : between);
+    }
+
+    private BitSet spatialCandidates(ShapeLayer layer, BinarySpatialOperator operator) {
+        if (layer.getSpatialIndex() == null) {
+            return null;
+        }
+        //disjoint与beyond命中的是范围之外的要素，无法用范围裁剪
+        if (operator instanceof Disjoint || operator instanceof Beyond) {
+            return null;
+        }
+        if (!isGeometryProperty(layer.getSchema(), operator.getExpression1())
+                && !isGeometryProperty(layer.getSchema(), operator.getExpression2())) {
+            return null;
+        }
+        Envelope envelope = SpatialFilters.queryEnvelope(operator);
+        if (envelope == null) {
+            return null;
+        }
+        return layer.getSpatialIndex().query(envelope);
+    }
+
+    private boolean isGeometryProperty(SimpleFeatureType schema, Expression expression) {
+        if (!(expression instanceof PropertyName)) {
+            return false;
+        }
+        GeometryDescriptor geometryDescriptor = schema.getGeometryDescriptor();
+        String name = ((PropertyName) expression).getPropertyName();
+        return geometryDescriptor != null
+                && (name == null || name.isEmpty() || name.equals(geometryDescriptor.getLocalName()));
+    }
+
+    /**
+     * @return 一侧为属性、另一侧为字面量时返回属性名称，否则返回null
+     */
+    private static String propertyName(Expression left, Expression right) {
+        if (left instanceof PropertyName && right instanceof Literal) {
+            return ((PropertyName) left).getPropertyName();
+        }
+        if (right instanceof PropertyName && left instanceof Literal) {
+            return ((PropertyName) right).getPropertyName();
+        }
+        return null;
+    }
+
+    private static Object literalValue(Expression left, Expression right) {
+        if (right instanceof Literal) {
+            return ((Literal) right).getValue();
+        }
+        if (left instanceof Literal) {
+            return ((Literal) left).getValue();
+        }
+        return null;
+    }
+
+    private static Filter combine(List<Filter> filters) {
+        if (filters.isEmpty()) {
+            return Filter.INCLUDE;
+        }
+        return filters.size() == 1 ? filters.get(0) : GeoToolsFactories.filterFactory().and(filters);
+    }
+
+    /**
+     * 候选记录以及读取候选记录后仍需判断的剩余条件
+     */
+    private static class Candidates {
+
+        private final BitSet records;
+
+        private final Filter residual;
+
+        Candidates(BitSet records, Filter residual) {
+            this.records = records;
+            this.residual = residual;
+        }
+    }
+}
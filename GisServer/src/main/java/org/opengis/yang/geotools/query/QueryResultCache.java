@@ -0,0 +1,263 @@
+package org.opengis.yang.geotools.query;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.geotools.api.data.Query;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.diagnostics.QueryTrace;
+import org.opengis.yang.geotools.columnar.RowPredicate;
+import org.opengis.yang.geotools.filter.CompiledFilter;
+import org.opengis.yang.geotools.filter.FilterKey;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 查询结果缓存
+ * 以图层、图层版本、filter的规范化文本（见{@link FilterKey}）与分页参数为key，计数缓存结果数，列表与分页缓存结果的记录号，
+ * 命中时按记录号直接读取要素，不再扫描与判断；
+ * 版本取自查询使用的图层（打开时确定，本进程写入后变化），发布新版本或改写文件后旧结果不会再命中，
+ * 由有效期与容量淘汰，新旧版本的查询同时进行时互不清除；
+ * 结果条数超过上限、filter无法规范化的查询不缓存
+ */
+@Component
+public class QueryResultCache {
+
+    //记录号数组之外每个条目的大致开销
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final LayerQueryExecutor queryExecutor;
+
+    private final int maxCachedRecords;
+
+    private final Cache<ResultKey, Object> results;
+
+    public QueryResultCache(LayerQueryExecutor queryExecutor, GisProperties properties) {
+        this.queryExecutor = queryExecutor;
+        this.maxCachedRecords = properties.getResultCacheMaxRecords();
+        this.results = Caffeine.newBuilder()
+                .maximumWeight(properties.getResultCacheSize().toBytes())
+                .weigher((ResultKey key, Object value) -> ENTRY_OVERHEAD + weightOf(value))
+                .expireAfterWrite(properties.getResultCacheTtl())
+                .recordStats()
+                .build();
+    }
+
+    private static int weightOf(Object value) {
+        if (value instanceof int[]) {
+            return 4 * ((int[]) value).length;
+        }
+        if (value instanceof CachedPage) {
+            return 4 * ((CachedPage) value).records.length;
+        }
+        return 0;
+    }
+
+    /**
+     * 统计满足条件的要素数
+     * @see LayerQueryExecutor#count(ShapeLayer, Filter)
+     */
+    public int count(ShapeLayer layer, Filter filter) throws IOException {
+        ResultKey key = key(layer, filter, "count", null, 0, 0);
+        Object cached = key == null ? null : results.getIfPresent(key);
+        if (cached != null) {
+            QueryTrace.current().cacheHit();
+            return (Integer) cached;
+        }
+        int count = queryExecutor.count(layer, filter);
+        if (key != null) {
+            results.put(key, count);
+        }
+        return count;
+    }
+
+    /**
+     * 流式查询，读取完全部结果后缓存记录号，中途关闭的查询不缓存
+     * @see LayerQueryExecutor#query(ShapeLayer, org.geotools.api.data.Query)
+     */
+    public SimpleFeatureIterator query(ShapeLayer layer, Filter filter, int startIndex, Integer limit) throws IOException {
+        int maxFeatures = limit == null ? Integer.MAX_VALUE : limit;
+        ResultKey key = key(layer, filter, "query", null, startIndex, maxFeatures);
+        Object cached = key == null ? null : results.getIfPresent(key);
+        if (cached != null) {
+            QueryTrace.current().cacheHit();
+            return read(layer, (int[]) cached);
+        }
+        Query query = new Query(layer.getSchema().getTypeName(), filter);
+        query.setStartIndex(startIndex);
+        query.setMaxFeatures(maxFeatures);
+        SimpleFeatureIterator features = queryExecutor.query(layer, query);
+        return key == null ? features : new RecordingIterator(features, key);
+    }
+
+    /**
+     * 游标分页查询
+     * @see LayerQueryExecutor#page(ShapeLayer, Filter, String, int)
+     */
+    public FeaturePage page(ShapeLayer layer, Filter filter, String cursor, int pageSize) throws IOException {
+        ResultKey key = key(layer, filter, "page", cursor, 0, pageSize);
+        Object cached = key == null ? null : results.getIfPresent(key);
+        if (cached != null) {
+            QueryTrace.current().cacheHit();
+            CachedPage page = (CachedPage) cached;
+            return new FeaturePage(readAll(layer, page.records), page.nextCursor);
+        }
+        FeaturePage page = queryExecutor.page(layer, filter, cursor, pageSize);
+        if (key != null && page.getFeatures().size() <= maxCachedRecords) {
+            results.put(key, new CachedPage(recordsOf(page.getFeatures()), page.getNextCursor()));
+        }
+        return page;
+    }
+
+    /**
+     * 清除图层的全部缓存结果
+     * @param layerName 图层名称
+     */
+    public void invalidate(String layerName) {
+        results.asMap().keySet().removeIf(key -> key.layer().equals(layerName));
+    }
+
+    public CacheStats stats() {
+        return results.stats();
+    }
+
+    public long estimatedSize() {
+        return results.estimatedSize();
+    }
+
+    /**
+     * @return 缓存结果大致占用的字节数
+     */
+    public long weightedSize() {
+        return results.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    /**
+     * @return 缓存key，filter无法规范化时返回null
+     */
+    private ResultKey key(ShapeLayer layer, Filter filter, String kind, String cursor, int startIndex, int maxFeatures) {
+        String filterKey = FilterKey.of(filter);
+        if (filterKey == null) {
+            return null;
+        }
+        //按查询实际使用的图层取版本，发布新版本期间仍在旧版本上的查询不会写入新版本的缓存
+        return new ResultKey(layer.getName(), layer.getVersion(), filterKey, kind, cursor, startIndex, maxFeatures);
+    }
+
+    /**
+     * 按记录号读取要素，记录号递增，与未排序查询的结果顺序一致
+     */
+    private SimpleFeatureIterator read(ShapeLayer layer, int[] records) throws IOException {
+        BitSet candidates = new BitSet();
+        for (int record : records) {
+            candidates.set(record);
+        }
+        RowPredicate rowFilter = layer.getColumnarLayer() == null ? null : RowPredicate.INCLUDE;
+        QueryPlan plan = new QueryPlan(Filter.INCLUDE, candidates, Filter.INCLUDE, CompiledFilter.INCLUDE, rowFilter, "CACHED");
+        return queryExecutor.scan(layer, plan);
+    }
+
+    private List<SimpleFeature> readAll(ShapeLayer layer, int[] records) throws IOException {
+        List<SimpleFeature> features = new ArrayList<>(records.length);
+        try (SimpleFeatureIterator iterator = read(layer, records)) {
+            while (iterator.hasNext()) {
+                features.add(iterator.next());
+            }
+        }
+        return features;
+    }
+
+    private static int[] recordsOf(List<SimpleFeature> features) {
+        int[] records = new int[features.size()];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = recordNumber(features.get(i).getID());
+        }
+        return records;
+    }
+
+    /**
+     * shape数据源的fid为“类型名.记录号”
+     */
+    static int recordNumber(String id) {
+        return Integer.parseInt(id.substring(id.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * 转发查询结果，同时记录返回要素的记录号，读取完全部结果后放入缓存
+     */
+    private class RecordingIterator implements SimpleFeatureIterator {
+
+        private final SimpleFeatureIterator delegate;
+
+        private final ResultKey key;
+
+        private int[] records = new int[16];
+
+        private int size;
+
+        //结果超过上限或已放入缓存后不再记录
+        private boolean recording = true;
+
+        RecordingIterator(SimpleFeatureIterator delegate, ResultKey key) {
+            this.delegate = delegate;
+            this.key = key;
+        }
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = delegate.hasNext();
+            if (!hasNext && recording) {
+                results.put(key, Arrays.copyOf(records, size));
+                recording = false;
+            }
+            return hasNext;
+        }
+
+        @Override
+        public SimpleFeature next() {
+            SimpleFeature feature = delegate.next();
+            if (recording) {
+                if (size >= maxCachedRecords) {
+                    recording = false;
+                    records = null;
+                } else {
+                    if (size == records.length) {
+                        records = Arrays.copyOf(records, size * 2);
+                    }
+                    records[size++] = recordNumber(feature.getID());
+                }
+            }
+            return feature;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+    private record ResultKey(String layer, String version, String filter, String kind, String cursor,
+                             int startIndex, int maxFeatures) {
+    }
+
+    private static class CachedPage {
+
+        private final int[] records;
+
+        private final String nextCursor;
+
+        CachedPage(int[] records, String nextCursor) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package org.opengis.yang.geotools.query;
+
+import jakarta.annotation.PreDestroy;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.algorithm.locate.IndexedPointInAreaLocator;
+import org.locationtech.jts.algorithm.locate.PointOnGeometryLocator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Location;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.diagnostics.QueryTrace;
+import org.opengis.yang.geotools.GeoToolsFactories;
+import org.opengis.yang.geotools.columnar.ColumnarLayer;
+import org.opengis.yang.geotools.index.PackedRTree;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeRecordReader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 索引驱动的空间查询：最近邻与面内点计数
+ * 最近邻在图层的R树上做分支限界，按节点范围到查询点的距离下界逐步展开，只读取可能进入结果的记录；
+ * 面内点计数对每个面用其范围查询点图层的R树，点坐标直接取自索引的叶子节点，不解码点记录，
+ * 再用面的索引化点定位器精确判断，按面的记录号区间在独立的fork-join线程池中并行
+ * 坐标与距离均为图层坐标系下的值
+ */
+@Component
+public class SpatialQueryExecutor {
+
+    //最近邻结果中的距离字段
+    public static final String DISTANCE = "DISTANCE";
+
+    //面内点计数结果中的点数字段
+    public static final String JOIN_COUNT = "JOIN_COUNT";
+
+    //每个任务处理的面数，面的点定位远比顺序读取耗时，区间比并行扫描小
+    private static final int JOIN_PARTITION_SIZE = 1024;
+
+    private final LayerQueryExecutor queryExecutor;
+
+    private final ForkJoinPool pool;
+
+    public SpatialQueryExecutor(LayerQueryExecutor queryExecutor, GisProperties properties) {
+        this.queryExecutor = queryExecutor;
+        int parallelism = properties.getScanParallelism() > 0
+                ? properties.getScanParallelism() : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 最近邻查询
+     * 要素范围的距离是精确距离的下界，只有出队的要素才读取几何计算精确距离并判断过滤条件
+     * @param layer 图层，需要建立空间索引
+     * @param filter 过滤条件
+     * @param x 查询点x
+     * @param y 查询点y
+     * @param k 最多返回的要素数
+     * @param maxDistance 距离上限，不限制时为正无穷
+     * @return 按距离从近到远排序的要素，附加{@link #DISTANCE}字段
+     * @throws IOException
+     */
+    public List<SimpleFeature> nearest(ShapeLayer layer, Filter filter, double x, double y, int k, double maxDistance) throws IOException {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k必须大于0：" + k);
+        }
+        PackedRTree index = spatialIndex(layer);
+        QueryPlan plan = queryExecutor.plan(layer, filter);
+        k = Math.min(k, index.size());
+        long start = System.nanoTime();
+        ColumnarLayer columnarLayer = plan.isColumnar() ? layer.getColumnarLayer() : null;
+        Point target = GeoToolsFactories.geometryFactory().createPoint(new Coordinate(x, y));
+        int[] ids = new int[k];
+        double[] distances = new double[k];
+        int[] examined = new int[1];
+        List<SimpleFeature> features = new ArrayList<>(k);
+        SimpleFeatureType schema = withAttribute(layer.getSchema(), DISTANCE, Double.class);
+        try (ShapeRecordReader reader = columnarLayer == null ? new ShapeRecordReader(layer) : null) {
+            IntToDoubleFunction exactDistance = null;
+            //点图层且不需要过滤时索引范围即精确距离
+            if (!isPointLayer(layer) || plan.getCandidates() != null || plan.getResidual() != Filter.INCLUDE) {
+                BitSet candidates = plan.getCandidates();
+                exactDistance = recordNumber -> {
+                    if (candidates != null && !candidates.get(recordNumber)) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    examined[0]++;
+                    Geometry geometry;
+                    if (columnarLayer != null) {
+                        if (!plan.getRowFilter().test(recordNumber - 1)) {
+                            return Double.POSITIVE_INFINITY;
+                        }
+                        geometry = columnarLayer.geometry(recordNumber - 1);
+                    } else {
+                        SimpleFeature feature = read(reader, recordNumber);
+                        if (!plan.getCompiledResidual().test(feature)) {
+                            return Double.POSITIVE_INFINITY;
+                        }
+                        geometry = (Geometry) feature.getDefaultGeometry();
+                    }
+                    return geometry == null || geometry.isEmpty() ? Double.POSITIVE_INFINITY : geometry.distance(target);
+                };
+            }
+            int found;
+            try {
+                found = index.nearest(x, y, k, maxDistance, exactDistance, ids, distances);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            for (int i = 0; i < found; i++) {
+                SimpleFeature feature = columnarLayer != null ? columnarLayer.feature(ids[i] - 1) : reader.read(ids[i]);
+                features.add(withValue(schema, feature, distances[i]));
+            }
+        }
+        QueryTrace.current().scanned(Math.max(examined[0], features.size()), features.size(), System.nanoTime() - start);
+        return features;
+    }
+
+    /**
+     * 统计每个面内（含边界）满足条件的点数
+     * @param polygons 面图层
+     * @param points 点图层，需要建立空间索引
+     * @param pointFilter 点的过滤条件
+     * @return 下标为面的记录号减1的点数
+     * @throws IOException
+     */
+    public int[] countPointsInPolygons(ShapeLayer polygons, ShapeLayer points, Filter pointFilter) throws IOException {
+        Class<?> binding = polygons.getSchema().getGeometryDescriptor().getType().getBinding();
+        if (!Polygon.class.isAssignableFrom(binding) && !MultiPolygon.class.isAssignableFrom(binding)) {
+            throw new IllegalArgumentException("不是面图层：" + polygons.getName());
+        }
+        if (!isPointLayer(points)) {
+            throw new IllegalArgumentException("不是点图层：" + points.getName());
+        }
+        PackedRTree index = spatialIndex(points);
+        QueryPlan plan = queryExecutor.plan(points, pointFilter);
+        int[] counts = new int[polygons.getRecordCount()];
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new JoinTask(polygons, points, index, plan, counts, 1, counts.length + 1));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long matched = 0;
+        for (int count : counts) {
+            matched += count;
+        }
+        QueryTrace.current().scanned(counts.length, matched, System.nanoTime() - start);
+        return counts;
+    }
+
+    /**
+     * 为面要素附加点数字段
+     * @param schema {@link #withAttribute}生成的类型
+     * @param features 面图层的要素，fid为“类型名.记录号”
+     * @param counts {@link #countPointsInPolygons}的结果
+     * @return 附加了{@link #JOIN_COUNT}字段的要素
+     */
+    public static SimpleFeatureIterator withCounts(SimpleFeatureType schema, SimpleFeatureIterator features, int[] counts) {
+        return new SimpleFeatureIterator() {
+
+            @Override
+            public boolean hasNext() {
+                return features.hasNext();
+            }
+
+            @Override
+            public SimpleFeature next() {
+                SimpleFeature feature = features.next();
+                int row = QueryResultCache.recordNumber(feature.getID()) - 1;
+                return withValue(schema, feature, row < counts.length ? counts[row] : 0);
+            }
+
+            @Override
+            public void close() {
+                features.close();
+            }
+        };
+    }
+
+    /**
+     * @return 在末尾增加一个字段的要素类型
+     */
+    public static SimpleFeatureType withAttribute(SimpleFeatureType schema, String name, Class<?> binding) {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.init(schema);
+        builder.add(name, binding);
+        return builder.buildFeatureType();
+    }
+
+    private static SimpleFeature withValue(SimpleFeatureType schema, SimpleFeature feature, Object value) {
+        List<Object> values = new ArrayList<>(feature.getAttributes());
+        values.add(value);
+        return SimpleFeatureBuilder.build(schema, values, feature.getID());
+    }
+
+    private static PackedRTree spatialIndex(ShapeLayer layer) {
+        PackedRTree index = layer.getSpatialIndex();
+        if (index == null) {
+            throw new IllegalArgumentException("图层未建立空间索引：" + layer.getName());
+        }
+        return index;
+    }
+
+    private static boolean isPointLayer(ShapeLayer layer) {
+        return Point.class.isAssignableFrom(layer.getSchema().getGeometryDescriptor().getType().getBinding());
+    }
+
+    private static SimpleFeature read(ShapeRecordReader reader, int recordNumber) {
+        try {
+            return reader.read(recordNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 统计记录号区间[from, to)内每个面的点数，区间过大时对半拆分，各区间写入counts中互不重叠的部分
+     */
+    private static class JoinTask extends RecursiveAction {
+
+        private final ShapeLayer polygons;
+
+        private final ShapeLayer points;
+
+        private final PackedRTree index;
+
+        private final QueryPlan plan;
+
+        private final int[] counts;
+
+        private final int from;
+
+        private final int to;
+
+        JoinTask(ShapeLayer polygons, ShapeLayer points, PackedRTree index, QueryPlan plan, int[] counts, int from, int to) {
+            this.polygons = polygons;
+            this.points = points;
+            this.index = index;
+            this.plan = plan;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= JOIN_PARTITION_SIZE) {
+                try {
+                    countRange();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            int middle = from + (to - from) / 2;
+            invokeAll(new JoinTask(polygons, points, index, plan, counts, from, middle),
+                    new JoinTask(polygons, points, index, plan, counts, middle, to));
+        }
+
+        private void countRange() throws IOException {
+            ColumnarLayer polygonColumns = polygons.getColumnarLayer();
+            ColumnarLayer pointColumns = plan.isColumnar() ? points.getColumnarLayer() : null;
+            boolean residual = plan.getResidual() != Filter.INCLUDE;
+            try (ShapeRecordReader polygonReader = polygonColumns == null ? new ShapeRecordReader(polygons) : null;
+                 ShapeRecordReader pointReader = residual && pointColumns == null ? new ShapeRecordReader(points) : null) {
+                if (polygonReader != null) {
+                    polygonReader.seek(from);
+                }
+                for (int recordNumber = from; recordNumber < to; recordNumber++) {
+                    Geometry polygon = polygonReader != null
+                            ? (Geometry) polygonReader.next().getDefaultGeometry() : polygonColumns.geometry(recordNumber - 1);
+                    counts[recordNumber - 1] = count(polygon, pointColumns, pointReader, residual);
+                }
+            }
+        }
+
+        private int count(Geometry polygon, ColumnarLayer pointColumns, ShapeRecordReader pointReader, boolean residual) {
+            if (polygon == null || polygon.isEmpty()) {
+                return 0;
+            }
+            PointOnGeometryLocator locator = new IndexedPointInAreaLocator(polygon);
+            BitSet candidates = plan.getCandidates();
+            Coordinate coordinate = new Coordinate();
+            int[] count = new int[1];
+            index.query(polygon.getEnvelopeInternal(), (id, minX, minY, maxX, maxY) -> {
+                if (candidates != null && !candidates.get(id)) {
+                    return;
+                }
+                coordinate.x = minX;
+                coordinate.y = minY;
+                if (locator.locate(coordinate) == Location.EXTERIOR) {
+                    return;
+                }
+                //属性条件放在几何判断之后，只为落在面内的点读取记录
+                if (residual && !(pointColumns != null
+                        ? plan.getRowFilter().test(id - 1)
+                        : plan.getCompiledResidual().test(read(pointReader, id)))) {
+                    return;
+                }
+                count[0]++;
+            });
+            return count[0];
+        }
+    }
+}
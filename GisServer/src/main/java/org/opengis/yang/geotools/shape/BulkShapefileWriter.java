@@ -0,0 +1,304 @@
+package org.opengis.yang.geotools.shape;
+
+import org.geotools.api.data.FeatureWriter;
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.data.shapefile.ShapeFileIndexer;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.files.ShpFiles;
+import org.geotools.data.shapefile.index.IndexType;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.yang.geotools.layer.LayerVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * shape文件批量写入
+ * 逐条从迭代器读取要素，通过追加模式的FeatureWriter直接写shp/shx/dbf，不经过事务的差异缓存，内存占用与要素数无关；
+ * 按记录长度估算shp与dbf的大小，即将超过单个文件上限（shape格式偏移为32位，约2GB）时自动切换到新的分卷文件，
+ * 全部写完后为每个分卷生成qix空间索引
+ * 非线程安全
+ */
+public class BulkShapefileWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkShapefileWriter.class);
+
+    //低于2GB留出余量，避免估算误差导致偏移溢出
+    public static final long DEFAULT_MAX_PART_BYTES = 2_000_000_000L;
+
+    private static final int SHP_HEADER_BYTES = 100;
+
+    //每条记录的记录头（记录号与内容长度）
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final File target;
+
+    private final SimpleFeatureType featureType;
+
+    private final Charset charset;
+
+    private long maxPartBytes = DEFAULT_MAX_PART_BYTES;
+
+    private boolean spatialIndex = true;
+
+    /**
+     * @param target 输出的shp文件，分卷依次命名为name_1.shp、name_2.shp...
+     * @param featureType 要素类型
+     * @param charset dbf编码
+     */
+    public BulkShapefileWriter(File target, SimpleFeatureType featureType, Charset charset) {
+        this.target = target;
+        this.featureType = featureType;
+        this.charset = charset;
+    }
+
+    public void setMaxPartBytes(long maxPartBytes) {
+        this.maxPartBytes = maxPartBytes;
+    }
+
+    public void setSpatialIndex(boolean spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * 写入全部要素
+     * @param features 要素迭代器，按需读取，不要求事先加载到内存
+     * @return 写出的分卷文件与要素数
+     * @throws IOException
+     */
+    public Result write(Iterator<SimpleFeature> features) throws IOException {
+        long start = System.currentTimeMillis();
+        List<File> parts = new ArrayList<>();
+        long total = 0;
+        Part part = null;
+        try {
+            while (features.hasNext()) {
+                SimpleFeature feature = features.next();
+                long shpBytes = RECORD_HEADER_BYTES + contentLength((Geometry) feature.getDefaultGeometry());
+                if (part == null || !part.fits(shpBytes)) {
+                    if (part != null) {
+                        part.close();
+                    }
+                    File file = partFile(parts.size());
+                    part = new Part(file);
+                    parts.add(file);
+                }
+                part.write(feature, shpBytes);
+                total++;
+            }
+            if (part == null) {
+                //没有要素时也生成空文件，保证调用方拿到有效的shape文件
+                parts.add(target);
+                part = new Part(target);
+            }
+        } finally {
+            if (part != null) {
+                part.close();
+            }
+            for (File file : parts) {
+                LayerVersion.touch(file);
+            }
+        }
+        if (spatialIndex) {
+            for (File file : parts) {
+                buildIndex(file);
+            }
+        }
+        LOGGER.info("批量写入{}完成，要素数{}，分卷数{}，耗时{}ms", target, total, parts.size(), System.currentTimeMillis() - start);
+        return new Result(parts, total);
+    }
+
+    private File partFile(int index) {
+        if (index == 0) {
+            return target;
+        }
+        String name = target.getName();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        return new File(target.getParentFile(), baseName + "_" + index + ".shp");
+    }
+
+    private static void buildIndex(File file) throws IOException {
+        ShpFiles shpFiles = new ShpFiles(file);
+        try {
+            ShapeFileIndexer indexer = new ShapeFileIndexer();
+            indexer.setIdxType(IndexType.QIX);
+            indexer.setShapeFileName(shpFiles);
+            indexer.index(false, null);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("生成空间索引失败：" + file, e);
+        } finally {
+            shpFiles.dispose();
+        }
+    }
+
+    /**
+     * 估算几何在shp中的记录内容长度，字节数
+     */
+    static long contentLength(Geometry geometry) {
+        if (geometry == null || geometry.isEmpty()) {
+            //空几何写为Null shape，只有类型
+            return 4;
+        }
+        int points = geometry.getNumPoints();
+        boolean z = !Double.isNaN(geometry.getCoordinate().getZ());
+        //z坐标与m值各需要范围16字节加每个点8字节
+        long zm = z ? 2L * (16 + 8L * points) : 0;
+        if (geometry instanceof Point) {
+            return 20 + (z ? 16 : 0);
+        }
+        if (geometry instanceof MultiPoint) {
+            return 40 + 16L * points + zm;
+        }
+        int parts = 0;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry child = geometry.getGeometryN(i);
+            if (child instanceof Polygon) {
+                parts += 1 + ((Polygon) child).getNumInteriorRing();
+            } else if (child instanceof LineString) {
+                parts++;
+            }
+        }
+        return 44 + 4L * parts + 16L * points + zm;
+    }
+
+    /**
+     * 单个分卷的写入状态
+     */
+    private class Part {
+
+        private final ShapefileDataStore dataStore;
+
+        private final FeatureWriter<SimpleFeatureType, SimpleFeature> writer;
+
+        //要素类型的属性在源要素中的下标
+        private final int[] sourceIndexes;
+
+        private final long dbfRecordBytes;
+
+        private long shpBytes = SHP_HEADER_BYTES;
+
+        private long dbfBytes;
+
+        Part(File file) throws IOException {
+            ShapefileDataStore store = new ShapefileDataStore(file.toURI().toURL());
+            try {
+                store.setCharset(charset);
+                store.createSchema(featureType);
+                //按createSchema生成的dbf头获取记录长度
+                ShpFiles shpFiles = new ShpFiles(file);
+                DbaseFileReader dbfReader = null;
+                try {
+                    dbfReader = new DbaseFileReader(shpFiles, false, charset);
+                    this.dbfRecordBytes = dbfReader.getHeader().getRecordLength();
+                    this.dbfBytes = dbfReader.getHeader().getHeaderLength();
+                } finally {
+                    if (dbfReader != null) {
+                        dbfReader.close();
+                    }
+                    shpFiles.dispose();
+                }
+                //字段对应不上时在写入要素前失败，不静默丢弃整列
+                this.sourceIndexes = sourceIndexes(store.getSchema());
+                this.writer = store.getFeatureWriterAppend(store.getTypeNames()[0], Transaction.AUTO_COMMIT);
+            } catch (IOException | RuntimeException e) {
+                store.dispose();
+                throw e;
+            }
+            this.dataStore = store;
+        }
+
+        /**
+         * createSchema会把字段名截断为dbf允许的10个字符，但保持字段顺序，
+         * 因此几何字段对应几何字段，其余字段按位置一一对应，不按名称查找
+         */
+        private int[] sourceIndexes(SimpleFeatureType targetType) {
+            List<Integer> sourceAttributes = new ArrayList<>();
+            for (int i = 0; i < featureType.getAttributeCount(); i++) {
+                if (featureType.getDescriptor(i) != featureType.getGeometryDescriptor()) {
+                    sourceAttributes.add(i);
+                }
+            }
+            List<AttributeDescriptor> descriptors = targetType.getAttributeDescriptors();
+            int[] indexes = new int[descriptors.size()];
+            int next = 0;
+            for (int i = 0; i < indexes.length; i++) {
+                AttributeDescriptor descriptor = descriptors.get(i);
+                if (descriptor == targetType.getGeometryDescriptor()) {
+                    indexes[i] = featureType.indexOf(featureType.getGeometryDescriptor().getLocalName());
+                } else if (next < sourceAttributes.size()) {
+                    indexes[i] = sourceAttributes.get(next++);
+                } else {
+                    throw new IllegalArgumentException("shape文件的字段" + descriptor.getLocalName() + "在要素类型中没有对应的字段");
+                }
+            }
+            if (next < sourceAttributes.size()) {
+                throw new IllegalArgumentException("要素类型的字段" + featureType.getDescriptor(sourceAttributes.get(next)).getLocalName()
+                        + "无法写入shape文件");
+            }
+            return indexes;
+        }
+
+        boolean fits(long recordBytes) {
+            return shpBytes + recordBytes <= maxPartBytes && dbfBytes + dbfRecordBytes <= maxPartBytes;
+        }
+
+        void write(SimpleFeature feature, long recordBytes) throws IOException {
+            SimpleFeature next = writer.next();
+            for (int i = 0; i < sourceIndexes.length; i++) {
+                next.setAttribute(i, feature.getAttribute(sourceIndexes[i]));
+            }
+            writer.write();
+            shpBytes += recordBytes;
+            dbfBytes += dbfRecordBytes;
+        }
+
+        void close() throws IOException {
+            try {
+                writer.close();
+            } finally {
+                dataStore.dispose();
+            }
+        }
+    }
+
+    /**
+     * 批量写入结果
+     */
+    public static class Result {
+
+        private final List<File> files;
+
+        private final long featureCount;
+
+        Result(List<File> files, long featureCount) {
+            this.files = Collections.unmodifiableList(files);
+            this.featureCount = featureCount;
+        }
+
+        public List<File> getFiles() {
+            return files;
+        }
+
+        public long getFeatureCount() {
+            return featureCount;
+        }
+    }
+}
@@ -1,23 +1,24 @@
 package org.opengis.yang.geotools.shape;
 
-import org.geotools.api.data.DataStore;
-import org.geotools.api.data.DataStoreFinder;
 import org.geotools.api.data.FeatureSource;
 import org.geotools.api.filter.Filter;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
-import org.geotools.data.shapefile.ShapefileDataStoreFactory;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.filter.text.cql2.CQLException;
 import org.geotools.filter.text.ecql.ECQL;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.locationtech.jts.io.ParseException;
+import org.opengis.yang.config.GisProperties;
 import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -25,32 +26,38 @@ import java.util.Map;
  */
 public class ShapeFileReader {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShapeFileReader.class);
+
     private FeatureSource featureSource;
 
     //数据字段以及类型
     private Map<String,String> atttibuteTypeMap;
 
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle layerHandle;
+
     @Before
     public void readShapeFile() throws IOException {
         final String filePath = "D:\\POIshan3xi_point.shp";
-        Map<String,Object> param = new HashMap<>();
-        // 具体可参见ShapefileDataStoreFactory中关于shape数据源的参数
-        param.put(ShapefileDataStoreFactory.URLP.getName(),new File(filePath).toURI().toURL());
-        param.put(ShapefileDataStoreFactory.DBFCHARSET.getName(),"GBK");
-        DataStore dataStore = DataStoreFinder.getDataStore(param);
+        GisProperties.LayerProperties layerProperties = new GisProperties.LayerProperties(filePath);
+        layerProperties.setCharset("GBK");
+        layerProperties.setSpatialIndex(true);
+        //通过图层注册表打开，datastore与schema只解析一次
+        this.layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("POIshan3xi_point", layerProperties);
+        this.layerHandle = layerRegistry.acquire("POIshan3xi_point");
         //获取到featuresource
-        this.featureSource = dataStore.getFeatureSource(dataStore.getNames().get(0));
-        this .atttibuteTypeMap = featureSource
-                                .getSchema()
-                                .getDescriptors()
-                                .parallelStream()
-                                .collect(
-                                HashMap::new,
-                                (map,descriptor)->map.put(descriptor.getName().getLocalPart(),descriptor.getType().getBinding().getName()),
-                                HashMap::putAll
-        );
+        this.featureSource = layerHandle.layer().getFeatureSource();
+        this.atttibuteTypeMap = layerHandle.layer().getAttributeTypeMap();
         int featureCount = featureSource.getFeatures().size();
-        System.out.println("原要素总数：" + featureCount);
+        LOGGER.info("原要素总数：{}", featureCount);
+    }
+
+    @After
+    public void closeShapeFile() {
+        layerHandle.close();
+        layerRegistry.dispose();
     }
 
     /**
@@ -63,7 +70,7 @@ public class ShapeFileReader {
         Filter likeFilter1 = FilterBuilder.createLikeFiter("NAME","*学校");
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(likeFilter);
-        System.out.println( "过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 
     /**
@@ -78,7 +85,7 @@ public class ShapeFileReader {
         Filter equalFilter1 = FilterBuilder.creatEqualFilter("NAME","西安博纳影视培训学校");
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(equalFilter);
-        System.out.println("过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 
 
@@ -94,7 +101,7 @@ public class ShapeFileReader {
         Filter greaterFilter1 = FilterBuilder.createGreaterOrEqualFilter("KIND",160100,true);
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(greaterFilter);
-        System.out.println("过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 
     /**
@@ -110,7 +117,7 @@ public class ShapeFileReader {
 //        Filter inFilter1 = FilterBuilder.createCommonFilter("KIND IN ('110304','110303','130201')");
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(inFilter);
-        System.out.println("过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 
 
@@ -125,7 +132,7 @@ public class ShapeFileReader {
         Filter bboxFilter1 = FilterBuilder.createBboxFilter("the_geom", 106.5, 35.0, 107.5, 36.0,"EPSG:4326");
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(bboxFilter);
-        System.out.println("过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 
 
@@ -137,7 +144,7 @@ public class ShapeFileReader {
         Filter distanceFilter1 = FilterBuilder.createSpatialDistanceFilter("the_geom", "POINT(108.0 35.5)",1000,"meters");
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(distanceFilter);
-        System.out.println("过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 
 
@@ -149,7 +156,7 @@ public class ShapeFileReader {
         Filter beyondfilter1 = FilterBuilder.createDistanceFilter("the_geom","POINT(108 35)",100,"kilometers");
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(beyondfilter);
-        System.out.println("过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 
     @Test
@@ -161,6 +168,6 @@ public class ShapeFileReader {
         Filter intersectFilter1 = FilterBuilder.createIntersect("the_geom",geomWKT);
         //过滤查询
         FeatureCollection featureCollection = featureSource.getFeatures(intersectFilter);
-        System.out.println("过滤后的要素总数：" + featureCollection.size());
+        LOGGER.info("过滤后的要素总数：{}", featureCollection.size());
     }
 }
@@ -13,10 +13,12 @@ import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.JTSFactoryFinder;
 import org.junit.Test;
+import org.opengis.yang.geotools.layer.LayerVersion;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.LineString;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
@@ -52,6 +54,8 @@ public class ShapeFileWrite {
             //添加要素信息
             simpleFeatureStore.addFeatures(createSimpleFeatures(simpleFeatureType));
             transaction.commit();
+            //通知缓存该图层已变化
+            LayerVersion.touch(new File(newShapeName));
         } catch (Exception e) {
             if (dataStore != null) {
                 dataStore.dispose();
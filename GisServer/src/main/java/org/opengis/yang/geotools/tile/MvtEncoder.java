@@ -0,0 +1,329 @@
+package org.opengis.yang.geotools.tile;
+
+import org.locationtech.jts.algorithm.Orientation;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapbox Vector Tile 2.1编码
+ * 只生成一个图层，几何坐标已经是切片坐标（0到extent，y轴向下），
+ * 直接按protobuf线格式写出，不依赖protobuf运行库
+ * 非线程安全，每个切片使用一个实例
+ */
+class MvtEncoder {
+
+    private static final int GEOM_POINT = 1;
+
+    private static final int GEOM_LINESTRING = 2;
+
+    private static final int GEOM_POLYGON = 3;
+
+    private static final int CMD_MOVE_TO = 1;
+
+    private static final int CMD_LINE_TO = 2;
+
+    private static final int CMD_CLOSE_PATH = 7;
+
+    private final String layerName;
+
+    private final int extent;
+
+    private final Map<String, Integer> keys = new LinkedHashMap<>();
+
+    private final Map<Object, Integer> values = new LinkedHashMap<>();
+
+    private final ByteArrayOutputStream features = new ByteArrayOutputStream();
+
+    private int featureCount;
+
+    MvtEncoder(String layerName, int extent) {
+        this.layerName = layerName;
+        this.extent = extent;
+    }
+
+    int getFeatureCount() {
+        return featureCount;
+    }
+
+    /**
+     * 添加要素，坐标取整后退化的几何不写出
+     * @param id 要素编号，小于等于0时不写出
+     * @param geometry 切片坐标的几何
+     * @param attributes 属性，值为null的属性不写出
+     */
+    void addFeature(long id, Geometry geometry, Map<String, Object> attributes) {
+        List<Integer> commands = new ArrayList<>();
+        int type = encodeGeometry(geometry, commands);
+        if (type == 0 || commands.isEmpty()) {
+            return;
+        }
+        ProtoWriter feature = new ProtoWriter();
+        if (id > 0) {
+            feature.varintField(1, id);
+        }
+        List<Integer> tags = new ArrayList<>();
+        attributes.forEach((key, value) -> {
+            if (value != null) {
+                tags.add(keys.computeIfAbsent(key, k -> keys.size()));
+                tags.add(values.computeIfAbsent(normalize(value), v -> values.size()));
+            }
+        });
+        if (!tags.isEmpty()) {
+            feature.packedField(2, tags);
+        }
+        feature.varintField(3, type);
+        feature.packedField(4, commands);
+        ProtoWriter wrapper = new ProtoWriter();
+        wrapper.bytesField(2, feature.toByteArray());
+        features.writeBytes(wrapper.toByteArray());
+        featureCount++;
+    }
+
+    /**
+     * @return 切片内容，没有要素时返回空数组
+     */
+    byte[] encode() {
+        if (featureCount == 0) {
+            return new byte[0];
+        }
+        ProtoWriter layer = new ProtoWriter();
+        layer.varintField(15, 2);
+        layer.stringField(1, layerName);
+        layer.rawBytes(features.toByteArray());
+        for (String key : keys.keySet()) {
+            layer.stringField(3, key);
+        }
+        for (Object value : values.keySet()) {
+            layer.bytesField(4, encodeValue(value));
+        }
+        layer.varintField(5, extent);
+        ProtoWriter tile = new ProtoWriter();
+        tile.bytesField(3, layer.toByteArray());
+        return tile.toByteArray();
+    }
+
+    /**
+     * 统一数值类型，相同的值共用一个下标
+     */
+    private static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Long || value instanceof Double || value instanceof Float
+                || value instanceof Boolean || value instanceof String) {
+            return value;
+        }
+        return value.toString();
+    }
+
+    private static byte[] encodeValue(Object value) {
+        ProtoWriter writer = new ProtoWriter();
+        if (value instanceof String) {
+            writer.stringField(1, (String) value);
+        } else if (value instanceof Float) {
+            writer.fixed32Field(2, Float.floatToIntBits((Float) value));
+        } else if (value instanceof Double) {
+            writer.fixed64Field(3, Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Long) {
+            writer.varintField(6, zigZag((Long) value));
+        } else if (value instanceof Boolean) {
+            writer.varintField(7, (Boolean) value ? 1 : 0);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @return 几何类型，无法编码时返回0
+     */
+    private int encodeGeometry(Geometry geometry, List<Integer> commands) {
+        Cursor cursor = new Cursor();
+        if (geometry instanceof Point || geometry.getGeometryType().equals(Geometry.TYPENAME_MULTIPOINT)) {
+            List<int[]> points = new ArrayList<>();
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                Coordinate coordinate = geometry.getGeometryN(i).getCoordinate();
+                if (coordinate != null) {
+                    int[] point = {(int) Math.round(coordinate.x), (int) Math.round(coordinate.y)};
+                    if (point[0] >= 0 && point[0] <= extent && point[1] >= 0 && point[1] <= extent) {
+                        points.add(point);
+                    }
+                }
+            }
+            if (points.isEmpty()) {
+                return 0;
+            }
+            commands.add(command(CMD_MOVE_TO, points.size()));
+            for (int[] point : points) {
+                cursor.moveTo(point[0], point[1], commands);
+            }
+            return GEOM_POINT;
+        }
+        boolean polygonal = false;
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            Geometry part = geometry.getGeometryN(i);
+            if (part instanceof Polygon) {
+                Polygon polygon = (Polygon) part;
+                //外环面积为正（y轴向下时为顺时针），内环相反
+                if (encodeRing(polygon.getExteriorRing(), true, cursor, commands)) {
+                    for (int j = 0; j < polygon.getNumInteriorRing(); j++) {
+                        encodeRing(polygon.getInteriorRingN(j), false, cursor, commands);
+                    }
+                }
+                polygonal = true;
+            } else if (part instanceof LineString) {
+                encodeLine(((LineString) part).getCoordinates(), false, cursor, commands);
+            }
+        }
+        if (commands.isEmpty()) {
+            return 0;
+        }
+        return polygonal ? GEOM_POLYGON : GEOM_LINESTRING;
+    }
+
+    private boolean encodeRing(LinearRing ring, boolean exterior, Cursor cursor, List<Integer> commands) {
+        Coordinate[] coordinates = ring.getCoordinates();
+        if (coordinates.length < 4) {
+            return false;
+        }
+        if (Orientation.isCCW(coordinates) != exterior) {
+            coordinates = coordinates.clone();
+            for (int i = 0, j = coordinates.length - 1; i < j; i++, j--) {
+                Coordinate temp = coordinates[i];
+                coordinates[i] = coordinates[j];
+                coordinates[j] = temp;
+            }
+        }
+        return encodeLine(coordinates, true, cursor, commands);
+    }
+
+    /**
+     * 编码线或环，取整后去掉重复点，点数不足时不写出
+     */
+    private static boolean encodeLine(Coordinate[] coordinates, boolean ring, Cursor cursor, List<Integer> commands) {
+        int length = ring ? coordinates.length - 1 : coordinates.length;
+        List<int[]> points = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            int[] point = {(int) Math.round(coordinates[i].x), (int) Math.round(coordinates[i].y)};
+            int[] last = points.isEmpty() ? null : points.get(points.size() - 1);
+            if (last == null || last[0] != point[0] || last[1] != point[1]) {
+                points.add(point);
+            }
+        }
+        if (ring && points.size() > 1) {
+            int[] first = points.get(0);
+            int[] last = points.get(points.size() - 1);
+            if (first[0] == last[0] && first[1] == last[1]) {
+                points.remove(points.size() - 1);
+            }
+        }
+        if (points.size() < (ring ? 3 : 2)) {
+            return false;
+        }
+        commands.add(command(CMD_MOVE_TO, 1));
+        cursor.moveTo(points.get(0)[0], points.get(0)[1], commands);
+        commands.add(command(CMD_LINE_TO, points.size() - 1));
+        for (int i = 1; i < points.size(); i++) {
+            cursor.moveTo(points.get(i)[0], points.get(i)[1], commands);
+        }
+        if (ring) {
+            commands.add(command(CMD_CLOSE_PATH, 1));
+        }
+        return true;
+    }
+
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * 几何命令中的坐标相对上一个点编码
+     */
+    private static class Cursor {
+
+        private int x;
+
+        private int y;
+
+        void moveTo(int targetX, int targetY, List<Integer> commands) {
+            commands.add((int) zigZag(targetX - x));
+            commands.add((int) zigZag(targetY - y));
+            x = targetX;
+            y = targetY;
+        }
+    }
+
+    /**
+     * protobuf线格式写出
+     */
+    private static class ProtoWriter {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        void varintField(int field, long value) {
+            varint((long) field << 3);
+            varint(value);
+        }
+
+        void fixed32Field(int field, int value) {
+            varint((long) field << 3 | 5);
+            for (int i = 0; i < 4; i++) {
+                out.write(value >>> (8 * i));
+            }
+        }
+
+        void fixed64Field(int field, long value) {
+            varint((long) field << 3 | 1);
+            for (int i = 0; i < 8; i++) {
+                out.write((int) (value >>> (8 * i)));
+            }
+        }
+
+        void stringField(int field, String value) {
+            bytesField(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void bytesField(int field, byte[] bytes) {
+            varint((long) field << 3 | 2);
+            varint(bytes.length);
+            out.writeBytes(bytes);
+        }
+
+        void packedField(int field, List<Integer> values) {
+            ProtoWriter packed = new ProtoWriter();
+            for (int value : values) {
+                packed.varint(value & 0xFFFFFFFFL);
+            }
+            bytesField(field, packed.toByteArray());
+        }
+
+        void rawBytes(byte[] bytes) {
+            out.writeBytes(bytes);
+        }
+
+        private void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.opengis.yang.geotools.tile;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.opengis.yang.config.GisProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 两级切片缓存
+ * 内存中按切片字节数限制容量，磁盘按“图层/版本/z/x/y.mvt”保存，
+ * 键中包含图层版本，shape文件改写后版本变化，旧切片不再命中，同时删除内存与磁盘中旧版本的切片
+ * 同一切片同时被多次请求时只生成一次
+ */
+@Component
+public class TileCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TileCache.class);
+
+    private final Cache<TileKey, byte[]> memory;
+
+    //为null时不使用磁盘缓存
+    private final Path directory;
+
+    //各图层最近一次看到的版本
+    private final Map<String, String> versions = new ConcurrentHashMap<>();
+
+    public TileCache(GisProperties properties) {
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(properties.getTileCacheSize().toBytes())
+                //空切片也占一个条目
+                .weigher((TileKey key, byte[] tile) -> tile.length + 64)
+                .recordStats()
+                .build();
+        this.directory = properties.getTileCacheDirectory() == null
+                ? null : Paths.get(properties.getTileCacheDirectory()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 获取切片，两级缓存都没有时调用loader生成
+     * @param key 切片键
+     * @param loader 切片生成
+     * @return 切片内容
+     * @throws IOException
+     */
+    public byte[] get(TileKey key, TileLoader loader) throws IOException {
+        String previous = versions.put(key.layer(), key.version());
+        if (previous != null && !previous.equals(key.version())) {
+            invalidate(key.layer(), key.version());
+        }
+        try {
+            return memory.get(key, k -> {
+                try {
+                    return load(k, loader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public CacheStats stats() {
+        return memory.stats();
+    }
+
+    private byte[] load(TileKey key, TileLoader loader) throws IOException {
+        if (directory == null) {
+            return loader.load();
+        }
+        Path file = directory.resolve(Paths.get(key.layer(), key.version(), String.valueOf(key.z()), String.valueOf(key.x()), key.y() + ".mvt"));
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            //磁盘上还没有，生成后写入
+        }
+        byte[] tile = loader.load();
+        Files.createDirectories(file.getParent());
+        //先写临时文件再改名，其他进程不会读到写了一半的切片
+        Path temp = Files.createTempFile(file.getParent(), key.y() + ".", ".tmp");
+        try {
+            Files.write(temp, tile);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return tile;
+    }
+
+    /**
+     * 删除图层其他版本的切片
+     */
+    private void invalidate(String layer, String version) {
+        memory.asMap().keySet().removeIf(key -> key.layer().equals(layer) && !key.version().equals(version));
+        if (directory == null) {
+            return;
+        }
+        Path layerDirectory = directory.resolve(layer);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(layerDirectory)) {
+            for (Path versionDirectory : stream) {
+                if (!versionDirectory.getFileName().toString().equals(version)) {
+                    delete(versionDirectory);
+                }
+            }
+            LOGGER.info("图层{}数据已变化，清除旧版本切片缓存", layer);
+        } catch (NoSuchFileException e) {
+            //还没有磁盘缓存
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.warn("清除图层{}的旧版本切片缓存失败", layer, e);
+        }
+    }
+
+    private static void delete(Path path) throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * 切片生成
+     */
+    @FunctionalInterface
+    public interface TileLoader {
+
+        byte[] load() throws IOException;
+    }
+}
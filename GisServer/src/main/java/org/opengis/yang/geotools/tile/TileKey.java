@@ -0,0 +1,7 @@
+package org.opengis.yang.geotools.tile;
+
+/**
+ * 切片缓存键，图层版本变化后旧切片不会再命中
+ */
+public record TileKey(String layer, String version, int z, int x, int y) {
+}
@@ -0,0 +1,65 @@
+package org.opengis.yang.geotools.tile;
+
+import org.locationtech.jts.geom.Envelope;
+
+/**
+ * Web墨卡托（EPSG:3857）切片行列号与经纬度的换算
+ * 坐标为经纬度，x向东、y向南，与XYZ切片规则一致
+ */
+final class TileMath {
+
+    //墨卡托投影的纬度范围
+    static final double MAX_LATITUDE = 85.0511287798066;
+
+    static final int MAX_ZOOM = 24;
+
+    private TileMath() {
+    }
+
+    /**
+     * 校验切片行列号
+     */
+    static void check(int z, int x, int y) {
+        if (z < 0 || z > MAX_ZOOM) {
+            throw new IllegalArgumentException("切片级别应在0到" + MAX_ZOOM + "之间：" + z);
+        }
+        int n = 1 << z;
+        if (x < 0 || x >= n || y < 0 || y >= n) {
+            throw new IllegalArgumentException("切片行列号超出范围：" + z + "/" + x + "/" + y);
+        }
+    }
+
+    /**
+     * 计算切片的经纬度范围
+     * @param buffer 向外扩展的比例，按切片宽度计
+     * @return 经纬度范围
+     */
+    static Envelope envelope(int z, int x, int y, double buffer) {
+        double n = 1 << z;
+        double minX = (x - buffer) / n * 360 - 180;
+        double maxX = (x + 1 + buffer) / n * 360 - 180;
+        double maxY = latitude((y - buffer) / n);
+        double minY = latitude((y + 1 + buffer) / n);
+        return new Envelope(minX, maxX, minY, maxY);
+    }
+
+    private static double latitude(double ratio) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * ratio))));
+    }
+
+    /**
+     * 经度转为全球像素比例，0到1
+     */
+    static double ratioX(double longitude) {
+        return (longitude + 180) / 360;
+    }
+
+    /**
+     * 纬度转为全球像素比例，0到1，y轴向下
+     */
+    static double ratioY(double latitude) {
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double radians = Math.toRadians(clamped);
+        return (1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2;
+    }
+}
@@ -0,0 +1,231 @@
+package org.opengis.yang.geotools.tile;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.feature.type.AttributeDescriptor;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.geometry.jts.JTS;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Puntal;
+import org.locationtech.jts.geom.TopologyException;
+import org.locationtech.jts.simplify.DouglasPeuckerSimplifier;
+import org.opengis.yang.geotools.GeoToolsFactories;
+import org.opengis.yang.geotools.crs.CrsCache;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 矢量切片生成
+ * 用切片范围（含缓冲区）的bbox条件查询图层，要素坐标换算为切片坐标后按切片精度简化并裁剪，
+ * 图层不是经纬度坐标系时，切片范围与图层范围的交集转换到图层坐标系后查询，要素先转换为经纬度再换算切片坐标；
+ * 简化容差固定为切片坐标单位，级别越低对应的地理距离越大，即按级别简化，
+ * 最后编码为Mapbox Vector Tile，图层名称与shape图层名称一致
+ */
+@Component
+public class TileRenderer {
+
+    //切片坐标范围
+    public static final int EXTENT = 4096;
+
+    //切片四周的缓冲区，切片坐标单位，避免线宽与点符号在切片边界处被截断
+    public static final int BUFFER = 64;
+
+    //简化容差，切片坐标单位，按256像素显示时约为四分之一像素
+    private static final double SIMPLIFY_TOLERANCE = 4;
+
+    //转换范围时每条边加密的点数，投影后的边界是曲线
+    private static final int DENSIFY_POINTS = 10;
+
+    private final LayerQueryExecutor queryExecutor;
+
+    public TileRenderer(LayerQueryExecutor queryExecutor) {
+        this.queryExecutor = queryExecutor;
+    }
+
+    /**
+     * 生成切片
+     * @param layer 图层，没有坐标系时按经纬度解释
+     * @param z 级别
+     * @param x 列号
+     * @param y 行号
+     * @return 切片内容，范围内没有要素时返回空数组
+     * @throws IOException
+     */
+    public byte[] render(ShapeLayer layer, int z, int x, int y) throws IOException {
+        TileMath.check(z, x, y);
+        SimpleFeatureType schema = layer.getSchema();
+        if (schema.getGeometryDescriptor() == null) {
+            return new byte[0];
+        }
+        MathTransform toLonLat = toLonLat(schema.getCoordinateReferenceSystem());
+        Envelope envelope = TileMath.envelope(z, x, y, (double) BUFFER / EXTENT);
+        if (toLonLat != null) {
+            envelope = layerEnvelope(layer, envelope, toLonLat);
+            if (envelope == null) {
+                return new byte[0];
+            }
+        }
+        Filter filter = FilterBuilder.createBboxFilter(schema.getGeometryDescriptor().getLocalName(),
+                envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY(), null);
+        Geometry clip = GeoToolsFactories.geometryFactory().toGeometry(new Envelope(-BUFFER, EXTENT + BUFFER, -BUFFER, EXTENT + BUFFER));
+        ToTileCoordinates transform = new ToTileCoordinates(z, x, y);
+        List<AttributeDescriptor> descriptors = schema.getAttributeDescriptors();
+        MvtEncoder encoder = new MvtEncoder(layer.getName(), EXTENT);
+        try (SimpleFeatureIterator iterator = queryExecutor.query(layer, new Query(schema.getTypeName(), filter))) {
+            while (iterator.hasNext()) {
+                SimpleFeature feature = iterator.next();
+                Geometry geometry;
+                try {
+                    geometry = tileGeometry((Geometry) feature.getDefaultGeometry(), toLonLat, transform, clip);
+                } catch (TransformException e) {
+                    throw new IOException("要素坐标转换为经纬度失败：" + feature.getID(), e);
+                }
+                if (geometry == null) {
+                    continue;
+                }
+                Map<String, Object> attributes = new LinkedHashMap<>();
+                for (int i = 0; i < descriptors.size(); i++) {
+                    Object value = feature.getAttribute(i);
+                    if (!(value instanceof Geometry)) {
+                        attributes.put(descriptors.get(i).getLocalName(), value);
+                    }
+                }
+                encoder.addFeature(featureNumber(feature.getID()), geometry, attributes);
+            }
+        }
+        return encoder.encode();
+    }
+
+    /**
+     * @return 图层坐标转为经纬度的转换，图层没有坐标系或已是经纬度时返回null
+     */
+    private static MathTransform toLonLat(CoordinateReferenceSystem crs) {
+        if (crs == null) {
+            return null;
+        }
+        try {
+            MathTransform transform = CrsCache.transform(crs, CrsCache.decode("EPSG:4326"));
+            return transform.isIdentity() ? null : transform;
+        } catch (FactoryException e) {
+            throw new IllegalArgumentException("图层坐标系无法转换为经纬度：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 切片范围先与图层范围求交再转换到图层坐标系，投影在有效范围之外的转换结果没有意义
+     * @return 图层坐标系的查询范围，与图层范围不相交时返回null
+     */
+    private static Envelope layerEnvelope(ShapeLayer layer, Envelope tileEnvelope, MathTransform toLonLat) throws IOException {
+        Envelope bounds = layer.getFeatureSource().getBounds();
+        if (bounds == null || bounds.isNull()) {
+            return null;
+        }
+        try {
+            Envelope intersection = tileEnvelope.intersection(JTS.transform(bounds, null, toLonLat, DENSIFY_POINTS));
+            if (intersection.isNull()) {
+                return null;
+            }
+            return JTS.transform(intersection, null, toLonLat.inverse(), DENSIFY_POINTS);
+        } catch (TransformException e) {
+            throw new IOException("切片范围转换到图层坐标系失败：" + layer.getName(), e);
+        }
+    }
+
+    /**
+     * 换算为切片坐标，简化后裁剪到缓冲区范围
+     * @param toLonLat 图层坐标转为经纬度的转换，为null时图层坐标即经纬度
+     * @return 切片坐标的几何，裁剪后为空时返回null
+     */
+    private static Geometry tileGeometry(Geometry source, MathTransform toLonLat, ToTileCoordinates transform, Geometry clip)
+            throws TransformException {
+        if (source == null || source.isEmpty()) {
+            return null;
+        }
+        Geometry geometry = toLonLat == null ? source.copy() : JTS.transform(source, toLonLat);
+        geometry.apply(transform);
+        geometry.geometryChanged();
+        if (geometry instanceof Puntal) {
+            return geometry;
+        }
+        geometry = DouglasPeuckerSimplifier.simplify(geometry, SIMPLIFY_TOLERANCE);
+        if (geometry.isEmpty()) {
+            return null;
+        }
+        if (!clip.getEnvelopeInternal().covers(geometry.getEnvelopeInternal())) {
+            try {
+                geometry = geometry.intersection(clip);
+            } catch (TopologyException e) {
+                //简化后自相交的面先修复再裁剪
+                geometry = geometry.buffer(0).intersection(clip);
+            }
+        }
+        return geometry.isEmpty() ? null : geometry;
+    }
+
+    /**
+     * shape数据源的fid为“类型名.记录号”，取记录号作为切片中的要素编号
+     */
+    private static long featureNumber(String id) {
+        if (id == null) {
+            return 0;
+        }
+        int dot = id.lastIndexOf('.');
+        try {
+            return Long.parseLong(dot >= 0 ? id.substring(dot + 1) : id);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 经纬度换算为切片坐标，y轴向下
+     */
+    private static class ToTileCoordinates implements CoordinateSequenceFilter {
+
+        private final double scale;
+
+        private final double offsetX;
+
+        private final double offsetY;
+
+        ToTileCoordinates(int z, int x, int y) {
+            this.scale = (double) (1 << z) * EXTENT;
+            this.offsetX = (double) x * EXTENT;
+            this.offsetY = (double) y * EXTENT;
+        }
+
+        @Override
+        public void filter(CoordinateSequence sequence, int i) {
+            double longitude = sequence.getX(i);
+            double latitude = sequence.getY(i);
+            sequence.setOrdinate(i, CoordinateSequence.X, TileMath.ratioX(longitude) * scale - offsetX);
+            sequence.setOrdinate(i, CoordinateSequence.Y, TileMath.ratioY(latitude) * scale - offsetY);
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return true;
+        }
+    }
+}
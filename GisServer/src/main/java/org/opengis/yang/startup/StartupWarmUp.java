@@ -0,0 +1,199 @@
+package org.opengis.yang.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.GeoToolsFactories;
+import org.opengis.yang.geotools.crs.CrsCache;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动预热
+ * 在上下文刷新阶段、web服务器启动之前开始，在独立的后台线程中并行执行：
+ * GeoTools工厂与查询链路上的类初始化、EPSG数据库加载与常用坐标转换、配置了prewarm的图层的打开与文件预读；
+ * 启动本身不等待预热，全部完成前{@link WarmUpHealthIndicator}使readiness探针返回未就绪，流量不会打到冷实例上，
+ * 单项预热失败只记录日志，不阻止就绪
+ * 使用CDS训练运行（spring.context.exit=onRefresh）时只同步初始化GeoTools工厂，使其类进入共享归档，不读取图层与EPSG数据库
+ */
+@Component
+public class StartupWarmUp implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupWarmUp.class);
+
+    private static final String FACTORIES = "factories";
+
+    private static final String EPSG = "epsg";
+
+    private static final String LAYER_PREFIX = "layer:";
+
+    private final ShapeLayerRegistry layerRegistry;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final boolean trainingRun;
+
+    private final List<String> crsCodes;
+
+    private final List<String> layers = new ArrayList<>();
+
+    //各预热项的状态，按加入顺序排列
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+
+    private volatile CompletableFuture<Void> completion = CompletableFuture.completedFuture(null);
+
+    private volatile ExecutorService executor;
+
+    private volatile boolean running;
+
+    public StartupWarmUp(GisProperties properties, ShapeLayerRegistry layerRegistry, MeterRegistry meterRegistry,
+                         Environment environment) {
+        this.layerRegistry = layerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.enabled = properties.isStartupWarmUp();
+        this.trainingRun = "onRefresh".equalsIgnoreCase(environment.getProperty("spring.context.exit"));
+        this.crsCodes = properties.getWarmUpCrs();
+        properties.getLayers().forEach((name, layerProperties) -> {
+            if (layerProperties.isPrewarm()) {
+                layers.add(name);
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            return;
+        }
+        if (trainingRun) {
+            run(FACTORIES, GeoToolsFactories::initialize);
+            return;
+        }
+        tasks.put(FACTORIES, new Task(GeoToolsFactories::initialize));
+        if (!crsCodes.isEmpty()) {
+            tasks.put(EPSG, new Task(() -> CrsCache.warmUp(crsCodes)));
+        }
+        for (String name : layers) {
+            tasks.put(LAYER_PREFIX + name, new Task(() -> {
+                long bytes = layerRegistry.prewarm(name);
+                LOGGER.info("图层{}预热完成，预读{}KB", name, bytes / 1024);
+            }));
+        }
+        long start = System.currentTimeMillis();
+        int parallelism = Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "warm-up-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<CompletableFuture<Void>> futures = new ArrayList<>(tasks.size());
+        tasks.forEach((name, task) -> futures.add(CompletableFuture.runAsync(() -> run(name, task), pool)));
+        this.executor = pool;
+        this.completion = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((result, e) -> {
+            pool.shutdown();
+            LOGGER.info("启动预热完成，耗时{}ms：{}", System.currentTimeMillis() - start, getStatus());
+        });
+    }
+
+    private void run(String name, Task task) {
+        task.state = "running";
+        long start = System.nanoTime();
+        try {
+            task.action.run();
+            task.state = "done";
+        } catch (Exception e) {
+            task.state = "failed: " + e.getMessage();
+            LOGGER.warn("预热{}失败", name, e);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            task.millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            Timer.builder("gis.warm-up")
+                    .description("启动预热各项的耗时")
+                    .tag("task", name)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void run(String name, Action action) {
+        run(name, new Task(action));
+    }
+
+    /**
+     * @return 预热是否已全部结束，未开启预热时始终为true
+     */
+    public boolean isWarm() {
+        return completion.isDone();
+    }
+
+    /**
+     * @return 各预热项的状态与耗时
+     */
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new LinkedHashMap<>();
+        tasks.forEach((name, task) -> status.put(name, task.millis < 0 ? task.state : task.state + " (" + task.millis + "ms)"));
+        return status;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ExecutorService pool = executor;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 最先启动、最后停止，预热与web服务器启动同时进行
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * 可能抛出检查异常的预热动作
+     */
+    @FunctionalInterface
+    private interface Action {
+
+        void run() throws Exception;
+    }
+
+    private static class Task {
+
+        private final Action action;
+
+        private volatile String state = "pending";
+
+        private volatile long millis = -1;
+
+        Task(Action action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.opengis.yang.startup;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启动预热的健康状态，加入readiness分组后，预热完成前/actuator/health/readiness返回503
+ */
+@Component
+public class WarmUpHealthIndicator implements HealthIndicator {
+
+    private final StartupWarmUp startupWarmUp;
+
+    public WarmUpHealthIndicator(StartupWarmUp startupWarmUp) {
+        this.startupWarmUp = startupWarmUp;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = startupWarmUp.isWarm() ? Health.up() : Health.outOfService();
+        return builder.withDetails(startupWarmUp.getStatus()).build();
+    }
+}
@@ -0,0 +1,75 @@
+package org.opengis.yang.web.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.opengis.yang.geotools.crs.CrsCache;
+import org.opengis.yang.geotools.filter.FilterCache;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.opengis.yang.geotools.query.QueryResultCache;
+import org.opengis.yang.geotools.tile.TileCache;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 缓存命中率与占用统计
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    private final QueryResultCache resultCache;
+
+    private final LayerQueryExecutor queryExecutor;
+
+    private final TileCache tileCache;
+
+    public CacheController(QueryResultCache resultCache, LayerQueryExecutor queryExecutor, TileCache tileCache) {
+        this.resultCache = resultCache;
+        this.queryExecutor = queryExecutor;
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * @return 各缓存的命中率、条目数，查询结果缓存另外返回占用的字节数
+     */
+    @GetMapping("/stats")
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        Map<String, Object> results = stats(resultCache.stats(), resultCache.estimatedSize());
+        results.put("weightedBytes", resultCache.weightedSize());
+        stats.put("result", results);
+        stats.put("plan", stats(queryExecutor.planStats(), -1));
+        stats.put("filter", stats(FilterCache.filterStats(), FilterCache.filterSize()));
+        stats.put("geometry", stats(FilterCache.geometryStats(), FilterCache.geometrySize()));
+        stats.put("tile", stats(tileCache.stats(), -1));
+        stats.put("crs", stats(CrsCache.crsStats(), CrsCache.crsSize()));
+        stats.put("transform", stats(CrsCache.transformStats(), CrsCache.transformSize()));
+        return stats;
+    }
+
+    /**
+     * 清除图层的查询结果缓存
+     * @param name 图层名称
+     */
+    @PostMapping("/result/{name}/invalidate")
+    public void invalidate(@PathVariable("name") String name) {
+        resultCache.invalidate(name);
+    }
+
+    private static Map<String, Object> stats(CacheStats cacheStats, long size) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("evictionCount", cacheStats.evictionCount());
+        if (size >= 0) {
+            stats.put("size", size);
+        }
+        return stats;
+    }
+}
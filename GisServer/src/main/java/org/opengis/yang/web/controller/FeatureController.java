@@ -0,0 +1,677 @@
+package org.opengis.yang.web.controller;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.referencing.FactoryException;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.api.referencing.operation.TransformException;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.filter.text.cql2.CQLException;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.diagnostics.QueryMetrics;
+import org.opengis.yang.diagnostics.QueryTrace;
+import org.opengis.yang.geotools.GeoToolsFactories;
+import org.opengis.yang.geotools.crs.CrsCache;
+import org.opengis.yang.geotools.crs.FeatureReprojector;
+import org.opengis.yang.geotools.crs.FilterReprojector;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.io.FeatureFormat;
+import org.opengis.yang.geotools.io.FeatureStreamWriter;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.query.AggregateResult;
+import org.opengis.yang.geotools.query.BatchQueryExecutor;
+import org.opengis.yang.geotools.query.BatchResult;
+import org.opengis.yang.geotools.query.FeaturePage;
+import org.opengis.yang.geotools.query.LayerAggregator;
+import org.opengis.yang.geotools.query.QueryResultCache;
+import org.opengis.yang.geotools.query.SpatialQueryExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 图层要素查询
+ * 结果按GeoJSON或FlatGeobuf逐条编码写出，不在内存中组装FeatureCollection，
+ * 写出阻塞在servlet输出流上，客户端读取慢时读取shape文件也随之放慢；
+ * 相同图层版本上的相同查询直接取缓存的结果；
+ * 每次查询的解析、计划、扫描、编码耗时记录到{@link QueryMetrics}；
+ * 指定srs时bbox与cql中的几何按该坐标系解释，转换到图层坐标系后查询，返回的要素再转换回srs；
+ * 最近邻与面内点计数由{@link SpatialQueryExecutor}在空间索引上执行
+ */
+@RestController
+@RequestMapping("/layers")
+public class FeatureController {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ShapeLayerRegistry layerRegistry;
+
+    private final QueryResultCache resultCache;
+
+    private final LayerAggregator aggregator;
+
+    private final QueryMetrics queryMetrics;
+
+    private final BatchQueryExecutor batchExecutor;
+
+    private final SpatialQueryExecutor spatialExecutor;
+
+    private final int batchMaxQueries;
+
+    public FeatureController(ShapeLayerRegistry layerRegistry, QueryResultCache resultCache, LayerAggregator aggregator,
+                             QueryMetrics queryMetrics, BatchQueryExecutor batchExecutor, SpatialQueryExecutor spatialExecutor,
+                             GisProperties properties) {
+        this.layerRegistry = layerRegistry;
+        this.resultCache = resultCache;
+        this.aggregator = aggregator;
+        this.queryMetrics = queryMetrics;
+        this.batchExecutor = batchExecutor;
+        this.spatialExecutor = spatialExecutor;
+        this.batchMaxQueries = properties.getBatchMaxQueries();
+    }
+
+    @GetMapping
+    public Set<String> layers() {
+        return layerRegistry.getLayerNames();
+    }
+
+    /**
+     * 查询图层要素
+     * 指定pageSize时按游标分页，下一页游标放在响应头X-Next-Cursor中，否则按startIndex与limit流式返回全部结果
+     * @param name 图层名称
+     * @param cql cql过滤条件
+     * @param bbox 范围过滤，格式为minx,miny,maxx,maxy，坐标与图层一致
+     * @param startIndex 跳过的要素数
+     * @param limit 最多返回的要素数
+     * @param pageSize 游标分页的每页要素数
+     * @param cursor 上一页返回的游标
+     * @param format 输出格式，geojson或fgb
+     * @param srs 查询条件与输出的坐标系，如EPSG:3857，为空时与图层一致
+     */
+    @GetMapping("/{name}/features")
+    public ResponseEntity<StreamingResponseBody> features(@PathVariable("name") String name,
+                                                         @RequestParam(value = "cql", required = false) String cql,
+                                                         @RequestParam(value = "bbox", required = false) String bbox,
+                                                         @RequestParam(value = "startIndex", defaultValue = "0") int startIndex,
+                                                         @RequestParam(value = "limit", required = false) Integer limit,
+                                                         @RequestParam(value = "pageSize", required = false) Integer pageSize,
+                                                         @RequestParam(value = "cursor", required = false) String cursor,
+                                                         @RequestParam(value = "format", defaultValue = "geojson") String format,
+                                                         @RequestParam(value = "srs", required = false) String srs) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        FeatureFormat featureFormat;
+        Filter cqlFilter;
+        double[] bounds;
+        CoordinateReferenceSystem crs;
+        long parseStart = System.nanoTime();
+        try {
+            featureFormat = FeatureFormat.of(format);
+            cqlFilter = cql == null || cql.isBlank() ? Filter.INCLUDE : FilterBuilder.createCommonFilter(cql);
+            bounds = parseBbox(bbox);
+            crs = parseCrs(srs);
+        } catch (CQLException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(featureFormat.getContentType()));
+        if (pageSize != null) {
+            //一页的数据量有上限，先查出来才能在响应头中返回下一页游标
+            FeaturePage page;
+            List<SimpleFeature> features;
+            SimpleFeatureType schema;
+            QueryTrace trace = queryMetrics.start(name, "page", cql);
+            trace.parsed(parseNanos);
+            try (LayerHandle handle = layerRegistry.acquire(name)) {
+                ShapeLayer layer = handle.layer();
+                FeatureReprojector reprojector = reprojector(layer, crs);
+                page = resultCache.page(layer, filter(layer, cqlFilter, bounds, crs), cursor, pageSize);
+                schema = reprojector == null ? layer.getSchema() : reprojector.getSchema();
+                features = reprojector == null ? page.getFeatures() : reprojector.reproject(page.getFeatures());
+            } catch (TransformException e) {
+                trace.close();
+                throw new IOException("坐标转换失败", e);
+            } catch (IllegalArgumentException e) {
+                trace.close();
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            } catch (IOException | RuntimeException e) {
+                trace.close();
+                throw e;
+            }
+            //编码在异步线程上进行，写完后再关闭
+            trace.detach();
+            if (page.hasNext()) {
+                response.header("X-Next-Cursor", page.getNextCursor());
+            }
+            return response.body(outputStream -> {
+                try (trace) {
+                    long encodeStart = System.nanoTime();
+                    write(features, schema, featureFormat, outputStream);
+                    trace.encoded(System.nanoTime() - encodeStart);
+                }
+            });
+        }
+        //流式写出开始后无法再返回错误状态，先获取图层并打开查询，图层繁忙、条件或坐标系错误时直接返回503或400
+        QueryTrace trace = queryMetrics.start(name, "features", cql);
+        trace.parsed(parseNanos);
+        LayerHandle handle;
+        try {
+            handle = layerRegistry.acquire(name);
+        } catch (IOException | RuntimeException e) {
+            trace.close();
+            throw e;
+        }
+        SimpleFeatureIterator features;
+        SimpleFeatureType schema;
+        try {
+            ShapeLayer layer = handle.layer();
+            FeatureReprojector reprojector = reprojector(layer, crs);
+            SimpleFeatureIterator queried = resultCache.query(layer, filter(layer, cqlFilter, bounds, crs), startIndex, limit);
+            features = reprojector == null ? queried : reprojector.reproject(queried);
+            schema = reprojector == null ? layer.getSchema() : reprojector.getSchema();
+        } catch (IllegalArgumentException e) {
+            handle.close();
+            trace.close();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            handle.close();
+            trace.close();
+            throw e;
+        }
+        //要素在写出过程中才逐条读取，查询许可保留到读完，图层引用保留到写完
+        trace.detach();
+        return response.body(outputStream -> {
+            try (trace; handle; SimpleFeatureIterator iterator = features) {
+                BufferedOutputStream buffered = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+                try (FeatureStreamWriter writer = featureFormat.open(buffered, schema)) {
+                    //读取的耗时记在扫描阶段，这里只计编码写出
+                    while (iterator.hasNext()) {
+                        SimpleFeature feature = iterator.next();
+                        long encodeStart = System.nanoTime();
+                        writer.write(feature);
+                        trace.encoded(System.nanoTime() - encodeStart);
+                    }
+                    //读完后归还许可，结束标记与刷新缓冲区不再占用
+                    handle.releasePermit();
+                }
+                buffered.flush();
+            }
+        });
+    }
+
+    /**
+     * 统计满足条件的要素数，大图层全表扫描时并行统计
+     * @param name 图层名称
+     * @param cql cql过滤条件
+     * @param srs cql中几何的坐标系，为空时与图层一致
+     * @return 要素数
+     */
+    @GetMapping("/{name}/count")
+    public int count(@PathVariable("name") String name,
+                     @RequestParam(value = "cql", required = false) String cql,
+                     @RequestParam(value = "srs", required = false) String srs) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        Filter cqlFilter;
+        CoordinateReferenceSystem crs;
+        long parseStart = System.nanoTime();
+        try {
+            cqlFilter = cql == null || cql.isBlank() ? Filter.INCLUDE : FilterBuilder.createCommonFilter(cql);
+            crs = parseCrs(srs);
+        } catch (CQLException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        try (QueryTrace trace = queryMetrics.start(name, "count", cql);
+             LayerHandle handle = layerRegistry.acquire(name)) {
+            trace.parsed(parseNanos);
+            return resultCache.count(handle.layer(), filter(handle.layer(), cqlFilter, null, crs));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 聚合统计，能用文件头或索引回答时不读取记录
+     * @param name 图层名称
+     * @param cql cql过滤条件
+     * @param fields 统计最小值、最大值、合计的数值字段，逗号分隔
+     * @param groupBy 分组计数的字段
+     * @param extent 是否计算范围，按图层坐标系返回
+     * @param srs cql中几何的坐标系，为空时与图层一致
+     * @return 统计结果
+     */
+    @GetMapping("/{name}/aggregate")
+    public AggregateResult aggregate(@PathVariable("name") String name,
+                                     @RequestParam(value = "cql", required = false) String cql,
+                                     @RequestParam(value = "fields", required = false) List<String> fields,
+                                     @RequestParam(value = "groupBy", required = false) String groupBy,
+                                     @RequestParam(value = "extent", defaultValue = "false") boolean extent,
+                                     @RequestParam(value = "srs", required = false) String srs) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        Filter cqlFilter;
+        CoordinateReferenceSystem crs;
+        long parseStart = System.nanoTime();
+        try {
+            cqlFilter = cql == null || cql.isBlank() ? Filter.INCLUDE : FilterBuilder.createCommonFilter(cql);
+            crs = parseCrs(srs);
+        } catch (CQLException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        try (QueryTrace trace = queryMetrics.start(name, "aggregate", cql);
+             LayerHandle handle = layerRegistry.acquire(name)) {
+            trace.parsed(parseNanos);
+            return aggregator.aggregate(handle.layer(), filter(handle.layer(), cqlFilter, null, crs), fields, groupBy, extent);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 批量计数，多个cql共用一次扫描
+     * @param name 图层名称
+     * @param queries cql过滤条件，空字符串表示全部要素
+     * @param srs cql中几何的坐标系，为空时与图层一致
+     * @return 与queries一一对应的要素数
+     */
+    @PostMapping("/{name}/batch/count")
+    public int[] batchCount(@PathVariable("name") String name,
+                            @RequestBody List<String> queries,
+                            @RequestParam(value = "srs", required = false) String srs) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        long parseStart = System.nanoTime();
+        List<Filter> cqlFilters = parseBatch(queries);
+        CoordinateReferenceSystem crs = parseBatchCrs(srs);
+        long parseNanos = System.nanoTime() - parseStart;
+        try (QueryTrace trace = queryMetrics.start(name, "batch", String.join(" | ", queries));
+             LayerHandle handle = layerRegistry.acquire(name)) {
+            trace.parsed(parseNanos);
+            return batchExecutor.execute(handle.layer(), filters(handle.layer(), cqlFilters, crs), 0).getCounts();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 批量查询，多个cql共用一次扫描
+     * 返回json数组，每项为{"count": 要素总数, "features": GeoJSON FeatureCollection}，与queries一一对应
+     * @param name 图层名称
+     * @param queries cql过滤条件，空字符串表示全部要素
+     * @param limit 每个cql最多返回的要素数，count不受其影响
+     * @param srs cql中几何与输出的坐标系，为空时与图层一致
+     */
+    @PostMapping("/{name}/batch/features")
+    public ResponseEntity<StreamingResponseBody> batchFeatures(@PathVariable("name") String name,
+                                                              @RequestBody List<String> queries,
+                                                              @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                              @RequestParam(value = "srs", required = false) String srs) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        if (limit < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit不能小于0：" + limit);
+        }
+        long parseStart = System.nanoTime();
+        List<Filter> cqlFilters = parseBatch(queries);
+        CoordinateReferenceSystem crs = parseBatchCrs(srs);
+        long parseNanos = System.nanoTime() - parseStart;
+        QueryTrace trace = queryMetrics.start(name, "batch", String.join(" | ", queries));
+        trace.parsed(parseNanos);
+        BatchResult result;
+        List<List<SimpleFeature>> features = new ArrayList<>(queries.size());
+        SimpleFeatureType schema;
+        try (LayerHandle handle = layerRegistry.acquire(name)) {
+            ShapeLayer layer = handle.layer();
+            FeatureReprojector reprojector = reprojector(layer, crs);
+            result = batchExecutor.execute(layer, filters(layer, cqlFilters, crs), limit);
+            schema = reprojector == null ? layer.getSchema() : reprojector.getSchema();
+            for (int i = 0; i < result.size(); i++) {
+                features.add(reprojector == null ? result.getFeatures(i) : reprojector.reproject(result.getFeatures(i)));
+            }
+        } catch (TransformException e) {
+            trace.close();
+            throw new IOException("坐标转换失败", e);
+        } catch (IllegalArgumentException e) {
+            trace.close();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            trace.close();
+            throw e;
+        }
+        trace.detach();
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(outputStream -> {
+            try (trace) {
+                long encodeStart = System.nanoTime();
+                BufferedOutputStream buffered = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+                buffered.write('[');
+                for (int i = 0; i < features.size(); i++) {
+                    if (i > 0) {
+                        buffered.write(',');
+                    }
+                    buffered.write(("{\"count\":" + result.getCounts()[i] + ",\"features\":").getBytes(StandardCharsets.UTF_8));
+                    //写出器关闭时写出FeatureCollection结尾，不关闭底层输出流
+                    try (FeatureStreamWriter writer = FeatureFormat.GEOJSON.open(buffered, schema)) {
+                        for (SimpleFeature feature : features.get(i)) {
+                            writer.write(feature);
+                        }
+                    }
+                    buffered.write('}');
+                }
+                buffered.write(']');
+                buffered.flush();
+                trace.encoded(System.nanoTime() - encodeStart);
+            }
+        });
+    }
+
+    /**
+     * 最近邻查询，要素按距离从近到远返回，附加DISTANCE字段
+     * @param name 图层名称
+     * @param x 查询点x
+     * @param y 查询点y
+     * @param k 最多返回的要素数
+     * @param maxDistance 距离上限，与DISTANCE一样为图层坐标系的单位
+     * @param cql cql过滤条件
+     * @param format 输出格式，geojson或fgb
+     * @param srs 查询点、cql中几何与输出的坐标系，为空时与图层一致
+     */
+    @GetMapping("/{name}/nearest")
+    public ResponseEntity<StreamingResponseBody> nearest(@PathVariable("name") String name,
+                                                        @RequestParam("x") double x,
+                                                        @RequestParam("y") double y,
+                                                        @RequestParam(value = "k", defaultValue = "10") int k,
+                                                        @RequestParam(value = "maxDistance", required = false) Double maxDistance,
+                                                        @RequestParam(value = "cql", required = false) String cql,
+                                                        @RequestParam(value = "format", defaultValue = "geojson") String format,
+                                                        @RequestParam(value = "srs", required = false) String srs) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        FeatureFormat featureFormat;
+        Filter cqlFilter;
+        CoordinateReferenceSystem crs;
+        long parseStart = System.nanoTime();
+        try {
+            featureFormat = FeatureFormat.of(format);
+            cqlFilter = cql == null || cql.isBlank() ? Filter.INCLUDE : FilterBuilder.createCommonFilter(cql);
+            crs = parseCrs(srs);
+        } catch (CQLException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        List<SimpleFeature> features;
+        SimpleFeatureType schema;
+        try (QueryTrace trace = queryMetrics.start(name, "nearest", cql);
+             LayerHandle handle = layerRegistry.acquire(name)) {
+            trace.parsed(parseNanos);
+            ShapeLayer layer = handle.layer();
+            double[] point = {x, y};
+            if (crs != null) {
+                MathTransform transform = CrsCache.transform(crs, layer.getSchema().getCoordinateReferenceSystem());
+                transform.transform(point, 0, point, 0, 1);
+            }
+            features = spatialExecutor.nearest(layer, filter(layer, cqlFilter, null, crs), point[0], point[1], k,
+                    maxDistance == null ? Double.POSITIVE_INFINITY : maxDistance);
+            schema = SpatialQueryExecutor.withAttribute(layer.getSchema(), SpatialQueryExecutor.DISTANCE, Double.class);
+            if (crs != null) {
+                FeatureReprojector reprojector = new FeatureReprojector(schema, crs);
+                if (!reprojector.isIdentity()) {
+                    features = reprojector.reproject(features);
+                    schema = reprojector.getSchema();
+                }
+            }
+        } catch (FactoryException | TransformException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "坐标转换失败：" + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        SimpleFeatureType outputSchema = schema;
+        List<SimpleFeature> outputFeatures = features;
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(featureFormat.getContentType()))
+                .body(outputStream -> write(outputFeatures, outputSchema, featureFormat, outputStream));
+    }
+
+    /**
+     * 面内点计数，统计面图层每个要素内（含边界）的点数，返回面要素并附加JOIN_COUNT字段
+     * @param name 面图层名称
+     * @param points 点图层名称，需要建立空间索引
+     * @param cql 点的cql过滤条件
+     * @param format 输出格式，geojson或fgb
+     * @param srs cql中几何与输出的坐标系，为空时与图层一致
+     */
+    @GetMapping("/{name}/join/{points}")
+    public ResponseEntity<StreamingResponseBody> join(@PathVariable("name") String name,
+                                                     @PathVariable("points") String points,
+                                                     @RequestParam(value = "cql", required = false) String cql,
+                                                     @RequestParam(value = "format", defaultValue = "geojson") String format,
+                                                     @RequestParam(value = "srs", required = false) String srs) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        if (!layerRegistry.contains(points)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + points);
+        }
+        if (name.equals(points)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "面图层与点图层不能是同一个图层：" + name);
+        }
+        FeatureFormat featureFormat;
+        Filter cqlFilter;
+        CoordinateReferenceSystem crs;
+        long parseStart = System.nanoTime();
+        try {
+            featureFormat = FeatureFormat.of(format);
+            cqlFilter = cql == null || cql.isBlank() ? Filter.INCLUDE : FilterBuilder.createCommonFilter(cql);
+            crs = parseCrs(srs);
+        } catch (CQLException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        long parseNanos = System.nanoTime() - parseStart;
+        //流式写出开始后无法再返回错误状态，先计数并打开面图层的查询，面图层的句柄交给写出过程，写完后关闭
+        QueryTrace trace = queryMetrics.start(name, "join", cql);
+        trace.parsed(parseNanos);
+        //两个图层按名称顺序获取，方向相反的两个连接请求不会各占一个许可互相等待
+        LayerHandle[] handles = new LayerHandle[2];
+        try {
+            if (points.compareTo(name) < 0) {
+                handles[1] = layerRegistry.acquire(points);
+                handles[0] = layerRegistry.acquire(name);
+            } else {
+                handles[0] = layerRegistry.acquire(name);
+                handles[1] = layerRegistry.acquire(points);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (LayerHandle acquired : handles) {
+                if (acquired != null) {
+                    acquired.close();
+                }
+            }
+            trace.close();
+            throw e;
+        }
+        LayerHandle handle = handles[0];
+        SimpleFeatureIterator features;
+        SimpleFeatureType schema;
+        try {
+            ShapeLayer layer = handle.layer();
+            int[] counts;
+            //计数完成后即关闭点图层
+            try (LayerHandle pointHandle = handles[1]) {
+                ShapeLayer pointLayer = pointHandle.layer();
+                counts = spatialExecutor.countPointsInPolygons(layer, pointLayer, filter(pointLayer, cqlFilter, null, crs));
+            }
+            SimpleFeatureType countSchema = SpatialQueryExecutor.withAttribute(layer.getSchema(), SpatialQueryExecutor.JOIN_COUNT, Integer.class);
+            FeatureReprojector reprojector = null;
+            if (crs != null) {
+                reprojector = new FeatureReprojector(countSchema, crs);
+                if (reprojector.isIdentity()) {
+                    reprojector = null;
+                }
+            }
+            SimpleFeatureIterator counted = SpatialQueryExecutor.withCounts(countSchema,
+                    resultCache.query(layer, Filter.INCLUDE, 0, null), counts);
+            features = reprojector == null ? counted : reprojector.reproject(counted);
+            schema = reprojector == null ? countSchema : reprojector.getSchema();
+        } catch (FactoryException e) {
+            handle.close();
+            trace.close();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "找不到坐标转换：" + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            handle.close();
+            trace.close();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            handle.close();
+            trace.close();
+            throw e;
+        }
+        //面要素在写出过程中才逐条读取，查询许可保留到读完，图层引用保留到写完
+        trace.detach();
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(featureFormat.getContentType())).body(outputStream -> {
+            try (trace; handle; SimpleFeatureIterator iterator = features) {
+                long encodeStart = System.nanoTime();
+                BufferedOutputStream buffered = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+                try (FeatureStreamWriter writer = featureFormat.open(buffered, schema)) {
+                    while (iterator.hasNext()) {
+                        writer.write(iterator.next());
+                    }
+                    handle.releasePermit();
+                }
+                buffered.flush();
+                trace.encoded(System.nanoTime() - encodeStart);
+            }
+        });
+    }
+
+    private List<Filter> parseBatch(List<String> queries) {
+        if (queries == null || queries.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "批量查询至少需要一个cql");
+        }
+        if (queries.size() > batchMaxQueries) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "批量查询最多" + batchMaxQueries + "个cql：" + queries.size());
+        }
+        List<Filter> filters = new ArrayList<>(queries.size());
+        for (String cql : queries) {
+            try {
+                filters.add(cql == null || cql.isBlank() ? Filter.INCLUDE : FilterBuilder.createCommonFilter(cql));
+            } catch (CQLException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+        return filters;
+    }
+
+    private static CoordinateReferenceSystem parseBatchCrs(String srs) {
+        try {
+            return parseCrs(srs);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    private static List<Filter> filters(ShapeLayer layer, List<Filter> cqlFilters, CoordinateReferenceSystem crs) {
+        List<Filter> filters = new ArrayList<>(cqlFilters.size());
+        for (Filter cqlFilter : cqlFilters) {
+            filters.add(filter(layer, cqlFilter, null, crs));
+        }
+        return filters;
+    }
+
+    private static void write(List<SimpleFeature> features, SimpleFeatureType schema, FeatureFormat format, OutputStream outputStream) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        try (FeatureStreamWriter writer = format.open(buffered, schema)) {
+            for (SimpleFeature feature : features) {
+                writer.write(feature);
+            }
+        }
+        buffered.flush();
+    }
+
+    /**
+     * 组合cql与bbox条件，指定坐标系时转换到图层坐标系
+     */
+    private static Filter filter(ShapeLayer layer, Filter cqlFilter, double[] bounds, CoordinateReferenceSystem crs) {
+        Filter filter = cqlFilter;
+        if (bounds != null) {
+            String geometryName = layer.getSchema().getGeometryDescriptor().getLocalName();
+            Filter bboxFilter = FilterBuilder.createBboxFilter(geometryName, bounds[0], bounds[1], bounds[2], bounds[3], null);
+            filter = cqlFilter == Filter.INCLUDE ? bboxFilter : GeoToolsFactories.filterFactory().and(cqlFilter, bboxFilter);
+        }
+        if (crs == null) {
+            return filter;
+        }
+        try {
+            return FilterReprojector.reproject(filter, crs, layer.getSchema().getCoordinateReferenceSystem());
+        } catch (FactoryException e) {
+            throw new IllegalArgumentException("找不到坐标转换：" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return 输出要素的坐标转换，不需要转换时为null
+     */
+    private static FeatureReprojector reprojector(ShapeLayer layer, CoordinateReferenceSystem crs) {
+        if (crs == null) {
+            return null;
+        }
+        try {
+            FeatureReprojector reprojector = new FeatureReprojector(layer.getSchema(), crs);
+            return reprojector.isIdentity() ? null : reprojector;
+        } catch (FactoryException e) {
+            throw new IllegalArgumentException("找不到坐标转换：" + e.getMessage(), e);
+        }
+    }
+
+    private static CoordinateReferenceSystem parseCrs(String srs) {
+        if (srs == null || srs.isBlank()) {
+            return null;
+        }
+        try {
+            return CrsCache.decode(srs);
+        } catch (FactoryException e) {
+            throw new IllegalArgumentException("无法识别的坐标系：" + srs, e);
+        }
+    }
+
+    private static double[] parseBbox(String bbox) {
+        if (bbox == null || bbox.isBlank()) {
+            return null;
+        }
+        String[] parts = bbox.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("bbox格式应为minx,miny,maxx,maxy：" + bbox);
+        }
+        double[] bounds = new double[4];
+        for (int i = 0; i < 4; i++) {
+            bounds[i] = Double.parseDouble(parts[i].trim());
+        }
+        return bounds;
+    }
+}
@@ -1,34 +1,235 @@
 package org.opengis.yang.web.controller;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.opengis.yang.config.GisProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 对比传统文件流下载与异部文件流下载的
+ * /download/{name}支持断点续传与条件请求，容器支持sendfile时零拷贝发送，记录下载字节数、耗时与进行中的下载数
  */
 @RestController
 @RequestMapping("/file")
 public class FileDownLoadController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileDownLoadController.class);
+
+    //tomcat的sendfile请求属性，由容器直接把文件写入socket，不经过用户态缓冲
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    //不支持sendfile时的读写缓冲区大小
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path downloadDirectory;
+
+    private final Counter downloadBytes;
+
+    private final Timer streamTimer;
+
+    private final Timer sendfileTimer;
+
+    private final AtomicInteger activeDownloads = new AtomicInteger();
+
+    public FileDownLoadController(GisProperties properties) {
+        this(properties, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public FileDownLoadController(GisProperties properties, MeterRegistry meterRegistry) {
+        this.downloadDirectory = properties.getDownloadDirectory() == null
+                ? null : Paths.get(properties.getDownloadDirectory()).toAbsolutePath().normalize();
+        //按rate(gis_download_bytes_total)计算每秒下载字节数
+        this.downloadBytes = Counter.builder("gis.download.bytes")
+                .description("下载的字节数，sendfile时按请求的范围计")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        //按mode区分两种发送方式；sendfile时处理方法返回后由容器发送，耗时与进行中的下载数只计到交给容器为止
+        this.streamTimer = Timer.builder("gis.download")
+                .description("下载耗时")
+                .tag("mode", "stream")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sendfileTimer = Timer.builder("gis.download")
+                .description("下载耗时")
+                .tag("mode", "sendfile")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("gis.download.active", activeDownloads, AtomicInteger::get)
+                .description("进行中的下载数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 下载下载目录中的文件
+     * 支持单个Range与If-Range断点续传、分段并行下载，多个Range时返回完整文件，
+     * 通过ETag与Last-Modified支持If-None-Match、If-Modified-Since条件请求，
+     * tomcat支持sendfile时由容器零拷贝发送；否则经64KB缓冲区写出，servlet输出流只接受byte[]，有一次用户态复制
+     * 文件在下载过程中被截断时中止传输，客户端按Content-Length判断下载不完整
+     * @param name 文件名称
+     */
+    @GetMapping("/download/{name}")
+    public void download(HttpServletRequest request, HttpServletResponse response, @PathVariable("name") String name) throws IOException {
+        Path file = resolve(name);
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        //大小与修改时间都不变时认为文件没有变化
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(file.getFileName().toString(), StandardCharsets.UTF_8).build().toString());
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = range(request, etag, lastModified);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (length == 0 || start >= length) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+        long begin = System.nanoTime();
+        activeDownloads.incrementAndGet();
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            try {
+                request.setAttribute(SENDFILE_FILENAME, file.toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                downloadBytes.increment(count);
+            } finally {
+                activeDownloads.decrementAndGet();
+                sendfileTimer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+            }
+            return;
+        }
+        long position = start;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream output = response.getOutputStream();
+            byte[] bytes = new byte[(int) Math.min(BUFFER_SIZE, count)];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (position <= end) {
+                buffer.clear().limit((int) Math.min(bytes.length, end + 1 - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    throw new EOFException("文件在下载过程中被截断：" + file + "，位置" + position);
+                }
+                output.write(bytes, 0, read);
+                position += read;
+            }
+        } finally {
+            activeDownloads.decrementAndGet();
+            downloadBytes.increment(position - start);
+            streamTimer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 解析Range请求头，If-Range与当前文件不一致时忽略Range返回完整文件
+     * @return 单个范围，没有Range或需要返回完整文件时为null
+     */
+    private static HttpRange range(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag) && !sameDate(ifRange, lastModified)) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+    private static boolean sameDate(String httpDate, long lastModified) {
+        try {
+            long time = ZonedDateTime.parse(httpDate, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return time / 1000 == lastModified / 1000;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private Path resolve(String name) {
+        if (downloadDirectory == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未配置下载目录");
+        }
+        Path file = downloadDirectory.resolve(name).normalize();
+        if (!file.startsWith(downloadDirectory) || !Files.isRegularFile(file)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "文件不存在：" + name);
+        }
+        return file;
+    }
+
     @GetMapping("/downloadsync/{id}")
     public void downLoadSync(HttpServletResponse response, @PathVariable("id") String id) throws IOException {
         // 传统同步下载示例（非异步）
-        System.out.println("当前线程名称：" + Thread.currentThread().getName());
+        LOGGER.debug("当前线程名称：{}", Thread.currentThread().getName());
         File file = new File("H:\\初心CSO新客户端.zip");
         response.setContentType("application/octet-stream");
         response.setHeader("Content-Disposition", "attachment; filename=初心CSO新客户端.zip");
         response.setContentLengthLong(file.length()); // 设置文件大小
         try (InputStream is = new FileInputStream(file);
              OutputStream os = response.getOutputStream()) {
-            System.out.println("当前线程名称：" + Thread.currentThread().getName());
+            LOGGER.debug("当前线程名称：{}", Thread.currentThread().getName());
              byte[] buffer = new byte[1024];
              int bytesRead;
              while ((bytesRead = is.read(buffer)) != -1) {
@@ -41,11 +242,11 @@ public class FileDownLoadController {
     // 异步流式下载示例
     @GetMapping("/downloadasync")
     public ResponseEntity<StreamingResponseBody> downloadAsync() {
-        System.out.println("当前线程名称：" + Thread.currentThread().getName());
+        LOGGER.debug("当前线程名称：{}", Thread.currentThread().getName());
         File file = new File("H:\\初心CSO新客户端.zip");
         StreamingResponseBody body = outputStream -> {
             try (InputStream is = new FileInputStream(file)) {
-                System.out.println("当前线程名称：" + Thread.currentThread().getName());
+                LOGGER.debug("当前线程名称：{}", Thread.currentThread().getName());
                 byte[] buffer = new byte[1024];
                 int bytesRead;
                 while ((bytesRead = is.read(buffer)) != -1) {
@@ -0,0 +1,74 @@
+package org.opengis.yang.web.controller;
+
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 图层版本管理
+ * 数据更新任务把新版本写到图层目录下后调用发布接口，新版本打开完成后原子替换，正在执行的查询继续使用旧版本
+ */
+@RestController
+@RequestMapping("/layers")
+public class LayerController {
+
+    private final ShapeLayerRegistry layerRegistry;
+
+    public LayerController(ShapeLayerRegistry layerRegistry) {
+        this.layerRegistry = layerRegistry;
+    }
+
+    /**
+     * @param name 图层名称
+     * @return 当前版本的文件与版本号
+     */
+    @GetMapping("/{name}/version")
+    public Map<String, String> version(@PathVariable("name") String name) {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        Map<String, String> version = new LinkedHashMap<>();
+        version.put("file", layerRegistry.currentFile(name).getPath());
+        version.put("version", layerRegistry.version(name));
+        return version;
+    }
+
+    /**
+     * 发布图层的新版本
+     * @param name 图层名称
+     * @param file 新版本的shp文件，相对于图层所在目录，不能位于该目录之外
+     * @return 发布后的文件与版本号
+     */
+    @PostMapping("/{name}/publish")
+    public Map<String, String> publish(@PathVariable("name") String name,
+                                       @RequestParam("file") String file) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        Path directory = layerRegistry.configuredFile(name).getAbsoluteFile().getParentFile().toPath().normalize();
+        Path target = directory.resolve(file).normalize();
+        if (!target.startsWith(directory) || !target.toString().toLowerCase().endsWith(".shp")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "只能发布图层目录下的shp文件：" + file);
+        }
+        if (!target.toFile().exists()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "文件不存在：" + file);
+        }
+        try {
+            layerRegistry.publish(name, target.toFile());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return version(name);
+    }
+}
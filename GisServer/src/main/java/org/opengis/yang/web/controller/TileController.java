@@ -0,0 +1,75 @@
+package org.opengis.yang.web.controller;
+
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.tile.TileCache;
+import org.opengis.yang.geotools.tile.TileKey;
+import org.opengis.yang.geotools.tile.TileRenderer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+/**
+ * 矢量切片服务，XYZ规则的Mapbox Vector Tile
+ * 切片先查内存与磁盘缓存，ETag为图层版本，shape文件没有变化时浏览器可直接使用本地缓存
+ */
+@RestController
+@RequestMapping("/tiles")
+public class TileController {
+
+    private static final MediaType MVT = MediaType.parseMediaType("application/vnd.mapbox-vector-tile");
+
+    private final ShapeLayerRegistry layerRegistry;
+
+    private final TileRenderer tileRenderer;
+
+    private final TileCache tileCache;
+
+    public TileController(ShapeLayerRegistry layerRegistry, TileRenderer tileRenderer, TileCache tileCache) {
+        this.layerRegistry = layerRegistry;
+        this.tileRenderer = tileRenderer;
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * 获取切片
+     * @param name 图层名称
+     * @param z 级别
+     * @param x 列号
+     * @param y 行号
+     */
+    @GetMapping("/{name}/{z}/{x}/{y}.mvt")
+    public ResponseEntity<byte[]> tile(WebRequest request,
+                                       @PathVariable("name") String name,
+                                       @PathVariable("z") int z,
+                                       @PathVariable("x") int x,
+                                       @PathVariable("y") int y) throws IOException {
+        if (!layerRegistry.contains(name)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "未注册的图层：" + name);
+        }
+        String version = layerRegistry.version(name);
+        String etag = "\"" + version + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        byte[] tile;
+        try {
+            tile = tileCache.get(new TileKey(name, version, z, x, y), () -> {
+                try (LayerHandle handle = layerRegistry.acquire(name)) {
+                    return tileRenderer.render(handle.layer(), z, x, y);
+                }
+            });
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return ResponseEntity.ok().contentType(MVT).eTag(etag).body(tile);
+    }
+}
@@ -0,0 +1,114 @@
+package org.opengis.yang.geotools.columnar;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterCompiler;
+import org.opengis.yang.geotools.filter.FilterCompilerTest;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.opengis.yang.geotools.shape.BulkShapefileWriter;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 常驻内存图层上的行判断必须与{@link FilterCompiler}以及GeoTools对shape数据源读出的要素的判断一致
+ */
+public class ColumnarFilterCompilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle handle;
+
+    private List<SimpleFeature> features;
+
+    @Before
+    public void openLayer() throws Exception {
+        File file = new File(folder.getRoot(), "poi.shp");
+        SimpleFeatureType type = TestShapefiles.pointType("poi");
+        BulkShapefileWriter writer = new BulkShapefileWriter(file, type, StandardCharsets.UTF_8);
+        writer.setSpatialIndex(false);
+        writer.write(FilterCompilerTest.features(type));
+        //空值经过dbf后按shape数据源读出的值比较
+        features = TestShapefiles.read(file);
+        GisProperties.LayerProperties layerProperties = TestShapefiles.layer(file, "KIND");
+        layerProperties.setPinned(true);
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("poi", layerProperties);
+        handle = layerRegistry.acquire("poi");
+    }
+
+    @After
+    public void closeLayer() {
+        handle.close();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void columnsMatchDataStore() {
+        ColumnarLayer columnarLayer = handle.layer().getColumnarLayer();
+        Assert.assertNotNull(columnarLayer);
+        Assert.assertEquals(features.size(), columnarLayer.getRowCount());
+        for (int row = 0; row < features.size(); row++) {
+            SimpleFeature expected = features.get(row);
+            SimpleFeature actual = columnarLayer.feature(row);
+            Assert.assertEquals(expected.getID(), actual.getID());
+            for (String attribute : new String[]{"NAME", "KIND", "LEVEL"}) {
+                Assert.assertEquals(expected.getID() + "." + attribute, expected.getAttribute(attribute), actual.getAttribute(attribute));
+            }
+            Assert.assertTrue(expected.getID(), ((Geometry) expected.getDefaultGeometry()).equalsExact((Geometry) actual.getDefaultGeometry()));
+        }
+    }
+
+    @Test
+    public void rowPredicateMatchesEvaluate() throws Exception {
+        ColumnarLayer columnarLayer = handle.layer().getColumnarLayer();
+        SimpleFeatureType schema = handle.layer().getSchema();
+        for (Map.Entry<String, Filter> entry : FilterCompilerTest.filters().entrySet()) {
+            RowPredicate predicate = ColumnarFilterCompiler.compile(entry.getValue(), columnarLayer);
+            for (int row = 0; row < features.size(); row++) {
+                SimpleFeature feature = features.get(row);
+                boolean expected = entry.getValue().evaluate(feature);
+                Assert.assertEquals(entry.getKey() + " " + feature, expected, predicate.test(row));
+                Assert.assertEquals(entry.getKey() + " " + feature, expected, FilterCompiler.compile(entry.getValue(), schema).test(feature));
+            }
+        }
+    }
+
+    @Test
+    public void executorMatchesEvaluate() throws Exception {
+        LayerQueryExecutor executor = new LayerQueryExecutor();
+        for (Map.Entry<String, Filter> entry : FilterCompilerTest.filters().entrySet()) {
+            List<String> expected = new ArrayList<>();
+            for (SimpleFeature feature : features) {
+                if (entry.getValue().evaluate(feature)) {
+                    expected.add(feature.getID());
+                }
+            }
+            Assert.assertTrue(entry.getKey(), executor.plan(handle.layer(), entry.getValue()).isColumnar());
+            Assert.assertEquals(entry.getKey(), expected.size(), executor.count(handle.layer(), entry.getValue()));
+            List<String> ids = new ArrayList<>();
+            for (SimpleFeature feature : executor.list(handle.layer(), entry.getValue(), 0, Integer.MAX_VALUE)) {
+                ids.add(feature.getID());
+            }
+            Assert.assertEquals(entry.getKey(), expected, ids);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.opengis.yang.geotools.crs;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.api.referencing.operation.MathTransform;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量转换的结果必须与GeoTools逐个几何转换的结果一致，源要素不被修改
+ */
+public class FeatureReprojectorTest {
+
+    private static final String[] WKTS = {
+            "POINT(108.5 34.5)",
+            "LINESTRING Z(108.1 34.1 10, 108.2 34.3 20, 108.4 34.2 30)",
+            "POLYGON((108 34, 109 34, 109 35, 108 35, 108 34), (108.2 34.2, 108.2 34.4, 108.4 34.4, 108.2 34.2))",
+            "MULTIPOLYGON(((108 34, 108.1 34, 108.1 34.1, 108 34)), ((108.5 34.5, 108.6 34.5, 108.6 34.6, 108.5 34.5)))",
+            "GEOMETRYCOLLECTION(POINT(108.3 34.3), LINESTRING(108 34, 108.9 34.9))",
+    };
+
+    private CoordinateReferenceSystem webMercator;
+
+    private MathTransform expectedTransform;
+
+    @Before
+    public void decode() throws Exception {
+        webMercator = CrsCache.decode("EPSG:3857");
+        expectedTransform = CRS.findMathTransform(DefaultGeographicCRS.WGS84, webMercator, true);
+    }
+
+    @Test
+    public void matchesPerGeometryTransform() throws Exception {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("mixed");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.add("the_geom", Geometry.class);
+        typeBuilder.add("NAME", String.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+        WKTReader wktReader = new WKTReader();
+        List<SimpleFeature> features = new ArrayList<>();
+        for (int i = 0; i < WKTS.length; i++) {
+            features.add(SimpleFeatureBuilder.build(type, new Object[]{wktReader.read(WKTS[i]), "要素" + i}, "mixed." + i));
+        }
+        //空几何原样保留
+        features.add(SimpleFeatureBuilder.build(type, new Object[]{null, "空几何"}, "mixed.null"));
+
+        FeatureReprojector reprojector = new FeatureReprojector(type, webMercator);
+        Assert.assertFalse(reprojector.isIdentity());
+        Assert.assertTrue(CRS.equalsIgnoreMetadata(webMercator, reprojector.getSchema().getCoordinateReferenceSystem()));
+        List<SimpleFeature> reprojected = reprojector.reproject(features);
+        Assert.assertEquals(features.size(), reprojected.size());
+        for (int i = 0; i < features.size(); i++) {
+            SimpleFeature source = features.get(i);
+            SimpleFeature target = reprojected.get(i);
+            Assert.assertEquals(source.getID(), target.getID());
+            Assert.assertEquals(source.getAttribute("NAME"), target.getAttribute("NAME"));
+            Assert.assertSame(reprojector.getSchema(), target.getFeatureType());
+            Geometry geometry = (Geometry) source.getDefaultGeometry();
+            if (geometry == null) {
+                Assert.assertNull(target.getDefaultGeometry());
+                continue;
+            }
+            //源几何不变
+            Assert.assertTrue(WKTS[i], geometry.equalsExact(wktReader.read(WKTS[i])));
+            Geometry actual = (Geometry) target.getDefaultGeometry();
+            Assert.assertTrue(WKTS[i] + " " + actual, JTS.transform(geometry, expectedTransform).equalsExact(actual, 1e-6));
+            Coordinate[] sourceCoordinates = geometry.getCoordinates();
+            Coordinate[] targetCoordinates = actual.getCoordinates();
+            for (int j = 0; j < sourceCoordinates.length; j++) {
+                Assert.assertEquals(WKTS[i], sourceCoordinates[j].getZ(), targetCoordinates[j].getZ(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void iteratorMatchesBatch() throws Exception {
+        SimpleFeatureType type = TestShapefiles.pointType("poi");
+        List<SimpleFeature> features = new ArrayList<>();
+        //超过两批
+        TestShapefiles.points(type, 1300, 51).forEachRemaining(features::add);
+        FeatureReprojector reprojector = new FeatureReprojector(type, webMercator);
+        List<SimpleFeature> expected = reprojector.reproject(features);
+        List<SimpleFeature> actual = new ArrayList<>();
+        try (SimpleFeatureIterator iterator = reprojector.reproject(new ListFeatureCollection(type, features).features())) {
+            while (iterator.hasNext()) {
+                actual.add(iterator.next());
+            }
+        }
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getID(), actual.get(i).getID());
+            Assert.assertTrue(((Geometry) expected.get(i).getDefaultGeometry())
+                    .equalsExact((Geometry) actual.get(i).getDefaultGeometry()));
+        }
+    }
+
+    @Test
+    public void sameCrsIsIdentity() throws Exception {
+        Assert.assertTrue(new FeatureReprojector(TestShapefiles.pointType("poi"), CrsCache.decode("EPSG:4326")).isIdentity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresSourceCrs() throws Exception {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("nocrs");
+        typeBuilder.add("the_geom", Geometry.class);
+        new FeatureReprojector(typeBuilder.buildFeatureType(), webMercator);
+    }
+}
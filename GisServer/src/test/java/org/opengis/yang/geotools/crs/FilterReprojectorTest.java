@@ -0,0 +1,124 @@
+package org.opengis.yang.geotools.crs;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
+import org.geotools.filter.text.ecql.ECQL;
+import org.geotools.geometry.jts.JTS;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Envelope;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 请求坐标系下的条件转换到图层坐标系后查询，结果必须与把图层要素转换到请求坐标系后判断原条件一致
+ */
+public class FilterReprojectorTest {
+
+    private static final int FEATURE_COUNT = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle handle;
+
+    private CoordinateReferenceSystem webMercator;
+
+    //图层要素转换到web墨卡托后的结果，与图层记录顺序一致
+    private List<SimpleFeature> projected;
+
+    //web墨卡托下的查询范围
+    private Envelope envelope;
+
+    @Before
+    public void openLayer() throws Exception {
+        File file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 61);
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("poi", TestShapefiles.layer(file, "KIND"));
+        handle = layerRegistry.acquire("poi");
+        webMercator = CrsCache.decode("EPSG:3857");
+        ShapeLayer layer = handle.layer();
+        projected = new FeatureReprojector(layer.getSchema(), webMercator).reproject(TestShapefiles.read(file));
+        envelope = JTS.transform(new Envelope(108.2, 108.6, 34.2, 34.7),
+                CrsCache.transform(layer.getSchema().getCoordinateReferenceSystem(), webMercator));
+    }
+
+    @After
+    public void closeLayer() {
+        handle.close();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void bboxMatchesProjectedFeatures() throws Exception {
+        assertQuery(FilterBuilder.createBboxFilter("the_geom", envelope.getMinX(), envelope.getMinY(),
+                envelope.getMaxX(), envelope.getMaxY(), "EPSG:3857"));
+    }
+
+    @Test
+    public void geometryLiteralMatchesProjectedFeatures() throws Exception {
+        //坐标轴对齐的矩形转换后边界不弯曲，与逐点转换后判断的结果相同
+        String polygon = String.format(Locale.ROOT, "POLYGON((%1$f %2$f, %3$f %2$f, %3$f %4$f, %1$f %4$f, %1$f %2$f))",
+                envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY());
+        assertQuery(ECQL.toFilter("INTERSECTS(the_geom, " + polygon + ") AND KIND = '160100'"));
+        assertQuery(ECQL.toFilter("NOT WITHIN(the_geom, " + polygon + ") OR LEVEL = 3"));
+    }
+
+    @Test
+    public void attributeFiltersAreUnchanged() throws Exception {
+        Filter filter = ECQL.toFilter("KIND = '160100' AND LEVEL > 5");
+        Assert.assertEquals(filter, FilterReprojector.reproject(filter, webMercator,
+                handle.layer().getSchema().getCoordinateReferenceSystem()));
+        assertQuery(filter);
+    }
+
+    @Test
+    public void sameCrsReturnsFilter() throws Exception {
+        Filter filter = ECQL.toFilter("BBOX(the_geom, 108.2, 34.2, 108.6, 34.7)");
+        CoordinateReferenceSystem crs = handle.layer().getSchema().getCoordinateReferenceSystem();
+        Assert.assertSame(filter, FilterReprojector.reproject(filter, crs, crs));
+        Assert.assertSame(Filter.INCLUDE, FilterReprojector.reproject(Filter.INCLUDE, webMercator, crs));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requiresLayerCrs() throws Exception {
+        FilterReprojector.reproject(Filter.INCLUDE, webMercator, null);
+    }
+
+    /**
+     * @param filter web墨卡托下的条件
+     */
+    private void assertQuery(Filter filter) throws Exception {
+        ShapeLayer layer = handle.layer();
+        Filter reprojected = FilterReprojector.reproject(filter, webMercator, layer.getSchema().getCoordinateReferenceSystem());
+        List<String> expected = new ArrayList<>();
+        for (SimpleFeature feature : projected) {
+            if (filter.evaluate(feature)) {
+                expected.add(feature.getID());
+            }
+        }
+        Assert.assertFalse(filter.toString(), expected.isEmpty());
+        List<String> ids = new ArrayList<>();
+        for (SimpleFeature feature : new LayerQueryExecutor().list(layer, reprojected, 0, Integer.MAX_VALUE)) {
+            ids.add(feature.getID());
+        }
+        Assert.assertEquals(filter.toString(), expected, ids);
+    }
+}
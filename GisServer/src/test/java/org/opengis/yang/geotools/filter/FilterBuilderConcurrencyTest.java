@@ -0,0 +1,133 @@
+package org.opengis.yang.geotools.filter;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.filter.Filter;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多线程并发调用FilterBuilder的全部方法，结果必须与单线程调用一致
+ */
+public class FilterBuilderConcurrencyTest {
+
+    private static final int THREADS = 32;
+
+    private static final int ITERATIONS = 2000;
+
+    //每个方法的参数变化数，wkt不同的调用会在缓存未命中时并发解析
+    private static final int VARIANTS = 64;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
+
+    private final Map<String, Case> cases = new LinkedHashMap<>();
+
+    @FunctionalInterface
+    private interface Case {
+        String run(int variant) throws Exception;
+    }
+
+    @Before
+    public void createCases() {
+        cases.put("createCommonFilter", v -> describe(FilterBuilder.createCommonFilter("KIND = '16010" + v + "' AND  LEVEL >= " + v)));
+        cases.put("createDistanceFilter", v -> describe(FilterBuilder.createDistanceFilter("the_geom", point(v), 0.1 * v, "meters")));
+        cases.put("createGreaterFilter", v -> describe(FilterBuilder.createGreaterFilter("LEVEL", v, true)));
+        cases.put("createGreaterOrEqualFilter", v -> describe(FilterBuilder.createGreaterOrEqualFilter("LEVEL", v, false)));
+        cases.put("createLowerFilter", v -> describe(FilterBuilder.createLowerFilter("LEVEL", v)));
+        cases.put("creatEqualFilter", v -> describe(FilterBuilder.creatEqualFilter("NAME", "兴趣点" + v)));
+        cases.put("createLikeFiter", v -> describe(FilterBuilder.createLikeFiter("NAME", "*学校" + v + "*")));
+        cases.put("createSpatialContainsFilter", v -> describe(FilterBuilder.createSpatialContainsFilter("the_geom",
+                GEOMETRY_FACTORY.createPoint(new Coordinate(108 + v * 0.01, 34 + v * 0.01)))));
+        cases.put("createSpatialDistanceFilter", v -> describe(FilterBuilder.createSpatialDistanceFilter("the_geom", point(v), 100 + v, "meters")));
+        cases.put("createPageQuery", v -> describe(FilterBuilder.createPageQuery("NAME LIKE '%" + v + "%'", v * 10, 10)));
+        cases.put("createExpression", v -> {
+            FilterBuilder.createExpression();
+            return "ok";
+        });
+        cases.put("createInFilter", v -> describe(FilterBuilder.createInFilter("KIND", new String[]{"11030" + v, "13020" + v, "160100"})));
+        cases.put("createBboxFilter", v -> describe(FilterBuilder.createBboxFilter("the_geom", 106 + v, 34, 107 + v, 35, "EPSG:4326")));
+        cases.put("createIntersect", v -> describe(FilterBuilder.createIntersect("the_geom", polygon(v))));
+    }
+
+    @Test
+    public void concurrentCallsReturnSameResults() throws Exception {
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        for (Map.Entry<String, Case> entry : cases.entrySet()) {
+            List<String> results = new ArrayList<>();
+            for (int v = 0; v < VARIANTS; v++) {
+                results.add(entry.getValue().run(v));
+            }
+            expected.put(entry.getKey(), results);
+        }
+        //清空缓存，让并发调用同时走解析路径和缓存路径
+        FilterCache.invalidateAll();
+
+        List<String> names = new ArrayList<>(cases.keySet());
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        String name = names.get(random.nextInt(names.size()));
+                        int variant = random.nextInt(VARIANTS);
+                        if (i % 500 == 0) {
+                            FilterCache.invalidateAll();
+                        }
+                        String result = cases.get(name).run(variant);
+                        if (!expected.get(name).get(variant).equals(result)) {
+                            failures.add(name + "[" + variant + "]: " + result);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertTrue("并发结果与单线程不一致：" + failures, failures.isEmpty());
+    }
+
+    private static String point(int variant) {
+        return "POINT (" + (108 + variant * 0.01) + " " + (34 + variant * 0.01) + ")";
+    }
+
+    private static String polygon(int variant) {
+        double x = 106 + variant * 0.1;
+        double y = 33 + variant * 0.1;
+        return "POLYGON ((" + x + " " + y + ", " + (x + 1) + " " + y + ", " + (x + 1) + " " + (y + 1) + ", "
+                + x + " " + (y + 1) + ", " + x + " " + y + "))";
+    }
+
+    private static String describe(Filter filter) {
+        return filter.getClass().getSimpleName() + ":" + filter;
+    }
+
+    private static String describe(Query query) {
+        return describe(query.getFilter()) + " start=" + query.getStartIndex() + " max=" + query.getMaxFeatures();
+    }
+}
@@ -0,0 +1,114 @@
+package org.opengis.yang.geotools.filter;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.api.filter.FilterFactory;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.filter.text.ecql.ECQL;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的过滤条件对每个要素的判断结果必须与GeoTools的Filter.evaluate一致
+ */
+public class FilterCompilerTest {
+
+    private static final FilterFactory FILTER_FACTORY = CommonFactoryFinder.getFilterFactory();
+
+    private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
+
+    @Test
+    public void compiledFilterMatchesEvaluate() throws Exception {
+        SimpleFeatureType type = TestShapefiles.pointType("poi");
+        List<SimpleFeature> features = new ArrayList<>();
+        features(type).forEachRemaining(features::add);
+        for (Map.Entry<String, Filter> entry : filters().entrySet()) {
+            CompiledFilter compiled = FilterCompiler.compile(entry.getValue(), type);
+            for (SimpleFeature feature : features) {
+                Assert.assertEquals(entry.getKey() + " " + feature,
+                        entry.getValue().evaluate(feature), compiled.test(feature));
+            }
+        }
+    }
+
+    @Test
+    public void compareStringToNumberFollowsLaxComparison() {
+        //能转换为数值时按数值比较，否则按字符串比较
+        Assert.assertTrue(FilterCompiler.compareStringToNumber("160100", 160100, "160100") == 0);
+        Assert.assertTrue(FilterCompiler.compareStringToNumber("99", 160100, "160100") < 0);
+        Assert.assertTrue(FilterCompiler.compareStringToNumber("1601000", 160100, "160100") > 0);
+        Assert.assertTrue(FilterCompiler.compareStringToNumber("abc", 160100, "160100") > 0);
+    }
+
+    /**
+     * 生成的点要素，末尾附加大小写不同与含空值的要素
+     */
+    public static Iterator<SimpleFeature> features(SimpleFeatureType type) {
+        List<SimpleFeature> features = new ArrayList<>();
+        TestShapefiles.points(type, 600, 5).forEachRemaining(features::add);
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        Object[][] extras = {
+                {"Alpha", "160100", 1},
+                {"alpha", "abc", 2},
+                {"ALPHA-Beta", "0160100", 3},
+                {null, "160200", 4},
+                {"空值", null, 5},
+                {"空值", "110303", null},
+        };
+        for (int i = 0; i < extras.length; i++) {
+            builder.set("the_geom", GEOMETRY_FACTORY.createPoint(new Coordinate(108.5 + i * 0.01, 34.5)));
+            builder.set("NAME", extras[i][0]);
+            builder.set("KIND", extras[i][1]);
+            builder.set("LEVEL", extras[i][2]);
+            features.add(builder.buildFeature("fid.extra" + i));
+        }
+        return features.iterator();
+    }
+
+    /**
+     * 覆盖编译器各分支的过滤条件，包括交给原始Filter判断的节点
+     */
+    public static Map<String, Filter> filters() throws Exception {
+        Map<String, Filter> filters = new LinkedHashMap<>();
+        String[] cqls = {
+                "LEVEL = 5", "LEVEL <> 5", "LEVEL > 5", "LEVEL >= 5.5", "LEVEL < 3", "LEVEL <= 3",
+                "LEVEL = '5'", "LEVEL < '7'", "LEVEL BETWEEN 3 AND 7",
+                "KIND = '160100'", "KIND <> '160100'", "KIND > '160100'", "KIND <= '130201'",
+                "KIND = 160100", "KIND >= 160100", "KIND < 130201", "KIND > 160100.5", "160100 <= KIND",
+                "KIND IN ('110303', '160200')",
+                "NAME LIKE '%学校'", "NAME LIKE '兴趣点1_'", "NAME ILIKE 'alpha%'",
+                "NAME IS NULL", "KIND IS NULL", "LEVEL IS NULL", "NOT (LEVEL IS NULL)",
+                "KIND = '160100' OR LEVEL = 3", "KIND = '110303' OR KIND = '130201' OR KIND = 'abc'",
+                "NAME LIKE '%学校' AND LEVEL > 10", "NOT (KIND = '160100' AND LEVEL < 10)",
+                "BBOX(the_geom, 108.2, 34.2, 108.6, 34.7)",
+                "INTERSECTS(the_geom, POLYGON((108.1 34.1, 108.9 34.1, 108.5 34.9, 108.1 34.1)))",
+                "WITHIN(the_geom, POLYGON((108.1 34.1, 108.9 34.1, 108.5 34.9, 108.1 34.1)))",
+                "DWITHIN(the_geom, POINT(108.5 34.5), 0.2, meters)",
+                "BBOX(the_geom, 108.2, 34.2, 108.6, 34.7) AND KIND = '160200'",
+        };
+        for (String cql : cqls) {
+            filters.put(cql, ECQL.toFilter(cql));
+        }
+        filters.put("NAME = 'ALPHA' matchCase=false",
+                FILTER_FACTORY.equal(FILTER_FACTORY.property("NAME"), FILTER_FACTORY.literal("ALPHA"), false));
+        filters.put("NAME LIKE 'al*' matchCase=false",
+                FILTER_FACTORY.like(FILTER_FACTORY.property("NAME"), "al*", "*", "?", "\\", false));
+        filters.put("KIND IN FilterBuilder", FilterBuilder.createInFilter("KIND", new String[]{"110304", "160100"}));
+        filters.put("KIND >= 160100 FilterBuilder", FilterBuilder.createGreaterOrEqualFilter("KIND", 160100, true));
+        filters.put("INCLUDE", Filter.INCLUDE);
+        filters.put("EXCLUDE", Filter.EXCLUDE);
+        return filters;
+    }
+}
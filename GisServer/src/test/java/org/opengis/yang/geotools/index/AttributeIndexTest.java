@@ -0,0 +1,139 @@
+package org.opengis.yang.geotools.index;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 相等、in、范围查询与分组计数必须与逐条比较一致
+ */
+public class AttributeIndexTest {
+
+    private static final int RECORDS = 3000;
+
+    private static final String[] KINDS = {"110303", "110304", "130201", "160100", "160200"};
+
+    //下标为记录号，0不使用
+    private final Integer[] levels = new Integer[RECORDS + 1];
+
+    private final String[] kinds = new String[RECORDS + 1];
+
+    private AttributeIndex levelIndex;
+
+    private AttributeIndex kindIndex;
+
+    @Before
+    public void buildIndexes() {
+        Random random = new Random(11);
+        AttributeIndex.Builder levelBuilder = new AttributeIndex.Builder("LEVEL", Integer.class);
+        AttributeIndex.Builder kindBuilder = new AttributeIndex.Builder("KIND", String.class);
+        for (int record = 1; record <= RECORDS; record++) {
+            //少量空值不进入任何倒排列表
+            levels[record] = random.nextInt(50) == 0 ? null : random.nextInt(40) - 10;
+            kinds[record] = random.nextInt(50) == 0 ? null : KINDS[random.nextInt(KINDS.length)];
+            levelBuilder.add(levels[record]);
+            kindBuilder.add(kinds[record]);
+        }
+        levelIndex = levelBuilder.build();
+        kindIndex = kindBuilder.build();
+    }
+
+    @Test
+    public void equalToMatchesScan() {
+        for (String kind : KINDS) {
+            Assert.assertEquals(kind, scanKind(kind), kindIndex.equalTo(kind));
+        }
+        Assert.assertTrue(kindIndex.equalTo("999999").isEmpty());
+        for (int level = -12; level < 32; level++) {
+            BitSet expected = new BitSet();
+            for (int record = 1; record <= RECORDS; record++) {
+                if (levels[record] != null && levels[record] == level) {
+                    expected.set(record);
+                }
+            }
+            Assert.assertEquals("LEVEL=" + level, expected, levelIndex.equalTo(level));
+            //数值字段按数值比较，与字面量的类型无关
+            Assert.assertEquals("LEVEL=" + level + ".0", expected, levelIndex.equalTo((double) level));
+            Assert.assertEquals("LEVEL='" + level + "'", expected, levelIndex.equalTo(String.valueOf(level)));
+        }
+        Assert.assertTrue(levelIndex.equalTo(2.5).isEmpty());
+    }
+
+    @Test
+    public void anyOfMatchesScan() {
+        BitSet expected = scanKind("110303");
+        expected.or(scanKind("160200"));
+        Assert.assertEquals(expected, kindIndex.anyOf(Arrays.asList("110303", "160200", "000000")));
+    }
+
+    @Test
+    public void notComparableLiteralsReturnNull() {
+        //字符串字段与数值比较时GeoTools按数值比较，索引不能回答
+        Assert.assertNull(kindIndex.equalTo(160100));
+        Assert.assertNull(kindIndex.anyOf(Arrays.asList("160100", 160200)));
+        Assert.assertNull(kindIndex.range("110303", true, null, false));
+        Assert.assertNull(levelIndex.equalTo("abc"));
+        Assert.assertNull(levelIndex.equalTo(null));
+        Assert.assertFalse(kindIndex.isExact(160100));
+        Assert.assertTrue(kindIndex.isExact("160100"));
+        Assert.assertTrue(levelIndex.isExact(3));
+        Assert.assertFalse(levelIndex.isExact("3"));
+    }
+
+    @Test
+    public void rangeMatchesScan() {
+        Random random = new Random(13);
+        for (int i = 0; i < 200; i++) {
+            Double lower = random.nextInt(4) == 0 ? null : random.nextInt(50) - 15 + (random.nextBoolean() ? 0.5 : 0);
+            Double upper = random.nextInt(4) == 0 ? null : random.nextInt(50) - 15 + (random.nextBoolean() ? 0.5 : 0);
+            boolean lowerInclusive = random.nextBoolean();
+            boolean upperInclusive = random.nextBoolean();
+            BitSet expected = new BitSet();
+            for (int record = 1; record <= RECORDS; record++) {
+                Integer level = levels[record];
+                if (level == null) {
+                    continue;
+                }
+                boolean aboveLower = lower == null || (lowerInclusive ? level >= lower : level > lower);
+                boolean belowUpper = upper == null || (upperInclusive ? level <= upper : level < upper);
+                if (aboveLower && belowUpper) {
+                    expected.set(record);
+                }
+            }
+            String range = (lowerInclusive ? "[" : "(") + lower + "," + upper + (upperInclusive ? "]" : ")");
+            Assert.assertEquals(range, expected, levelIndex.range(lower, lowerInclusive, upper, upperInclusive));
+        }
+    }
+
+    @Test
+    public void groupCountsMatchScan() {
+        BitSet candidates = new BitSet();
+        for (int record = 1; record <= RECORDS; record += 3) {
+            candidates.set(record);
+        }
+        Map<Object, Integer> counts = kindIndex.groupCounts(candidates);
+        Map<Object, Integer> all = kindIndex.groupCounts(null);
+        for (String kind : KINDS) {
+            BitSet records = scanKind(kind);
+            Assert.assertEquals(Integer.valueOf(records.cardinality()), all.get(kind));
+            records.and(candidates);
+            Assert.assertEquals(records.isEmpty() ? null : records.cardinality(), counts.get(kind));
+        }
+        Assert.assertEquals(KINDS.length, kindIndex.getDistinctCount());
+    }
+
+    private BitSet scanKind(String kind) {
+        BitSet result = new BitSet();
+        for (int record = 1; record <= RECORDS; record++) {
+            if (kind.equals(kinds[record])) {
+                result.set(record);
+            }
+        }
+        return result;
+    }
+}
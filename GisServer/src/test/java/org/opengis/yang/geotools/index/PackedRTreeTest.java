@@ -0,0 +1,156 @@
+package org.opengis.yang.geotools.index;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * 范围查询与最近邻查询的结果必须与逐个比较一致
+ */
+public class PackedRTreeTest {
+
+    private static final int ITEMS = 5000;
+
+    private static final int QUERIES = 200;
+
+    private double[] boxes;
+
+    private int[] ids;
+
+    private final Random random = new Random(7);
+
+    @Before
+    public void createItems() {
+        boxes = new double[ITEMS * 4];
+        ids = new int[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            //一半是点，一半是小矩形
+            double width = i % 2 == 0 ? 0 : random.nextDouble() * 2;
+            double height = i % 2 == 0 ? 0 : random.nextDouble() * 2;
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = x + width;
+            boxes[i * 4 + 3] = y + height;
+            //与shp记录号一致，从1开始
+            ids[i] = i + 1;
+        }
+    }
+
+    @Test
+    public void queryMatchesBruteForce() {
+        for (int nodeSize : new int[]{2, 4, 16}) {
+            PackedRTree tree = PackedRTree.build(boxes.clone(), ids.clone(), ITEMS, nodeSize);
+            Assert.assertEquals(ITEMS, tree.size());
+            for (int q = 0; q < QUERIES; q++) {
+                double x = random.nextDouble() * 110 - 5;
+                double y = random.nextDouble() * 110 - 5;
+                Envelope envelope = new Envelope(x, x + random.nextDouble() * 20, y, y + random.nextDouble() * 20);
+                Assert.assertEquals("nodeSize=" + nodeSize + " " + envelope, bruteForce(envelope), tree.query(envelope));
+            }
+        }
+    }
+
+    @Test
+    public void boundsCoverAllItems() {
+        PackedRTree tree = PackedRTree.build(boxes.clone(), ids.clone(), ITEMS, 16);
+        Envelope expected = new Envelope();
+        for (int i = 0; i < ITEMS; i++) {
+            expected.expandToInclude(new Envelope(boxes[i * 4], boxes[i * 4 + 2], boxes[i * 4 + 1], boxes[i * 4 + 3]));
+        }
+        Assert.assertEquals(expected, tree.getBounds());
+        Assert.assertEquals(ITEMS, tree.query(expected).cardinality());
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        PackedRTree tree = PackedRTree.build(boxes.clone(), ids.clone(), ITEMS, 16);
+        int k = 10;
+        for (int q = 0; q < QUERIES; q++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            double maxDistance = q % 4 == 0 ? 3 : Double.POSITIVE_INFINITY;
+            int[] resultIds = new int[k];
+            double[] resultDistances = new double[k];
+            int found = tree.nearest(x, y, k, maxDistance, null, resultIds, resultDistances);
+
+            double[] expected = sortedDistances(x, y, maxDistance);
+            int expectedCount = Math.min(k, expected.length);
+            Assert.assertEquals(expectedCount, found);
+            for (int i = 0; i < found; i++) {
+                //距离相同的要素顺序不确定，比较距离以及编号对应的距离
+                Assert.assertEquals(expected[i], resultDistances[i], 1e-12);
+                Assert.assertEquals(resultDistances[i], boxDistance(resultIds[i] - 1, x, y), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void nearestUsesExactDistance() {
+        PackedRTree tree = PackedRTree.build(boxes.clone(), ids.clone(), ITEMS, 8);
+        double x = 50;
+        double y = 50;
+        //排除奇数编号，其余按到范围右上角的距离排序
+        int[] resultIds = new int[5];
+        double[] resultDistances = new double[5];
+        int found = tree.nearest(x, y, 5, Double.POSITIVE_INFINITY,
+                id -> id % 2 == 1 ? Double.POSITIVE_INFINITY : Math.hypot(boxes[(id - 1) * 4 + 2] - x, boxes[(id - 1) * 4 + 3] - y),
+                resultIds, resultDistances);
+        double[] expected = new double[ITEMS / 2];
+        int size = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            if (ids[i] % 2 == 0) {
+                expected[size++] = Math.hypot(boxes[i * 4 + 2] - x, boxes[i * 4 + 3] - y);
+            }
+        }
+        Arrays.sort(expected, 0, size);
+        Assert.assertEquals(5, found);
+        for (int i = 0; i < found; i++) {
+            Assert.assertEquals(0, resultIds[i] % 2);
+            Assert.assertEquals(expected[i], resultDistances[i], 1e-12);
+        }
+    }
+
+    @Test
+    public void emptyTree() {
+        PackedRTree tree = PackedRTree.build(new double[0], new int[0], 0, 16);
+        Assert.assertTrue(tree.query(new Envelope(0, 100, 0, 100)).isEmpty());
+        Assert.assertEquals(0, tree.nearest(0, 0, 3, Double.POSITIVE_INFINITY, null, new int[3], new double[3]));
+    }
+
+    private BitSet bruteForce(Envelope envelope) {
+        BitSet result = new BitSet();
+        for (int i = 0; i < ITEMS; i++) {
+            if (envelope.intersects(new Envelope(boxes[i * 4], boxes[i * 4 + 2], boxes[i * 4 + 1], boxes[i * 4 + 3]))) {
+                result.set(ids[i]);
+            }
+        }
+        return result;
+    }
+
+    private double[] sortedDistances(double x, double y, double maxDistance) {
+        double[] distances = new double[ITEMS];
+        int size = 0;
+        for (int i = 0; i < ITEMS; i++) {
+            double distance = boxDistance(i, x, y);
+            if (distance <= maxDistance) {
+                distances[size++] = distance;
+            }
+        }
+        Arrays.sort(distances, 0, size);
+        return Arrays.copyOf(distances, size);
+    }
+
+    private double boxDistance(int item, double x, double y) {
+        int offset = item * 4;
+        double dx = Math.max(0, Math.max(boxes[offset] - x, x - boxes[offset + 2]));
+        double dy = Math.max(0, Math.max(boxes[offset + 1] - y, y - boxes[offset + 3]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
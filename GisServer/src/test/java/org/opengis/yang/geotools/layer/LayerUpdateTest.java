@@ -0,0 +1,217 @@
+package org.opengis.yang.geotools.layer;
+
+import org.geotools.api.data.SimpleFeatureStore;
+import org.geotools.api.data.Transaction;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 写时复制更新与发布：更新期间已取得的句柄一直读取旧版本，旧版本在最后一个句柄关闭后关闭
+ */
+public class LayerUpdateTest {
+
+    private static final int FEATURE_COUNT = 300;
+
+    private static final int APPENDED = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private ShapeLayerRegistry layerRegistry;
+
+    @Before
+    public void openLayer() throws Exception {
+        file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 31);
+        layerRegistry = registry();
+    }
+
+    @After
+    public void closeLayer() {
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void readersKeepOldVersion() throws Exception {
+        File published;
+        ShapeLayer old;
+        try (LayerHandle reading = layerRegistry.acquire("poi")) {
+            old = reading.layer();
+            String oldVersion = layerRegistry.version("poi");
+            try (LayerUpdate update = layerRegistry.beginUpdate("poi")) {
+                update.copyCurrent();
+                append(update.getFile(), APPENDED);
+                //提交前读取者仍使用当前版本
+                Assert.assertEquals(file, layerRegistry.currentFile("poi"));
+                update.commit();
+                published = update.getFile();
+            }
+            Assert.assertEquals(published, layerRegistry.currentFile("poi"));
+            Assert.assertNotEquals(oldVersion, layerRegistry.version("poi"));
+            Assert.assertEquals(FEATURE_COUNT, reading.layer().getRecordCount());
+            Assert.assertTrue(old.isRetired());
+            Assert.assertFalse(old.isDisposed());
+            try (LayerHandle handle = layerRegistry.acquire("poi")) {
+                Assert.assertNotSame(old, handle.layer());
+                Assert.assertEquals(FEATURE_COUNT + APPENDED, handle.layer().getRecordCount());
+            }
+        }
+        Assert.assertTrue(old.isDisposed());
+        //配置中的文件不是更新生成的版本，退役后保留
+        Assert.assertEquals(FEATURE_COUNT, TestShapefiles.count(file));
+        Assert.assertEquals(FEATURE_COUNT + APPENDED, TestShapefiles.count(published));
+
+        //重启后仍使用最后发布的版本
+        ShapeLayerRegistry restarted = registry();
+        try (LayerHandle handle = restarted.acquire("poi")) {
+            Assert.assertEquals(published.getAbsoluteFile(), restarted.currentFile("poi").getAbsoluteFile());
+            Assert.assertEquals(FEATURE_COUNT + APPENDED, handle.layer().getRecordCount());
+        } finally {
+            restarted.dispose();
+        }
+    }
+
+    @Test
+    public void retiredVersionFilesAreDeleted() throws Exception {
+        File first;
+        try (LayerUpdate update = layerRegistry.beginUpdate("poi")) {
+            update.copyCurrent();
+            append(update.getFile(), APPENDED);
+            update.commit();
+            first = update.getFile();
+        }
+        LayerHandle reading = layerRegistry.acquire("poi");
+        try (LayerUpdate update = layerRegistry.beginUpdate("poi")) {
+            update.copyCurrent();
+            append(update.getFile(), APPENDED);
+            update.commit();
+        }
+        //还有读取者时不删除
+        Assert.assertTrue(first.exists());
+        Assert.assertEquals(FEATURE_COUNT + APPENDED, reading.layer().getRecordCount());
+        reading.close();
+        Assert.assertFalse(first.exists());
+        Assert.assertFalse(first.getParentFile().exists());
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            Assert.assertEquals(FEATURE_COUNT + 2 * APPENDED, handle.layer().getRecordCount());
+        }
+    }
+
+    @Test
+    public void uncommittedUpdateIsDiscarded() throws Exception {
+        File staging;
+        try (LayerUpdate update = layerRegistry.beginUpdate("poi")) {
+            update.copyCurrent();
+            append(update.getFile(), APPENDED);
+            staging = update.getFile();
+            Assert.assertTrue(staging.exists());
+        }
+        Assert.assertFalse(staging.exists());
+        Assert.assertEquals(file, layerRegistry.currentFile("poi"));
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            Assert.assertEquals(FEATURE_COUNT, handle.layer().getRecordCount());
+        }
+    }
+
+    @Test
+    public void concurrentUpdateIsRejected() throws Exception {
+        try (LayerUpdate first = layerRegistry.beginUpdate("poi");
+             LayerUpdate second = layerRegistry.beginUpdate("poi")) {
+            first.copyCurrent();
+            second.copyCurrent();
+            append(first.getFile(), APPENDED);
+            append(second.getFile(), 1);
+            first.commit();
+            try {
+                second.commit();
+                Assert.fail("基于旧版本的更新不能覆盖已发布的版本");
+            } catch (IllegalStateException expected) {
+                //期望的异常
+            }
+            Assert.assertEquals(first.getFile(), layerRegistry.currentFile("poi"));
+        }
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            Assert.assertEquals(FEATURE_COUNT + APPENDED, handle.layer().getRecordCount());
+        }
+    }
+
+    @Test
+    public void retiredLayerClosesWithLastHandle() throws Exception {
+        LayerHandle first = layerRegistry.acquire("poi");
+        LayerHandle second = layerRegistry.acquire("poi");
+        ShapeLayer old = first.layer();
+        Assert.assertSame(old, second.layer());
+        Assert.assertEquals(2, old.getRefCount());
+
+        File next = TestShapefiles.writePoints(folder.newFolder("next"), "poi", FEATURE_COUNT / 3, 32);
+        layerRegistry.publish("poi", next);
+        Assert.assertTrue(old.isRetired());
+        Assert.assertFalse(old.isDisposed());
+
+        first.close();
+        //重复关闭不会多次释放引用
+        first.close();
+        Assert.assertEquals(1, old.getRefCount());
+        Assert.assertFalse(old.isDisposed());
+        Assert.assertEquals(FEATURE_COUNT, second.layer().getRecordCount());
+
+        second.close();
+        Assert.assertEquals(0, old.getRefCount());
+        Assert.assertTrue(old.isDisposed());
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            Assert.assertFalse(handle.layer().isRetired());
+            Assert.assertEquals(FEATURE_COUNT / 3, handle.layer().getRecordCount());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void publishCurrentFileIsRejected() throws Exception {
+        layerRegistry.publish("poi", file);
+    }
+
+    private ShapeLayerRegistry registry() {
+        ShapeLayerRegistry registry = new ShapeLayerRegistry(new GisProperties());
+        registry.register("poi", TestShapefiles.layer(file));
+        return registry;
+    }
+
+    /**
+     * 在副本上通过事务追加要素
+     */
+    private static void append(File shpFile, int count) throws IOException {
+        ShapefileDataStore dataStore = new ShapefileDataStore(shpFile.toURI().toURL());
+        dataStore.setCharset(StandardCharsets.UTF_8);
+        Transaction transaction = new DefaultTransaction("update");
+        try {
+            SimpleFeatureStore featureStore = (SimpleFeatureStore) dataStore.getFeatureSource(dataStore.getTypeNames()[0]);
+            featureStore.setTransaction(transaction);
+            List<SimpleFeature> features = new ArrayList<>(count);
+            TestShapefiles.points(featureStore.getSchema(), count, count).forEachRemaining(features::add);
+            featureStore.addFeatures(new ListFeatureCollection(featureStore.getSchema(), features));
+            transaction.commit();
+        } catch (IOException | RuntimeException e) {
+            transaction.rollback();
+            throw e;
+        } finally {
+            transaction.close();
+            dataStore.dispose();
+        }
+    }
+}
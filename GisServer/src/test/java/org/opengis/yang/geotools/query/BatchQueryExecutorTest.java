@@ -0,0 +1,153 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 共用一次扫描的批量查询，每个filter的计数与要素必须与单独查询一致，并且只扫描候选记录的并集
+ */
+public class BatchQueryExecutorTest {
+
+    private static final int FEATURE_COUNT = 1500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<SimpleFeature> features;
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle indexed;
+
+    private LayerHandle pinned;
+
+    private final LayerQueryExecutor queryExecutor = new LayerQueryExecutor();
+
+    private final BatchQueryExecutor batchExecutor = new BatchQueryExecutor(queryExecutor);
+
+    @Before
+    public void openLayers() throws Exception {
+        File file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 71);
+        features = TestShapefiles.read(file);
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("indexed", TestShapefiles.layer(file, "KIND", "LEVEL"));
+        GisProperties.LayerProperties pinnedProperties = TestShapefiles.layer(file, "KIND", "LEVEL");
+        pinnedProperties.setPinned(true);
+        layerRegistry.register("pinned", pinnedProperties);
+        indexed = layerRegistry.acquire("indexed");
+        pinned = layerRegistry.acquire("pinned");
+    }
+
+    @After
+    public void closeLayers() {
+        indexed.close();
+        pinned.close();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void exactIndexCountsDoNotScan() throws Exception {
+        for (LayerHandle handle : new LayerHandle[]{indexed, pinned}) {
+            BatchResult result = assertBatch(handle.layer(), 0,
+                    "KIND = '160100'", "LEVEL BETWEEN 3 AND 7", "KIND = 'none'", "INCLUDE");
+            Assert.assertEquals(0, result.getScanned());
+        }
+    }
+
+    @Test
+    public void scansUnionOfCandidates() throws Exception {
+        int union = 0;
+        for (SimpleFeature feature : features) {
+            if ("160100".equals(feature.getAttribute("KIND")) || (Integer) feature.getAttribute("LEVEL") > 15) {
+                union++;
+            }
+        }
+        for (LayerHandle handle : new LayerHandle[]{indexed, pinned}) {
+            //第三个filter由索引精确回答，不参与扫描
+            BatchResult result = assertBatch(handle.layer(), 0,
+                    "KIND = '160100' AND NAME LIKE '%学校%'", "LEVEL > 15 AND NAME LIKE '%1%'", "KIND IN ('110303', '130201')");
+            Assert.assertEquals(union, result.getScanned());
+        }
+    }
+
+    @Test
+    public void fullScanFilterScansAllRecords() throws Exception {
+        for (LayerHandle handle : new LayerHandle[]{indexed, pinned}) {
+            BatchResult result = assertBatch(handle.layer(), 0,
+                    "NAME LIKE '%学校%'", "BBOX(the_geom, 108.2, 34.2, 108.6, 34.7)", "KIND = '160100'");
+            Assert.assertEquals(FEATURE_COUNT, result.getScanned());
+        }
+    }
+
+    @Test
+    public void returnsFeaturesInRecordOrder() throws Exception {
+        String[] cqls = {
+                "NAME LIKE '%学校%'",
+                "KIND = '160100'",
+                "LEVEL > 15 AND NAME LIKE '%1%'",
+                "BBOX(the_geom, 108.2, 34.2, 108.6, 34.7) AND LEVEL < 4",
+                "KIND = 'none'",
+                "INCLUDE",
+        };
+        for (LayerHandle handle : new LayerHandle[]{indexed, pinned}) {
+            assertBatch(handle.layer(), 5, cqls);
+            assertBatch(handle.layer(), Integer.MAX_VALUE, cqls);
+        }
+    }
+
+    @Test
+    public void emptyBatch() throws Exception {
+        BatchResult result = batchExecutor.execute(indexed.layer(), Collections.emptyList(), 10);
+        Assert.assertEquals(0, result.size());
+        Assert.assertEquals(0, result.getScanned());
+    }
+
+    private BatchResult assertBatch(ShapeLayer layer, int maxFeatures, String... cqls) throws Exception {
+        List<Filter> filters = new ArrayList<>(cqls.length);
+        for (String cql : cqls) {
+            filters.add(FilterBuilder.createCommonFilter(cql));
+        }
+        BatchResult result = batchExecutor.execute(layer, filters, maxFeatures);
+        Assert.assertEquals(cqls.length, result.size());
+        for (int i = 0; i < cqls.length; i++) {
+            String message = layer.getName() + " " + cqls[i];
+            Filter filter = filters.get(i);
+            int expected = 0;
+            for (SimpleFeature feature : features) {
+                if (filter.evaluate(feature)) {
+                    expected++;
+                }
+            }
+            Assert.assertEquals(message, expected, result.getCounts()[i]);
+            List<String> expectedIds = new ArrayList<>();
+            if (maxFeatures > 0) {
+                for (SimpleFeature feature : queryExecutor.list(layer, filter, 0, maxFeatures)) {
+                    expectedIds.add(feature.getID());
+                }
+            }
+            List<String> ids = new ArrayList<>();
+            for (SimpleFeature feature : result.getFeatures(i)) {
+                ids.add(feature.getID());
+            }
+            Assert.assertEquals(message, expectedIds, ids);
+        }
+        return result;
+    }
+}
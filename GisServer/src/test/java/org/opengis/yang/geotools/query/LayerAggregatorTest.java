@@ -0,0 +1,181 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各种执行方式的聚合结果必须与逐条统计要素的结果一致
+ */
+public class LayerAggregatorTest {
+
+    private static final int FEATURE_COUNT = 1500;
+
+    private static final List<String> LEVEL = Collections.singletonList("LEVEL");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<SimpleFeature> features;
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle indexed;
+
+    private LayerHandle pinned;
+
+    private final LayerAggregator aggregator = new LayerAggregator(new LayerQueryExecutor());
+
+    @Before
+    public void openLayers() throws Exception {
+        File file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 41);
+        features = TestShapefiles.read(file);
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("indexed", TestShapefiles.layer(file, "KIND", "LEVEL"));
+        GisProperties.LayerProperties pinnedProperties = TestShapefiles.layer(file, "KIND");
+        pinnedProperties.setPinned(true);
+        layerRegistry.register("pinned", pinnedProperties);
+        indexed = layerRegistry.acquire("indexed");
+        pinned = layerRegistry.acquire("pinned");
+    }
+
+    @After
+    public void closeLayers() {
+        indexed.close();
+        pinned.close();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void metadataAnswers() throws Exception {
+        assertAggregate(indexed, "INCLUDE", null, null, true, "HEADER");
+        assertAggregate(indexed, "INCLUDE", null, "KIND", false, "INDEX");
+        assertAggregate(indexed, "KIND = '160100'", null, "LEVEL", false, "INDEX");
+        assertAggregate(indexed, "LEVEL BETWEEN 3 AND 7", null, null, false, "INDEX");
+    }
+
+    @Test
+    public void recordScan() throws Exception {
+        //需要数值统计、范围或未建索引的分组字段时只读记录头与所需字段
+        assertAggregate(indexed, "KIND = '160100'", LEVEL, null, true, "RECORD_SCAN");
+        assertAggregate(indexed, "INCLUDE", LEVEL, "KIND", true, "RECORD_SCAN");
+        assertAggregate(indexed, "LEVEL > 15", null, "NAME", false, "RECORD_SCAN");
+    }
+
+    @Test
+    public void featureScan() throws Exception {
+        assertAggregate(indexed, "NAME LIKE '%学校%'", LEVEL, "KIND", true, "FEATURE_SCAN");
+        assertAggregate(indexed, "BBOX(the_geom, 108.2, 34.2, 108.6, 34.7) AND LEVEL > 10", LEVEL, "KIND", true, null);
+        assertAggregate(indexed, "NAME LIKE 'none%'", LEVEL, "KIND", true, "FEATURE_SCAN");
+    }
+
+    @Test
+    public void columnarLayer() throws Exception {
+        assertAggregate(pinned, "NAME LIKE '%学校%'", LEVEL, "KIND", true, "COLUMNAR");
+        assertAggregate(pinned, "KIND = '160100' OR LEVEL = 3", LEVEL, "NAME", true, "COLUMNAR");
+        assertAggregate(pinned, "INCLUDE", LEVEL, null, false, "COLUMNAR");
+        assertAggregate(pinned, "INCLUDE", null, "KIND", true, null);
+    }
+
+    @Test
+    public void invalidFieldsAreRejected() throws Exception {
+        String[][] cases = {{"NAME", null}, {"MISSING", null}, {null, "MISSING"}, {null, "the_geom"}};
+        for (String[] fields : cases) {
+            try {
+                aggregator.aggregate(indexed.layer(), Filter.INCLUDE,
+                        fields[0] == null ? null : Collections.singletonList(fields[0]), fields[1], false);
+                Assert.fail(fields[0] + "," + fields[1]);
+            } catch (IllegalArgumentException expected) {
+                //期望的异常
+            }
+        }
+    }
+
+    /**
+     * @param source 期望的结果来源，为null时不检查
+     */
+    private void assertAggregate(LayerHandle handle, String cql, List<String> fields, String groupBy, boolean extent,
+                                 String source) throws Exception {
+        Filter filter = FilterBuilder.createCommonFilter(cql);
+        AggregateResult result = aggregator.aggregate(handle.layer(), filter, fields, groupBy, extent);
+        if (source != null) {
+            Assert.assertEquals(cql, source, result.getSource());
+        }
+
+        int count = 0;
+        Map<Object, Integer> groups = new HashMap<>();
+        Envelope envelope = new Envelope();
+        long levelCount = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (SimpleFeature feature : features) {
+            if (!filter.evaluate(feature)) {
+                continue;
+            }
+            count++;
+            if (groupBy != null && feature.getAttribute(groupBy) != null) {
+                groups.merge(feature.getAttribute(groupBy), 1, Integer::sum);
+            }
+            envelope.expandToInclude(((Geometry) feature.getDefaultGeometry()).getEnvelopeInternal());
+            Number level = (Number) feature.getAttribute("LEVEL");
+            if (level != null) {
+                levelCount++;
+                min = Math.min(min, level.doubleValue());
+                max = Math.max(max, level.doubleValue());
+                sum += level.doubleValue();
+            }
+        }
+
+        Assert.assertEquals(cql, count, result.getCount());
+        if (groupBy == null) {
+            Assert.assertNull(cql, result.getGroups());
+        } else {
+            Assert.assertEquals(cql, groups, result.getGroups());
+            int previous = Integer.MAX_VALUE;
+            for (int groupCount : result.getGroups().values()) {
+                Assert.assertTrue(cql + "：分组按要素数降序", groupCount <= previous);
+                previous = groupCount;
+            }
+        }
+        if (!extent || count == 0) {
+            Assert.assertNull(cql, result.getExtent());
+        } else {
+            Assert.assertArrayEquals(cql, new double[]{envelope.getMinX(), envelope.getMinY(),
+                    envelope.getMaxX(), envelope.getMaxY()}, result.getExtent(), 1e-9);
+        }
+        if (fields == null) {
+            Assert.assertTrue(cql, result.getFields().isEmpty());
+        } else {
+            AggregateResult.FieldStats stats = result.getFields().get("LEVEL");
+            Assert.assertEquals(cql, levelCount, stats.getCount());
+            if (levelCount == 0) {
+                Assert.assertNull(cql, stats.getMin());
+                Assert.assertNull(cql, stats.getAvg());
+            } else {
+                Assert.assertEquals(cql, min, stats.getMin(), 0);
+                Assert.assertEquals(cql, max, stats.getMax(), 0);
+                Assert.assertEquals(cql, sum, stats.getSum(), 1e-6);
+                Assert.assertEquals(cql, sum / levelCount, stats.getAvg(), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.LayerVersion;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 游标分页逐页读取的结果必须与一次查询的结果首尾相接、不重不漏，
+ * 游标不能用于其他过滤条件或图层的其他版本
+ */
+public class PageCursorTest {
+
+    private static final int FEATURE_COUNT = 1000;
+
+    private static final int PAGE_SIZE = 37;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle handle;
+
+    private final LayerQueryExecutor executor = new LayerQueryExecutor();
+
+    @Before
+    public void openLayer() throws Exception {
+        file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 9);
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("poi", TestShapefiles.layer(file, "KIND"));
+        handle = layerRegistry.acquire("poi");
+    }
+
+    @After
+    public void closeLayer() {
+        handle.close();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void pagesAreContiguous() throws Exception {
+        String[] cqls = {
+                "INCLUDE",
+                "NAME LIKE '%学校%'",
+                "KIND = '160100'",
+                "BBOX(the_geom, 108.2, 34.2, 108.7, 34.8) AND LEVEL > 4",
+                "KIND = 'none'",
+        };
+        for (String cql : cqls) {
+            Filter filter = FilterBuilder.createCommonFilter(cql);
+            List<String> expected = ids(executor.list(handle.layer(), filter, 0, Integer.MAX_VALUE));
+            List<String> paged = new ArrayList<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                FeaturePage page = executor.page(handle.layer(), filter, cursor, PAGE_SIZE);
+                Assert.assertTrue(cql, page.getFeatures().size() <= PAGE_SIZE);
+                if (page.hasNext()) {
+                    Assert.assertEquals(cql + "：非末页应当是满页", PAGE_SIZE, page.getFeatures().size());
+                }
+                paged.addAll(ids(page.getFeatures()));
+                cursor = page.getNextCursor();
+                pages++;
+            } while (cursor != null);
+            Assert.assertEquals(cql, expected, paged);
+            Assert.assertEquals(cql, Math.max(1, (expected.size() + PAGE_SIZE - 1) / PAGE_SIZE), pages);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cursorIsBoundToFilter() throws Exception {
+        FeaturePage page = executor.page(handle.layer(), FilterBuilder.createCommonFilter("LEVEL >= 0"), null, PAGE_SIZE);
+        Assert.assertNotNull(page.getNextCursor());
+        //字符串'0'与数值0的比较结果相同，游标仍然不能混用
+        executor.page(handle.layer(), FilterBuilder.createCommonFilter("LEVEL >= '0'"), page.getNextCursor(), PAGE_SIZE);
+    }
+
+    @Test
+    public void cursorExpiresWithLayerVersion() throws Exception {
+        Filter filter = FilterBuilder.createCommonFilter("LEVEL >= 0");
+        FeaturePage page = executor.page(handle.layer(), filter, null, PAGE_SIZE);
+        //同一版本上可以继续读
+        executor.page(handle.layer(), filter, page.getNextCursor(), PAGE_SIZE);
+        LayerVersion.touch(file);
+        try {
+            executor.page(handle.layer(), filter, page.getNextCursor(), PAGE_SIZE);
+            Assert.fail("图层改写后旧游标应当失效");
+        } catch (IllegalArgumentException expected) {
+            //期望的异常
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedCursor() throws Exception {
+        executor.page(handle.layer(), Filter.INCLUDE, "not-a-cursor", PAGE_SIZE);
+    }
+
+    private static List<String> ids(List<SimpleFeature> features) {
+        List<String> ids = new ArrayList<>(features.size());
+        for (SimpleFeature feature : features) {
+            ids.add(feature.getID());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,128 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按区间并行扫描的结果与顺序扫描的结果、顺序必须一致，包括跳过与截取
+ */
+public class ParallelLayerScannerTest {
+
+    private static final int FEATURE_COUNT = 5000;
+
+    private static final int PARTITION_SIZE = 256;
+
+    private static final String[] CQLS = {
+            "INCLUDE",
+            "NAME LIKE '%学校%'",
+            "LEVEL > 12",
+            "KIND = '160100' OR LEVEL = 3",
+            "KIND = 'none'",
+    };
+
+    //跳过的要素数与最多返回的要素数
+    private static final int[][] RANGES = {
+            {0, Integer.MAX_VALUE}, {0, 10}, {0, PARTITION_SIZE + 1}, {300, 50},
+            {1000, 2000}, {FEATURE_COUNT, 10}, {0, 0}, {10, Integer.MAX_VALUE},
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle handle;
+
+    private ParallelLayerScanner scanner;
+
+    @Before
+    public void openLayer() throws Exception {
+        File file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 17);
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        //不建属性索引，过滤条件都走全表扫描
+        layerRegistry.register("poi", TestShapefiles.layer(file));
+        handle = layerRegistry.acquire("poi");
+        GisProperties properties = new GisProperties();
+        properties.setScanParallelism(4);
+        properties.setScanPartitionSize(PARTITION_SIZE);
+        scanner = new ParallelLayerScanner(properties);
+    }
+
+    @After
+    public void closeLayer() {
+        scanner.shutdown();
+        handle.close();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void scannerMatchesSequentialScan() throws Exception {
+        ShapeLayer layer = handle.layer();
+        Assert.assertTrue(scanner.isWorthwhile(layer));
+        LayerQueryExecutor sequential = new LayerQueryExecutor();
+        for (String cql : CQLS) {
+            Filter filter = FilterBuilder.createCommonFilter(cql);
+            QueryPlan plan = sequential.plan(layer, filter);
+            Assert.assertTrue(cql, plan.isFullScan());
+            Assert.assertEquals(cql, sequential.count(layer, filter), scanner.count(layer, plan));
+            for (int[] range : RANGES) {
+                String message = cql + " " + range[0] + "," + range[1];
+                Assert.assertEquals(message, ids(sequential.list(layer, filter, range[0], range[1])),
+                        ids(scanner.collect(layer, plan, range[0], range[1])));
+            }
+        }
+    }
+
+    @Test
+    public void executorUsesScanner() throws Exception {
+        ShapeLayer layer = handle.layer();
+        LayerQueryExecutor sequential = new LayerQueryExecutor();
+        LayerQueryExecutor parallel = new LayerQueryExecutor(scanner);
+        for (String cql : CQLS) {
+            Filter filter = FilterBuilder.createCommonFilter(cql);
+            Assert.assertEquals(cql, sequential.count(layer, filter), parallel.count(layer, filter));
+            for (int[] range : RANGES) {
+                String message = cql + " " + range[0] + "," + range[1];
+                Assert.assertEquals(message, ids(sequential.list(layer, filter, range[0], range[1])),
+                        ids(parallel.list(layer, filter, range[0], range[1])));
+            }
+        }
+    }
+
+    @Test
+    public void smallLayerIsNotWorthwhile() {
+        GisProperties properties = new GisProperties();
+        properties.setScanParallelism(4);
+        properties.setScanPartitionSize(FEATURE_COUNT);
+        ParallelLayerScanner coarse = new ParallelLayerScanner(properties);
+        try {
+            Assert.assertFalse(coarse.isWorthwhile(handle.layer()));
+        } finally {
+            coarse.shutdown();
+        }
+    }
+
+    private static List<String> ids(List<SimpleFeature> features) {
+        List<String> ids = new ArrayList<>(features.size());
+        for (SimpleFeature feature : features) {
+            ids.add(feature.getID());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,132 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 索引候选集加剩余条件的结果、以及查询执行器的结果，必须与GeoTools逐条判断一致
+ */
+public class QueryPlannerTest {
+
+    private static final int FEATURE_COUNT = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerHandle handle;
+
+    //下标为记录号减1
+    private List<SimpleFeature> features;
+
+    private final Map<String, Filter> filters = new LinkedHashMap<>();
+
+    @Before
+    public void openLayer() throws Exception {
+        File file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 3);
+        features = TestShapefiles.read(file);
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("poi", TestShapefiles.layer(file, "KIND", "LEVEL"));
+        handle = layerRegistry.acquire("poi");
+
+        cql("KIND = '160100'");
+        cql("KIND = 'none'");
+        cql("LEVEL >= 5 AND LEVEL < 12");
+        cql("LEVEL BETWEEN 3 AND 7");
+        cql("LEVEL > 18 OR LEVEL < 1");
+        cql("KIND = '160100' OR LEVEL = 3");
+        cql("BBOX(the_geom, 108.2, 34.2, 108.5, 34.6)");
+        cql("BBOX(the_geom, 108.2, 34.2, 108.5, 34.6) AND KIND = '160200'");
+        cql("INTERSECTS(the_geom, POLYGON((108.1 34.1, 108.9 34.1, 108.5 34.9, 108.1 34.1))) AND LEVEL <= 10");
+        cql("NAME LIKE '%学校%' AND LEVEL > 10");
+        cql("NOT (KIND = '160100')");
+        //字面量类型与字段类型不同，索引只能给出候选集或不能使用
+        cql("KIND = 160100");
+        cql("KIND >= 160100");
+        cql("LEVEL = '7'");
+        filters.put("IN", FilterBuilder.createInFilter("KIND", new String[]{"110303", "130201", "999999"}));
+        filters.put("EXCLUDE", Filter.EXCLUDE);
+        filters.put("INCLUDE", Filter.INCLUDE);
+    }
+
+    @After
+    public void closeLayer() {
+        handle.close();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void planMatchesFilterEvaluate() {
+        QueryPlanner planner = new QueryPlanner();
+        ShapeLayer layer = handle.layer();
+        for (Map.Entry<String, Filter> entry : filters.entrySet()) {
+            QueryPlan plan = planner.plan(layer, entry.getValue());
+            BitSet candidates = plan.getCandidates();
+            BitSet actual = new BitSet();
+            for (int record = 1; record <= FEATURE_COUNT; record++) {
+                if (candidates != null && !candidates.get(record)) {
+                    continue;
+                }
+                SimpleFeature feature = features.get(record - 1);
+                boolean residual = plan.getResidual().evaluate(feature);
+                Assert.assertEquals(entry.getKey() + "的编译条件与剩余条件不一致：" + feature.getID(),
+                        residual, plan.getCompiledResidual().test(feature));
+                if (residual) {
+                    actual.set(record);
+                }
+            }
+            Assert.assertEquals(entry.getKey() + " " + plan, expected(entry.getValue()), actual);
+        }
+    }
+
+    @Test
+    public void executorMatchesFilterEvaluate() throws Exception {
+        LayerQueryExecutor executor = new LayerQueryExecutor();
+        ShapeLayer layer = handle.layer();
+        for (Map.Entry<String, Filter> entry : filters.entrySet()) {
+            BitSet expected = expected(entry.getValue());
+            Assert.assertEquals(entry.getKey(), expected.cardinality(), executor.count(layer, entry.getValue()));
+            List<String> expectedIds = new ArrayList<>();
+            expected.stream().forEach(record -> expectedIds.add(features.get(record - 1).getID()));
+            List<String> ids = new ArrayList<>();
+            for (SimpleFeature feature : executor.list(layer, entry.getValue(), 0, Integer.MAX_VALUE)) {
+                ids.add(feature.getID());
+            }
+            Assert.assertEquals(entry.getKey(), expectedIds, ids);
+        }
+    }
+
+    private void cql(String cql) throws Exception {
+        filters.put(cql, FilterBuilder.createCommonFilter(cql));
+    }
+
+    private BitSet expected(Filter filter) {
+        BitSet result = new BitSet();
+        for (int record = 1; record <= FEATURE_COUNT; record++) {
+            if (filter.evaluate(features.get(record - 1))) {
+                result.set(record);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.LayerVersion;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 查询结果缓存的命中，以及改写文件、发布新版本后不再返回旧结果
+ */
+public class QueryResultCacheTest {
+
+    private static final int FEATURE_COUNT = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private LayerQueryExecutor executor;
+
+    private QueryResultCache cache;
+
+    private Filter filter;
+
+    @Before
+    public void openLayer() throws Exception {
+        file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 21);
+        GisProperties registryProperties = new GisProperties();
+        //每次获取图层都检查文件是否被改写
+        registryProperties.setFileCheckInterval(Duration.ZERO);
+        layerRegistry = new ShapeLayerRegistry(registryProperties);
+        layerRegistry.register("poi", TestShapefiles.layer(file, "KIND"));
+        GisProperties properties = new GisProperties();
+        properties.setResultCacheMaxRecords(FEATURE_COUNT / 2);
+        executor = new LayerQueryExecutor();
+        cache = new QueryResultCache(executor, properties);
+        filter = FilterBuilder.createCommonFilter("NAME LIKE '%学校%' AND LEVEL > 5");
+    }
+
+    @After
+    public void closeLayer() {
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void repeatedQueriesHit() throws Exception {
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            ShapeLayer layer = handle.layer();
+            int expected = executor.count(layer, filter);
+            Assert.assertEquals(expected, cache.count(layer, filter));
+            Assert.assertEquals(0, cache.stats().hitCount());
+            Assert.assertEquals(expected, cache.count(layer, filter));
+            Assert.assertEquals(1, cache.stats().hitCount());
+
+            List<String> ids = ids(executor.list(layer, filter, 3, 20));
+            Assert.assertEquals(ids, ids(cache.query(layer, filter, 3, 20)));
+            Assert.assertEquals(ids, ids(cache.query(layer, filter, 3, 20)));
+            Assert.assertEquals(2, cache.stats().hitCount());
+
+            FeaturePage page = executor.page(layer, filter, null, 10);
+            for (int i = 0; i < 2; i++) {
+                FeaturePage cached = cache.page(layer, filter, null, 10);
+                Assert.assertEquals(ids(page.getFeatures()), ids(cached.getFeatures()));
+                Assert.assertEquals(page.getNextCursor(), cached.getNextCursor());
+            }
+            Assert.assertEquals(3, cache.stats().hitCount());
+        }
+    }
+
+    @Test
+    public void incompleteOrLargeResultsAreNotCached() throws Exception {
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            ShapeLayer layer = handle.layer();
+            //中途关闭的查询
+            try (SimpleFeatureIterator iterator = cache.query(layer, filter, 0, null)) {
+                Assert.assertTrue(iterator.hasNext());
+                iterator.next();
+            }
+            //结果超过缓存的记录数上限
+            ids(cache.query(layer, Filter.INCLUDE, 0, null));
+            Assert.assertEquals(0, cache.estimatedSize());
+            Assert.assertEquals(FEATURE_COUNT, ids(cache.query(layer, Filter.INCLUDE, 0, null)).size());
+            Assert.assertEquals(0, cache.stats().hitCount());
+        }
+    }
+
+    @Test
+    public void touchInvalidatesResults() throws Exception {
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            ShapeLayer layer = handle.layer();
+            int expected = cache.count(layer, filter);
+            String version = layer.getVersion();
+            LayerVersion.touch(file);
+            Assert.assertNotEquals(version, layer.getVersion());
+            Assert.assertEquals(expected, cache.count(layer, filter));
+            Assert.assertEquals(0, cache.stats().hitCount());
+            Assert.assertEquals(2, cache.stats().missCount());
+        }
+    }
+
+    @Test
+    public void externalRewriteInvalidatesResults() throws Exception {
+        int expectedOld;
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            expectedOld = cache.count(handle.layer(), filter);
+            Assert.assertEquals(expectedOld, cache.count(handle.layer(), filter));
+            Assert.assertEquals(1, cache.stats().hitCount());
+        }
+        //模拟其他进程原地改写，不调用touch
+        File other = TestShapefiles.writePoints(folder.newFolder("other"), "poi", FEATURE_COUNT / 2, 23);
+        for (String extension : new String[]{".shp", ".shx", ".dbf"}) {
+            Files.copy(new File(other.getParentFile(), "poi" + extension).toPath(),
+                    new File(folder.getRoot(), "poi" + extension).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            int count = cache.count(handle.layer(), filter);
+            Assert.assertEquals(1, cache.stats().hitCount());
+            Assert.assertEquals(2, cache.stats().missCount());
+            Assert.assertEquals(FEATURE_COUNT / 2, handle.layer().getRecordCount());
+            Assert.assertEquals(executor.count(handle.layer(), filter), count);
+            Assert.assertNotEquals(expectedOld, count);
+        }
+    }
+
+    @Test
+    public void invalidateRemovesLayerResults() throws Exception {
+        try (LayerHandle handle = layerRegistry.acquire("poi")) {
+            cache.count(handle.layer(), filter);
+            cache.invalidate("other");
+            cache.count(handle.layer(), filter);
+            Assert.assertEquals(1, cache.stats().hitCount());
+            cache.invalidate("poi");
+            cache.count(handle.layer(), filter);
+            Assert.assertEquals(1, cache.stats().hitCount());
+        }
+    }
+
+    @Test
+    public void publishedVersionIsNotServedOldResults() throws Exception {
+        File next = TestShapefiles.writePoints(folder.newFolder("next"), "poi", FEATURE_COUNT / 2, 22);
+        int expectedNext;
+        try (LayerHandle old = layerRegistry.acquire("poi")) {
+            int expectedOld = executor.count(old.layer(), filter);
+            Assert.assertEquals(expectedOld, cache.count(old.layer(), filter));
+            List<String> oldIds = ids(cache.query(old.layer(), filter, 0, null));
+
+            layerRegistry.publish("poi", next);
+            try (LayerHandle current = layerRegistry.acquire("poi")) {
+                Assert.assertNotSame(old.layer(), current.layer());
+                expectedNext = executor.count(current.layer(), filter);
+                Assert.assertNotEquals(expectedOld, expectedNext);
+                Assert.assertEquals(expectedNext, cache.count(current.layer(), filter));
+                Assert.assertEquals(ids(executor.list(current.layer(), filter, 0, Integer.MAX_VALUE)),
+                        ids(cache.query(current.layer(), filter, 0, null)));
+                Assert.assertEquals(0, cache.stats().hitCount());
+            }
+            //发布前开始的查询仍在旧版本上，新旧版本的结果互不清除
+            Assert.assertEquals(expectedOld, cache.count(old.layer(), filter));
+            Assert.assertEquals(oldIds, ids(cache.query(old.layer(), filter, 0, null)));
+            Assert.assertEquals(2, cache.stats().hitCount());
+        }
+        try (LayerHandle current = layerRegistry.acquire("poi")) {
+            Assert.assertEquals(expectedNext, cache.count(current.layer(), filter));
+            Assert.assertEquals(3, cache.stats().hitCount());
+        }
+    }
+
+    private static List<String> ids(List<SimpleFeature> features) {
+        List<String> ids = new ArrayList<>(features.size());
+        for (SimpleFeature feature : features) {
+            ids.add(feature.getID());
+        }
+        return ids;
+    }
+
+    private static List<String> ids(SimpleFeatureIterator iterator) {
+        List<String> ids = new ArrayList<>();
+        try (iterator) {
+            while (iterator.hasNext()) {
+                ids.add(iterator.next().getID());
+            }
+        }
+        return ids;
+    }
+}
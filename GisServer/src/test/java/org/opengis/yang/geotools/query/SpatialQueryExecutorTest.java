@@ -0,0 +1,291 @@
+package org.opengis.yang.geotools.query;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.api.filter.Filter;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.filter.FilterBuilder;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayer;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.shape.BulkShapefileWriter;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 最近邻与面内点计数必须与逐条计算距离、逐对判断包含的结果一致
+ */
+public class SpatialQueryExecutorTest {
+
+    private static final int POINT_COUNT = 3000;
+
+    //格网的行列数，面数超过一个计数任务的区间，覆盖任务拆分
+    private static final int GRID = 40;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
+
+    private static final String[] CQLS = {
+            "INCLUDE",
+            "NAME LIKE '%学校%'",
+            "KIND = '160100'",
+            "KIND = '160100' AND LEVEL > 5",
+            "KIND = 'none'",
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<SimpleFeature> points;
+
+    private List<SimpleFeature> polygons;
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private final List<LayerHandle> handles = new ArrayList<>();
+
+    private SpatialQueryExecutor executor;
+
+    @Before
+    public void openLayers() throws Exception {
+        File pointFile = TestShapefiles.writePoints(folder.getRoot(), "poi", POINT_COUNT, 81);
+        points = TestShapefiles.read(pointFile);
+        File polygonFile = writePolygons(new File(folder.getRoot(), "cells.shp"));
+        polygons = TestShapefiles.read(polygonFile);
+
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("poi", TestShapefiles.layer(pointFile, "KIND"));
+        GisProperties.LayerProperties pinnedPoints = TestShapefiles.layer(pointFile, "KIND");
+        pinnedPoints.setPinned(true);
+        layerRegistry.register("pinned_poi", pinnedPoints);
+        layerRegistry.register("cells", TestShapefiles.layer(polygonFile));
+        GisProperties.LayerProperties pinnedCells = TestShapefiles.layer(polygonFile);
+        pinnedCells.setPinned(true);
+        layerRegistry.register("pinned_cells", pinnedCells);
+        GisProperties.LayerProperties unindexed = TestShapefiles.layer(pointFile);
+        unindexed.setSpatialIndex(false);
+        layerRegistry.register("unindexed", unindexed);
+
+        GisProperties properties = new GisProperties();
+        properties.setScanParallelism(4);
+        executor = new SpatialQueryExecutor(new LayerQueryExecutor(), properties);
+    }
+
+    @After
+    public void closeLayers() {
+        executor.shutdown();
+        handles.forEach(LayerHandle::close);
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() throws Exception {
+        double[][] targets = {{108.5, 34.5}, {108.01, 34.99}, {107.5, 33.5}};
+        for (String name : new String[]{"poi", "pinned_poi"}) {
+            ShapeLayer layer = layer(name);
+            for (String cql : CQLS) {
+                Filter filter = FilterBuilder.createCommonFilter(cql);
+                for (double[] target : targets) {
+                    for (int k : new int[]{1, 10, 50}) {
+                        assertNearest(layer, filter, target[0], target[1], k, Double.POSITIVE_INFINITY);
+                        assertNearest(layer, filter, target[0], target[1], k, 0.05);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void nearestAttachesDistance() throws Exception {
+        List<SimpleFeature> features = executor.nearest(layer("poi"), Filter.INCLUDE, 108.5, 34.5, 3, Double.POSITIVE_INFINITY);
+        Assert.assertEquals(3, features.size());
+        SimpleFeatureType schema = features.get(0).getFeatureType();
+        Assert.assertEquals(SpatialQueryExecutor.DISTANCE, schema.getDescriptor(schema.getAttributeCount() - 1).getLocalName());
+        for (SimpleFeature feature : features) {
+            SimpleFeature source = points.get(QueryResultCache.recordNumber(feature.getID()) - 1);
+            Assert.assertEquals(source.getAttribute("NAME"), feature.getAttribute("NAME"));
+            Assert.assertEquals(((Geometry) source.getDefaultGeometry()).distance(point(108.5, 34.5)),
+                    (Double) feature.getAttribute(SpatialQueryExecutor.DISTANCE), 1e-12);
+        }
+        //k超过要素数时返回全部要素
+        Assert.assertEquals(POINT_COUNT,
+                executor.nearest(layer("poi"), Filter.INCLUDE, 108.5, 34.5, POINT_COUNT * 2, Double.POSITIVE_INFINITY).size());
+    }
+
+    @Test
+    public void nearestRequiresSpatialIndexAndPositiveK() throws Exception {
+        try {
+            executor.nearest(layer("unindexed"), Filter.INCLUDE, 108.5, 34.5, 1, Double.POSITIVE_INFINITY);
+            Assert.fail("未建立空间索引的图层不能做最近邻查询");
+        } catch (IllegalArgumentException expected) {
+            //期望的异常
+        }
+        try {
+            executor.nearest(layer("poi"), Filter.INCLUDE, 108.5, 34.5, 0, Double.POSITIVE_INFINITY);
+            Assert.fail("k必须大于0");
+        } catch (IllegalArgumentException expected) {
+            //期望的异常
+        }
+    }
+
+    @Test
+    public void pointsInPolygonsMatchBruteForce() throws Exception {
+        for (String polygonName : new String[]{"cells", "pinned_cells"}) {
+            for (String pointName : new String[]{"poi", "pinned_poi"}) {
+                for (String cql : CQLS) {
+                    Filter filter = FilterBuilder.createCommonFilter(cql);
+                    int[] counts = executor.countPointsInPolygons(layer(polygonName), layer(pointName), filter);
+                    Assert.assertArrayEquals(polygonName + " " + pointName + " " + cql, bruteForceCounts(filter), counts);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void withCountsAppendsJoinCount() throws Exception {
+        int[] counts = executor.countPointsInPolygons(layer("cells"), layer("poi"), Filter.INCLUDE);
+        ShapeLayer layer = layer("cells");
+        SimpleFeatureType schema = SpatialQueryExecutor.withAttribute(layer.getSchema(), SpatialQueryExecutor.JOIN_COUNT, Integer.class);
+        int total = 0;
+        try (SimpleFeatureIterator iterator = SpatialQueryExecutor.withCounts(schema,
+                new ListFeatureCollection(layer.getSchema(), polygons).features(), counts)) {
+            for (int row = 0; iterator.hasNext(); row++) {
+                SimpleFeature feature = iterator.next();
+                Assert.assertEquals(polygons.get(row).getID(), feature.getID());
+                Assert.assertEquals(counts[row], feature.getAttribute(SpatialQueryExecutor.JOIN_COUNT));
+                total += counts[row];
+            }
+        }
+        //格网覆盖全部点，外加带洞的面与多面的重复计数
+        Assert.assertTrue(total >= POINT_COUNT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPolygonLayer() throws Exception {
+        executor.countPointsInPolygons(layer("poi"), layer("poi"), Filter.INCLUDE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPointLayer() throws Exception {
+        executor.countPointsInPolygons(layer("cells"), layer("cells"), Filter.INCLUDE);
+    }
+
+    private void assertNearest(ShapeLayer layer, Filter filter, double x, double y, int k, double maxDistance) throws Exception {
+        Point target = point(x, y);
+        List<SimpleFeature> expected = new ArrayList<>();
+        for (SimpleFeature feature : points) {
+            if (filter.evaluate(feature) && ((Geometry) feature.getDefaultGeometry()).distance(target) <= maxDistance) {
+                expected.add(feature);
+            }
+        }
+        expected.sort(Comparator.comparingDouble(feature -> ((Geometry) feature.getDefaultGeometry()).distance(target)));
+        expected = expected.subList(0, Math.min(k, expected.size()));
+
+        List<SimpleFeature> actual = executor.nearest(layer, filter, x, y, k, maxDistance);
+        String message = layer.getName() + " " + filter + " (" + x + "," + y + ") k=" + k + " max=" + maxDistance;
+        Assert.assertEquals(message, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(message, expected.get(i).getID(), actual.get(i).getID());
+            Assert.assertEquals(message, ((Geometry) expected.get(i).getDefaultGeometry()).distance(target),
+                    (Double) actual.get(i).getAttribute(SpatialQueryExecutor.DISTANCE), 1e-12);
+        }
+    }
+
+    private int[] bruteForceCounts(Filter filter) {
+        int[] counts = new int[polygons.size()];
+        for (int i = 0; i < polygons.size(); i++) {
+            Geometry polygon = (Geometry) polygons.get(i).getDefaultGeometry();
+            for (SimpleFeature point : points) {
+                if (filter.evaluate(point) && polygon.intersects((Geometry) point.getDefaultGeometry())) {
+                    counts[i]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    private ShapeLayer layer(String name) throws Exception {
+        LayerHandle handle = layerRegistry.acquire(name);
+        handles.add(handle);
+        return handle.layer();
+    }
+
+    /**
+     * 写出覆盖点图层范围的格网，部分格子带洞，末尾附加一个由两块组成的多面
+     */
+    private static File writePolygons(File file) throws Exception {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("cells");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.add("the_geom", MultiPolygon.class);
+        typeBuilder.add("CELL", Integer.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        List<SimpleFeature> features = new ArrayList<>();
+        double size = 1.0 / GRID;
+        for (int row = 0; row < GRID; row++) {
+            for (int column = 0; column < GRID; column++) {
+                Envelope cell = new Envelope(TestShapefiles.MIN_X + column * size, TestShapefiles.MIN_X + (column + 1) * size,
+                        TestShapefiles.MIN_Y + row * size, TestShapefiles.MIN_Y + (row + 1) * size);
+                Polygon polygon;
+                if ((row + column) % 5 == 0) {
+                    Envelope hole = new Envelope(cell.centre());
+                    hole.expandBy(size / 4);
+                    polygon = GEOMETRY_FACTORY.createPolygon(ring(cell), new LinearRing[]{ring(hole)});
+                } else {
+                    polygon = GEOMETRY_FACTORY.createPolygon(ring(cell));
+                }
+                builder.set("the_geom", GEOMETRY_FACTORY.createMultiPolygon(new Polygon[]{polygon}));
+                builder.set("CELL", row * GRID + column);
+                features.add(builder.buildFeature(null));
+            }
+        }
+        Polygon first = GEOMETRY_FACTORY.createPolygon(ring(new Envelope(108.1, 108.3, 34.1, 34.3)));
+        Polygon second = GEOMETRY_FACTORY.createPolygon(ring(new Envelope(108.6, 108.9, 34.5, 34.9)));
+        builder.set("the_geom", GEOMETRY_FACTORY.createMultiPolygon(new Polygon[]{first, second}));
+        builder.set("CELL", -1);
+        features.add(builder.buildFeature(null));
+        BulkShapefileWriter writer = new BulkShapefileWriter(file, type, StandardCharsets.UTF_8);
+        writer.setSpatialIndex(false);
+        writer.write(features.iterator());
+        return file;
+    }
+
+    private static LinearRing ring(Envelope envelope) {
+        return GEOMETRY_FACTORY.createLinearRing(new Coordinate[]{
+                new Coordinate(envelope.getMinX(), envelope.getMinY()),
+                new Coordinate(envelope.getMaxX(), envelope.getMinY()),
+                new Coordinate(envelope.getMaxX(), envelope.getMaxY()),
+                new Coordinate(envelope.getMinX(), envelope.getMaxY()),
+                new Coordinate(envelope.getMinX(), envelope.getMinY()),
+        });
+    }
+
+    private static Point point(double x, double y) {
+        return GEOMETRY_FACTORY.createPoint(new Coordinate(x, y));
+    }
+}
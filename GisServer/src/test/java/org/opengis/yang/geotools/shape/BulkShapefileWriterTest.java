@@ -0,0 +1,126 @@
+package org.opengis.yang.geotools.shape;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量写入的要素数、分卷、空间索引与字段对应
+ */
+public class BulkShapefileWriterTest {
+
+    private static final int FEATURE_COUNT = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesSinglePartWithIndex() throws Exception {
+        File target = new File(folder.getRoot(), "bulk.shp");
+        SimpleFeatureType type = TestShapefiles.pointType("bulk");
+        BulkShapefileWriter.Result result = new BulkShapefileWriter(target, type, StandardCharsets.UTF_8)
+                .write(TestShapefiles.points(type, FEATURE_COUNT, 1));
+        Assert.assertEquals(FEATURE_COUNT, result.getFeatureCount());
+        Assert.assertEquals(Collections.singletonList(target), result.getFiles());
+        Assert.assertEquals(FEATURE_COUNT, TestShapefiles.count(target));
+        Assert.assertTrue("未生成qix", new File(folder.getRoot(), "bulk.qix").exists());
+    }
+
+    @Test
+    public void splitsBeforePartExceedsLimit() throws Exception {
+        final long maxPartBytes = 64 * 1024;
+        File target = new File(folder.getRoot(), "bulk.shp");
+        SimpleFeatureType type = TestShapefiles.pointType("bulk");
+        BulkShapefileWriter writer = new BulkShapefileWriter(target, type, StandardCharsets.UTF_8);
+        writer.setMaxPartBytes(maxPartBytes);
+        writer.setSpatialIndex(false);
+        BulkShapefileWriter.Result result = writer.write(TestShapefiles.points(type, FEATURE_COUNT, 1));
+
+        List<File> parts = result.getFiles();
+        Assert.assertTrue("应当分卷：" + parts, parts.size() > 1);
+        Assert.assertEquals(target, parts.get(0));
+        int total = 0;
+        int expectedIndex = 1;
+        for (int i = 0; i < parts.size(); i++) {
+            File part = parts.get(i);
+            if (i > 0) {
+                Assert.assertEquals("bulk_" + i + ".shp", part.getName());
+            }
+            Assert.assertTrue(part + "超过分卷上限", part.length() <= maxPartBytes);
+            //分卷首尾相接，要素顺序与输入一致
+            for (SimpleFeature feature : TestShapefiles.read(part)) {
+                Assert.assertEquals(expectedIndex % 20, ((Number) feature.getAttribute("LEVEL")).intValue());
+                Assert.assertEquals(TestShapefiles.KINDS[expectedIndex % TestShapefiles.KINDS.length], feature.getAttribute("KIND"));
+                expectedIndex++;
+                total++;
+            }
+        }
+        Assert.assertEquals(FEATURE_COUNT, total);
+        Assert.assertEquals(FEATURE_COUNT, result.getFeatureCount());
+    }
+
+    @Test
+    public void keepsAttributesWithLongNames() throws Exception {
+        //dbf字段名最多10个字符，几何字段不在第一个
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("long");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.length(20).add("DISTRICT_NAME", String.class);
+        typeBuilder.add("the_geom", Point.class);
+        typeBuilder.add("POPULATION_TOTAL", Integer.class);
+        typeBuilder.length(20).add("KIND", String.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+        GeometryFactory geometryFactory = new GeometryFactory();
+        List<SimpleFeature> features = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            features.add(SimpleFeatureBuilder.build(type, new Object[]{"区县" + i,
+                    geometryFactory.createPoint(new Coordinate(108 + i * 0.1, 34)), 1000 + i, "K" + i}, null));
+        }
+        File target = new File(folder.getRoot(), "long.shp");
+        BulkShapefileWriter writer = new BulkShapefileWriter(target, type, StandardCharsets.UTF_8);
+        writer.setSpatialIndex(false);
+        writer.write(features.iterator());
+
+        List<SimpleFeature> written = TestShapefiles.read(target);
+        Assert.assertEquals(features.size(), written.size());
+        for (int i = 0; i < written.size(); i++) {
+            SimpleFeature feature = written.get(i);
+            Assert.assertEquals("区县" + i, feature.getAttribute("DISTRICT_N"));
+            Assert.assertEquals(1000 + i, ((Number) feature.getAttribute("POPULATION")).intValue());
+            Assert.assertEquals("K" + i, feature.getAttribute("KIND"));
+            Assert.assertTrue(((Point) features.get(i).getDefaultGeometry()).equalsExact((Point) feature.getDefaultGeometry()));
+        }
+    }
+
+    @Test
+    public void defaultLimitStaysBelowShapeOffsetRange() {
+        //shx中的偏移与长度是32位有符号整数
+        Assert.assertTrue(BulkShapefileWriter.DEFAULT_MAX_PART_BYTES <= Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void writesEmptyFileWithoutFeatures() throws Exception {
+        File target = new File(folder.getRoot(), "empty.shp");
+        SimpleFeatureType type = TestShapefiles.pointType("empty");
+        BulkShapefileWriter.Result result = new BulkShapefileWriter(target, type, StandardCharsets.UTF_8)
+                .write(Collections.emptyIterator());
+        Assert.assertEquals(0, result.getFeatureCount());
+        Assert.assertEquals(Collections.singletonList(target), result.getFiles());
+        Assert.assertEquals(0, TestShapefiles.count(target));
+    }
+}
@@ -0,0 +1,152 @@
+package org.opengis.yang.geotools.shape;
+
+import org.geotools.api.data.Query;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.opengis.yang.config.GisProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 测试用的小shape文件
+ * 点要素随机分布在108~109°E、34~35°N，字段值按记录号确定，同一种子每次生成相同的数据；
+ * 每7个要素中有一个名称包含“学校”，KIND取自{@link #KINDS}，LEVEL为0~19
+ */
+public final class TestShapefiles {
+
+    public static final String[] KINDS = {"110303", "110304", "130201", "160100", "160200", "180101"};
+
+    public static final double MIN_X = 108;
+
+    public static final double MIN_Y = 34;
+
+    private static final GeometryFactory GEOMETRY_FACTORY = JTSFactoryFinder.getGeometryFactory();
+
+    private TestShapefiles() {
+    }
+
+    /**
+     * @param typeName 类型名，与shp文件名一致
+     * @return 点图层的要素类型
+     */
+    public static SimpleFeatureType pointType(String typeName) {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName(typeName);
+        builder.setCRS(DefaultGeographicCRS.WGS84);
+        builder.add("the_geom", Point.class);
+        builder.length(50).add("NAME", String.class);
+        builder.length(10).add("KIND", String.class);
+        builder.add("LEVEL", Integer.class);
+        return builder.buildFeatureType();
+    }
+
+    /**
+     * 按需生成要素，不在内存中组装集合
+     * @param type {@link #pointType(String)}
+     * @param count 要素数
+     * @param seed 坐标的随机种子
+     */
+    public static Iterator<SimpleFeature> points(SimpleFeatureType type, int count, long seed) {
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        Random random = new Random(seed);
+        return new Iterator<SimpleFeature>() {
+
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public SimpleFeature next() {
+                index++;
+                builder.set("the_geom", GEOMETRY_FACTORY.createPoint(
+                        new Coordinate(MIN_X + random.nextDouble(), MIN_Y + random.nextDouble())));
+                builder.set("NAME", index % 7 == 0 ? "第" + index + "学校" : "兴趣点" + index);
+                builder.set("KIND", KINDS[index % KINDS.length]);
+                builder.set("LEVEL", index % 20);
+                return builder.buildFeature("fid." + index);
+            }
+        };
+    }
+
+    /**
+     * 在目录下写出点图层，不生成qix
+     * @param directory 输出目录
+     * @param typeName 文件名与类型名
+     * @param count 要素数
+     * @param seed 坐标的随机种子
+     * @return shp文件
+     */
+    public static File writePoints(File directory, String typeName, int count, long seed) throws IOException {
+        File file = new File(directory, typeName + ".shp");
+        SimpleFeatureType type = pointType(typeName);
+        BulkShapefileWriter writer = new BulkShapefileWriter(file, type, StandardCharsets.UTF_8);
+        writer.setSpatialIndex(false);
+        writer.write(points(type, count, seed));
+        return file;
+    }
+
+    /**
+     * @param file shp文件
+     * @param indexedAttributes 建立属性索引的字段
+     * @return 开启空间索引的图层配置
+     */
+    public static GisProperties.LayerProperties layer(File file, String... indexedAttributes) {
+        GisProperties.LayerProperties layerProperties = new GisProperties.LayerProperties(file.getPath());
+        layerProperties.setCharset(StandardCharsets.UTF_8.name());
+        layerProperties.setSpatialIndex(true);
+        layerProperties.setIndexedAttributes(new ArrayList<>(Arrays.asList(indexedAttributes)));
+        return layerProperties;
+    }
+
+    /**
+     * 直接通过DataStore读取要素数，不经过注册表
+     * @param file shp文件
+     * @return 要素数
+     */
+    public static int count(File file) throws IOException {
+        ShapefileDataStore dataStore = new ShapefileDataStore(file.toURI().toURL());
+        try {
+            return dataStore.getFeatureSource().getCount(Query.ALL);
+        } finally {
+            dataStore.dispose();
+        }
+    }
+
+    /**
+     * 通过DataStore按记录顺序读取全部要素
+     * @param file shp文件
+     * @return 要素列表
+     */
+    public static List<SimpleFeature> read(File file) throws IOException {
+        ShapefileDataStore dataStore = new ShapefileDataStore(file.toURI().toURL());
+        dataStore.setCharset(StandardCharsets.UTF_8);
+        List<SimpleFeature> features = new ArrayList<>();
+        try (SimpleFeatureIterator iterator = dataStore.getFeatureSource().getFeatures().features()) {
+            while (iterator.hasNext()) {
+                features.add(iterator.next());
+            }
+        } finally {
+            dataStore.dispose();
+        }
+        return features;
+    }
+}
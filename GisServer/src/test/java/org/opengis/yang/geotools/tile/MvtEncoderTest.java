@@ -0,0 +1,285 @@
+package org.opengis.yang.geotools.tile;
+
+import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按Mapbox Vector Tile 2.1规范解码编码结果，几何命令与规范中的示例逐个比较
+ */
+public class MvtEncoderTest {
+
+    private static final int EXTENT = 4096;
+
+    private final WKTReader wktReader = new WKTReader(JTSFactoryFinder.getGeometryFactory());
+
+    @Test
+    public void geometryCommandsFollowSpec() throws Exception {
+        assertCommands("POINT(25 17)", 1, 9, 50, 34);
+        assertCommands("MULTIPOINT((5 7), (3 2))", 1, 17, 10, 14, 3, 9);
+        assertCommands("LINESTRING(2 2, 2 10, 10 10)", 2, 9, 4, 4, 18, 0, 16, 16, 0);
+        assertCommands("MULTILINESTRING((2 2, 2 10, 10 10), (1 1, 3 5))", 2,
+                9, 4, 4, 18, 0, 16, 16, 0, 9, 17, 17, 10, 4, 8);
+        assertCommands("POLYGON((3 6, 8 12, 20 34, 3 6))", 3, 9, 6, 12, 18, 10, 12, 24, 44, 15);
+        assertCommands("MULTIPOLYGON(((0 0, 10 0, 10 10, 0 10, 0 0)),"
+                        + "((11 11, 20 11, 20 20, 11 20, 11 11), (13 13, 13 17, 17 17, 17 13, 13 13)))", 3,
+                9, 0, 0, 26, 20, 0, 0, 20, 19, 0, 15,
+                9, 22, 2, 26, 18, 0, 0, 18, 17, 0, 15,
+                9, 4, 13, 26, 0, 8, 8, 0, 0, 7, 15);
+    }
+
+    @Test
+    public void ringsAreReorientedAndDeduplicated() throws Exception {
+        //外环方向相反时反转，与规范示例的结果相同
+        assertCommands("POLYGON((3 6, 20 34, 8 12, 3 6))", 3, 9, 6, 12, 18, 10, 12, 24, 44, 15);
+        //取整后重复的点只写一次
+        assertCommands("LINESTRING(2 2, 2.2 1.9, 2 10, 10 10)", 2, 9, 4, 4, 18, 0, 16, 16, 0);
+    }
+
+    @Test
+    public void degenerateGeometriesAreSkipped() throws Exception {
+        MvtEncoder encoder = new MvtEncoder("poi", EXTENT);
+        //取整后退化为一个点的线、面，以及切片范围以外的点
+        encoder.addFeature(1, geometry("LINESTRING(1.1 1.1, 0.9 0.9)"), Collections.emptyMap());
+        encoder.addFeature(2, geometry("POLYGON((5 5, 5.2 5, 5.2 5.2, 5 5))"), Collections.emptyMap());
+        encoder.addFeature(3, geometry("POINT(-10 20)"), Collections.emptyMap());
+        encoder.addFeature(4, geometry("POINT(20 5000)"), Collections.emptyMap());
+        Assert.assertEquals(0, encoder.getFeatureCount());
+        Assert.assertEquals(0, encoder.encode().length);
+    }
+
+    @Test
+    public void layerKeysAndValues() throws Exception {
+        MvtEncoder encoder = new MvtEncoder("poi", EXTENT);
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("NAME", "学校");
+        first.put("LEVEL", 3);
+        first.put("KIND", null);
+        encoder.addFeature(7, geometry("POINT(1 1)"), first);
+        Map<String, Object> second = new LinkedHashMap<>();
+        //整数统一为long，与上一个要素共用值
+        second.put("LEVEL", 3L);
+        second.put("AREA", -2.5d);
+        second.put("RATE", 0.5f);
+        second.put("OPEN", true);
+        second.put("PRICE", new BigDecimal("12.30"));
+        second.put("SCORE", -4L);
+        encoder.addFeature(0, geometry("POINT(2 2)"), second);
+        Assert.assertEquals(2, encoder.getFeatureCount());
+
+        Layer layer = Layer.decode(encoder.encode());
+        Assert.assertEquals(2, layer.version);
+        Assert.assertEquals("poi", layer.name);
+        Assert.assertEquals(EXTENT, layer.extent);
+        Assert.assertEquals(List.of("NAME", "LEVEL", "AREA", "RATE", "OPEN", "PRICE", "SCORE"), layer.keys);
+        Assert.assertEquals(List.of("学校", 3L, -2.5d, 0.5f, true, "12.30", -4L), layer.values);
+        Assert.assertEquals(2, layer.features.size());
+
+        Feature feature = layer.features.get(0);
+        Assert.assertEquals(Long.valueOf(7), feature.id);
+        Assert.assertEquals(List.of(0, 0, 1, 1), feature.tags);
+        Assert.assertEquals(Map.of("NAME", "学校", "LEVEL", 3L), layer.attributes(feature));
+
+        feature = layer.features.get(1);
+        //编号小于等于0时不写出
+        Assert.assertNull(feature.id);
+        Assert.assertEquals(List.of(1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6), feature.tags);
+        Assert.assertEquals(List.of(9, 4, 4), feature.geometry);
+    }
+
+    private void assertCommands(String wkt, int type, int... commands) throws Exception {
+        MvtEncoder encoder = new MvtEncoder("poi", EXTENT);
+        encoder.addFeature(1, geometry(wkt), Collections.emptyMap());
+        Layer layer = Layer.decode(encoder.encode());
+        Assert.assertEquals(wkt, 1, layer.features.size());
+        Feature feature = layer.features.get(0);
+        Assert.assertEquals(wkt, type, feature.type);
+        List<Integer> expected = new ArrayList<>(commands.length);
+        for (int command : commands) {
+            expected.add(command);
+        }
+        Assert.assertEquals(wkt, expected, feature.geometry);
+        Assert.assertTrue(wkt, feature.tags.isEmpty());
+    }
+
+    private Geometry geometry(String wkt) throws Exception {
+        return wktReader.read(wkt);
+    }
+
+    /**
+     * 解码后的图层
+     */
+    static class Layer {
+
+        int version;
+
+        String name;
+
+        int extent;
+
+        final List<Feature> features = new ArrayList<>();
+
+        final List<String> keys = new ArrayList<>();
+
+        final List<Object> values = new ArrayList<>();
+
+        static Layer decode(byte[] tile) {
+            ProtoReader tileReader = new ProtoReader(tile);
+            Layer layer = null;
+            while (tileReader.hasNext()) {
+                int field = tileReader.field();
+                Assert.assertEquals("切片只有layers字段", 3, field);
+                Assert.assertNull("只生成一个图层", layer);
+                layer = new Layer();
+                ProtoReader reader = new ProtoReader(tileReader.bytes());
+                while (reader.hasNext()) {
+                    switch (reader.field()) {
+                        case 15 -> layer.version = (int) reader.varint();
+                        case 1 -> layer.name = new String(reader.bytes(), StandardCharsets.UTF_8);
+                        case 2 -> layer.features.add(Feature.decode(reader.bytes()));
+                        case 3 -> layer.keys.add(new String(reader.bytes(), StandardCharsets.UTF_8));
+                        case 4 -> layer.values.add(value(reader.bytes()));
+                        case 5 -> layer.extent = (int) reader.varint();
+                        default -> Assert.fail("未知的图层字段");
+                    }
+                }
+            }
+            Assert.assertNotNull(layer);
+            return layer;
+        }
+
+        Map<String, Object> attributes(Feature feature) {
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (int i = 0; i < feature.tags.size(); i += 2) {
+                attributes.put(keys.get(feature.tags.get(i)), values.get(feature.tags.get(i + 1)));
+            }
+            return attributes;
+        }
+
+        private static Object value(byte[] bytes) {
+            ProtoReader reader = new ProtoReader(bytes);
+            int field = reader.field();
+            Object value = switch (field) {
+                case 1 -> new String(reader.bytes(), StandardCharsets.UTF_8);
+                case 2 -> Float.intBitsToFloat((int) reader.fixed(4));
+                case 3 -> Double.longBitsToDouble(reader.fixed(8));
+                case 6 -> {
+                    long zigZag = reader.varint();
+                    yield (zigZag >>> 1) ^ -(zigZag & 1);
+                }
+                case 7 -> reader.varint() != 0;
+                default -> throw new AssertionError("未知的值类型：" + field);
+            };
+            Assert.assertFalse("每个值只有一个字段", reader.hasNext());
+            return value;
+        }
+    }
+
+    /**
+     * 解码后的要素
+     */
+    static class Feature {
+
+        Long id;
+
+        int type;
+
+        List<Integer> tags = new ArrayList<>();
+
+        List<Integer> geometry = new ArrayList<>();
+
+        static Feature decode(byte[] bytes) {
+            Feature feature = new Feature();
+            ProtoReader reader = new ProtoReader(bytes);
+            while (reader.hasNext()) {
+                switch (reader.field()) {
+                    case 1 -> feature.id = reader.varint();
+                    case 2 -> feature.tags = packed(reader.bytes());
+                    case 3 -> feature.type = (int) reader.varint();
+                    case 4 -> feature.geometry = packed(reader.bytes());
+                    default -> Assert.fail("未知的要素字段");
+                }
+            }
+            return feature;
+        }
+
+        private static List<Integer> packed(byte[] bytes) {
+            ProtoReader reader = new ProtoReader(bytes);
+            List<Integer> values = new ArrayList<>();
+            while (reader.hasNext()) {
+                values.add((int) reader.varint());
+            }
+            return values;
+        }
+    }
+
+    /**
+     * protobuf线格式读取，读取字段值前检查线类型
+     */
+    static class ProtoReader {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        private int wireType = -1;
+
+        ProtoReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean hasNext() {
+            return position < bytes.length;
+        }
+
+        int field() {
+            long tag = readVarint();
+            wireType = (int) (tag & 0x7);
+            return (int) (tag >>> 3);
+        }
+
+        long varint() {
+            Assert.assertTrue("线类型应为varint", wireType == 0 || wireType == -1);
+            return readVarint();
+        }
+
+        long fixed(int size) {
+            Assert.assertEquals("线类型与长度不符", size == 4 ? 5 : 1, wireType);
+            long value = 0;
+            for (int i = 0; i < size; i++) {
+                value |= (bytes[position++] & 0xFFL) << (8 * i);
+            }
+            return value;
+        }
+
+        byte[] bytes() {
+            Assert.assertEquals("线类型应为length-delimited", 2, wireType);
+            int length = (int) readVarint();
+            byte[] value = new byte[length];
+            System.arraycopy(bytes, position, value, 0, length);
+            position += length;
+            return value;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
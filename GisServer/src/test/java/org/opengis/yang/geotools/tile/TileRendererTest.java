@@ -0,0 +1,119 @@
+package org.opengis.yang.geotools.tile;
+
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.geotools.crs.CrsCache;
+import org.opengis.yang.geotools.crs.FeatureReprojector;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.opengis.yang.geotools.shape.BulkShapefileWriter;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 投影坐标系图层的切片必须与相同要素的经纬度图层一致
+ */
+public class TileRendererTest {
+
+    private static final int FEATURE_COUNT = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private final TileRenderer renderer = new TileRenderer(new LayerQueryExecutor());
+
+    @Before
+    public void openLayers() throws Exception {
+        File file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 101);
+        SimpleFeatureType type = TestShapefiles.pointType("poi");
+        FeatureReprojector reprojector = new FeatureReprojector(type, CrsCache.decode("EPSG:3857"));
+        List<SimpleFeature> projected = reprojector.reproject(TestShapefiles.read(file));
+        File mercator = new File(folder.newFolder("mercator"), "poi.shp");
+        BulkShapefileWriter writer = new BulkShapefileWriter(mercator, reprojector.getSchema(), StandardCharsets.UTF_8);
+        writer.setSpatialIndex(false);
+        writer.write(projected.iterator());
+
+        layerRegistry = new ShapeLayerRegistry(new GisProperties());
+        layerRegistry.register("lonlat", TestShapefiles.layer(file));
+        layerRegistry.register("mercator", TestShapefiles.layer(mercator));
+    }
+
+    @After
+    public void closeLayers() {
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void projectedLayerMatchesLonLatLayer() throws Exception {
+        //z6覆盖全部要素，z9只覆盖一部分
+        assertSameTile(6, 51, 25, FEATURE_COUNT);
+        assertSameTile(9, 409, 203, -1);
+    }
+
+    @Test
+    public void tileOutsideProjectedLayerIsEmpty() throws Exception {
+        try (LayerHandle handle = layerRegistry.acquire("mercator")) {
+            Assert.assertEquals(0, renderer.render(handle.layer(), 6, 0, 0).length);
+            Assert.assertEquals(0, renderer.render(handle.layer(), 6, 32, 32).length);
+        }
+    }
+
+    /**
+     * @param expectedCount 期望的要素数，小于0时只要求切片中有要素
+     */
+    private void assertSameTile(int z, int x, int y, int expectedCount) throws Exception {
+        Map<Long, List<Integer>> expected = features(render("lonlat", z, x, y));
+        Map<Long, List<Integer>> actual = features(render("mercator", z, x, y));
+        if (expectedCount >= 0) {
+            Assert.assertEquals(expectedCount, expected.size());
+        } else {
+            Assert.assertTrue(z + "/" + x + "/" + y, !expected.isEmpty() && expected.size() < FEATURE_COUNT);
+        }
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Long, List<Integer>> entry : expected.entrySet()) {
+            List<Integer> commands = actual.get(entry.getKey());
+            //点要素为MoveTo加一对坐标，坐标转换的误差至多使取整相差1
+            Assert.assertEquals(3, commands.size());
+            Assert.assertEquals(entry.getValue().get(0), commands.get(0));
+            for (int i = 1; i < 3; i++) {
+                Assert.assertEquals(zigZag(entry.getValue().get(i)), zigZag(commands.get(i)), 1);
+            }
+        }
+    }
+
+    private byte[] render(String name, int z, int x, int y) throws Exception {
+        try (LayerHandle handle = layerRegistry.acquire(name)) {
+            return renderer.render(handle.layer(), z, x, y);
+        }
+    }
+
+    private static Map<Long, List<Integer>> features(byte[] tile) {
+        Map<Long, List<Integer>> features = new HashMap<>();
+        if (tile.length == 0) {
+            return features;
+        }
+        for (MvtEncoderTest.Feature feature : MvtEncoderTest.Layer.decode(tile).features) {
+            features.put(feature.id, feature.geometry);
+        }
+        return features;
+    }
+
+    private static int zigZag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,177 @@
+package org.opengis.yang.web.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.yang.config.GisProperties;
+import org.opengis.yang.diagnostics.QueryMetrics;
+import org.opengis.yang.geotools.layer.LayerBusyException;
+import org.opengis.yang.geotools.layer.LayerHandle;
+import org.opengis.yang.geotools.layer.ShapeLayerRegistry;
+import org.opengis.yang.geotools.query.BatchQueryExecutor;
+import org.opengis.yang.geotools.query.LayerAggregator;
+import org.opengis.yang.geotools.query.LayerQueryExecutor;
+import org.opengis.yang.geotools.query.QueryResultCache;
+import org.opengis.yang.geotools.query.SpatialQueryExecutor;
+import org.opengis.yang.geotools.shape.BulkShapefileWriter;
+import org.opengis.yang.geotools.shape.TestShapefiles;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式查询在要素读完前一直占用图层的查询许可，面内点计数不会在持有面图层许可时等待同一图层
+ */
+public class FeatureControllerTest {
+
+    //GeoJSON远大于64KB的写出缓冲区，读取过程中会多次写到输出流
+    private static final int FEATURE_COUNT = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ShapeLayerRegistry layerRegistry;
+
+    private SpatialQueryExecutor spatialExecutor;
+
+    private FeatureController controller;
+
+    @Before
+    public void createController() throws Exception {
+        File file = TestShapefiles.writePoints(folder.getRoot(), "poi", FEATURE_COUNT, 91);
+        GisProperties properties = new GisProperties();
+        properties.setMaxConcurrentQueries(1);
+        properties.setQueryPermitTimeout(Duration.ofMillis(200));
+        layerRegistry = new ShapeLayerRegistry(properties);
+        layerRegistry.register("poi", TestShapefiles.layer(file, "KIND"));
+        layerRegistry.register("cells", TestShapefiles.layer(writeCells(new File(folder.getRoot(), "cells.shp"))));
+        LayerQueryExecutor queryExecutor = new LayerQueryExecutor();
+        spatialExecutor = new SpatialQueryExecutor(queryExecutor, properties);
+        controller = new FeatureController(layerRegistry, new QueryResultCache(queryExecutor, properties),
+                new LayerAggregator(queryExecutor), new QueryMetrics(new SimpleMeterRegistry(), properties),
+                new BatchQueryExecutor(queryExecutor), spatialExecutor, properties);
+    }
+
+    @After
+    public void closeController() {
+        spatialExecutor.shutdown();
+        layerRegistry.dispose();
+    }
+
+    @Test
+    public void streamingQueryHoldsPermitUntilRead() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.features("poi", "NAME LIKE '%兴趣点%'", null, 0,
+                null, null, null, "geojson", null);
+        //查询已打开但尚未读取
+        assertBusy();
+        ProbeOutputStream outputStream = new ProbeOutputStream();
+        response.getBody().writeTo(outputStream);
+        Assert.assertTrue("读取过程中许可应被占用", outputStream.busy);
+        Assert.assertTrue(outputStream.size > 64 * 1024);
+        //写完后归还许可
+        layerRegistry.acquire("poi").close();
+    }
+
+    @Test
+    public void joinHoldsOnlyPolygonPermitWhileStreaming() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.join("cells", "poi", null, "geojson", null);
+        //计数完成后点图层的许可已归还，面图层的许可保留到面要素读完
+        layerRegistry.acquire("poi").close();
+        assertBusy("cells");
+        response.getBody().writeTo(OutputStream.nullOutputStream());
+        layerRegistry.acquire("cells").close();
+    }
+
+    @Test
+    public void joinRejectsSameLayer() throws Exception {
+        try {
+            controller.join("poi", "poi", null, "geojson", null);
+            Assert.fail("面图层与点图层相同时应返回400");
+        } catch (ResponseStatusException e) {
+            Assert.assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        }
+        //没有占用许可
+        layerRegistry.acquire("poi").close();
+    }
+
+    private void assertBusy() throws IOException {
+        assertBusy("poi");
+    }
+
+    private void assertBusy(String name) throws IOException {
+        try (LayerHandle handle = layerRegistry.acquire(name)) {
+            Assert.fail("查询许可应被流式查询占用：" + handle.layer().getName());
+        } catch (LayerBusyException expected) {
+            //期望的异常
+        }
+    }
+
+    /**
+     * 写出覆盖点图层范围的4x4格网面
+     */
+    private static File writeCells(File file) throws IOException {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("cells");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.add("the_geom", Polygon.class);
+        typeBuilder.add("CELL", Integer.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+        GeometryFactory geometryFactory = new GeometryFactory();
+        List<SimpleFeature> cells = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            double minX = TestShapefiles.MIN_X + (i % 4) * 0.25;
+            double minY = TestShapefiles.MIN_Y + (i / 4) * 0.25;
+            Polygon cell = (Polygon) geometryFactory.toGeometry(new Envelope(minX, minX + 0.25, minY, minY + 0.25));
+            cells.add(SimpleFeatureBuilder.build(type, new Object[]{cell, i}, null));
+        }
+        BulkShapefileWriter writer = new BulkShapefileWriter(file, type, StandardCharsets.UTF_8);
+        writer.setSpatialIndex(false);
+        writer.write(cells.iterator());
+        return file;
+    }
+
+    /**
+     * 第一次写入时尝试获取同一图层，此时要素还没有读完
+     */
+    private class ProbeOutputStream extends OutputStream {
+
+        private boolean busy;
+
+        private long size;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (size == 0) {
+                assertBusy();
+                busy = true;
+            }
+            size += len;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.opengis.yang.web.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.yang.config.GisProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 下载接口的完整下载、Range断点续传、416以及If-Range、If-None-Match条件请求
+ */
+public class FileDownLoadControllerTest {
+
+    private static final String NAME = "data.bin";
+
+    //大于64KB的写出缓冲区，覆盖多次读写
+    private static final int LENGTH = 200_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] content;
+
+    private File file;
+
+    private FileDownLoadController controller;
+
+    @Before
+    public void createFile() throws Exception {
+        content = new byte[LENGTH];
+        new Random(7).nextBytes(content);
+        file = folder.newFile(NAME);
+        Files.write(file.toPath(), content);
+        GisProperties properties = new GisProperties();
+        properties.setDownloadDirectory(folder.getRoot().getAbsolutePath());
+        controller = new FileDownLoadController(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void fullDownload() throws Exception {
+        MockHttpServletResponse response = download(request());
+        Assert.assertEquals(HttpStatus.OK.value(), response.getStatus());
+        Assert.assertEquals(LENGTH, response.getContentLength());
+        Assert.assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        Assert.assertEquals(etag(), response.getHeader(HttpHeaders.ETAG));
+        Assert.assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        Assert.assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void rangeReturnsPartialContent() throws Exception {
+        assertPartial("bytes=100-70099", 100, 70099);
+        //从某个位置续传到文件末尾
+        assertPartial("bytes=150000-", 150000, LENGTH - 1);
+        //最后若干字节
+        assertPartial("bytes=-500", LENGTH - 500, LENGTH - 1);
+        //结束位置超出文件长度时截到末尾
+        assertPartial("bytes=199990-300000", 199990, LENGTH - 1);
+    }
+
+    @Test
+    public void unsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=" + LENGTH + "-");
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), response.getStatus());
+        Assert.assertEquals("bytes */" + LENGTH, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        Assert.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void multipleRangesReturnFullFile() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-10,20-30");
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(HttpStatus.OK.value(), response.getStatus());
+        Assert.assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void ifRangeMatchingEtag() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-1999");
+        request.addHeader(HttpHeaders.IF_RANGE, etag());
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        Assert.assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), response.getContentAsByteArray());
+    }
+
+    @Test
+    public void ifRangeMatchingDate() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-1999");
+        request.addHeader(HttpHeaders.IF_RANGE, DateTimeFormatter.RFC_1123_DATE_TIME
+                .format(Instant.ofEpochMilli(file.lastModified()).atZone(ZoneOffset.UTC)));
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        Assert.assertEquals(1000, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void ifRangeMismatchReturnsFullFile() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-1999");
+        //文件已经变化，续传会拼接出错误的内容，必须返回完整文件
+        request.addHeader(HttpHeaders.IF_RANGE, "\"0-0\"");
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(HttpStatus.OK.value(), response.getStatus());
+        Assert.assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        Assert.assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void ifNoneMatchReturnsNotModified() throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag());
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(HttpStatus.NOT_MODIFIED.value(), response.getStatus());
+        Assert.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void sendfileLeavesBodyToContainer() throws Exception {
+        MockHttpServletRequest request = request();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        Assert.assertEquals(file.getCanonicalFile(), new File((String) request.getAttribute("org.apache.tomcat.sendfile.filename")).getCanonicalFile());
+        Assert.assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        //结束位置不包含在内
+        Assert.assertEquals(20L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        Assert.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void rejectsPathOutsideDirectory() throws Exception {
+        try {
+            controller.download(request(), new MockHttpServletResponse(), "../" + NAME);
+            Assert.fail("下载目录以外的文件不能下载");
+        } catch (ResponseStatusException e) {
+            Assert.assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+        }
+    }
+
+    private void assertPartial(String range, int start, int end) throws Exception {
+        MockHttpServletRequest request = request();
+        request.addHeader(HttpHeaders.RANGE, range);
+        MockHttpServletResponse response = download(request);
+        Assert.assertEquals(range, HttpStatus.PARTIAL_CONTENT.value(), response.getStatus());
+        Assert.assertEquals(range, "bytes " + start + "-" + end + "/" + LENGTH, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        Assert.assertEquals(range, end - start + 1, response.getContentLength());
+        Assert.assertArrayEquals(range, Arrays.copyOfRange(content, start, end + 1), response.getContentAsByteArray());
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.download(request, response, NAME);
+        return response;
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/file/download/" + NAME);
+    }
+
+    private String etag() {
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + "\"";
+    }
+}